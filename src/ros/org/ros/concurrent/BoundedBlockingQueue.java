@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded queue that blocks consumers until entries are available.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ * 
+ * @param <T>
+ *          the type of entries in the queue
+ */
+public interface BoundedBlockingQueue<T> {
+
+  /**
+   * Adds the specified entry to the tail of the queue. What happens if the
+   * queue is full depends on the implementation.
+   * 
+   * @param entry
+   *          the entry to add
+   * @return {@code true} if the entry was added, {@code false} if it was
+   *         rejected
+   */
+  boolean addLast(T entry);
+
+  /**
+   * Retrieves the head of the queue, blocking if necessary until an entry is
+   * available.
+   * 
+   * @return the head of the queue
+   * @throws InterruptedException
+   */
+  T takeFirst() throws InterruptedException;
+
+  /**
+   * Retrieves the head of the queue, waiting up to the specified timeout if
+   * necessary for an entry to become available.
+   * 
+   * @param timeout
+   *          how long to wait before giving up, {@code 0} to return immediately
+   * @param unit
+   *          the {@link TimeUnit} of {@code timeout}
+   * @return the head of the queue, or {@code null} if the timeout elapsed
+   *         before an entry was available
+   * @throws InterruptedException
+   */
+  T pollFirst(long timeout, TimeUnit unit) throws InterruptedException;
+
+  boolean isEmpty();
+
+  /**
+   * @return a snapshot of the counters of this queue
+   */
+  QueueStatistics getStatistics();
+}
@@ -16,17 +16,23 @@
 
 package org.ros.concurrent;
 
+import com.google.common.base.Preconditions;
+
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A deque that removes head or tail elements when the number of elements
  * exceeds the limit and blocks on {@link #takeFirst()} and {@link #takeLast()} when
  * there are no elements available.
+ * <p>
+ * What happens to entries added while the deque is full is determined by its
+ * {@link OverflowPolicy}. By default, older entries are overwritten.
  * 
  * @author damonkohler@google.com (Damon Kohler)
  */
-public class CircularBlockingDeque<T> implements Iterable<T> {
+public class CircularBlockingDeque<T> implements BoundedBlockingQueue<T>, Iterable<T> {
 
   private final T[] deque;
   private final Object mutex;
@@ -36,6 +42,13 @@ public class CircularBlockingDeque<T> implements Iterable<T> {
    */
   private final int limit;
 
+  private final OverflowPolicy overflowPolicy;
+
+  /**
+   * How long {@link OverflowPolicy#BLOCK} waits for room in the queue.
+   */
+  private final long blockTimeoutNanos;
+
   /**
    * Points to the next entry that will be returned by {@link #takeFirst()} unless
    * {@link #isEmpty()}.
@@ -47,50 +60,87 @@ public class CircularBlockingDeque<T> implements Iterable<T> {
    */
   private int length;
 
+  private long enqueued;
+  private long dropped;
+  private int highWaterMark;
+
   /**
    * @param capacity
    *          the maximum number of elements allowed in the queue
    */
-  @SuppressWarnings("unchecked")
   public CircularBlockingDeque(int capacity) {
+    this(capacity, OverflowPolicy.OVERWRITE, 0, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param capacity
+   *          the maximum number of elements allowed in the queue
+   * @param overflowPolicy
+   *          the {@link OverflowPolicy} for entries added while the queue is
+   *          full
+   * @param blockTimeout
+   *          how long {@link OverflowPolicy#BLOCK} waits for room in the
+   *          queue, must be positive for {@link OverflowPolicy#BLOCK}
+   * @param unit
+   *          the {@link TimeUnit} of {@code blockTimeout}
+   */
+  @SuppressWarnings("unchecked")
+  public CircularBlockingDeque(int capacity, OverflowPolicy overflowPolicy, long blockTimeout,
+      TimeUnit unit) {
+    Preconditions.checkArgument(capacity > 0);
+    Preconditions.checkArgument(overflowPolicy != OverflowPolicy.BLOCK || blockTimeout > 0,
+        "OverflowPolicy.BLOCK requires a positive timeout.");
     deque = (T[]) new Object[capacity];
     mutex = new Object();
     limit = capacity;
+    this.overflowPolicy = overflowPolicy;
+    blockTimeoutNanos = unit.toNanos(blockTimeout);
     start = 0;
     length = 0;
   }
 
   /**
-   * Adds the specified entry to the tail of the queue, overwriting older
-   * entries if necessary.
+   * Adds the specified entry to the tail of the queue. If the queue is full,
+   * the entry either overwrites the head of the queue or is rejected,
+   * depending on the {@link OverflowPolicy}.
    * 
    * @param entry
    *          the entry to add
-   * @return {@code true}
+   * @return {@code true} if the entry was added, {@code false} if it was
+   *         rejected
    */
+  @Override
   public boolean addLast(T entry) {
     synchronized (mutex) {
+      if (!awaitCapacity()) {
+        return false;
+      }
       deque[(start + length) % limit] = entry;
       if (length == limit) {
         start = (start + 1) % limit;
       } else {
         length++;
       }
-      mutex.notify();
+      entryAdded();
     }
     return true;
   }
 
   /**
-   * Adds the specified entry to the tail of the queue, overwriting older
-   * entries if necessary.
+   * Adds the specified entry to the head of the queue. If the queue is full,
+   * the entry either overwrites the tail of the queue or is rejected,
+   * depending on the {@link OverflowPolicy}.
    * 
    * @param entry
    *          the entry to add
-   * @return {@code true}
+   * @return {@code true} if the entry was added, {@code false} if it was
+   *         rejected
    */
   public boolean addFirst(T entry) {
     synchronized (mutex) {
+      if (!awaitCapacity()) {
+        return false;
+      }
       if (start - 1 < 0) {
         start = limit - 1;
       } else {
@@ -100,11 +150,90 @@ public class CircularBlockingDeque<T> implements Iterable<T> {
       if (length < limit) {
         length++;
       }
-      mutex.notify();
+      entryAdded();
     }
     return true;
   }
 
+  /**
+   * Must be called while holding {@link #mutex}.
+   * 
+   * @return {@code true} if an entry may be added, possibly overwriting an
+   *         existing one, {@code false} if the entry must be rejected
+   */
+  private boolean awaitCapacity() {
+    if (length < limit) {
+      return true;
+    }
+    switch (overflowPolicy) {
+      case OVERWRITE:
+        dropped++;
+        return true;
+      case BLOCK:
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        try {
+          while (length == limit) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+              break;
+            }
+            TimeUnit.NANOSECONDS.timedWait(mutex, remaining);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        if (length < limit) {
+          return true;
+        }
+        dropped++;
+        return false;
+      case REJECT:
+      default:
+        dropped++;
+        return false;
+    }
+  }
+
+  /**
+   * Must be called while holding {@link #mutex}.
+   */
+  private void entryAdded() {
+    enqueued++;
+    if (length > highWaterMark) {
+      highWaterMark = length;
+    }
+    signal();
+  }
+
+  /**
+   * Wakes a thread waiting on {@link #mutex}. Producers only wait for room
+   * when using {@link OverflowPolicy#BLOCK}, in which case both producers and
+   * consumers may be waiting.
+   */
+  private void signal() {
+    if (overflowPolicy == OverflowPolicy.BLOCK) {
+      mutex.notifyAll();
+    } else {
+      mutex.notify();
+    }
+  }
+
+  /**
+   * Must be called while holding {@link #mutex} after an entry is removed.
+   */
+  private void entryRemoved() {
+    if (overflowPolicy == OverflowPolicy.BLOCK) {
+      mutex.notifyAll();
+    }
+  }
+
+  @Override
+  public QueueStatistics getStatistics() {
+    synchronized (mutex) {
+      return new QueueStatistics(enqueued, dropped, highWaterMark);
+    }
+  }
+
   /**
    * Retrieves the head of the queue, blocking if necessary until an entry is
    * available.
@@ -112,6 +241,7 @@ public class CircularBlockingDeque<T> implements Iterable<T> {
    * @return the head of the queue
    * @throws InterruptedException
    */
+  @Override
   public T takeFirst() throws InterruptedException {
     T entry;
     synchronized (mutex) {
@@ -120,6 +250,7 @@ public class CircularBlockingDeque<T> implements Iterable<T> {
           entry = deque[start];
           start = (start + 1) % limit;
           length--;
+          entryRemoved();
           break;
         }
         mutex.wait();
@@ -128,6 +259,37 @@ public class CircularBlockingDeque<T> implements Iterable<T> {
     return entry;
   }
 
+  /**
+   * Retrieves the head of the queue, waiting up to the specified timeout if
+   * necessary for an entry to become available.
+   * 
+   * @param timeout
+   *          how long to wait before giving up, {@code 0} to return immediately
+   * @param unit
+   *          the {@link TimeUnit} of {@code timeout}
+   * @return the head of the queue, or {@code null} if the timeout elapsed
+   *         before an entry was available
+   * @throws InterruptedException
+   */
+  @Override
+  public T pollFirst(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (mutex) {
+      while (length == 0) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return null;
+        }
+        TimeUnit.NANOSECONDS.timedWait(mutex, remaining);
+      }
+      T entry = deque[start];
+      start = (start + 1) % limit;
+      length--;
+      entryRemoved();
+      return entry;
+    }
+  }
+
   /**
    * Retrieves, but does not remove, the head of this queue, returning
    * {@code null} if this queue is empty.
@@ -157,6 +319,7 @@ public class CircularBlockingDeque<T> implements Iterable<T> {
         if (length > 0) {
           entry = deque[(start + length - 1) % limit];
           length--;
+          entryRemoved();
           break;
         }
         mutex.wait();
@@ -180,6 +343,7 @@ public class CircularBlockingDeque<T> implements Iterable<T> {
     }
   }
 
+  @Override
   public boolean isEmpty() {
     return length == 0;
   }
@@ -1,12 +1,12 @@
 /*
  * Copyright (C) 2012 Google Inc.
- * 
+ *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
  * the License at
- * 
+ *
  * http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
@@ -16,30 +16,128 @@
 
 package org.ros.concurrent;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * Queues events for a single listener and calls the listener with them, in
+ * order, on an {@link Executor}.
+ * <p>
+ * An {@link EventDispatcher} only occupies a thread of the {@link Executor}
+ * while it has pending events. At most one thread runs it at any time, so the
+ * listener is never called concurrently and sees events in the order they
+ * were signaled.
+ * 
  * @author damonkohler@google.com (Damon Kohler)
  * 
  * @param <T>
  *          the listener type
  */
-public class EventDispatcher<T> extends CancellableLoop {
+public class EventDispatcher<T> implements Runnable {
+
+  private static final boolean DEBUG = false;
+  private static final Log log = LogFactory.getLog(EventDispatcher.class);
+
+  /**
+   * The maximum number of events handled before the {@link EventDispatcher}
+   * gives up its thread to other {@link EventDispatcher}s.
+   */
+  private static final int MAX_EVENTS_PER_RUN = 64;
 
   private final T listener;
-  private final CircularBlockingDeque<SignalRunnable<T>> events;
+  private final Executor executor;
+  private final RingBuffer<SignalRunnable<T>> events;
+
+  /**
+   * {@code true} while the {@link EventDispatcher} is submitted to, or running
+   * on, the {@link Executor}.
+   */
+  private final AtomicBoolean scheduled;
 
-  public EventDispatcher(T listener, int queueCapacity) {
+  private volatile boolean cancelled;
+
+  /**
+   * @param listener
+   *          the listener to call
+   * @param queueCapacity
+   *          the maximum number of events to buffer
+   * @param executor
+   *          the {@link Executor} that runs the {@link EventDispatcher} while
+   *          it has pending events
+   */
+  public EventDispatcher(T listener, int queueCapacity, Executor executor) {
     this.listener = listener;
-    events = new CircularBlockingDeque<SignalRunnable<T>>(queueCapacity);
+    this.executor = executor;
+    events = new RingBuffer<SignalRunnable<T>>(queueCapacity, WaitStrategy.BLOCKING);
+    scheduled = new AtomicBoolean();
+    cancelled = false;
   }
 
   public void signal(final SignalRunnable<T> signalRunnable) {
+    if (cancelled) {
+      return;
+    }
     events.addLast(signalRunnable);
+    schedule();
+  }
+
+  private void schedule() {
+    if (scheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(this);
+      } catch (RuntimeException e) {
+        // The executor is shutting down or saturated. Events stay queued until
+        // the next signal.
+        scheduled.set(false);
+        if (DEBUG) {
+          log.error("Failed to schedule event dispatch.", e);
+        }
+      }
+    }
   }
 
   @Override
-  public void loop() throws InterruptedException {
-    SignalRunnable<T> signalRunnable = events.takeFirst();
-    signalRunnable.run(listener);
+  public void run() {
+    try {
+      for (int i = 0; i < MAX_EVENTS_PER_RUN && !cancelled; i++) {
+        SignalRunnable<T> signalRunnable = events.pollFirst(0, TimeUnit.NANOSECONDS);
+        if (signalRunnable == null) {
+          break;
+        }
+        try {
+          signalRunnable.run(listener);
+        } catch (RuntimeException e) {
+          log.error("Listener failed to handle event.", e);
+        }
+      }
+    } catch (InterruptedException e) {
+      // A zero timeout poll never waits.
+      Thread.currentThread().interrupt();
+    } finally {
+      scheduled.set(false);
+    }
+    // Signals that arrived after the last poll may have found the dispatcher
+    // still scheduled.
+    if (!cancelled && !events.isEmpty()) {
+      schedule();
+    }
+  }
+
+  /**
+   * Stops calling the listener. Pending events are discarded.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * @return {@code true} if the {@link EventDispatcher} has not been cancelled
+   */
+  public boolean isRunning() {
+    return !cancelled;
   }
-}
\ No newline at end of file
+}
@@ -35,6 +35,11 @@ public class ListenerGroup<T> {
   private final ExecutorService executorService;
   private final Collection<EventDispatcher<T>> eventDispatchers;
 
+  /**
+   * @param executorService
+   *          the {@link ExecutorService} that calls listeners, a listener only
+   *          occupies one of its threads while it has pending events
+   */
   public ListenerGroup(ExecutorService executorService) {
     this.executorService = executorService;
     eventDispatchers = Lists.newCopyOnWriteArrayList();
@@ -51,9 +56,9 @@ public class ListenerGroup<T> {
    *         listener
    */
   public EventDispatcher<T> add(T listener, int queueCapacity) {
-    EventDispatcher<T> eventDispatcher = new EventDispatcher<T>(listener, queueCapacity);
+    EventDispatcher<T> eventDispatcher =
+        new EventDispatcher<T>(listener, queueCapacity, executorService);
     eventDispatchers.add(eventDispatcher);
-    executorService.execute(eventDispatcher);
     return eventDispatcher;
   }
 
@@ -111,7 +116,8 @@ public class ListenerGroup<T> {
   /**
    * Signals all listeners.
    * <p>
-   * Each {@link SignalRunnable} is executed in a separate thread.
+   * Each listener runs the {@link SignalRunnable} on the
+   * {@link ExecutorService}.
    */
   public void signal(SignalRunnable<T> signalRunnable) {
     for (EventDispatcher<T> eventDispatcher : eventDispatchers) {
@@ -122,10 +128,10 @@ public class ListenerGroup<T> {
   /**
    * Signals all listeners and waits for the result.
    * <p>
-   * Each {@link SignalRunnable} is executed in a separate thread. In the event
-   * that the {@link SignalRunnable} is be dropped from the
-   * {@link EventDispatcher}'s queue and thus not executed, this method will
-   * block for the entire specified timeout.
+   * Each listener runs the {@link SignalRunnable} on the
+   * {@link ExecutorService}. In the event that the {@link SignalRunnable} is be
+   * dropped from the {@link EventDispatcher}'s queue and thus not executed,
+   * this method will block for the entire specified timeout.
    * 
    * @return {@code true} if all listeners completed within the specified time
    *         limit, {@code false} otherwise
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+/**
+ * Determines what a {@link CircularBlockingDeque} does when an entry is added
+ * while it is full.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public enum OverflowPolicy {
+
+  /**
+   * Overwrite the oldest entry.
+   */
+  OVERWRITE,
+
+  /**
+   * Wait up to a timeout for an entry to be removed, then reject the new
+   * entry. The timeout must be positive.
+   */
+  BLOCK,
+
+  /**
+   * Reject the new entry.
+   */
+  REJECT
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+/**
+ * An immutable snapshot of the counters of a {@link BoundedBlockingQueue}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class QueueStatistics {
+
+  private final long enqueued;
+  private final long dropped;
+  private final int highWaterMark;
+
+  public QueueStatistics(long enqueued, long dropped, int highWaterMark) {
+    this.enqueued = enqueued;
+    this.dropped = dropped;
+    this.highWaterMark = highWaterMark;
+  }
+
+  /**
+   * @return the number of entries that were added to the queue
+   */
+  public long getEnqueued() {
+    return enqueued;
+  }
+
+  /**
+   * @return the number of entries that were overwritten or rejected because
+   *         the queue was full
+   */
+  public long getDropped() {
+    return dropped;
+  }
+
+  /**
+   * @return the largest number of entries that were in the queue at once
+   */
+  public int getHighWaterMark() {
+    return highWaterMark;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("QueueStatistics<enqueued=%d, dropped=%d, highWaterMark=%d>", enqueued,
+        dropped, highWaterMark);
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A preallocated, lock-free ring buffer that overwrites its oldest entry when
+ * full.
+ * <p>
+ * Any number of producers and consumers may use the ring buffer concurrently.
+ * Each slot carries a sequence number that tells producers and consumers
+ * whether the slot is free or holds a published entry. This lets them claim
+ * slots with a single compare-and-set instead of taking a lock. A producer that
+ * finds the ring full takes and discards the oldest entry itself, so it never
+ * waits for a consumer.
+ * <p>
+ * Consumers wait for entries according to the {@link WaitStrategy}. Only
+ * {@link WaitStrategy#BLOCKING} involves a lock, and producers only take it
+ * when a consumer is actually asleep.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ * 
+ * @param <T>
+ *          the type of entries in the ring buffer
+ */
+public class RingBuffer<T> implements BoundedBlockingQueue<T> {
+
+  /**
+   * The number of times a consumer polls an empty ring buffer before it
+   * yields, parks or blocks.
+   */
+  private static final int SPIN_TRIES = 100;
+
+  /**
+   * How long a {@link WaitStrategy#SPINNING_THEN_PARKING} consumer parks
+   * between polls. The effective minimum is determined by the OS timer slack.
+   */
+  private static final long PARK_NANOS = 1000;
+
+  /**
+   * An {@link AtomicLong} that occupies a cache line of its own so that
+   * producers updating the tail do not invalidate the consumers' head.
+   */
+  @SuppressWarnings("serial")
+  private static final class PaddedAtomicLong extends AtomicLong {
+    @SuppressWarnings("unused")
+    public volatile long p1, p2, p3, p4, p5, p6, p7;
+  }
+
+  private final int capacity;
+
+  /**
+   * The number of slots. A slot's sequence numbers only tell a free slot from
+   * a published one if there are at least two slots, so a ring buffer with a
+   * capacity of one has a spare slot.
+   */
+  private final int slots;
+
+  /**
+   * {@code slots - 1} if the number of slots is a power of two, {@code -1}
+   * otherwise.
+   */
+  private final int mask;
+
+  private final AtomicReferenceArray<T> entries;
+
+  /**
+   * For each slot, the sequence at which a producer may claim it or, once
+   * published, that sequence plus one.
+   */
+  private final AtomicLongArray sequences;
+
+  /**
+   * The sequence of the next entry to take.
+   */
+  private final AtomicLong head;
+
+  /**
+   * The sequence of the next entry to add. Every claimed sequence is
+   * published, so this is also the number of entries added so far.
+   */
+  private final AtomicLong tail;
+
+  private final AtomicLong dropped;
+  private final AtomicInteger highWaterMark;
+  private final WaitStrategy waitStrategy;
+  private final ReentrantLock lock;
+  private final Condition notEmpty;
+
+  /**
+   * The number of consumers that are asleep, or about to fall asleep, on
+   * {@link #notEmpty}.
+   */
+  private final AtomicInteger sleepingConsumers;
+
+  /**
+   * @param capacity
+   *          the maximum number of entries in the ring buffer
+   * @param waitStrategy
+   *          how consumers wait for entries
+   */
+  public RingBuffer(int capacity, WaitStrategy waitStrategy) {
+    Preconditions.checkArgument(capacity > 0);
+    this.capacity = capacity;
+    slots = Math.max(2, capacity);
+    mask = (slots & (slots - 1)) == 0 ? slots - 1 : -1;
+    this.waitStrategy = waitStrategy;
+    entries = new AtomicReferenceArray<T>(slots);
+    sequences = new AtomicLongArray(slots);
+    for (int i = 0; i < slots; i++) {
+      sequences.set(i, i);
+    }
+    head = new PaddedAtomicLong();
+    tail = new PaddedAtomicLong();
+    dropped = new AtomicLong();
+    highWaterMark = new AtomicInteger();
+    lock = new ReentrantLock();
+    notEmpty = lock.newCondition();
+    sleepingConsumers = new AtomicInteger();
+  }
+
+  private int index(long sequence) {
+    if (mask >= 0) {
+      return (int) (sequence & mask);
+    }
+    return (int) (sequence % slots);
+  }
+
+  /**
+   * @return {@code true} if {@code entry} was added, {@code false} if the ring
+   *         buffer is full
+   */
+  private boolean offer(T entry) {
+    while (true) {
+      long position = tail.get();
+      int index = index(position);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (slots > capacity && position - head.get() >= capacity) {
+          return false;
+        }
+        if (tail.compareAndSet(position, position + 1)) {
+          entries.lazySet(index, entry);
+          // Publishes the entry to consumers.
+          sequences.set(index, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        return false;
+      }
+      // Another producer claimed this position first.
+    }
+  }
+
+  /**
+   * @return the head of the ring buffer, or {@code null} if no published entry
+   *         is available
+   */
+  private T poll() {
+    while (true) {
+      long position = head.get();
+      int index = index(position);
+      long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          T entry = entries.get(index);
+          entries.lazySet(index, null);
+          // Frees the slot for the producer one lap ahead.
+          sequences.set(index, position + slots);
+          return entry;
+        }
+      } else if (difference < 0) {
+        return null;
+      }
+      // Another consumer took this position first.
+    }
+  }
+
+  /**
+   * Adds the specified entry to the tail of the ring buffer, discarding the
+   * oldest entry if necessary.
+   * 
+   * @return {@code true}
+   */
+  @Override
+  public boolean addLast(T entry) {
+    while (!offer(entry)) {
+      if (poll() != null) {
+        dropped.incrementAndGet();
+      } else {
+        // A consumer has claimed the oldest slot but not yet freed it.
+        Thread.yield();
+      }
+    }
+    updateHighWaterMark();
+    if (sleepingConsumers.get() > 0) {
+      lock.lock();
+      try {
+        notEmpty.signal();
+      } finally {
+        lock.unlock();
+      }
+    }
+    return true;
+  }
+
+  private void updateHighWaterMark() {
+    int current = highWaterMark.get();
+    if (current == capacity) {
+      return;
+    }
+    int size = (int) Math.min(tail.get() - head.get(), capacity);
+    while (size > current && !highWaterMark.compareAndSet(current, size)) {
+      current = highWaterMark.get();
+    }
+  }
+
+  @Override
+  public T takeFirst() throws InterruptedException {
+    T entry = poll();
+    if (entry != null) {
+      return entry;
+    }
+    return await(false, 0);
+  }
+
+  @Override
+  public T pollFirst(long timeout, TimeUnit unit) throws InterruptedException {
+    T entry = poll();
+    if (entry != null || timeout <= 0) {
+      return entry;
+    }
+    return await(true, System.nanoTime() + unit.toNanos(timeout));
+  }
+
+  /**
+   * @param timed
+   *          {@code true} if waiting should stop at {@code deadline}
+   * @param deadline
+   *          the {@link System#nanoTime()} at which to give up
+   * @return the head of the ring buffer, or {@code null} if the deadline passed
+   */
+  private T await(boolean timed, long deadline) throws InterruptedException {
+    T entry;
+    int spins = SPIN_TRIES;
+    if (waitStrategy == WaitStrategy.BLOCKING) {
+      // A short spin keeps consumers of busy topics awake so that producers
+      // rarely need to take the lock to signal them.
+      while (spins-- > 0) {
+        entry = poll();
+        if (entry != null) {
+          return entry;
+        }
+      }
+      lock.lockInterruptibly();
+      try {
+        // Producers check for sleeping consumers after publishing an entry.
+        // So, either the poll below sees the entry or the producer signals.
+        sleepingConsumers.incrementAndGet();
+        try {
+          while ((entry = poll()) == null) {
+            if (!timed) {
+              notEmpty.await();
+            } else {
+              long remaining = deadline - System.nanoTime();
+              if (remaining <= 0) {
+                return null;
+              }
+              notEmpty.awaitNanos(remaining);
+            }
+          }
+        } finally {
+          sleepingConsumers.decrementAndGet();
+        }
+      } finally {
+        lock.unlock();
+      }
+      return entry;
+    }
+    while ((entry = poll()) == null) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (timed && deadline - System.nanoTime() <= 0) {
+        return null;
+      }
+      if (spins > 0) {
+        spins--;
+      } else if (waitStrategy == WaitStrategy.YIELDING) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(PARK_NANOS);
+      }
+    }
+    return entry;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return head.get() >= tail.get();
+  }
+
+  @Override
+  public QueueStatistics getStatistics() {
+    return new QueueStatistics(tail.get(), dropped.get(), highWaterMark.get());
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+/**
+ * Determines how a consumer of a {@link RingBuffer} waits for entries.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public enum WaitStrategy {
+
+  /**
+   * Sleep on a lock until a producer signals a new entry. Uses no CPU while
+   * idle, but each hand-off between an idle consumer and a producer costs a
+   * context switch.
+   */
+  BLOCKING,
+
+  /**
+   * Spin briefly, then park for short intervals. Lower latency than
+   * {@link #BLOCKING} and producers never take a lock, at the cost of some
+   * CPU while idle.
+   */
+  SPINNING_THEN_PARKING,
+
+  /**
+   * Spin briefly, then yield the processor. Lowest latency, but keeps a core
+   * busy while idle. Only suitable when there are spare cores.
+   */
+  YIELDING
+}
@@ -43,6 +43,7 @@ import org.ros.internal.node.topic.PublisherFactory;
 import org.ros.internal.node.topic.SubscriberFactory;
 import org.ros.internal.node.topic.TopicDeclaration;
 import org.ros.internal.node.topic.TopicParticipantManager;
+import org.ros.internal.transport.tcp.TcpClientChannelFactory;
 import org.ros.internal.node.xmlrpc.XmlRpcTimeoutException;
 import org.ros.message.MessageDeserializer;
 import org.ros.message.MessageFactory;
@@ -64,6 +65,7 @@ import org.ros.node.service.ServiceServer;
 import org.ros.node.topic.DefaultPublisherListener;
 import org.ros.node.topic.DefaultSubscriberListener;
 import org.ros.node.topic.Publisher;
+import org.ros.node.topic.QueueOptions;
 import org.ros.node.topic.Subscriber;
 import org.ros.time.ClockTopicTimeProvider;
 import org.ros.time.TimeProvider;
@@ -111,6 +113,7 @@ public class DefaultNode implements ConnectedNode {
   private final SubscriberFactory subscriberFactory;
   private final ServiceFactory serviceFactory;
   private final Registrar registrar;
+  private final TcpClientChannelFactory tcpClientChannelFactory;
 
   private RosoutLogger log;
   private TimeProvider timeProvider;
@@ -136,6 +139,8 @@ public class DefaultNode implements ConnectedNode {
     topicParticipantManager = new TopicParticipantManager();
     serviceManager = new ServiceManager();
     parameterManager = new ParameterManager(scheduledExecutorService);
+    tcpClientChannelFactory =
+        new TcpClientChannelFactory(nodeConfiguration.getChannelBufferFactory());
 
     GraphName basename = nodeConfiguration.getNodeName();
     NameResolver parentResolver = nodeConfiguration.getParentResolver();
@@ -146,7 +151,8 @@ public class DefaultNode implements ConnectedNode {
             nodeConfiguration.getTcpRosAdvertiseAddress(),
             nodeConfiguration.getXmlRpcBindAddress(),
             nodeConfiguration.getXmlRpcAdvertiseAddress(), masterClient, topicParticipantManager,
-            serviceManager, parameterManager, scheduledExecutorService);
+            serviceManager, parameterManager, scheduledExecutorService,
+            nodeConfiguration.getChannelBufferFactory());
     slaveServer.start();
 
     NodeIdentifier nodeIdentifier = slaveServer.toNodeIdentifier();
@@ -157,11 +163,14 @@ public class DefaultNode implements ConnectedNode {
 
     publisherFactory =
         new PublisherFactory(nodeIdentifier, topicParticipantManager,
-            nodeConfiguration.getTopicMessageFactory(), scheduledExecutorService);
+            nodeConfiguration.getTopicMessageFactory(), scheduledExecutorService,
+            nodeConfiguration.getChannelBufferFactory());
     subscriberFactory =
-        new SubscriberFactory(nodeIdentifier, topicParticipantManager, scheduledExecutorService);
+        new SubscriberFactory(nodeIdentifier, topicParticipantManager, scheduledExecutorService,
+            tcpClientChannelFactory);
     serviceFactory =
-        new ServiceFactory(nodeName, slaveServer, serviceManager, scheduledExecutorService);
+        new ServiceFactory(nodeName, slaveServer, serviceManager, scheduledExecutorService,
+            tcpClientChannelFactory);
 
     registrar = new Registrar(masterClient, scheduledExecutorService);
     topicParticipantManager.setListener(registrar);
@@ -266,35 +275,60 @@ public class DefaultNode implements ConnectedNode {
 
   @Override
   public <T> Publisher<T> newPublisher(GraphName topicName, String messageType) {
+    return newPublisher(topicName, messageType, QueueOptions.newDefault());
+  }
+
+  @Override
+  public <T> Publisher<T> newPublisher(String topicName, String messageType) {
+    return newPublisher(GraphName.of(topicName), messageType);
+  }
+
+  @Override
+  public <T> Publisher<T> newPublisher(GraphName topicName, String messageType,
+      QueueOptions queueOptions) {
     GraphName resolvedTopicName = resolveName(topicName);
     TopicDescription topicDescription =
         nodeConfiguration.getTopicDescriptionFactory().newFromType(messageType);
     TopicDeclaration topicDeclaration =
         TopicDeclaration.newFromTopicName(resolvedTopicName, topicDescription);
     org.ros.message.MessageSerializer<T> serializer = newMessageSerializer(messageType);
-    return publisherFactory.newOrExisting(topicDeclaration, serializer);
+    return publisherFactory.newOrExisting(topicDeclaration, serializer, queueOptions);
   }
 
   @Override
-  public <T> Publisher<T> newPublisher(String topicName, String messageType) {
-    return newPublisher(GraphName.of(topicName), messageType);
+  public <T> Publisher<T> newPublisher(String topicName, String messageType,
+      QueueOptions queueOptions) {
+    return newPublisher(GraphName.of(topicName), messageType, queueOptions);
   }
 
   @Override
   public <T> Subscriber<T> newSubscriber(GraphName topicName, String messageType) {
+    return newSubscriber(topicName, messageType, QueueOptions.newDefault());
+  }
+
+  @Override
+  public <T> Subscriber<T> newSubscriber(String topicName, String messageType) {
+    return newSubscriber(GraphName.of(topicName), messageType);
+  }
+
+  @Override
+  public <T> Subscriber<T> newSubscriber(GraphName topicName, String messageType,
+      QueueOptions queueOptions) {
     GraphName resolvedTopicName = resolveName(topicName);
     TopicDescription topicDescription =
         nodeConfiguration.getTopicDescriptionFactory().newFromType(messageType);
     TopicDeclaration topicDeclaration =
         TopicDeclaration.newFromTopicName(resolvedTopicName, topicDescription);
     MessageDeserializer<T> deserializer = newMessageDeserializer(messageType);
-    Subscriber<T> subscriber = subscriberFactory.newOrExisting(topicDeclaration, deserializer);
+    Subscriber<T> subscriber =
+        subscriberFactory.newOrExisting(topicDeclaration, deserializer, queueOptions);
     return subscriber;
   }
 
   @Override
-  public <T> Subscriber<T> newSubscriber(String topicName, String messageType) {
-    return newSubscriber(GraphName.of(topicName), messageType);
+  public <T> Subscriber<T> newSubscriber(String topicName, String messageType,
+      QueueOptions queueOptions) {
+    return newSubscriber(GraphName.of(topicName), messageType, queueOptions);
   }
 
   @Override
@@ -429,6 +463,7 @@ public class DefaultNode implements ConnectedNode {
     }
     registrar.shutdown();
     slaveServer.shutdown();
+    tcpClientChannelFactory.releaseExternalResources();
     signalOnShutdownComplete();
   }
 
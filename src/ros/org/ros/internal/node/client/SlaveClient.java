@@ -123,7 +123,24 @@ public class SlaveClient extends Client<SlaveXmlRpcEndpoint> {
 
   public Response<ProtocolDescription> requestTopic(GraphName topic,
       Collection<String> requestedProtocols) {
+    List<List<Object>> protocols = Lists.newArrayList();
+    for (String protocol : requestedProtocols) {
+      protocols.add(Lists.<Object>newArrayList(protocol));
+    }
+    return requestTopic(topic, protocols);
+  }
+
+  /**
+   * @param protocols
+   *          the protocols to request in order of preference, each given as
+   *          its name followed by its protocol specific parameters
+   */
+  public Response<ProtocolDescription> requestTopic(GraphName topic, List<List<Object>> protocols) {
+    Object[] requestedProtocols = new Object[protocols.size()];
+    for (int i = 0; i < protocols.size(); i++) {
+      requestedProtocols[i] = protocols.get(i).toArray();
+    }
     return Response.fromListChecked(xmlRpcEndpoint.requestTopic(nodeName.toString(), topic.toString(),
-        new Object[][] { requestedProtocols.toArray() }), new ProtocolDescriptionResultFactory());
+        requestedProtocols), new ProtocolDescriptionResultFactory());
   }
 }
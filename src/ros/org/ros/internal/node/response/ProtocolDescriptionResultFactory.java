@@ -23,6 +23,7 @@ import org.ros.address.AdvertiseAddress;
 import org.ros.internal.transport.ProtocolDescription;
 import org.ros.internal.transport.ProtocolNames;
 import org.ros.internal.transport.tcp.TcpRosProtocolDescription;
+import org.ros.internal.transport.udp.UdpRosProtocolDescription;
 
 import com.google.common.base.Preconditions;
 
@@ -34,10 +35,16 @@ public class ProtocolDescriptionResultFactory implements ResultFactory<ProtocolD
   @Override
   public ProtocolDescription newFromValue(Object value) {
     List<Object> protocolParameters = Arrays.asList((Object[]) value);
-    Preconditions.checkState(protocolParameters.size() == 3);
-    Preconditions.checkState(protocolParameters.get(0).equals(ProtocolNames.TCPROS));
     AdvertiseAddress address = new AdvertiseAddress((String) protocolParameters.get(1));
     address.setStaticPort((Integer) protocolParameters.get(2));
+    if (protocolParameters.get(0).equals(ProtocolNames.UDPROS)) {
+      Preconditions.checkState(protocolParameters.size() == 6);
+      return new UdpRosProtocolDescription(address, (Integer) protocolParameters.get(3),
+          (Integer) protocolParameters.get(4),
+          UdpRosProtocolDescription.decodeHeader((byte[]) protocolParameters.get(5)));
+    }
+    Preconditions.checkState(protocolParameters.size() == 3);
+    Preconditions.checkState(protocolParameters.get(0).equals(ProtocolNames.TCPROS));
     return new TcpRosProtocolDescription(address);
   }
 }
@@ -18,6 +18,7 @@ package org.ros.internal.node.server;
 
 import com.google.common.collect.Lists;
 
+import org.jboss.netty.buffer.ChannelBufferFactory;
 import org.ros.address.AdvertiseAddress;
 import org.ros.address.BindAddress;
 import org.ros.internal.node.client.MasterClient;
@@ -28,15 +29,21 @@ import org.ros.internal.node.topic.DefaultSubscriber;
 import org.ros.internal.node.topic.PublisherIdentifier;
 import org.ros.internal.node.topic.SubscriberIdentifier;
 import org.ros.internal.node.topic.TopicDeclaration;
+import org.ros.internal.node.topic.TopicIdentifier;
 import org.ros.internal.node.topic.TopicParticipantManager;
 import org.ros.internal.node.xmlrpc.SlaveXmlRpcEndpointImpl;
 import org.ros.internal.system.Process;
+import org.ros.internal.transport.ConnectionHeader;
 import org.ros.internal.transport.ProtocolDescription;
 import org.ros.internal.transport.ProtocolNames;
 import org.ros.internal.transport.tcp.TcpRosProtocolDescription;
 import org.ros.internal.transport.tcp.TcpRosServer;
+import org.ros.internal.transport.udp.UdpRosConnection;
+import org.ros.internal.transport.udp.UdpRosProtocolDescription;
+import org.ros.internal.transport.udp.UdpRosServer;
 import org.ros.namespace.GraphName;
 
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.util.Collection;
 import java.util.List;
@@ -52,12 +59,14 @@ public class SlaveServer extends XmlRpcServer {
   private final TopicParticipantManager topicParticipantManager;
   private final ParameterManager parameterManager;
   private final TcpRosServer tcpRosServer;
+  private final UdpRosServer udpRosServer;
 
   public SlaveServer(GraphName nodeName, BindAddress tcpRosBindAddress,
       AdvertiseAddress tcpRosAdvertiseAddress, BindAddress xmlRpcBindAddress,
       AdvertiseAddress xmlRpcAdvertiseAddress, MasterClient master,
       TopicParticipantManager topicParticipantManager, ServiceManager serviceManager,
-      ParameterManager parameterManager, ScheduledExecutorService executorService) {
+      ParameterManager parameterManager, ScheduledExecutorService executorService,
+      ChannelBufferFactory channelBufferFactory) {
     super(xmlRpcBindAddress, xmlRpcAdvertiseAddress);
     this.nodeName = nodeName;
     this.masterClient = master;
@@ -65,7 +74,8 @@ public class SlaveServer extends XmlRpcServer {
     this.parameterManager = parameterManager;
     this.tcpRosServer =
         new TcpRosServer(tcpRosBindAddress, tcpRosAdvertiseAddress, topicParticipantManager,
-            serviceManager, executorService);
+            serviceManager, executorService, channelBufferFactory);
+    udpRosServer = new UdpRosServer(tcpRosBindAddress, tcpRosAdvertiseAddress, executorService);
   }
 
   public AdvertiseAddress getTcpRosAdvertiseAddress() {
@@ -88,6 +98,7 @@ public class SlaveServer extends XmlRpcServer {
   public void shutdown() {
     super.shutdown();
     tcpRosServer.shutdown();
+    udpRosServer.shutdown();
   }
 
   public List<Object> getBusStats(String callerId) {
@@ -176,26 +187,69 @@ public class SlaveServer extends XmlRpcServer {
     }
   }
 
-  public ProtocolDescription requestTopic(String topicName, Collection<String> protocols)
-      throws ServerException {
+  /**
+   * @param callerId
+   *          the name of the subscribing node
+   * @param topicName
+   *          the name of the requested topic
+   * @param protocols
+   *          the requested protocols in order of preference, each given as its
+   *          name followed by its protocol specific parameters
+   * @return a description of the first supported protocol
+   * @throws ServerException
+   *           if there is no publisher for the topic or none of the protocols
+   *           are supported
+   */
+  public ProtocolDescription requestTopic(String callerId, String topicName,
+      List<List<Object>> protocols) throws ServerException {
     // TODO(damonkohler): Use NameResolver.
     // Canonicalize topic name.
     GraphName graphName = GraphName.of(topicName).toGlobal();
     if (!topicParticipantManager.hasPublisher(graphName)) {
       throw new ServerException("No publishers for topic: " + graphName);
     }
-    for (String protocol : protocols) {
-      if (protocol.equals(ProtocolNames.TCPROS)) {
+    for (List<Object> protocol : protocols) {
+      String protocolName = (String) protocol.get(0);
+      if (protocolName.equals(ProtocolNames.TCPROS)) {
         try {
           return new TcpRosProtocolDescription(tcpRosServer.getAdvertiseAddress());
         } catch (Exception e) {
           throw new ServerException(e);
         }
       }
+      if (protocolName.equals(ProtocolNames.UDPROS) && protocol.size() == 5) {
+        try {
+          return newUdpRosConnection(callerId, graphName, protocol);
+        } catch (Exception e) {
+          throw new ServerException(e);
+        }
+      }
     }
     throw new ServerException("No supported protocols specified.");
   }
 
+  /**
+   * Performs the UDPROS handshake and connects the subscriber to the
+   * publisher. Unlike TCPROS, the handshake is part of the topic request.
+   */
+  private ProtocolDescription newUdpRosConnection(String callerId, GraphName topicName,
+      List<Object> protocol) {
+    ConnectionHeader incomingHeader =
+        UdpRosProtocolDescription.decodeHeader((byte[]) protocol.get(1));
+    String host = (String) protocol.get(2);
+    int port = (Integer) protocol.get(3);
+    int maxDatagramSize = (Integer) protocol.get(4);
+    DefaultPublisher<?> publisher = topicParticipantManager.getPublisher(topicName);
+    ConnectionHeader outgoingHeader =
+        ConnectionHeader.decode(publisher.finishHandshake(incomingHeader));
+    UdpRosConnection connection =
+        udpRosServer.newConnection(new InetSocketAddress(host, port), maxDatagramSize);
+    publisher.addSubscriber(new SubscriberIdentifier(NodeIdentifier.forName(callerId),
+        new TopicIdentifier(topicName)), connection);
+    return new UdpRosProtocolDescription(udpRosServer.getAdvertiseAddress(),
+        connection.getConnectionId(), maxDatagramSize, outgoingHeader);
+  }
+
   /**
    * @return a {@link NodeIdentifier} for this {@link SlaveServer}
    */
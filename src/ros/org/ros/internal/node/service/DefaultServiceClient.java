@@ -21,11 +21,13 @@ import com.google.common.collect.Lists;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.ros.exception.RosRuntimeException;
+import org.ros.internal.message.Message;
 import org.ros.internal.message.MessageBufferPool;
 import org.ros.internal.transport.ClientHandshakeListener;
 import org.ros.internal.transport.ConnectionHeader;
 import org.ros.internal.transport.ConnectionHeaderFields;
 import org.ros.internal.transport.tcp.TcpClient;
+import org.ros.internal.transport.tcp.TcpClientChannelFactory;
 import org.ros.internal.transport.tcp.TcpClientManager;
 import org.ros.message.MessageDeserializer;
 import org.ros.message.MessageFactory;
@@ -98,14 +100,15 @@ public class DefaultServiceClient<T, S> implements ServiceClient<T, S> {
   public static <S, T> DefaultServiceClient<S, T> newDefault(GraphName nodeName,
       ServiceDeclaration serviceDeclaration, MessageSerializer<S> serializer,
       MessageDeserializer<T> deserializer, MessageFactory messageFactory,
-      ScheduledExecutorService executorService) {
+      ScheduledExecutorService executorService, TcpClientChannelFactory channelFactory) {
     return new DefaultServiceClient<S, T>(nodeName, serviceDeclaration, serializer, deserializer,
-        messageFactory, executorService);
+        messageFactory, executorService, channelFactory);
   }
 
   private DefaultServiceClient(GraphName nodeName, ServiceDeclaration serviceDeclaration,
       MessageSerializer<T> serializer, MessageDeserializer<S> deserializer,
-      MessageFactory messageFactory, ScheduledExecutorService executorService) {
+      MessageFactory messageFactory, ScheduledExecutorService executorService,
+      TcpClientChannelFactory channelFactory) {
     this.serviceDeclaration = serviceDeclaration;
     this.serializer = serializer;
     this.messageFactory = messageFactory;
@@ -116,7 +119,7 @@ public class DefaultServiceClient<T, S> implements ServiceClient<T, S> {
     // TODO(damonkohler): Support non-persistent connections.
     connectionHeader.addField(ConnectionHeaderFields.PERSISTENT, "1");
     connectionHeader.merge(serviceDeclaration.toConnectionHeader());
-    tcpClientManager = new TcpClientManager(executorService);
+    tcpClientManager = new TcpClientManager(channelFactory);
     ServiceClientHandshakeHandler<T, S> serviceClientHandshakeHandler =
         new ServiceClientHandshakeHandler<T, S>(connectionHeader, responseListeners, deserializer,
             executorService);
@@ -150,7 +153,11 @@ public class DefaultServiceClient<T, S> implements ServiceClient<T, S> {
 
   @Override
   public void call(T request, ServiceResponseListener<S> listener) {
-    ChannelBuffer buffer = messageBufferPool.acquire();
+    int size = 0;
+    if (request instanceof Message) {
+      size = ((Message) request).toRawMessage().getSerializedSize();
+    }
+    ChannelBuffer buffer = messageBufferPool.acquire(size);
     serializer.serialize(request, buffer);
     responseListeners.add(listener);
     tcpClient.write(buffer).awaitUninterruptibly();
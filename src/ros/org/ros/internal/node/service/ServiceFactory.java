@@ -21,6 +21,7 @@ import com.google.common.base.Preconditions;
 import org.ros.exception.DuplicateServiceException;
 import org.ros.internal.message.service.ServiceDescription;
 import org.ros.internal.node.server.SlaveServer;
+import org.ros.internal.transport.tcp.TcpClientChannelFactory;
 import org.ros.message.MessageDeserializer;
 import org.ros.message.MessageFactory;
 import org.ros.message.MessageSerializer;
@@ -42,14 +43,21 @@ public class ServiceFactory {
   private final SlaveServer slaveServer;
   private final ServiceManager serviceManager;
   private final ScheduledExecutorService executorService;
+  private final TcpClientChannelFactory channelFactory;
   private final Object mutex;
 
+  /**
+   * @param channelFactory
+   *          the {@link TcpClientChannelFactory} shared by all outgoing TCPROS
+   *          connections of the node
+   */
   public ServiceFactory(GraphName nodeName, SlaveServer slaveServer, ServiceManager serviceManager,
-      ScheduledExecutorService executorService) {
+      ScheduledExecutorService executorService, TcpClientChannelFactory channelFactory) {
     this.nodeName = nodeName;
     this.slaveServer = slaveServer;
     this.serviceManager = serviceManager;
     this.executorService = executorService;
+    this.channelFactory = channelFactory;
     mutex = new Object();
   }
 
@@ -134,7 +142,7 @@ public class ServiceFactory {
       } else {
         serviceClient =
             DefaultServiceClient.newDefault(nodeName, serviceDeclaration, serializer, deserializer,
-                messageFactory, executorService);
+                messageFactory, executorService, channelFactory);
         serviceManager.addClient(serviceClient);
         createdNewClient = true;
       }
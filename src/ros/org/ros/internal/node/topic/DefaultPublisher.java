@@ -21,20 +21,27 @@ import com.google.common.base.Preconditions;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
 import org.jboss.netty.channel.Channel;
 import org.ros.concurrent.ListenerGroup;
+import org.ros.concurrent.QueueStatistics;
 import org.ros.concurrent.SignalRunnable;
 import org.ros.internal.node.server.NodeIdentifier;
 import org.ros.internal.transport.ConnectionHeader;
 import org.ros.internal.transport.ConnectionHeaderFields;
+import org.ros.internal.transport.queue.IncomingMessageQueue;
 import org.ros.internal.transport.queue.OutgoingMessageQueue;
+import org.ros.internal.transport.udp.UdpRosConnection;
 import org.ros.message.MessageFactory;
 import org.ros.message.MessageSerializer;
 import org.ros.node.topic.DefaultPublisherListener;
 import org.ros.node.topic.Publisher;
 import org.ros.node.topic.PublisherListener;
+import org.ros.node.topic.QueueOptions;
+import org.ros.node.topic.SlowSubscriberPolicy;
 import org.ros.node.topic.Subscriber;
 
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -66,11 +73,14 @@ public class DefaultPublisher<T> extends DefaultTopicParticipant implements Publ
 
   public DefaultPublisher(NodeIdentifier nodeIdentifier, TopicDeclaration topicDeclaration,
       MessageSerializer<T> serializer, MessageFactory messageFactory,
-      ScheduledExecutorService executorService) {
+      ScheduledExecutorService executorService, ChannelBufferFactory channelBufferFactory,
+      QueueOptions queueOptions) {
     super(topicDeclaration);
     this.nodeIdentifier = nodeIdentifier;
     this.messageFactory = messageFactory;
-    outgoingMessageQueue = new OutgoingMessageQueue<T>(serializer, executorService);
+    outgoingMessageQueue =
+        new OutgoingMessageQueue<T>(serializer, executorService, channelBufferFactory,
+            queueOptions);
     listeners = new ListenerGroup<PublisherListener<T>>(executorService);
     listeners.add(new DefaultPublisherListener<T>() {
       @Override
@@ -105,9 +115,27 @@ public class DefaultPublisher<T> extends DefaultTopicParticipant implements Publ
     return outgoingMessageQueue.getLatchMode();
   }
 
+  @Override
+  public void setWriteCoalescing(int maxBytes, long maxDelay, TimeUnit unit) {
+    outgoingMessageQueue.setWriteCoalescing(maxBytes, maxDelay, unit);
+  }
+
+  @Override
+  public QueueStatistics getQueueStatistics() {
+    return outgoingMessageQueue.getStatistics();
+  }
+
+  @Override
+  public void setSlowSubscriberPolicy(SlowSubscriberPolicy policy, int limit) {
+    outgoingMessageQueue.setSlowSubscriberPolicy(policy, limit);
+  }
+
   @Override
   public void shutdown(long timeout, TimeUnit unit) {
     signalOnShutdown(timeout, unit);
+    // The TopicParticipantManager also does this, but only once the shutdown
+    // listeners have run, which may time out.
+    IntraProcessPublishers.remove(this);
     outgoingMessageQueue.shutdown();
   }
 
@@ -126,12 +154,14 @@ public class DefaultPublisher<T> extends DefaultTopicParticipant implements Publ
 
   @Override
   public boolean hasSubscribers() {
-    return outgoingMessageQueue.getNumberOfChannels() > 0;
+    return getNumberOfSubscribers() > 0;
   }
 
   @Override
   public int getNumberOfSubscribers() {
-    return outgoingMessageQueue.getNumberOfChannels();
+    return outgoingMessageQueue.getNumberOfChannels()
+        + outgoingMessageQueue.getNumberOfUdpRosConnections()
+        + outgoingMessageQueue.getNumberOfIncomingMessageQueues();
   }
 
   @Override
@@ -199,6 +229,64 @@ public class DefaultPublisher<T> extends DefaultTopicParticipant implements Publ
     signalOnNewSubscriber(subscriberIdentifer);
   }
 
+  /**
+   * @return the number of messages dropped because the connection was
+   *         congested for each open TCPROS {@link Subscriber} {@link Channel}
+   */
+  public Map<Channel, Long> getDroppedMessages() {
+    return outgoingMessageQueue.getDroppedMessages();
+  }
+
+  /**
+   * Add a UDPROS {@link Subscriber} connection to this {@link Publisher}.
+   * 
+   * @param subscriberIdentifer
+   *          the {@link SubscriberIdentifier} of the new subscriber
+   * @param connection
+   *          the {@link UdpRosConnection} to the {@link Subscriber}
+   */
+  public void addSubscriber(SubscriberIdentifier subscriberIdentifer,
+      UdpRosConnection connection) {
+    if (DEBUG) {
+      log.info(String.format("Adding subscriber %s connection %s to publisher %s.",
+          subscriberIdentifer, connection, this));
+    }
+    outgoingMessageQueue.addUdpRosConnection(connection);
+    signalOnNewSubscriber(subscriberIdentifer);
+  }
+
+  /**
+   * Add a {@link Subscriber} in the same process to this {@link Publisher}.
+   * Published messages are handed directly to the {@link Subscriber}'s
+   * {@link IncomingMessageQueue} without being serialized.
+   * 
+   * @param subscriberIdentifer
+   *          the {@link SubscriberIdentifier} of the new subscriber
+   * @param incomingMessageQueue
+   *          the {@link IncomingMessageQueue} of the {@link Subscriber}
+   */
+  public void addIntraProcessSubscriber(SubscriberIdentifier subscriberIdentifer,
+      IncomingMessageQueue<T> incomingMessageQueue) {
+    if (DEBUG) {
+      log.info(String.format("Adding intra-process subscriber %s to publisher %s.",
+          subscriberIdentifer, this));
+    }
+    if (getLatchMode()) {
+      incomingMessageQueue.setLatchMode(true);
+    }
+    outgoingMessageQueue.addIncomingMessageQueue(incomingMessageQueue);
+    signalOnNewSubscriber(subscriberIdentifer);
+  }
+
+  /**
+   * @param incomingMessageQueue
+   *          the {@link IncomingMessageQueue} of a {@link Subscriber} added with
+   *          {@link #addIntraProcessSubscriber(SubscriberIdentifier, IncomingMessageQueue)}
+   */
+  public void removeIntraProcessSubscriber(IncomingMessageQueue<T> incomingMessageQueue) {
+    outgoingMessageQueue.removeIncomingMessageQueue(incomingMessageQueue);
+  }
+
   @Override
   public void addListener(PublisherListener<T> listener) {
     listeners.add(listener);
@@ -17,25 +17,39 @@
 package org.ros.internal.node.topic;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.jboss.netty.channel.Channel;
 import org.ros.concurrent.ListenerGroup;
+import org.ros.concurrent.QueueStatistics;
 import org.ros.concurrent.SignalRunnable;
 import org.ros.internal.node.server.NodeIdentifier;
+import org.ros.internal.transport.ConnectionHeaderFields;
 import org.ros.internal.transport.ProtocolNames;
 import org.ros.internal.transport.queue.IncomingMessageQueue;
+import org.ros.internal.transport.tcp.TcpClientChannelFactory;
 import org.ros.internal.transport.tcp.TcpClientManager;
+import org.ros.internal.transport.udp.UdpRosClient;
+import org.ros.internal.transport.udp.UdpRosDatagrams;
+import org.ros.internal.transport.udp.UdpRosProtocolDescription;
 import org.ros.message.MessageDeserializer;
 import org.ros.message.MessageListener;
 import org.ros.node.topic.DefaultSubscriberListener;
 import org.ros.node.topic.Publisher;
+import org.ros.node.topic.QueueOptions;
 import org.ros.node.topic.Subscriber;
 import org.ros.node.topic.SubscriberListener;
 
 import java.net.InetSocketAddress;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -62,8 +76,14 @@ public class DefaultSubscriber<T> extends DefaultTopicParticipant implements Sub
   private final IncomingMessageQueue<T> incomingMessageQueue;
   private final Set<PublisherIdentifier> knownPublishers;
   private final TcpClientManager tcpClientManager;
+  private final List<DefaultPublisher<T>> intraProcessPublishers;
   private final Object mutex;
 
+  private final Map<PublisherIdentifier, Channel> udpRosChannels;
+
+  private volatile List<String> preferredProtocols;
+  private UdpRosClient udpRosClient;
+
   /**
    * Manages the {@link SubscriberListener}s for this {@link Subscriber}.
    */
@@ -71,19 +91,26 @@ public class DefaultSubscriber<T> extends DefaultTopicParticipant implements Sub
 
   public static <S> DefaultSubscriber<S> newDefault(NodeIdentifier nodeIdentifier,
       TopicDeclaration description, ScheduledExecutorService executorService,
-      MessageDeserializer<S> deserializer) {
-    return new DefaultSubscriber<S>(nodeIdentifier, description, deserializer, executorService);
+      TcpClientChannelFactory channelFactory, MessageDeserializer<S> deserializer,
+      QueueOptions queueOptions) {
+    return new DefaultSubscriber<S>(nodeIdentifier, description, deserializer, executorService,
+        channelFactory, queueOptions);
   }
 
   private DefaultSubscriber(NodeIdentifier nodeIdentifier, TopicDeclaration topicDeclaration,
-      MessageDeserializer<T> deserializer, ScheduledExecutorService executorService) {
+      MessageDeserializer<T> deserializer, ScheduledExecutorService executorService,
+      TcpClientChannelFactory channelFactory, QueueOptions queueOptions) {
     super(topicDeclaration);
     this.nodeIdentifier = nodeIdentifier;
     this.executorService = executorService;
-    incomingMessageQueue = new IncomingMessageQueue<T>(deserializer, executorService);
+    incomingMessageQueue = 
+        new IncomingMessageQueue<T>(deserializer, executorService, queueOptions);
     knownPublishers = Sets.newHashSet();
-    tcpClientManager = new TcpClientManager(executorService);
+    tcpClientManager = new TcpClientManager(channelFactory);
+    intraProcessPublishers = Lists.newArrayList();
     mutex = new Object();
+    udpRosChannels = Maps.newHashMap();
+    preferredProtocols = ImmutableList.of(ProtocolNames.TCPROS);
     SubscriberHandshakeHandler<T> subscriberHandshakeHandler =
         new SubscriberHandshakeHandler<T>(toDeclaration().toConnectionHeader(),
             incomingMessageQueue, executorService);
@@ -124,16 +151,45 @@ public class DefaultSubscriber<T> extends DefaultTopicParticipant implements Sub
     return ProtocolNames.SUPPORTED;
   }
 
+  @Override
+  public void setPreferredProtocols(String... protocols) {
+    Preconditions.checkArgument(protocols.length > 0, "No protocols specified.");
+    for (String protocol : protocols) {
+      Preconditions.checkArgument(ProtocolNames.SUPPORTED.contains(protocol),
+          "Unsupported protocol: " + protocol);
+    }
+    preferredProtocols = ImmutableList.copyOf(protocols);
+  }
+
+  /**
+   * @return the protocols to request from {@link Publisher}s in order of
+   *         preference
+   */
+  public List<String> getPreferredProtocols() {
+    return preferredProtocols;
+  }
+
   @Override
   public boolean getLatchMode() {
     return incomingMessageQueue.getLatchMode();
   }
 
+  @Override
+  public QueueStatistics getQueueStatistics() {
+    return incomingMessageQueue.getStatistics();
+  }
+
   @Override
   public void addMessageListener(MessageListener<T> messageListener, int limit) {
     incomingMessageQueue.addListener(messageListener, limit);
   }
 
+  @Override
+  public void addMessageListener(MessageListener<T> messageListener, int limit,
+      boolean recycleMessages) {
+    incomingMessageQueue.addListener(messageListener, limit, recycleMessages);
+  }
+
   @Override
   public void addMessageListener(MessageListener<T> messageListener) {
     addMessageListener(messageListener, 1);
@@ -155,6 +211,103 @@ public class DefaultSubscriber<T> extends DefaultTopicParticipant implements Sub
     }
   }
 
+  /**
+   * Binds a new UDP socket to receive messages from a single {@link Publisher}.
+   * The socket must either be passed to
+   * {@link #addPublisher(PublisherIdentifier, UdpRosProtocolDescription, Channel)}
+   * or closed with {@link #closeUdpRosChannel(Channel)}.
+   * 
+   * @return the bound {@link Channel}
+   */
+  Channel bindUdpRosChannel() {
+    synchronized (mutex) {
+      if (udpRosClient == null) {
+        udpRosClient =
+            new UdpRosClient(nodeIdentifier.getUri().getHost(),
+                UdpRosDatagrams.DEFAULT_MAX_DATAGRAM_SIZE, executorService);
+        udpRosClient.addNamedChannelHandler(incomingMessageQueue.getMessageReceiver());
+      }
+      return udpRosClient.bind();
+    }
+  }
+
+  /**
+   * @return the UDPROS protocol parameters for a topic request that will be
+   *         answered on {@code channel}
+   */
+  List<Object> newUdpRosRequest(Channel channel) {
+    return udpRosClient.newProtocolRequest(channel, toDeclaration().toConnectionHeader());
+  }
+
+  void closeUdpRosChannel(Channel channel) {
+    udpRosClient.close(channel);
+  }
+
+  /**
+   * Completes a UDPROS connection to a {@link Publisher}. The handshake was
+   * already performed as part of the topic request.
+   * 
+   * @param publisherIdentifier
+   *          the {@link PublisherIdentifier} of the {@link Publisher}
+   * @param protocolDescription
+   *          the {@link Publisher}'s response to the topic request
+   * @param channel
+   *          the {@link Channel} returned by {@link #bindUdpRosChannel()}
+   */
+  void addPublisher(PublisherIdentifier publisherIdentifier,
+      UdpRosProtocolDescription protocolDescription, Channel channel) {
+    synchronized (mutex) {
+      udpRosClient.connect(channel, protocolDescription);
+      if (knownPublishers.contains(publisherIdentifier)) {
+        udpRosClient.close(channel);
+        return;
+      }
+      String latching =
+          protocolDescription.getConnectionHeader().getField(ConnectionHeaderFields.LATCHING);
+      if (latching != null && latching.equals("1")) {
+        incomingMessageQueue.setLatchMode(true);
+      }
+      udpRosChannels.put(publisherIdentifier, channel);
+      knownPublishers.add(publisherIdentifier);
+      signalOnNewPublisher(publisherIdentifier);
+    }
+  }
+
+  /**
+   * @param publisherIdentifier
+   *          the {@link PublisherIdentifier} of a connected {@link Publisher}
+   * @return the number of messages dropped on the UDPROS connection to the
+   *         {@link Publisher}, always 0 for other protocols
+   */
+  public long getDroppedMessages(PublisherIdentifier publisherIdentifier) {
+    synchronized (mutex) {
+      Channel channel = udpRosChannels.get(publisherIdentifier);
+      return channel == null ? 0 : udpRosClient.getDroppedMessages(channel);
+    }
+  }
+
+  /**
+   * Connects directly to a {@link Publisher} in the same process. No TCPROS
+   * connection is made and messages are never serialized.
+   * 
+   * @param publisherIdentifier
+   *          the {@link PublisherIdentifier} of the {@link Publisher}
+   * @param publisher
+   *          the {@link Publisher} to connect to
+   */
+  void addIntraProcessPublisher(PublisherIdentifier publisherIdentifier,
+      DefaultPublisher<T> publisher) {
+    synchronized (mutex) {
+      if (knownPublishers.contains(publisherIdentifier)) {
+        return;
+      }
+      publisher.addIntraProcessSubscriber(toIdentifier(), incomingMessageQueue);
+      intraProcessPublishers.add(publisher);
+      knownPublishers.add(publisherIdentifier);
+      signalOnNewPublisher(publisherIdentifier);
+    }
+  }
+
   /**
    * Updates the list of {@link Publisher}s for the topic that this
    * {@link Subscriber} is interested in.
@@ -165,6 +318,11 @@ public class DefaultSubscriber<T> extends DefaultTopicParticipant implements Sub
    */
   public void updatePublishers(Collection<PublisherIdentifier> publisherIdentifiers) {
     for (final PublisherIdentifier publisherIdentifier : publisherIdentifiers) {
+      DefaultPublisher<T> publisher = IntraProcessPublishers.get(publisherIdentifier, this);
+      if (publisher != null) {
+        addIntraProcessPublisher(publisherIdentifier, publisher);
+        continue;
+      }
       executorService.execute(new UpdatePublisherRunnable<T>(this, nodeIdentifier,
           publisherIdentifier));
     }
@@ -173,8 +331,20 @@ public class DefaultSubscriber<T> extends DefaultTopicParticipant implements Sub
   @Override
   public void shutdown(long timeout, TimeUnit unit) {
     signalOnShutdown(timeout, unit);
+    synchronized (mutex) {
+      for (DefaultPublisher<T> publisher : intraProcessPublishers) {
+        publisher.removeIntraProcessSubscriber(incomingMessageQueue);
+      }
+      intraProcessPublishers.clear();
+    }
     incomingMessageQueue.shutdown();
     tcpClientManager.shutdown();
+    synchronized (mutex) {
+      if (udpRosClient != null) {
+        udpRosClient.shutdown();
+      }
+      udpRosChannels.clear();
+    }
     subscriberListeners.shutdown();
   }
 
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.node.topic;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+
+import org.ros.internal.transport.ConnectionHeader;
+import org.ros.internal.transport.ConnectionHeaderFields;
+import org.ros.node.topic.Publisher;
+import org.ros.node.topic.Subscriber;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A process-wide registry of {@link Publisher}s. {@link Subscriber}s use it to
+ * connect directly to {@link Publisher}s in the same process instead of
+ * negotiating a TCPROS connection over the loopback interface.
+ * <p>
+ * {@link Publisher}s are added and removed by the
+ * {@link TopicParticipantManager} of their node, so that only
+ * {@link Publisher}s of running nodes are kept.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+final class IntraProcessPublishers {
+
+  /**
+   * {@link Publisher}s keyed by node URI and topic name. The master only
+   * reports the URIs of {@link Publisher}s, so the node name cannot be part of
+   * the key.
+   */
+  private static final ConcurrentMap<String, DefaultPublisher<?>> publishers =
+      Maps.newConcurrentMap();
+
+  private IntraProcessPublishers() {
+    // Utility class.
+  }
+
+  static void add(DefaultPublisher<?> publisher) {
+    publishers.put(key(publisher.getIdentifier()), publisher);
+  }
+
+  static void remove(DefaultPublisher<?> publisher) {
+    publishers.remove(key(publisher.getIdentifier()), publisher);
+  }
+
+  @VisibleForTesting
+  static boolean contains(DefaultPublisher<?> publisher) {
+    return publishers.get(key(publisher.getIdentifier())) == publisher;
+  }
+
+  /**
+   * @param publisherIdentifier
+   *          the {@link PublisherIdentifier} reported by the master
+   * @param subscriber
+   *          the {@link Subscriber} that wants to connect
+   * @return the {@link Publisher} in this process if it publishes exactly the
+   *         message type the {@link Subscriber} expects, {@code null} otherwise
+   */
+  @SuppressWarnings("unchecked")
+  static <T> DefaultPublisher<T> get(PublisherIdentifier publisherIdentifier,
+      DefaultSubscriber<T> subscriber) {
+    DefaultPublisher<?> publisher = publishers.get(key(publisherIdentifier));
+    if (publisher == null) {
+      return null;
+    }
+    ConnectionHeader publisherHeader = publisher.getTopicDeclarationHeader();
+    ConnectionHeader subscriberHeader = subscriber.getTopicDeclarationHeader();
+    // Wildcard subscribers fall back to TCPROS so that messages are
+    // deserialized with the type negotiated during the handshake.
+    if (!fieldEquals(ConnectionHeaderFields.TYPE, publisherHeader, subscriberHeader)
+        || !fieldEquals(ConnectionHeaderFields.MD5_CHECKSUM, publisherHeader, subscriberHeader)) {
+      return null;
+    }
+    return (DefaultPublisher<T>) publisher;
+  }
+
+  private static String key(PublisherIdentifier publisherIdentifier) {
+    return publisherIdentifier.getNodeUri() + " " + publisherIdentifier.getTopicName();
+  }
+
+  private static boolean fieldEquals(String name, ConnectionHeader a, ConnectionHeader b) {
+    String value = a.getField(name);
+    return value != null && value.equals(b.getField(name));
+  }
+}
@@ -16,12 +16,14 @@
 
 package org.ros.internal.node.topic;
 
+import org.jboss.netty.buffer.ChannelBufferFactory;
 import org.ros.internal.node.server.NodeIdentifier;
 import org.ros.message.MessageFactory;
 import org.ros.message.MessageSerializer;
 import org.ros.namespace.GraphName;
 import org.ros.node.topic.DefaultPublisherListener;
 import org.ros.node.topic.Publisher;
+import org.ros.node.topic.QueueOptions;
 
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -35,16 +37,18 @@ public class PublisherFactory {
   private final TopicParticipantManager topicParticipantManager;
   private final MessageFactory messageFactory;
   private final ScheduledExecutorService executorService;
+  private final ChannelBufferFactory channelBufferFactory;
   private final NodeIdentifier nodeIdentifier;
   private final Object mutex;
 
   public PublisherFactory(NodeIdentifier nodeIdentifier,
       TopicParticipantManager topicParticipantManager, MessageFactory messageFactory,
-      ScheduledExecutorService executorService) {
+      ScheduledExecutorService executorService, ChannelBufferFactory channelBufferFactory) {
     this.nodeIdentifier = nodeIdentifier;
     this.topicParticipantManager = topicParticipantManager;
     this.messageFactory = messageFactory;
     this.executorService = executorService;
+    this.channelBufferFactory = channelBufferFactory;
     mutex = new Object();
   }
 
@@ -59,11 +63,14 @@ public class PublisherFactory {
    *          {@link TopicDeclaration} that is being published
    * @param messageSerializer
    *          the {@link MessageSerializer} used for published messages
+   * @param queueOptions
+   *          the {@link QueueOptions} for published messages, ignored if the
+   *          {@link Publisher} already exists
    * @return a new or cached {@link Publisher} instance
    */
   @SuppressWarnings("unchecked")
   public <T> Publisher<T> newOrExisting(TopicDeclaration topicDeclaration,
-      MessageSerializer<T> messageSerializer) {
+      MessageSerializer<T> messageSerializer, QueueOptions queueOptions) {
     GraphName topicName = topicDeclaration.getName();
     synchronized (mutex) {
       if (topicParticipantManager.hasPublisher(topicName)) {
@@ -71,7 +78,7 @@ public class PublisherFactory {
       } else {
         DefaultPublisher<T> publisher =
             new DefaultPublisher<T>(nodeIdentifier, topicDeclaration, messageSerializer,
-                messageFactory, executorService);
+                messageFactory, executorService, channelBufferFactory, queueOptions);
         publisher.addListener(new DefaultPublisherListener<T>() {
           @Override
           public void onNewSubscriber(Publisher<T> publisher,
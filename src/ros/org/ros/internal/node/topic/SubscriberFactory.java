@@ -17,9 +17,11 @@
 package org.ros.internal.node.topic;
 
 import org.ros.internal.node.server.NodeIdentifier;
+import org.ros.internal.transport.tcp.TcpClientChannelFactory;
 import org.ros.message.MessageDeserializer;
 import org.ros.namespace.GraphName;
 import org.ros.node.topic.DefaultSubscriberListener;
+import org.ros.node.topic.QueueOptions;
 import org.ros.node.topic.Subscriber;
 
 import java.util.concurrent.ScheduledExecutorService;
@@ -34,13 +36,21 @@ public class SubscriberFactory {
   private final NodeIdentifier nodeIdentifier;
   private final TopicParticipantManager topicParticipantManager;
   private final ScheduledExecutorService executorService;
+  private final TcpClientChannelFactory channelFactory;
   private final Object mutex;
 
+  /**
+   * @param channelFactory
+   *          the {@link TcpClientChannelFactory} shared by all outgoing TCPROS
+   *          connections of the node
+   */
   public SubscriberFactory(NodeIdentifier nodeIdentifier,
-      TopicParticipantManager topicParticipantManager, ScheduledExecutorService executorService) {
+      TopicParticipantManager topicParticipantManager, ScheduledExecutorService executorService,
+      TcpClientChannelFactory channelFactory) {
     this.nodeIdentifier = nodeIdentifier;
     this.topicParticipantManager = topicParticipantManager;
     this.executorService = executorService;
+    this.channelFactory = channelFactory;
     mutex = new Object();
   }
 
@@ -55,11 +65,14 @@ public class SubscriberFactory {
    *          {@link TopicDeclaration} that is subscribed to
    * @param messageDeserializer
    *          the {@link MessageDeserializer} to use for incoming messages
+   * @param queueOptions
+   *          the {@link QueueOptions} for incoming messages, ignored if the
+   *          {@link Subscriber} already exists
    * @return a new or cached {@link Subscriber} instance
    */
   @SuppressWarnings("unchecked")
   public <T> Subscriber<T> newOrExisting(TopicDeclaration topicDeclaration,
-      MessageDeserializer<T> messageDeserializer) {
+      MessageDeserializer<T> messageDeserializer, QueueOptions queueOptions) {
     synchronized (mutex) {
       GraphName topicName = topicDeclaration.getName();
       if (topicParticipantManager.hasSubscriber(topicName)) {
@@ -67,7 +80,7 @@ public class SubscriberFactory {
       } else {
         DefaultSubscriber<T> subscriber =
             DefaultSubscriber.newDefault(nodeIdentifier, topicDeclaration, executorService,
-                messageDeserializer);
+                channelFactory, messageDeserializer, queueOptions);
         subscriber.addSubscriberListener(new DefaultSubscriberListener<T>() {
           @Override
           public void onNewPublisher(Subscriber<T> subscriber,
@@ -88,8 +88,16 @@ public class TopicParticipantManager {
     return subscribers.get(topicName);
   }
 
+  /**
+   * Adds a {@link Publisher} of this node. The {@link Publisher} is also made
+   * available to {@link Subscriber}s in the same process until it is removed.
+   * 
+   * @param publisher
+   *          the {@link Publisher} to add
+   */
   public void addPublisher(DefaultPublisher<?> publisher) {
     publishers.put(publisher.getTopicName(), publisher);
+    IntraProcessPublishers.add(publisher);
     if (listener != null) {
       listener.onPublisherAdded(publisher);
     }
@@ -97,6 +105,7 @@ public class TopicParticipantManager {
 
   public void removePublisher(DefaultPublisher<?> publisher) {
     publishers.remove(publisher.getTopicName());
+    IntraProcessPublishers.remove(publisher);
     if (listener != null) {
       listener.onPublisherRemoved(publisher);
     }
@@ -16,8 +16,11 @@
 
 package org.ros.internal.node.topic;
 
+import com.google.common.collect.Lists;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.jboss.netty.channel.Channel;
 import org.ros.exception.RemoteException;
 import org.ros.internal.node.client.SlaveClient;
 import org.ros.internal.node.response.Response;
@@ -26,9 +29,12 @@ import org.ros.internal.node.server.SlaveServer;
 import org.ros.internal.node.xmlrpc.XmlRpcTimeoutException;
 import org.ros.internal.transport.ProtocolDescription;
 import org.ros.internal.transport.ProtocolNames;
+import org.ros.internal.transport.udp.UdpRosProtocolDescription;
 import org.ros.node.topic.Publisher;
 import org.ros.node.topic.Subscriber;
 
+import java.util.List;
+
 /**
  * A {@link Runnable} which is used whenever new publishers are being added to a
  * {@link DefaultSubscriber}. It takes care of registration between the {@link Subscriber}
@@ -62,14 +68,28 @@ class UpdatePublisherRunnable<MessageType> implements Runnable {
   @Override
   public void run() {
     SlaveClient slaveClient;
+    Channel udpRosChannel = null;
     try {
       slaveClient = new SlaveClient(nodeIdentifier.getName(), publisherIdentifier.getNodeUri());
+      List<List<Object>> protocols = Lists.newArrayList();
+      for (String protocol : subscriber.getPreferredProtocols()) {
+        if (protocol.equals(ProtocolNames.UDPROS)) {
+          udpRosChannel = subscriber.bindUdpRosChannel();
+          protocols.add(subscriber.newUdpRosRequest(udpRosChannel));
+        } else {
+          protocols.add(Lists.<Object>newArrayList(protocol));
+        }
+      }
       Response<ProtocolDescription> response =
-          slaveClient.requestTopic(subscriber.getTopicName(), ProtocolNames.SUPPORTED);
+          slaveClient.requestTopic(subscriber.getTopicName(), protocols);
       // TODO(kwc): all of this logic really belongs in a protocol handler
       // registry.
       ProtocolDescription selected = response.getResult();
-      if (ProtocolNames.SUPPORTED.contains(selected.getName())) {
+      if (selected.getName().equals(ProtocolNames.UDPROS) && udpRosChannel != null) {
+        subscriber.addPublisher(publisherIdentifier, (UdpRosProtocolDescription) selected,
+            udpRosChannel);
+        udpRosChannel = null;
+      } else if (selected.getName().equals(ProtocolNames.TCPROS)) {
         subscriber.addPublisher(publisherIdentifier, selected.getAddress());
       } else {
         log.error("Publisher returned unsupported protocol selection: " + response);
@@ -87,6 +107,10 @@ class UpdatePublisherRunnable<MessageType> implements Runnable {
       // This is happening whenever the node attempts to connect to a stale
       // publisher (i.e. a publisher that is no longer online).
       log.error(e);
+    } finally {
+      if (udpRosChannel != null) {
+        subscriber.closeUdpRosChannel(udpRosChannel);
+      }
     }
   }
 }
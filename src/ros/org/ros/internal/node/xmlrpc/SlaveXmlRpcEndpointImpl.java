@@ -17,7 +17,6 @@
 package org.ros.internal.node.xmlrpc;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,7 +35,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.Vector;
 
 /**
@@ -185,13 +183,13 @@ public class SlaveXmlRpcEndpointImpl implements SlaveXmlRpcEndpoint {
 
   @Override
   public List<Object> requestTopic(String callerId, String topic, Object[] protocols) {
-    Set<String> requestedProtocols = Sets.newHashSet();
+    List<List<Object>> requestedProtocols = Lists.newArrayList();
     for (int i = 0; i < protocols.length; i++) {
-      requestedProtocols.add((String) ((Object[]) protocols[i])[0]);
+      requestedProtocols.add(Lists.newArrayList((Object[]) protocols[i]));
     }
     ProtocolDescription protocol;
     try {
-      protocol = slave.requestTopic(topic, requestedProtocols);
+      protocol = slave.requestTopic(callerId, topic, requestedProtocols);
     } catch (ServerException e) {
       return Response.newError(e.getMessage(), null).toList();
     }
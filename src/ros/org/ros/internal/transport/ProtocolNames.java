@@ -27,6 +27,6 @@ public interface ProtocolNames {
   
   public static final String TCPROS = "TCPROS";
   public static final String UDPROS = "UDPROS";
-  public static final Collection<String> SUPPORTED = Sets.newHashSet(TCPROS);
+  public static final Collection<String> SUPPORTED = Sets.newHashSet(TCPROS, UDPROS);
   
 }
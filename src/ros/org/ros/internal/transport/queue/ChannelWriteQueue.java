@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.queue;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.ros.node.topic.SlowSubscriberPolicy;
+
+import java.util.LinkedList;
+
+/**
+ * Writes {@link MessageBatch}es to a single subscriber {@link Channel} while
+ * the {@link Channel} is writable and holds them in a bounded backlog while it
+ * is congested.
+ * <p>
+ * This keeps a slow subscriber from growing Netty's write queue without bound
+ * and from delaying other subscribers of the same publisher. Once the backlog
+ * exceeds its limit, the configured {@link SlowSubscriberPolicy} is applied.
+ * The limit counts messages, not batches, so a batch is trimmed at frame
+ * boundaries when only some of its messages must be dropped.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+class ChannelWriteQueue extends SimpleChannelHandler {
+
+  private static final Log log = LogFactory.getLog(ChannelWriteQueue.class);
+
+  public static final String NAME = "ChannelWriteQueue";
+
+  private static final int LENGTH_FIELD_SIZE = 4;
+
+  private final Channel channel;
+  private final LinkedList<PendingBatch> backlog;
+
+  private SlowSubscriberPolicy policy;
+  private int limit;
+
+  /**
+   * The number of messages in the {@link #backlog}.
+   */
+  private int backlogSize;
+  private long droppedMessages;
+
+  ChannelWriteQueue(Channel channel, SlowSubscriberPolicy policy, int limit) {
+    this.channel = channel;
+    backlog = Lists.newLinkedList();
+    setPolicy(policy, limit);
+  }
+
+  synchronized void setPolicy(SlowSubscriberPolicy policy, int limit) {
+    Preconditions.checkArgument(limit > 0);
+    this.policy = policy;
+    this.limit = limit;
+  }
+
+  /**
+   * Writes {@code batch} to the {@link Channel} or adds it to the backlog if
+   * the {@link Channel} is congested.
+   * 
+   * @param batch
+   *          the {@link MessageBatch} to write, which is retained until the
+   *          write completes or the batch is dropped
+   */
+  synchronized void write(MessageBatch batch) {
+    if (!channel.isOpen()) {
+      return;
+    }
+    batch.retain();
+    backlog.addLast(new PendingBatch(batch));
+    backlogSize += batch.size();
+    flush();
+    if (backlogSize > limit) {
+      applyPolicy();
+    }
+  }
+
+  private void flush() {
+    while (!backlog.isEmpty() && channel.isWritable()) {
+      final PendingBatch pendingBatch = backlog.removeFirst();
+      backlogSize -= pendingBatch.size;
+      // The buffer shares the pooled buffer's storage, so the batch must not
+      // be released before the write has completed.
+      channel.write(pendingBatch.buffer).addListener(new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+          pendingBatch.batch.release();
+        }
+      });
+    }
+  }
+
+  private void applyPolicy() {
+    switch (policy) {
+      case DROP_OLDEST:
+        while (backlogSize > limit) {
+          int excess = backlogSize - limit;
+          if (backlog.getFirst().size <= excess) {
+            drop(backlog.removeFirst());
+          } else {
+            backlog.getFirst().skipFrames(excess);
+            dropped(excess);
+          }
+        }
+        break;
+      case DROP_NEWEST:
+        while (backlogSize > limit) {
+          int excess = backlogSize - limit;
+          if (backlog.getLast().size <= excess) {
+            drop(backlog.removeLast());
+          } else {
+            PendingBatch last = backlog.getLast();
+            last.truncateFrames(last.size - excess);
+            dropped(excess);
+          }
+        }
+        break;
+      case DISCONNECT:
+        log.warn(String.format("Closing congested subscriber channel %s after %d messages.",
+            channel, backlogSize));
+        clear();
+        channel.close();
+        break;
+    }
+  }
+
+  private void drop(PendingBatch pendingBatch) {
+    dropped(pendingBatch.size);
+    pendingBatch.batch.release();
+  }
+
+  private void dropped(int messages) {
+    backlogSize -= messages;
+    droppedMessages += messages;
+  }
+
+  private void clear() {
+    while (!backlog.isEmpty()) {
+      drop(backlog.removeFirst());
+    }
+  }
+
+  /**
+   * @return the number of messages that were discarded because the
+   *         {@link Channel} was congested
+   */
+  synchronized long getDroppedMessages() {
+    return droppedMessages;
+  }
+
+  /**
+   * The messages of a {@link MessageBatch} that have not yet been written or
+   * dropped. Since the frames are length prefixed, messages can be removed
+   * from either end of the batch without copying.
+   */
+  private static final class PendingBatch {
+
+    private final MessageBatch batch;
+    private final ChannelBuffer buffer;
+    private int size;
+
+    PendingBatch(MessageBatch batch) {
+      this.batch = batch;
+      buffer = batch.getBuffer().duplicate();
+      size = batch.size();
+    }
+
+    /**
+     * Removes the first {@code count} messages.
+     */
+    void skipFrames(int count) {
+      buffer.readerIndex(getFrameEnd(count));
+      size -= count;
+    }
+
+    /**
+     * Keeps only the first {@code count} messages.
+     */
+    void truncateFrames(int count) {
+      buffer.writerIndex(getFrameEnd(count));
+      size = count;
+    }
+
+    /**
+     * @return the index following the first {@code count} frames
+     */
+    private int getFrameEnd(int count) {
+      int index = buffer.readerIndex();
+      for (int i = 0; i < count; i++) {
+        index += LENGTH_FIELD_SIZE + buffer.getInt(index);
+      }
+      return index;
+    }
+  }
+
+  @Override
+  public void channelInterestChanged(ChannelHandlerContext ctx, ChannelStateEvent e)
+      throws Exception {
+    synchronized (this) {
+      flush();
+    }
+    super.channelInterestChanged(ctx, e);
+  }
+
+  @Override
+  public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    synchronized (this) {
+      clear();
+    }
+    super.channelClosed(ctx, e);
+  }
+}
@@ -16,10 +16,16 @@
 
 package org.ros.internal.transport.queue;
 
-import org.ros.concurrent.CircularBlockingDeque;
+import com.google.common.base.Preconditions;
+
+import org.ros.concurrent.BoundedBlockingQueue;
+import org.ros.concurrent.OverflowPolicy;
+import org.ros.concurrent.QueueStatistics;
+import org.ros.internal.message.InPlaceMessageDeserializer;
 import org.ros.internal.transport.tcp.NamedChannelHandler;
 import org.ros.message.MessageDeserializer;
 import org.ros.message.MessageListener;
+import org.ros.node.topic.QueueOptions;
 
 import java.util.concurrent.ExecutorService;
 
@@ -29,23 +35,34 @@ import java.util.concurrent.ExecutorService;
 public class IncomingMessageQueue<T> {
 
   /**
-   * The maximum number of incoming messages that will be queued.
+   * The maximum number of recycled messages that will be kept for reuse.
+   */
+  private static final int MESSAGE_POOL_CAPACITY = 16;
+
+  /**
+   * Incoming {@link LazyMessage}s waiting to be dispatched.
    * <p>
-   * This limit applies to dispatching {@link LazyMessage}s as they arrive over
-   * the network. It is independent of {@link MessageDispatcher} queue
-   * capacities specified by
+   * The capacity of this queue is set by the {@link QueueOptions}. It is
+   * independent of {@link MessageDispatcher} queue capacities specified by
    * {@link IncomingMessageQueue#addListener(MessageListener, int)} which are
    * consumed by user provided {@link MessageListener}s.
    */
-  private static final int DEQUE_CAPACITY = 16;
-
+  private final BoundedBlockingQueue<LazyMessage<T>> lazyMessages;
   private final MessageReceiver<T> messageReceiver;
   private final MessageDispatcher<T> messageDispatcher;
 
-  public IncomingMessageQueue(MessageDeserializer<T> deserializer, ExecutorService executorService) {
-    CircularBlockingDeque<LazyMessage<T>> lazyMessages =
-        new CircularBlockingDeque<LazyMessage<T>>(DEQUE_CAPACITY);
-    messageReceiver = new MessageReceiver<T>(lazyMessages, deserializer);
+  public IncomingMessageQueue(MessageDeserializer<T> deserializer, ExecutorService executorService,
+      QueueOptions queueOptions) {
+    // Messages are added by the node's shared network threads, which must not
+    // block.
+    Preconditions.checkArgument(queueOptions.getOverflowPolicy() != OverflowPolicy.BLOCK,
+        "Subscriber queues do not support OverflowPolicy.BLOCK.");
+    lazyMessages = MessageQueues.newFromOptions(queueOptions);
+    MessagePool<T> messagePool = null;
+    if (deserializer instanceof InPlaceMessageDeserializer) {
+      messagePool = new MessagePool<T>(MESSAGE_POOL_CAPACITY);
+    }
+    messageReceiver = new MessageReceiver<T>(lazyMessages, deserializer, messagePool);
     messageDispatcher = new MessageDispatcher<T>(lazyMessages, executorService);
     executorService.execute(messageDispatcher);
   }
@@ -71,6 +88,38 @@ public class IncomingMessageQueue<T> {
     messageDispatcher.addListener(messageListener, queueCapacity);
   }
 
+  /**
+   * @see MessageDispatcher#addListener(MessageListener, int, boolean)
+   */
+  public void addListener(final MessageListener<T> messageListener, int queueCapacity,
+      boolean recycleMessages) {
+    messageDispatcher.addListener(messageListener, queueCapacity, recycleMessages);
+  }
+
+  /**
+   * Adds an already deserialized message to the queue. This is used to deliver
+   * messages from {@link OutgoingMessageQueue}s in the same process without
+   * going through serialization and the network.
+   * <p>
+   * The message will not be recycled since it may be shared with other
+   * {@link IncomingMessageQueue}s. It is dropped if the queue is full and
+   * rejects new messages.
+   * 
+   * @param message
+   *          the message to dispatch
+   */
+  public void receive(T message) {
+    messageReceiver.add(new LazyMessage<T>(message));
+  }
+
+  /**
+   * @return a snapshot of the counters of the queue of messages waiting to be
+   *         dispatched
+   */
+  public QueueStatistics getStatistics() {
+    return lazyMessages.getStatistics();
+  }
+
   public void shutdown() {
     messageDispatcher.cancel();
   }
@@ -16,15 +16,20 @@
 
 package org.ros.internal.transport.queue;
 
-import com.google.common.annotations.VisibleForTesting;
-
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.internal.message.InPlaceMessageDeserializer;
 import org.ros.message.MessageDeserializer;
 
 /**
  * Lazily deserializes a message on the first call to {@link #get()} and caches
  * the result.
  * <p>
+ * If a {@link MessagePool} is provided, the message is deserialized into a
+ * recycled message when one is available. Holders of the message track their
+ * use with {@link #reference(int, boolean)} and {@link #release()}. Once all
+ * references have been released and all holders permitted recycling, the
+ * message is returned to the {@link MessagePool}.
+ * <p>
  * This class is thread-safe.
  * 
  * @author damonkohler@google.com (Damon Kohler)
@@ -36,23 +41,39 @@ public class LazyMessage<T> {
 
   private final ChannelBuffer buffer;
   private final MessageDeserializer<T> deserializer;
+  private final MessagePool<T> messagePool;
   private final Object mutex;
 
   private T message;
+  private int references;
+  private boolean recyclable;
 
   /**
    * @param buffer
    *          the {@link ChannelBuffer} to be lazily deserialized
    * @param deserializer
    *          the {@link MessageDeserializer} to use
+   * @param messagePool
+   *          the {@link MessagePool} to recycle the message with or
+   *          {@code null} if the message should not be recycled
    */
-  public LazyMessage(ChannelBuffer buffer, MessageDeserializer<T> deserializer) {
+  public LazyMessage(ChannelBuffer buffer, MessageDeserializer<T> deserializer,
+      MessagePool<T> messagePool) {
     this.buffer = buffer;
     this.deserializer = deserializer;
+    this.messagePool = messagePool;
     mutex = new Object();
+    recyclable = messagePool != null && deserializer instanceof InPlaceMessageDeserializer;
+  }
+
+  public LazyMessage(ChannelBuffer buffer, MessageDeserializer<T> deserializer) {
+    this(buffer, deserializer, null);
   }
 
-  @VisibleForTesting
+  /**
+   * @param message
+   *          the already deserialized message
+   */
   LazyMessage(T message) {
     this(null, null);
     this.message = message;
@@ -61,13 +82,65 @@ public class LazyMessage<T> {
   /**
    * @return the deserialized message
    */
+  @SuppressWarnings("unchecked")
   public T get() {
     synchronized (mutex) {
       if (message != null) {
         return message;
       }
-      message = deserializer.deserialize(buffer);
+      T recycledMessage = recyclable ? messagePool.acquire() : null;
+      if (recycledMessage != null) {
+        message =
+            ((InPlaceMessageDeserializer<T>) deserializer).deserialize(buffer, recycledMessage);
+      } else {
+        message = deserializer.deserialize(buffer);
+      }
     }
     return message;
   }
+
+  /**
+   * Adds references to the message that must each be released by calling
+   * {@link #release()}.
+   * 
+   * @param count
+   *          the number of references to add
+   * @param recyclable
+   *          {@code false} if the holders of the new references may keep the
+   *          message, in which case the message will not be recycled
+   */
+  public void reference(int count, boolean recyclable) {
+    synchronized (mutex) {
+      references += count;
+      this.recyclable &= recyclable;
+    }
+  }
+
+  /**
+   * Releases a reference added by {@link #reference(int, boolean)}. The
+   * message must not be used by the caller afterwards.
+   */
+  public void release() {
+    synchronized (mutex) {
+      references--;
+      if (references == 0 && recyclable && message != null) {
+        messagePool.release(message);
+        recyclable = false;
+      }
+    }
+  }
+
+  /**
+   * Discards a message that was dropped before it was dispatched. If it has
+   * already been deserialized into a recyclable message, that message is
+   * returned to the {@link MessagePool}.
+   */
+  void discard() {
+    synchronized (mutex) {
+      if (references == 0 && recyclable && message != null) {
+        messagePool.release(message);
+      }
+      recyclable = false;
+    }
+  }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.queue;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.internal.message.MessageBufferPool;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pooled buffer of serialized, length prefixed messages that is shared by all
+ * outgoing TCPROS {@link org.jboss.netty.channel.Channel}s of a publisher.
+ * <p>
+ * The buffer is returned to its {@link MessageBufferPool} once every holder
+ * has called {@link #release()}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+class MessageBatch {
+
+  private final ChannelBuffer buffer;
+  private final int size;
+  private final MessageBufferPool messageBufferPool;
+  private final AtomicInteger references;
+
+  /**
+   * The new batch is held by its creator until it calls {@link #release()}.
+   * 
+   * @param buffer
+   *          the serialized messages, acquired from {@code messageBufferPool}
+   * @param size
+   *          the number of messages in {@code buffer}
+   * @param messageBufferPool
+   *          the {@link MessageBufferPool} to return {@code buffer} to
+   */
+  MessageBatch(ChannelBuffer buffer, int size, MessageBufferPool messageBufferPool) {
+    this.buffer = buffer;
+    this.size = size;
+    this.messageBufferPool = messageBufferPool;
+    references = new AtomicInteger(1);
+  }
+
+  ChannelBuffer getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * @return the number of messages in this batch
+   */
+  int size() {
+    return size;
+  }
+
+  void retain() {
+    references.incrementAndGet();
+  }
+
+  void release() {
+    if (references.decrementAndGet() == 0) {
+      messageBufferPool.release(buffer);
+    }
+  }
+}
@@ -19,7 +19,7 @@ package org.ros.internal.transport.queue;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.ros.concurrent.CancellableLoop;
-import org.ros.concurrent.CircularBlockingDeque;
+import org.ros.concurrent.BoundedBlockingQueue;
 import org.ros.concurrent.EventDispatcher;
 import org.ros.concurrent.ListenerGroup;
 import org.ros.concurrent.SignalRunnable;
@@ -38,7 +38,7 @@ public class MessageDispatcher<T> extends CancellableLoop {
   private static final boolean DEBUG = false;
   private static final Log log = LogFactory.getLog(MessageDispatcher.class);
 
-  private final CircularBlockingDeque<LazyMessage<T>> lazyMessages;
+  private final BoundedBlockingQueue<LazyMessage<T>> lazyMessages;
   private final ListenerGroup<MessageListener<T>> messageListeners;
 
   /**
@@ -50,7 +50,13 @@ public class MessageDispatcher<T> extends CancellableLoop {
   private boolean latchMode;
   private LazyMessage<T> latchedMessage;
 
-  public MessageDispatcher(CircularBlockingDeque<LazyMessage<T>> lazyMessages,
+  /**
+   * The number of {@link MessageListener}s that did not permit recycling of
+   * the messages dispatched to them.
+   */
+  private int nonRecyclingListeners;
+
+  public MessageDispatcher(BoundedBlockingQueue<LazyMessage<T>> lazyMessages,
       ExecutorService executorService) {
     this.lazyMessages = lazyMessages;
     messageListeners = new ListenerGroup<MessageListener<T>>(executorService);
@@ -67,13 +73,37 @@ public class MessageDispatcher<T> extends CancellableLoop {
    * @see ListenerGroup#add(Object, int)
    */
   public void addListener(MessageListener<T> messageListener, int limit) {
+    addListener(messageListener, limit, false);
+  }
+
+  /**
+   * Adds the specified {@link MessageListener} as described in
+   * {@link #addListener(MessageListener, int)}.
+   * <p>
+   * If {@code recycleMessages} is {@code true}, the messages passed to the
+   * {@link MessageListener} may be reused for later messages after
+   * {@link MessageListener#onNewMessage(Object)} returns. Messages are only
+   * recycled if all {@link MessageListener}s permit it, the message is no
+   * longer latched, and the message has not been retained (see
+   * {@link org.ros.internal.message.RawMessage#retain()}).
+   * 
+   * @param recycleMessages
+   *          {@code true} if dispatched messages may be recycled after the
+   *          {@link MessageListener} returns
+   */
+  public void addListener(MessageListener<T> messageListener, int limit,
+      boolean recycleMessages) {
     if (DEBUG) {
       log.info("Adding listener.");
     }
     synchronized (mutex) {
+      if (!recycleMessages) {
+        nonRecyclingListeners++;
+      }
       EventDispatcher<MessageListener<T>> eventDispatcher =
           messageListeners.add(messageListener, limit);
       if (latchMode && latchedMessage != null) {
+        latchedMessage.reference(1, recycleMessages);
         eventDispatcher.signal(newSignalRunnable(latchedMessage));
       }
     }
@@ -81,7 +111,8 @@ public class MessageDispatcher<T> extends CancellableLoop {
 
   /**
    * Returns a newly allocated {@link SignalRunnable} for the specified
-   * {@link LazyMessage}.
+   * {@link LazyMessage}. The {@link SignalRunnable} releases one reference to
+   * the {@link LazyMessage} after the {@link MessageListener} returns.
    * 
    * @param lazyMessage
    *          the {@link LazyMessage} to signal {@link MessageListener}s with
@@ -91,7 +122,11 @@ public class MessageDispatcher<T> extends CancellableLoop {
     return new SignalRunnable<MessageListener<T>>() {
       @Override
       public void run(MessageListener<T> messageListener) {
-        messageListener.onNewMessage(lazyMessage.get());
+        try {
+          messageListener.onNewMessage(lazyMessage.get());
+        } finally {
+          lazyMessage.release();
+        }
       }
     };
   }
@@ -116,6 +151,13 @@ public class MessageDispatcher<T> extends CancellableLoop {
   public void loop() throws InterruptedException {
     LazyMessage<T> lazyMessage = lazyMessages.takeFirst();
     synchronized (mutex) {
+      // One reference for each listener and one that is held while the message
+      // is latched. Signals that are dropped by a full listener queue never
+      // release their reference and so the message is simply not recycled.
+      lazyMessage.reference(messageListeners.size() + 1, nonRecyclingListeners == 0);
+      if (latchedMessage != null) {
+        latchedMessage.release();
+      }
       latchedMessage = lazyMessage;
       if (DEBUG) {
         log.info("Dispatching message: " + latchedMessage.get());
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.queue;
+
+import org.ros.internal.message.InPlaceMessageDeserializer;
+import org.ros.internal.message.Message;
+import org.ros.internal.message.MessageImpl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of messages that are no longer referenced by any
+ * {@link org.ros.message.MessageListener} and may be reused by an
+ * {@link InPlaceMessageDeserializer}.
+ * <p>
+ * This class is thread-safe.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ * 
+ * @param <T>
+ *          the message type
+ */
+public class MessagePool<T> {
+
+  private final BlockingQueue<T> messages;
+
+  /**
+   * @param capacity
+   *          the maximum number of messages to keep, additional released
+   *          messages are left to the garbage collector
+   */
+  public MessagePool(int capacity) {
+    messages = new ArrayBlockingQueue<T>(capacity);
+  }
+
+  /**
+   * @return a recycled message or {@code null} if the pool is empty
+   */
+  public T acquire() {
+    return messages.poll();
+  }
+
+  /**
+   * Returns a message to the pool. Messages that have been retained (see
+   * {@link org.ros.internal.message.RawMessage#retain()}) are not recycled.
+   * Retained messages nested in a recycled message are replaced with new ones
+   * when the recycled message is deserialized into, rather than overwritten.
+   * 
+   * @param message
+   *          the message to recycle
+   */
+  public void release(T message) {
+    if (message instanceof Message) {
+      MessageImpl messageImpl = (MessageImpl) ((Message) message).toRawMessage();
+      if (!messageImpl.isRetained()) {
+        messages.offer(message);
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.queue;
+
+import org.ros.concurrent.BoundedBlockingQueue;
+import org.ros.concurrent.CircularBlockingDeque;
+import org.ros.concurrent.OverflowPolicy;
+import org.ros.concurrent.RingBuffer;
+import org.ros.node.topic.QueueOptions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the message queues of publishers and subscribers.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+class MessageQueues {
+
+  private MessageQueues() {
+    // Utility class.
+  }
+
+  /**
+   * Overwriting queues, the default, are lock-free {@link RingBuffer}s. Queues
+   * that block or reject when full are {@link CircularBlockingDeque}s.
+   * 
+   * @param queueOptions
+   *          the {@link QueueOptions} of the new queue
+   * @return a new, empty queue
+   */
+  static <T> BoundedBlockingQueue<T> newFromOptions(QueueOptions queueOptions) {
+    if (queueOptions.getOverflowPolicy() == OverflowPolicy.OVERWRITE) {
+      return new RingBuffer<T>(queueOptions.getCapacity(), queueOptions.getWaitStrategy());
+    }
+    return new CircularBlockingDeque<T>(queueOptions.getCapacity(),
+        queueOptions.getOverflowPolicy(), queueOptions.getBlockTimeout(TimeUnit.NANOSECONDS),
+        TimeUnit.NANOSECONDS);
+  }
+}
@@ -16,7 +16,7 @@
 
 package org.ros.internal.transport.queue;
 
-import org.ros.concurrent.CircularBlockingDeque;
+import org.ros.concurrent.BoundedBlockingQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,6 +27,15 @@ import org.ros.internal.transport.tcp.AbstractNamedChannelHandler;
 import org.ros.message.MessageDeserializer;
 
 /**
+ * Queues each received frame as a {@link LazyMessage}.
+ * <p>
+ * The frame is queued as is, so it must be a buffer of its own that no other
+ * handler reuses. Both the
+ * {@link org.jboss.netty.handler.codec.frame.LengthFieldBasedFrameDecoder} of
+ * TCPROS connections and the
+ * {@link org.ros.internal.transport.udp.UdpRosDatagramDecoder} of UDPROS
+ * connections allocate a new buffer for every frame.
+ * 
  * @author damonkohler@google.com (Damon Kohler)
  * 
  * @param <T>
@@ -37,13 +46,22 @@ public class MessageReceiver<T> extends AbstractNamedChannelHandler {
   private static final boolean DEBUG = false;
   private static final Log log = LogFactory.getLog(MessageReceiver.class);
 
-  private final CircularBlockingDeque<LazyMessage<T>> lazyMessages;
+  private final BoundedBlockingQueue<LazyMessage<T>> lazyMessages;
   private final MessageDeserializer<T> deserializer;
+  private final MessagePool<T> messagePool;
+
+  private volatile boolean dropLogged;
 
-  public MessageReceiver(CircularBlockingDeque<LazyMessage<T>> lazyMessages,
-      MessageDeserializer<T> deserializer) {
+  /**
+   * @param messagePool
+   *          the {@link MessagePool} to recycle received messages with or
+   *          {@code null} if messages should not be recycled
+   */
+  public MessageReceiver(BoundedBlockingQueue<LazyMessage<T>> lazyMessages,
+      MessageDeserializer<T> deserializer, MessagePool<T> messagePool) {
     this.lazyMessages = lazyMessages;
     this.deserializer = deserializer;
+    this.messagePool = messagePool;
   }
 
   @Override
@@ -57,9 +75,30 @@ public class MessageReceiver<T> extends AbstractNamedChannelHandler {
     if (DEBUG) {
       log.info(String.format("Received %d byte message.", buffer.readableBytes()));
     }
-    // We have to make a defensive copy of the buffer here because Netty does
-    // not guarantee that the returned ChannelBuffer will not be reused.
-    lazyMessages.addLast(new LazyMessage<T>(buffer.copy(), deserializer));
+    // The frame decoders hand over ownership of each frame, so the frame does
+    // not need to be copied before it is deserialized on another thread.
+    add(new LazyMessage<T>(buffer, deserializer, messagePool));
     super.messageReceived(ctx, e);
   }
+
+  /**
+   * Adds a message to the queue. If the queue rejects it, the message is
+   * discarded and the drop is logged. Only the first drop is logged as a
+   * warning; all drops are counted in the queue statistics.
+   * 
+   * @param lazyMessage
+   *          the message to add
+   */
+  void add(LazyMessage<T> lazyMessage) {
+    if (lazyMessages.addLast(lazyMessage)) {
+      return;
+    }
+    lazyMessage.discard();
+    if (!dropLogged) {
+      dropLogged = true;
+      log.warn("Incoming message queue is full, dropping messages.");
+    } else if (log.isDebugEnabled()) {
+      log.debug("Incoming message queue is full, dropped message.");
+    }
+  }
 }
\ No newline at end of file
@@ -17,22 +17,36 @@
 package org.ros.internal.transport.queue;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.group.ChannelGroup;
-import org.jboss.netty.channel.group.ChannelGroupFuture;
-import org.jboss.netty.channel.group.ChannelGroupFutureListener;
 import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.ros.concurrent.CancellableLoop;
-import org.ros.concurrent.CircularBlockingDeque;
+import org.ros.concurrent.BoundedBlockingQueue;
+import org.ros.concurrent.QueueStatistics;
+import org.ros.internal.message.Message;
 import org.ros.internal.message.MessageBufferPool;
 import org.ros.internal.message.MessageBuffers;
+import org.ros.internal.transport.udp.UdpRosConnection;
 import org.ros.message.MessageSerializer;
+import org.ros.node.topic.QueueOptions;
+import org.ros.node.topic.SlowSubscriberPolicy;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author damonkohler@google.com (Damon Kohler)
@@ -42,11 +56,22 @@ public class OutgoingMessageQueue<T> {
   private static final boolean DEBUG = false;
   private static final Log log = LogFactory.getLog(OutgoingMessageQueue.class);
 
-  private static final int DEQUE_CAPACITY = 16;
+  private static final int DEFAULT_SLOW_SUBSCRIBER_LIMIT = 16;
+
+  /**
+   * The number of bytes used to prefix each serialized message with its
+   * length on the wire.
+   */
+  private static final int LENGTH_FIELD_SIZE = 4;
+
+  private static final int DEFAULT_MAX_COALESCED_BYTES = 64 * 1024;
 
   private final MessageSerializer<T> serializer;
-  private final CircularBlockingDeque<T> deque;
+  private final BoundedBlockingQueue<T> deque;
   private final ChannelGroup channelGroup;
+  private final ConcurrentMap<Channel, ChannelWriteQueue> channelWriteQueues;
+  private final Collection<IncomingMessageQueue<T>> incomingMessageQueues;
+  private final Collection<UdpRosConnection> udpRosConnections;
   private final Writer writer;
   private final MessageBufferPool messageBufferPool;
   private final ChannelBuffer latchedBuffer;
@@ -54,39 +79,104 @@ public class OutgoingMessageQueue<T> {
 
   private boolean latchMode;
   private T latchedMessage;
+  private volatile int maxCoalescedBytes;
+  private volatile long maxCoalescingDelayNanos;
+  private volatile boolean shutdown;
+  private SlowSubscriberPolicy slowSubscriberPolicy;
+  private int slowSubscriberLimit;
 
+  /**
+   * Drains pending messages into a single buffer of length prefixed frames so
+   * that a burst of small messages costs one write per channel rather than
+   * one (or two) per message.
+   */
   private final class Writer extends CancellableLoop {
+    @Override
+    protected void setup() {
+      // The queue may have been shut down before the executor started the
+      // writer, in which case cancel() had no thread to interrupt.
+      if (shutdown) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
     @Override
     public void loop() throws InterruptedException {
       T message = deque.takeFirst();
-      final ChannelBuffer buffer = messageBufferPool.acquire();
-      serializer.serialize(message, buffer);
+      ChannelBuffer buffer =
+          messageBufferPool.acquire(LENGTH_FIELD_SIZE + getSerializedSize(message));
+      writeFrame(message, buffer);
+      int size = 1;
+      long deadline = System.nanoTime() + maxCoalescingDelayNanos;
+      while (buffer.readableBytes() < maxCoalescedBytes) {
+        message = deque.pollFirst(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (message == null) {
+          break;
+        }
+        writeFrame(message, buffer);
+        size++;
+      }
       if (DEBUG) {
         log.info(String.format("Writing %d bytes to %d channels.", buffer.readableBytes(),
-            channelGroup.size()));
+            channelWriteQueues.size()));
       }
-      // Note that the buffer is automatically "duplicated" by Netty to avoid
-      // race conditions. However, the duplicated buffer and the original buffer
-      // share the same backing array. So, we have to wait until the write
-      // operation is complete before returning the buffer to the pool.
-      channelGroup.write(buffer).addListener(new ChannelGroupFutureListener() {
-        @Override
-        public void operationComplete(ChannelGroupFuture future) throws Exception {
-          messageBufferPool.release(buffer);
+      // Each ChannelWriteQueue retains the batch until its write completes or
+      // the batch is dropped. The buffer is returned to the pool afterwards.
+      MessageBatch batch = new MessageBatch(buffer, size, messageBufferPool);
+      for (ChannelWriteQueue channelWriteQueue : channelWriteQueues.values()) {
+        channelWriteQueue.write(batch);
+      }
+      batch.release();
+    }
+  }
+
+  /**
+   * Appends {@code message} to {@code buffer} as a length prefixed frame and
+   * writes the serialized message to all UDPROS connections.
+   */
+  private void writeFrame(T message, ChannelBuffer buffer) {
+    int frameIndex = buffer.writerIndex();
+    buffer.writeInt(0);
+    serializer.serialize(message, buffer);
+    int length = buffer.writerIndex() - frameIndex - LENGTH_FIELD_SIZE;
+    buffer.setInt(frameIndex, length);
+    if (!udpRosConnections.isEmpty()) {
+      ChannelBuffer messageBuffer = buffer.slice(frameIndex + LENGTH_FIELD_SIZE, length);
+      // UDPROS connections copy the buffer into datagrams before returning.
+      for (UdpRosConnection connection : udpRosConnections) {
+        if (connection.isClosed()) {
+          udpRosConnections.remove(connection);
+        } else {
+          connection.write(messageBuffer);
         }
-      });
+      }
     }
   }
 
-  public OutgoingMessageQueue(MessageSerializer<T> serializer, ExecutorService executorService) {
+  private static int getSerializedSize(Object message) {
+    if (message instanceof Message) {
+      return ((Message) message).toRawMessage().getSerializedSize();
+    }
+    return 0;
+  }
+
+  public OutgoingMessageQueue(MessageSerializer<T> serializer, ExecutorService executorService,
+      ChannelBufferFactory channelBufferFactory, QueueOptions queueOptions) {
     this.serializer = serializer;
-    deque = new CircularBlockingDeque<T>(DEQUE_CAPACITY);
+    deque = MessageQueues.newFromOptions(queueOptions);
     channelGroup = new DefaultChannelGroup();
+    channelWriteQueues = new ConcurrentHashMap<Channel, ChannelWriteQueue>();
+    incomingMessageQueues = new CopyOnWriteArrayList<IncomingMessageQueue<T>>();
+    udpRosConnections = new CopyOnWriteArrayList<UdpRosConnection>();
     writer = new Writer();
-    messageBufferPool = new MessageBufferPool();
-    latchedBuffer = MessageBuffers.dynamicBuffer();
+    messageBufferPool = new MessageBufferPool(channelBufferFactory);
+    latchedBuffer = MessageBuffers.dynamicBuffer(channelBufferFactory);
     mutex = new Object();
     latchMode = false;
+    maxCoalescedBytes = DEFAULT_MAX_COALESCED_BYTES;
+    maxCoalescingDelayNanos = 0;
+    slowSubscriberPolicy = SlowSubscriberPolicy.DROP_OLDEST;
+    slowSubscriberLimit = DEFAULT_SLOW_SUBSCRIBER_LIMIT;
     executorService.execute(writer);
   }
 
@@ -98,13 +188,64 @@ public class OutgoingMessageQueue<T> {
     return latchMode;
   }
 
+  /**
+   * Configures how pending messages are combined into a single write to each
+   * TCPROS {@link Channel}.
+   * 
+   * @param maxBytes
+   *          no further messages are added to a write once it holds at least
+   *          this many bytes, {@code 0} writes each message separately
+   * @param maxDelay
+   *          how long to wait for further messages after the first one,
+   *          {@code 0} only combines messages that are already queued
+   * @param unit
+   *          the {@link TimeUnit} of {@code maxDelay}
+   */
+  public void setWriteCoalescing(int maxBytes, long maxDelay, TimeUnit unit) {
+    Preconditions.checkArgument(maxBytes >= 0);
+    Preconditions.checkArgument(maxDelay >= 0);
+    maxCoalescedBytes = maxBytes;
+    maxCoalescingDelayNanos = unit.toNanos(maxDelay);
+  }
+
   /**
    * @param message
    *          the message to add to the queue
    */
   public void add(T message) {
-    deque.addLast(message);
-    setLatchedMessage(message);
+    // In process delivery, latching and the check for remote subscribers
+    // happen atomically with respect to addIncomingMessageQueue(),
+    // addChannel() and addUdpRosConnection(). A subscriber added afterwards
+    // receives this message as the latched message instead.
+    boolean hasRemoteSubscribers;
+    synchronized (mutex) {
+      if (!incomingMessageQueues.isEmpty()) {
+        T copy = copyMessage(message);
+        for (IncomingMessageQueue<T> incomingMessageQueue : incomingMessageQueues) {
+          incomingMessageQueue.receive(copy);
+        }
+      }
+      setLatchedMessage(message);
+      hasRemoteSubscribers = !channelWriteQueues.isEmpty() || !udpRosConnections.isEmpty();
+    }
+    // Skip serialization entirely when there are no remote subscribers. The
+    // deque may block, so it is not added to while holding the mutex.
+    if (hasRemoteSubscribers) {
+      deque.addLast(message);
+    }
+  }
+
+  /**
+   * Messages delivered in process are copied once so that the publisher may
+   * continue to modify and reuse the original message. The copy is shared by
+   * all {@link IncomingMessageQueue}s.
+   */
+  @SuppressWarnings("unchecked")
+  private T copyMessage(T message) {
+    if (message instanceof Message) {
+      return (T) ((Message) message).toRawMessage().copy();
+    }
+    return message;
   }
 
   private void setLatchedMessage(T message) {
@@ -117,23 +258,140 @@ public class OutgoingMessageQueue<T> {
    * Stop writing messages and close all outgoing connections.
    */
   public void shutdown() {
+    shutdown = true;
     writer.cancel();
+    incomingMessageQueues.clear();
+    udpRosConnections.clear();
     channelGroup.close().awaitUninterruptibly();
   }
 
   /**
+   * Configures what happens to messages for a {@link Channel} that is
+   * congested. Applies to existing and future {@link Channel}s.
+   * 
+   * @param policy
+   *          the {@link SlowSubscriberPolicy} to apply once the backlog of a
+   *          congested {@link Channel} exceeds {@code limit}
+   * @param limit
+   *          the maximum number of messages held back for a congested
+   *          {@link Channel}
+   */
+  public void setSlowSubscriberPolicy(SlowSubscriberPolicy policy, int limit) {
+    Preconditions.checkArgument(limit > 0);
+    synchronized (mutex) {
+      slowSubscriberPolicy = policy;
+      slowSubscriberLimit = limit;
+      for (ChannelWriteQueue channelWriteQueue : channelWriteQueues.values()) {
+        channelWriteQueue.setPolicy(policy, limit);
+      }
+    }
+  }
+
+  /**
+   * Messages are written to {@code channel} already prefixed with their
+   * length, so its pipeline must not contain a {@code LengthFieldPrepender}.
+   * 
    * @param channel
    *          added to this {@link OutgoingMessageQueue}'s {@link ChannelGroup}
    */
-  public void addChannel(Channel channel) {
-    if (!writer.isRunning()) {
+  public void addChannel(final Channel channel) {
+    // The writer may not have started yet, so only an explicit shutdown
+    // prevents adding channels.
+    if (shutdown) {
       log.warn("Failed to add channel. Cannot add channels after shutdown.");
       return;
     }
-    if (latchMode && latchedMessage != null) {
-      writeLatchedMessage(channel);
+    // The latched message is written in the same critical section that
+    // registers the channel so that add() either sees the channel or latches
+    // a message that is written here.
+    synchronized (mutex) {
+      if (latchMode && latchedMessage != null) {
+        writeLatchedMessage(channel);
+      }
+      ChannelWriteQueue channelWriteQueue =
+          new ChannelWriteQueue(channel, slowSubscriberPolicy, slowSubscriberLimit);
+      channel.getPipeline().addLast(ChannelWriteQueue.NAME, channelWriteQueue);
+      channelWriteQueues.put(channel, channelWriteQueue);
+      channelGroup.add(channel);
+    }
+    channel.getCloseFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) throws Exception {
+        channelWriteQueues.remove(channel);
+      }
+    });
+  }
+
+  /**
+   * @param channel
+   *          a {@link Channel} added with {@link #addChannel(Channel)}
+   * @return the number of messages that were dropped because {@code channel}
+   *         was congested
+   */
+  public long getDroppedMessages(Channel channel) {
+    ChannelWriteQueue channelWriteQueue = channelWriteQueues.get(channel);
+    return channelWriteQueue == null ? 0 : channelWriteQueue.getDroppedMessages();
+  }
+
+  /**
+   * @return the number of messages that were dropped because the
+   *         {@link Channel} was congested for each open {@link Channel}
+   */
+  public Map<Channel, Long> getDroppedMessages() {
+    Map<Channel, Long> droppedMessages = Maps.newHashMap();
+    for (Map.Entry<Channel, ChannelWriteQueue> entry : channelWriteQueues.entrySet()) {
+      droppedMessages.put(entry.getKey(), entry.getValue().getDroppedMessages());
+    }
+    return droppedMessages;
+  }
+
+  /**
+   * @param connection
+   *          a UDPROS connection to write messages to until it is closed
+   */
+  public void addUdpRosConnection(UdpRosConnection connection) {
+    if (shutdown) {
+      log.warn("Failed to add UDPROS connection. Cannot add connections after shutdown.");
+      return;
+    }
+    synchronized (mutex) {
+      if (latchMode && latchedMessage != null) {
+        latchedBuffer.clear();
+        serializer.serialize(latchedMessage, latchedBuffer);
+        // UDPROS connections copy the buffer into datagrams before returning.
+        connection.write(latchedBuffer);
+      }
+      udpRosConnections.add(connection);
+    }
+  }
+
+  /**
+   * Adds an {@link IncomingMessageQueue} in the same process. Messages added to
+   * this queue are handed directly to the {@link IncomingMessageQueue} without
+   * being serialized.
+   * 
+   * @param incomingMessageQueue
+   *          the {@link IncomingMessageQueue} to deliver messages to
+   */
+  public void addIncomingMessageQueue(IncomingMessageQueue<T> incomingMessageQueue) {
+    if (shutdown) {
+      log.warn("Failed to add incoming message queue. Cannot add queues after shutdown.");
+      return;
+    }
+    synchronized (mutex) {
+      if (latchMode && latchedMessage != null) {
+        incomingMessageQueue.receive(copyMessage(latchedMessage));
+      }
+      incomingMessageQueues.add(incomingMessageQueue);
     }
-    channelGroup.add(channel);
+  }
+
+  /**
+   * @param incomingMessageQueue
+   *          the {@link IncomingMessageQueue} to stop delivering messages to
+   */
+  public void removeIncomingMessageQueue(IncomingMessageQueue<T> incomingMessageQueue) {
+    incomingMessageQueues.remove(incomingMessageQueue);
   }
 
   // TODO(damonkohler): Avoid re-serializing the latched message if it hasn't
@@ -141,11 +399,23 @@ public class OutgoingMessageQueue<T> {
   private void writeLatchedMessage(Channel channel) {
     synchronized (mutex) {
       latchedBuffer.clear();
+      latchedBuffer.writeInt(0);
       serializer.serialize(latchedMessage, latchedBuffer);
-      channel.write(latchedBuffer);
+      latchedBuffer.setInt(0, latchedBuffer.readableBytes() - LENGTH_FIELD_SIZE);
+      // The write completes asynchronously and latchedBuffer is reused for the
+      // next channel, so each channel gets its own copy.
+      channel.write(latchedBuffer.copy());
     }
   }
 
+  /**
+   * @return a snapshot of the counters of the queue of messages waiting to be
+   *         serialized
+   */
+  public QueueStatistics getStatistics() {
+    return deque.getStatistics();
+  }
+
   /**
    * @return the number of {@link Channel}s which have been added to this queue
    */
@@ -153,6 +423,28 @@ public class OutgoingMessageQueue<T> {
     return channelGroup.size();
   }
 
+  /**
+   * @return the number of open UDPROS connections which have been added to this
+   *         queue
+   */
+  public int getNumberOfUdpRosConnections() {
+    int count = 0;
+    for (UdpRosConnection connection : udpRosConnections) {
+      if (!connection.isClosed()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the number of {@link IncomingMessageQueue}s which have been added
+   *         to this queue
+   */
+  public int getNumberOfIncomingMessageQueues() {
+    return incomingMessageQueues.size();
+  }
+
   @VisibleForTesting
   public ChannelGroup getChannelGroup() {
     return channelGroup;
@@ -24,19 +24,14 @@ import org.apache.commons.logging.LogFactory;
 import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferFactory;
-import org.jboss.netty.buffer.HeapChannelBufferFactory;
 import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelFactory;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.group.ChannelGroup;
-import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
 import org.ros.exception.RosRuntimeException;
 
 import java.net.SocketAddress;
-import java.nio.ByteOrder;
 import java.util.List;
-import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -52,17 +47,24 @@ public class TcpClient {
   private static final boolean DEFAULT_KEEP_ALIVE = true;
 
   private final ChannelGroup channelGroup;
-  private final ChannelFactory channelFactory;
+  private final TcpClientChannelFactory channelFactory;
   private final ChannelBufferFactory channelBufferFactory;
   private final ClientBootstrap bootstrap;
   private final List<NamedChannelHandler> namedChannelHandlers;
   
   private Channel channel;
 
-  public TcpClient(ChannelGroup channelGroup, Executor executor) {
+  /**
+   * @param channelGroup
+   *          the {@link ChannelGroup} to add the connected {@link Channel} to
+   * @param channelFactory
+   *          the {@link TcpClientChannelFactory} shared by all
+   *          {@link TcpClient}s of a node
+   */
+  public TcpClient(ChannelGroup channelGroup, TcpClientChannelFactory channelFactory) {
     this.channelGroup = channelGroup;
-    channelFactory = new NioClientSocketChannelFactory(executor, executor);
-    channelBufferFactory = new HeapChannelBufferFactory(ByteOrder.LITTLE_ENDIAN);
+    this.channelFactory = channelFactory;
+    channelBufferFactory = channelFactory.getChannelBufferFactory();
     bootstrap = new ClientBootstrap(channelFactory);
     bootstrap.setOption("bufferFactory", channelBufferFactory);
     setConnectionTimeout(DEFAULT_CONNECTION_TIMEOUT_DURATION, DEFAULT_CONNECTION_TIMEOUT_UNIT);
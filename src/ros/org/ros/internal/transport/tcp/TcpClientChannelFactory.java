@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.tcp;
+
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.socket.ClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.SocketChannel;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the outgoing TCP channels of all {@link TcpClient}s in a node so that
+ * they share a single boss thread and a fixed number of worker threads and
+ * allocate their buffers from the node's {@link ChannelBufferFactory}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class TcpClientChannelFactory implements ClientSocketChannelFactory {
+
+  private static final int BOSS_COUNT = 1;
+
+  /**
+   * The number of I/O threads shared by all outgoing connections, independent
+   * of the number of connections.
+   */
+  private static final int WORKER_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  private final NioClientSocketChannelFactory channelFactory;
+  private final ChannelBufferFactory channelBufferFactory;
+
+  /**
+   * @param channelBufferFactory
+   *          allocates the buffers of all channels created by this factory
+   */
+  public TcpClientChannelFactory(ChannelBufferFactory channelBufferFactory) {
+    this.channelBufferFactory = channelBufferFactory;
+    // The boss and worker threads never return on their own. Netty only stops
+    // them by terminating the ExecutorService they run on, so they get one of
+    // their own rather than the application's executor.
+    ExecutorService ioExecutorService = Executors.newCachedThreadPool();
+    channelFactory =
+        new NioClientSocketChannelFactory(ioExecutorService, ioExecutorService, BOSS_COUNT,
+            WORKER_COUNT);
+  }
+
+  /**
+   * @return the {@link ChannelBufferFactory} that channels created by this
+   *         factory should use
+   */
+  public ChannelBufferFactory getChannelBufferFactory() {
+    return channelBufferFactory;
+  }
+
+  @Override
+  public SocketChannel newChannel(ChannelPipeline pipeline) {
+    return channelFactory.newChannel(pipeline);
+  }
+
+  /**
+   * Stops the boss and worker threads and waits for them to terminate. All
+   * channels created by this factory should be closed first.
+   */
+  @Override
+  public void releaseExternalResources() {
+    channelFactory.releaseExternalResources();
+  }
+}
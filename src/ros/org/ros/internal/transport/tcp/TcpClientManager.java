@@ -25,7 +25,6 @@ import org.jboss.netty.channel.group.DefaultChannelGroup;
 import java.net.SocketAddress;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.Executor;
 
 /**
  * @author damonkohler@google.com (Damon Kohler)
@@ -35,10 +34,15 @@ public class TcpClientManager {
   private final ChannelGroup channelGroup;
   private final Collection<TcpClient> tcpClients;
   private final List<NamedChannelHandler> namedChannelHandlers;
-  private final Executor executor;
+  private final TcpClientChannelFactory channelFactory;
 
-  public TcpClientManager(Executor executor) {
-    this.executor = executor;
+  /**
+   * @param channelFactory
+   *          the {@link TcpClientChannelFactory} shared by all
+   *          {@link TcpClient}s of a node
+   */
+  public TcpClientManager(TcpClientChannelFactory channelFactory) {
+    this.channelFactory = channelFactory;
     channelGroup = new DefaultChannelGroup();
     tcpClients = Lists.newArrayList();
     namedChannelHandlers = Lists.newArrayList();
@@ -64,7 +68,7 @@ public class TcpClientManager {
    * @return a new {@link TcpClient}
    */
   public TcpClient connect(String connectionName, SocketAddress socketAddress) {
-    TcpClient tcpClient = new TcpClient(channelGroup, executor);
+    TcpClient tcpClient = new TcpClient(channelGroup, channelFactory);
     tcpClient.addAllNamedChannelHandlers(namedChannelHandlers);
     tcpClient.connect(connectionName, socketAddress);
     tcpClients.add(tcpClient);
@@ -78,9 +82,7 @@ public class TcpClientManager {
   public void shutdown() {
     channelGroup.close().awaitUninterruptibly();
     tcpClients.clear();
-    // We don't call channelFactory.releaseExternalResources() or
-    // bootstrap.releaseExternalResources() since the only external resource is
-    // the ExecutorService which must remain in the control of the overall
-    // application.
+    // We don't call channelFactory.releaseExternalResources() since the
+    // ChannelFactory is shared by the node and released on node shutdown.
   }
 }
@@ -21,7 +21,7 @@ import com.google.common.base.Preconditions;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jboss.netty.bootstrap.ServerBootstrap;
-import org.jboss.netty.buffer.HeapChannelBufferFactory;
+import org.jboss.netty.buffer.ChannelBufferFactory;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFactory;
 import org.jboss.netty.channel.group.ChannelGroup;
@@ -33,7 +33,6 @@ import org.ros.internal.node.service.ServiceManager;
 import org.ros.internal.node.topic.TopicParticipantManager;
 
 import java.net.InetSocketAddress;
-import java.nio.ByteOrder;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -57,6 +56,7 @@ public class TcpRosServer {
   private final TopicParticipantManager topicParticipantManager;
   private final ServiceManager serviceManager;
   private final ScheduledExecutorService executorService;
+  private final ChannelBufferFactory channelBufferFactory;
 
   private ChannelFactory channelFactory;
   private ServerBootstrap bootstrap;
@@ -65,20 +65,20 @@ public class TcpRosServer {
 
   public TcpRosServer(BindAddress bindAddress, AdvertiseAddress advertiseAddress,
       TopicParticipantManager topicParticipantManager, ServiceManager serviceManager,
-      ScheduledExecutorService executorService) {
+      ScheduledExecutorService executorService, ChannelBufferFactory channelBufferFactory) {
     this.bindAddress = bindAddress;
     this.advertiseAddress = advertiseAddress;
     this.topicParticipantManager = topicParticipantManager;
     this.serviceManager = serviceManager;
     this.executorService = executorService;
+    this.channelBufferFactory = channelBufferFactory;
   }
 
   public void start() {
     Preconditions.checkState(outgoingChannel == null);
     channelFactory = new NioServerSocketChannelFactory(executorService, executorService);
     bootstrap = new ServerBootstrap(channelFactory);
-    bootstrap.setOption("child.bufferFactory",
-        new HeapChannelBufferFactory(ByteOrder.LITTLE_ENDIAN));
+    bootstrap.setOption("child.bufferFactory", channelBufferFactory);
     bootstrap.setOption("child.keepAlive", true);
     incomingChannelGroup = new DefaultChannelGroup();
     bootstrap.setPipelineFactory(new TcpServerPipelineFactory(incomingChannelGroup,
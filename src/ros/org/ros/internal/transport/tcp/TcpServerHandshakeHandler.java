@@ -100,6 +100,9 @@ public class TcpServerHandshakeHandler extends SimpleChannelHandler {
     if (!future.isSuccess()) {
       throw new RosRuntimeException(future.getCause());
     }
+    // The publisher writes messages that are already prefixed with their
+    // length so that several messages can share a single write.
+    pipeline.remove(TcpServerPipelineFactory.LENGTH_FIELD_PREPENDER);
     String nodeName = incomingConnectionHeader.getField(ConnectionHeaderFields.CALLER_ID);
     publisher.addSubscriber(new SubscriberIdentifier(NodeIdentifier.forName(nodeName),
         new TopicIdentifier(topicName)), channel);
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.udp;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.jboss.netty.bootstrap.ConnectionlessBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.FixedReceiveBufferSizePredictorFactory;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.nio.NioDatagramChannelFactory;
+import org.ros.internal.transport.ConnectionHeader;
+import org.ros.internal.transport.ProtocolNames;
+import org.ros.internal.transport.tcp.NamedChannelHandler;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+
+/**
+ * Receives messages from publishers over UDPROS. Each publisher connection
+ * gets its own UDP socket so that datagrams from different publishers cannot
+ * be confused.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class UdpRosClient {
+
+  private final String advertiseHost;
+  private final int maxDatagramSize;
+  private final ChannelFactory channelFactory;
+  private final ChannelGroup channelGroup;
+  private final List<NamedChannelHandler> namedChannelHandlers;
+  private final Map<Channel, UdpRosProtocolDescription> connections;
+
+  /**
+   * @param advertiseHost
+   *          the host that publishers should send datagrams to
+   * @param maxDatagramSize
+   *          the maximum datagram size to request from publishers
+   * @param executor
+   *          used by the underlying Netty channel factory
+   */
+  public UdpRosClient(String advertiseHost, int maxDatagramSize, Executor executor) {
+    this.advertiseHost = advertiseHost;
+    this.maxDatagramSize = maxDatagramSize;
+    channelFactory = new NioDatagramChannelFactory(executor);
+    channelGroup = new DefaultChannelGroup();
+    namedChannelHandlers = Lists.newArrayList();
+    connections = Maps.newHashMap();
+  }
+
+  /**
+   * @param namedChannelHandler
+   *          added to the pipeline of every new {@link Channel} after the
+   *          {@link UdpRosDatagramDecoder}
+   */
+  public void addNamedChannelHandler(NamedChannelHandler namedChannelHandler) {
+    namedChannelHandlers.add(namedChannelHandler);
+  }
+
+  /**
+   * Binds a new UDP socket for a single publisher connection.
+   * 
+   * @return the bound {@link Channel}
+   */
+  public Channel bind() {
+    ConnectionlessBootstrap bootstrap = new ConnectionlessBootstrap(channelFactory);
+    bootstrap.setOption("bufferFactory", new HeapChannelBufferFactory(ByteOrder.LITTLE_ENDIAN));
+    bootstrap.setOption("receiveBufferSizePredictorFactory",
+        new FixedReceiveBufferSizePredictorFactory(maxDatagramSize));
+    ChannelPipeline pipeline = Channels.pipeline();
+    UdpRosDatagramDecoder decoder = new UdpRosDatagramDecoder(maxDatagramSize);
+    pipeline.addLast(decoder.getName(), decoder);
+    for (NamedChannelHandler namedChannelHandler : namedChannelHandlers) {
+      pipeline.addLast(namedChannelHandler.getName(), namedChannelHandler);
+    }
+    bootstrap.setPipeline(pipeline);
+    Channel channel = bootstrap.bind(new InetSocketAddress(0));
+    channelGroup.add(channel);
+    return channel;
+  }
+
+  /**
+   * @param channel
+   *          a {@link Channel} returned by {@link #bind()}
+   * @param connectionHeader
+   *          the subscriber's {@link ConnectionHeader}
+   * @return the protocol parameters of a UDPROS topic request
+   */
+  public List<Object> newProtocolRequest(Channel channel, ConnectionHeader connectionHeader) {
+    int port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    return Lists.<Object>newArrayList(ProtocolNames.UDPROS,
+        UdpRosProtocolDescription.encodeHeader(connectionHeader), advertiseHost, port,
+        maxDatagramSize);
+  }
+
+  /**
+   * Records the publisher's response for a {@link Channel} so that the
+   * publisher can be notified when the connection is closed.
+   */
+  public void connect(Channel channel, UdpRosProtocolDescription protocolDescription) {
+    synchronized (connections) {
+      connections.put(channel, protocolDescription);
+    }
+  }
+
+  /**
+   * @return the number of messages dropped on the {@link Channel}
+   */
+  public long getDroppedMessages(Channel channel) {
+    return channel.getPipeline().get(UdpRosDatagramDecoder.class).getDroppedMessages();
+  }
+
+  /**
+   * Closes a {@link Channel} and notifies its publisher if it was connected.
+   */
+  public void close(Channel channel) {
+    UdpRosProtocolDescription protocolDescription;
+    synchronized (connections) {
+      protocolDescription = connections.remove(channel);
+    }
+    if (protocolDescription != null) {
+      sendError(channel, protocolDescription);
+    }
+    channel.close().awaitUninterruptibly();
+  }
+
+  private void sendError(Channel channel, UdpRosProtocolDescription protocolDescription) {
+    ChannelBuffer datagram =
+        ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, UdpRosDatagrams.HEADER_SIZE);
+    datagram.writeInt(protocolDescription.getConnectionId());
+    datagram.writeByte(UdpRosDatagrams.ERR);
+    datagram.writeByte(0);
+    datagram.writeShort(0);
+    channel.write(datagram, protocolDescription.getAddress()).awaitUninterruptibly();
+  }
+
+  /**
+   * Notifies all connected publishers and closes all {@link Channel}s.
+   */
+  public void shutdown() {
+    synchronized (connections) {
+      for (Entry<Channel, UdpRosProtocolDescription> entry : connections.entrySet()) {
+        sendError(entry.getKey(), entry.getValue());
+      }
+      connections.clear();
+    }
+    channelGroup.close().awaitUninterruptibly();
+    // We don't call channelFactory.releaseExternalResources() since the only
+    // external resource is the Executor which must remain in the control of
+    // the overall application.
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.udp;
+
+import com.google.common.base.Preconditions;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The publisher side of a UDPROS connection. Messages are split into
+ * datagrams no larger than the maximum datagram size negotiated with the
+ * subscriber.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class UdpRosConnection {
+
+  private final Channel channel;
+  private final InetSocketAddress remoteAddress;
+  private final int connectionId;
+  private final int maxDatagramSize;
+  private final AtomicLong droppedDatagrams;
+  private final ChannelFutureListener dropCounter;
+
+  private int messageId;
+  private volatile boolean closed;
+
+  public UdpRosConnection(Channel channel, InetSocketAddress remoteAddress, int connectionId,
+      int maxDatagramSize) {
+    Preconditions.checkArgument(maxDatagramSize > UdpRosDatagrams.HEADER_SIZE);
+    this.channel = channel;
+    this.remoteAddress = remoteAddress;
+    this.connectionId = connectionId;
+    this.maxDatagramSize = maxDatagramSize;
+    droppedDatagrams = new AtomicLong();
+    dropCounter = new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) throws Exception {
+        if (!future.isSuccess()) {
+          droppedDatagrams.incrementAndGet();
+        }
+      }
+    };
+  }
+
+  /**
+   * Writes a serialized message to the subscriber. The message is copied into
+   * datagrams before this method returns, so the caller may reuse the buffer
+   * immediately.
+   * 
+   * @param buffer
+   *          the serialized message
+   */
+  public synchronized void write(ChannelBuffer buffer) {
+    int payloadSize = maxDatagramSize - UdpRosDatagrams.HEADER_SIZE;
+    int length = buffer.readableBytes();
+    int blocks = Math.max(1, (length + payloadSize - 1) / payloadSize);
+    if (blocks > UdpRosDatagrams.MAX_BLOCKS) {
+      droppedDatagrams.addAndGet(blocks);
+      return;
+    }
+    int offset = buffer.readerIndex();
+    for (int block = 0; block < blocks; block++) {
+      int size = Math.min(payloadSize, length - block * payloadSize);
+      ChannelBuffer datagram =
+          ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, UdpRosDatagrams.HEADER_SIZE + size);
+      datagram.writeInt(connectionId);
+      if (block == 0) {
+        datagram.writeByte(UdpRosDatagrams.DATA0);
+        datagram.writeByte(messageId);
+        datagram.writeShort(blocks);
+      } else {
+        datagram.writeByte(UdpRosDatagrams.DATAN);
+        datagram.writeByte(messageId);
+        datagram.writeShort(block);
+      }
+      datagram.writeBytes(buffer, offset + block * payloadSize, size);
+      channel.write(datagram, remoteAddress).addListener(dropCounter);
+    }
+    messageId = (messageId + 1) & 0xff;
+  }
+
+  /**
+   * Marks this connection as closed. Writers should stop using the connection.
+   */
+  public void close() {
+    closed = true;
+  }
+
+  /**
+   * @return {@code true} if the subscriber has closed this connection
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  public int getConnectionId() {
+    return connectionId;
+  }
+
+  public InetSocketAddress getRemoteAddress() {
+    return remoteAddress;
+  }
+
+  /**
+   * @return the number of datagrams that could not be sent on this connection
+   */
+  public long getDroppedDatagrams() {
+    return droppedDatagrams.get();
+  }
+
+  @Override
+  public String toString() {
+    return "UdpRosConnection<" + connectionId + ", " + remoteAddress + ">";
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.udp;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.ros.internal.transport.tcp.AbstractNamedChannelHandler;
+
+import java.nio.ByteOrder;
+
+/**
+ * Reassembles the datagrams of a single UDPROS connection into complete
+ * messages and passes them upstream. Each message is reassembled into a new
+ * buffer that belongs to the upstream handlers once passed on.
+ * <p>
+ * Messages are dropped rather than delayed: a message is discarded as soon as
+ * one of its blocks is lost or arrives out of order.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class UdpRosDatagramDecoder extends AbstractNamedChannelHandler {
+
+  private static final boolean DEBUG = false;
+  private static final Log log = LogFactory.getLog(UdpRosDatagramDecoder.class);
+
+  /**
+   * The maximum number of bytes reserved up front when reassembling a message.
+   * Larger messages grow the buffer as blocks arrive.
+   */
+  private static final int MAX_INITIAL_CAPACITY = 64 * 1024;
+
+  private final int payloadSize;
+
+  private int messageId;
+  private boolean complete;
+  private int blocks;
+  private int nextBlock;
+  private ChannelBuffer buffer;
+  private volatile long droppedMessages;
+
+  /**
+   * @param maxDatagramSize
+   *          the maximum size of a datagram including its header
+   */
+  public UdpRosDatagramDecoder(int maxDatagramSize) {
+    payloadSize = maxDatagramSize - UdpRosDatagrams.HEADER_SIZE;
+    messageId = -1;
+  }
+
+  @Override
+  public String getName() {
+    return "UdpRosDatagramDecoder";
+  }
+
+  @Override
+  public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    ChannelBuffer datagram = (ChannelBuffer) e.getMessage();
+    if (datagram.readableBytes() < UdpRosDatagrams.HEADER_SIZE) {
+      return;
+    }
+    int connectionId = datagram.readInt();
+    byte opcode = datagram.readByte();
+    int messageId = datagram.readUnsignedByte();
+    int block = datagram.readUnsignedShort();
+    if (opcode != UdpRosDatagrams.DATA0 && opcode != UdpRosDatagrams.DATAN) {
+      if (DEBUG) {
+        log.info(String.format("Ignoring opcode %d on connection %d.", opcode, connectionId));
+      }
+      return;
+    }
+    ChannelBuffer message = reassemble(opcode, messageId, block, datagram);
+    if (message != null) {
+      Channels.fireMessageReceived(ctx, message, e.getRemoteAddress());
+    }
+  }
+
+  /**
+   * @return the reassembled message if {@code datagram} completed it,
+   *         {@code null} otherwise
+   */
+  private synchronized ChannelBuffer reassemble(byte opcode, int messageId, int block,
+      ChannelBuffer datagram) {
+    if (messageId != this.messageId) {
+      if (this.messageId >= 0) {
+        long dropped = complete ? 0 : 1;
+        // Message IDs wrap at 8 bits. Any skipped IDs belong to messages that
+        // were lost entirely.
+        dropped += (messageId - this.messageId - 1) & 0xff;
+        droppedMessages += dropped;
+      }
+      this.messageId = messageId;
+      complete = false;
+      nextBlock = 0;
+      buffer = null;
+    }
+    if (complete) {
+      return null;
+    }
+    if (opcode == UdpRosDatagrams.DATA0) {
+      if (nextBlock != 0 || block == 0) {
+        return null;
+      }
+      blocks = block;
+      buffer =
+          ChannelBuffers.dynamicBuffer(ByteOrder.LITTLE_ENDIAN,
+              Math.min(blocks * payloadSize, MAX_INITIAL_CAPACITY));
+    } else if (buffer == null || block != nextBlock) {
+      // The message is incomplete and will be counted as dropped once the next
+      // message begins.
+      buffer = null;
+      return null;
+    }
+    buffer.writeBytes(datagram);
+    nextBlock++;
+    if (nextBlock < blocks) {
+      return null;
+    }
+    complete = true;
+    ChannelBuffer message = buffer;
+    buffer = null;
+    return message;
+  }
+
+  /**
+   * @return the number of messages that were dropped on this connection
+   */
+  public long getDroppedMessages() {
+    return droppedMessages;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.udp;
+
+/**
+ * Constants describing the 8 byte header that precedes every UDPROS datagram.
+ * <p>
+ * The header consists of a 32 bit connection ID, an 8 bit opcode, an 8 bit
+ * message ID and a 16 bit block number. For {@link #DATA0} datagrams, the
+ * block number is the total number of blocks in the message. For
+ * {@link #DATAN} datagrams, it is the index of the block within the message.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public interface UdpRosDatagrams {
+
+  public static final int HEADER_SIZE = 8;
+
+  /**
+   * The first datagram of a message.
+   */
+  public static final byte DATA0 = 0;
+
+  /**
+   * Every subsequent datagram of a message.
+   */
+  public static final byte DATAN = 1;
+
+  public static final byte PING = 2;
+  public static final byte ERR = 3;
+
+  /**
+   * The default maximum datagram size, including the header. Datagrams of this
+   * size fit in a single Ethernet frame and avoid IP fragmentation.
+   */
+  public static final int DEFAULT_MAX_DATAGRAM_SIZE = 1472;
+
+  /**
+   * The maximum number of blocks a message may be split into.
+   */
+  public static final int MAX_BLOCKS = 0xffff;
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.udp;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.ros.address.AdvertiseAddress;
+import org.ros.internal.transport.ConnectionHeader;
+import org.ros.internal.transport.ProtocolDescription;
+import org.ros.internal.transport.ProtocolNames;
+
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * The publisher's response to a UDPROS topic request.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class UdpRosProtocolDescription extends ProtocolDescription {
+
+  private final int connectionId;
+  private final int maxDatagramSize;
+  private final ConnectionHeader connectionHeader;
+
+  public UdpRosProtocolDescription(AdvertiseAddress address, int connectionId,
+      int maxDatagramSize, ConnectionHeader connectionHeader) {
+    super(ProtocolNames.UDPROS, address);
+    this.connectionId = connectionId;
+    this.maxDatagramSize = maxDatagramSize;
+    this.connectionHeader = connectionHeader;
+  }
+
+  public int getConnectionId() {
+    return connectionId;
+  }
+
+  public int getMaxDatagramSize() {
+    return maxDatagramSize;
+  }
+
+  /**
+   * @return the publisher's {@link ConnectionHeader}
+   */
+  public ConnectionHeader getConnectionHeader() {
+    return connectionHeader;
+  }
+
+  @Override
+  public List<Object> toList() {
+    List<Object> list = super.toList();
+    list.add(connectionId);
+    list.add(maxDatagramSize);
+    list.add(encodeHeader(connectionHeader));
+    return list;
+  }
+
+  /**
+   * @return the header encoded as it is sent over XML-RPC
+   */
+  public static byte[] encodeHeader(ConnectionHeader connectionHeader) {
+    ChannelBuffer buffer = connectionHeader.encode();
+    byte[] bytes = new byte[buffer.readableBytes()];
+    buffer.readBytes(bytes);
+    return bytes;
+  }
+
+  /**
+   * @return the header decoded from its XML-RPC encoding
+   */
+  public static ConnectionHeader decodeHeader(byte[] bytes) {
+    return ConnectionHeader.decode(ChannelBuffers.wrappedBuffer(ByteOrder.LITTLE_ENDIAN, bytes));
+  }
+
+  @Override
+  public String toString() {
+    return "Protocol<" + getName() + ", " + getAdverstiseAddress() + ", " + connectionId + ">";
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.udp;
+
+import com.google.common.collect.Maps;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jboss.netty.bootstrap.ConnectionlessBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.FixedReceiveBufferSizePredictorFactory;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.channel.socket.nio.NioDatagramChannelFactory;
+import org.ros.address.AdvertiseAddress;
+import org.ros.address.BindAddress;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * The UDP socket that publishers use to send messages to UDPROS subscribers.
+ * <p>
+ * The socket is only bound once the first UDPROS connection is requested.
+ * Subscribers send an {@link UdpRosDatagrams#ERR} datagram to this socket when
+ * they close a connection.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class UdpRosServer {
+
+  private static final boolean DEBUG = false;
+  private static final Log log = LogFactory.getLog(UdpRosServer.class);
+
+  private final BindAddress bindAddress;
+  private final AdvertiseAddress advertiseAddress;
+  private final Executor executor;
+  private final Map<Integer, UdpRosConnection> connections;
+
+  private ConnectionlessBootstrap bootstrap;
+  private Channel channel;
+  private int nextConnectionId;
+
+  private final class ErrorHandler extends SimpleChannelHandler {
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+      ChannelBuffer datagram = (ChannelBuffer) e.getMessage();
+      if (datagram.readableBytes() < UdpRosDatagrams.HEADER_SIZE) {
+        return;
+      }
+      int connectionId = datagram.readInt();
+      if (datagram.readByte() == UdpRosDatagrams.ERR) {
+        UdpRosConnection connection;
+        synchronized (connections) {
+          connection = connections.remove(connectionId);
+        }
+        if (connection != null) {
+          if (DEBUG) {
+            log.info("Subscriber closed connection: " + connection);
+          }
+          connection.close();
+        }
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+      // Sending to a subscriber that has gone away is expected and should not
+      // close the shared socket.
+      if (DEBUG) {
+        log.info("UDPROS socket error.", e.getCause());
+      }
+    }
+  }
+
+  /**
+   * @param bindAddress
+   *          the host to bind to, the port is ignored in favor of an ephemeral
+   *          port
+   * @param advertiseAddress
+   *          the host to advertise to subscribers
+   * @param executor
+   *          used by the underlying Netty channel factory
+   */
+  public UdpRosServer(BindAddress bindAddress, AdvertiseAddress advertiseAddress,
+      Executor executor) {
+    this.bindAddress = bindAddress;
+    this.advertiseAddress = new AdvertiseAddress(advertiseAddress.getHost());
+    this.executor = executor;
+    connections = Maps.newHashMap();
+  }
+
+  private void start() {
+    bootstrap = new ConnectionlessBootstrap(new NioDatagramChannelFactory(executor));
+    bootstrap.setOption("bufferFactory", new HeapChannelBufferFactory(ByteOrder.LITTLE_ENDIAN));
+    bootstrap.setOption("receiveBufferSizePredictorFactory",
+        new FixedReceiveBufferSizePredictorFactory(UdpRosDatagrams.DEFAULT_MAX_DATAGRAM_SIZE));
+    bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() throws Exception {
+        return Channels.pipeline(new ErrorHandler());
+      }
+    });
+    InetSocketAddress address = bindAddress.toInetSocketAddress();
+    channel = bootstrap.bind(new InetSocketAddress(address.getAddress(), 0));
+    advertiseAddress.setPortCallable(new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+      }
+    });
+    if (DEBUG) {
+      log.info("Bound to: " + channel.getLocalAddress());
+    }
+  }
+
+  /**
+   * Creates a new connection to a subscriber.
+   * 
+   * @param remoteAddress
+   *          the address that the subscriber is receiving datagrams on
+   * @param maxDatagramSize
+   *          the maximum datagram size requested by the subscriber
+   * @return a new {@link UdpRosConnection}
+   */
+  public synchronized UdpRosConnection newConnection(InetSocketAddress remoteAddress,
+      int maxDatagramSize) {
+    if (channel == null) {
+      start();
+    }
+    UdpRosConnection connection =
+        new UdpRosConnection(channel, remoteAddress, nextConnectionId++, maxDatagramSize);
+    synchronized (connections) {
+      connections.put(connection.getConnectionId(), connection);
+    }
+    return connection;
+  }
+
+  /**
+   * @return the {@link AdvertiseAddress} of this {@link UdpRosServer}, only
+   *         valid after the first call to
+   *         {@link #newConnection(InetSocketAddress, int)}
+   */
+  public AdvertiseAddress getAdvertiseAddress() {
+    return advertiseAddress;
+  }
+
+  /**
+   * Closes all connections and the socket.
+   * <p>
+   * Calling this method more than once has no effect.
+   */
+  public synchronized void shutdown() {
+    synchronized (connections) {
+      for (UdpRosConnection connection : connections.values()) {
+        connection.close();
+      }
+      connections.clear();
+    }
+    if (channel != null) {
+      channel.close().awaitUninterruptibly();
+      // NOTE(damonkohler): We are purposely not calling
+      // bootstrap.releaseExternalResources() since the only external resource
+      // is the Executor and control of that must remain with the overall
+      // application.
+      channel = null;
+    }
+  }
+}
@@ -25,6 +25,7 @@ import org.ros.node.service.ServiceClient;
 import org.ros.node.service.ServiceResponseBuilder;
 import org.ros.node.service.ServiceServer;
 import org.ros.node.topic.Publisher;
+import org.ros.node.topic.QueueOptions;
 import org.ros.node.topic.Subscriber;
 
 import java.net.URI;
@@ -71,6 +72,27 @@ public interface ConnectedNode extends Node {
    */
   <T> Publisher<T> newPublisher(String topicName, String messageType);
 
+  /**
+   * @param <T>
+   *          the message type to create the publisher for
+   * @param topicName
+   *          the topic name, will be pushed down under this namespace unless
+   *          '/' is prepended.
+   * @param messageType
+   *          the message data type (e.g. "std_msgs/String")
+   * @param queueOptions
+   *          the {@link QueueOptions} for published messages, ignored if a
+   *          {@link Publisher} for the topic already exists
+   * @return a {@link Publisher} for the specified topic
+   */
+  <T> Publisher<T> newPublisher(GraphName topicName, String messageType,
+      QueueOptions queueOptions);
+
+  /**
+   * @see #newPublisher(GraphName, String, QueueOptions)
+   */
+  <T> Publisher<T> newPublisher(String topicName, String messageType, QueueOptions queueOptions);
+
   /**
    * @param <T>
    *          the message type to create the {@link Subscriber} for
@@ -87,6 +109,28 @@ public interface ConnectedNode extends Node {
    */
   <T> Subscriber<T> newSubscriber(String topicName, String messageType);
 
+  /**
+   * @param <T>
+   *          the message type to create the {@link Subscriber} for
+   * @param topicName
+   *          the topic name to be subscribed to, this will be auto resolved
+   * @param messageType
+   *          the message data type (e.g. "std_msgs/String")
+   * @param queueOptions
+   *          the {@link QueueOptions} for incoming messages, ignored if a
+   *          {@link Subscriber} for the topic already exists; must not use
+   *          {@link org.ros.concurrent.OverflowPolicy#BLOCK}
+   * @return a {@link Subscriber} for the specified topic
+   */
+  <T> Subscriber<T> newSubscriber(GraphName topicName, String messageType,
+      QueueOptions queueOptions);
+
+  /**
+   * @see #newSubscriber(GraphName, String, QueueOptions)
+   */
+  <T> Subscriber<T> newSubscriber(String topicName, String messageType,
+      QueueOptions queueOptions);
+
   /**
    * Create a new {@link ServiceServer}.
    * 
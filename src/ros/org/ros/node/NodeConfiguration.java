@@ -16,16 +16,21 @@
 
 package org.ros.node;
 
+import com.google.common.base.Preconditions;
+
 import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.internal.message.definition.MessageRegistry;
 
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
 import org.ros.address.AdvertiseAddress;
 import org.ros.address.AdvertiseAddressFactory;
 import org.ros.address.BindAddress;
 import org.ros.address.PrivateAdvertiseAddressFactory;
 import org.ros.address.PublicAdvertiseAddressFactory;
 import org.ros.exception.RosRuntimeException;
+import org.ros.internal.message.CompiledMessageSerializationFactory;
 import org.ros.internal.message.DefaultMessageFactory;
-import org.ros.internal.message.DefaultMessageSerializationFactory;
 import org.ros.internal.message.service.ServiceDescriptionFactory;
 import org.ros.internal.message.service.ServiceRequestMessageFactory;
 import org.ros.internal.message.service.ServiceResponseMessageFactory;
@@ -41,6 +46,7 @@ import org.ros.time.WallTimeProvider;
 import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteOrder;
 import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -69,6 +75,28 @@ public class NodeConfiguration {
     }
   }
 
+  /**
+   * The default {@link MessageDefinitionProvider}, which is loaded on first use
+   * and shared by all {@link NodeConfiguration}s.
+   */
+  private static final class DefaultMessageDefinitionProvider {
+
+    static final MessageDefinitionProvider INSTANCE;
+
+    static {
+      MessageDefinitionReflectionProvider reflectionProvider =
+          new MessageDefinitionReflectionProvider();
+      MessageRegistry messageRegistry =
+          MessageRegistry.loadResource(NodeConfiguration.class.getClassLoader());
+      if (messageRegistry != null) {
+        messageRegistry.setFallbackProvider(reflectionProvider);
+        INSTANCE = messageRegistry;
+      } else {
+        INSTANCE = reflectionProvider;
+      }
+    }
+  }
+
   private NameResolver parentResolver;
   private URI masterUri;
   private File rosRoot;
@@ -80,12 +108,18 @@ public class NodeConfiguration {
   private MessageFactory serviceRequestMessageFactory;
   private MessageFactory serviceResponseMessageFactory;
   private MessageSerializationFactory messageSerializationFactory;
+  /**
+   * {@code true} unless the {@link MessageSerializationFactory} was set with
+   * {@link #setMessageSerializationFactory(MessageSerializationFactory)}.
+   */
+  private boolean defaultMessageSerializationFactory;
   private BindAddress tcpRosBindAddress;
   private AdvertiseAddressFactory tcpRosAdvertiseAddressFactory;
   private BindAddress xmlRpcBindAddress;
   private AdvertiseAddressFactory xmlRpcAdvertiseAddressFactory;
   private ScheduledExecutorService scheduledExecutorService;
   private TimeProvider timeProvider;
+  private ChannelBufferFactory channelBufferFactory;
 
   /**
    * @param nodeConfiguration
@@ -105,12 +139,15 @@ public class NodeConfiguration {
     copy.serviceRequestMessageFactory = nodeConfiguration.serviceRequestMessageFactory;
     copy.serviceResponseMessageFactory = nodeConfiguration.serviceResponseMessageFactory;
     copy.messageSerializationFactory = nodeConfiguration.messageSerializationFactory;
+    copy.defaultMessageSerializationFactory =
+        nodeConfiguration.defaultMessageSerializationFactory;
     copy.tcpRosBindAddress = nodeConfiguration.tcpRosBindAddress;
     copy.tcpRosAdvertiseAddressFactory = nodeConfiguration.tcpRosAdvertiseAddressFactory;
     copy.xmlRpcBindAddress = nodeConfiguration.xmlRpcBindAddress;
     copy.xmlRpcAdvertiseAddressFactory = nodeConfiguration.xmlRpcAdvertiseAddressFactory;
     copy.scheduledExecutorService = nodeConfiguration.scheduledExecutorService;
     copy.timeProvider = nodeConfiguration.timeProvider;
+    copy.channelBufferFactory = nodeConfiguration.channelBufferFactory;
     return copy;
   }
 
@@ -179,15 +216,42 @@ public class NodeConfiguration {
   }
 
   private NodeConfiguration() {
-    MessageDefinitionProvider messageDefinitionProvider = new MessageDefinitionReflectionProvider();
+    setMessageDefinitionProvider(DefaultMessageDefinitionProvider.INSTANCE);
+    setParentResolver(NameResolver.newRoot());
+    setTimeProvider(new WallTimeProvider());
+    setChannelBufferFactory(HeapChannelBufferFactory.getInstance(ByteOrder.LITTLE_ENDIAN));
+  }
+
+  /**
+   * Replaces the message and service factories with ones that use the
+   * supplied {@link MessageDefinitionProvider}. The
+   * {@link MessageSerializationFactory} is only replaced if it has not been
+   * set with {@link #setMessageSerializationFactory(MessageSerializationFactory)}.
+   * <p>
+   * By default, the {@link MessageRegistry} packaged with the generated
+   * message classes is used if it is on the class path, which avoids
+   * reflection, parsing and hashing of message definitions at startup. Types
+   * that are not in the registry, or all types if there is no registry, are
+   * looked up with a {@link MessageDefinitionReflectionProvider}.
+   * 
+   * @param messageDefinitionProvider
+   *          the {@link MessageDefinitionProvider} for all message and service
+   *          types used by the {@link Node}
+   * @return this {@link NodeConfiguration}
+   */
+  public NodeConfiguration setMessageDefinitionProvider(
+      MessageDefinitionProvider messageDefinitionProvider) {
     setTopicDescriptionFactory(new TopicDescriptionFactory(messageDefinitionProvider));
     setTopicMessageFactory(new DefaultMessageFactory(messageDefinitionProvider));
     setServiceDescriptionFactory(new ServiceDescriptionFactory(messageDefinitionProvider));
     setServiceRequestMessageFactory(new ServiceRequestMessageFactory(messageDefinitionProvider));
     setServiceResponseMessageFactory(new ServiceResponseMessageFactory(messageDefinitionProvider));
-    setMessageSerializationFactory(new DefaultMessageSerializationFactory(messageDefinitionProvider));
-    setParentResolver(NameResolver.newRoot());
-    setTimeProvider(new WallTimeProvider());
+    if (messageSerializationFactory == null || defaultMessageSerializationFactory) {
+      messageSerializationFactory =
+          new CompiledMessageSerializationFactory(messageDefinitionProvider);
+      defaultMessageSerializationFactory = true;
+    }
+    return this;
   }
 
   /**
@@ -354,6 +418,7 @@ public class NodeConfiguration {
   public NodeConfiguration setMessageSerializationFactory(
       MessageSerializationFactory messageSerializationFactory) {
     this.messageSerializationFactory = messageSerializationFactory;
+    defaultMessageSerializationFactory = false;
     return this;
   }
 
@@ -559,4 +624,39 @@ public class NodeConfiguration {
     this.timeProvider = timeProvider;
     return this;
   }
+
+  /**
+   * @return the {@link ChannelBufferFactory} used for TCPROS I/O and message
+   *         serialization
+   */
+  public ChannelBufferFactory getChannelBufferFactory() {
+    return channelBufferFactory;
+  }
+
+  /**
+   * Sets the {@link ChannelBufferFactory} that {@link Node}s will use to
+   * allocate buffers for TCPROS frame decoding, incoming messages and outgoing
+   * message serialization. By default, little endian heap buffers are used.
+   * <p>
+   * Passing {@code DirectChannelBufferFactory.getInstance(ByteOrder.LITTLE_ENDIAN)}
+   * keeps message data off the Java heap. That factory carves small buffers
+   * out of large preallocated direct chunks, so per-message allocation stays
+   * cheap. Note that {@code uint8[]} and other
+   * {@link org.jboss.netty.buffer.ChannelBuffer} message fields are slices of
+   * the receive buffer, so with direct buffers they are not backed by an array
+   * and {@code array()} throws. Code that needs a {@code byte[]} must check
+   * {@code hasArray()} and copy the data otherwise.
+   * <p>
+   * The factory must produce little endian buffers, the byte order of the ROS
+   * wire format.
+   * 
+   * @param channelBufferFactory
+   *          the {@link ChannelBufferFactory} that {@link Node}s will use
+   */
+  public NodeConfiguration setChannelBufferFactory(ChannelBufferFactory channelBufferFactory) {
+    Preconditions.checkArgument(channelBufferFactory.getDefaultOrder() == ByteOrder.LITTLE_ENDIAN,
+        "ROS buffers must be little endian.");
+    this.channelBufferFactory = channelBufferFactory;
+    return this;
+  }
 }
@@ -16,6 +16,7 @@
 
 package org.ros.node.topic;
 
+import org.ros.concurrent.QueueStatistics;
 import org.ros.internal.node.topic.TopicParticipant;
 
 import java.util.concurrent.TimeUnit;
@@ -50,6 +51,45 @@ public interface Publisher<T> extends TopicParticipant {
    */
   boolean getLatchMode();
 
+  /**
+   * Configures how messages that are published in quick succession are
+   * combined into a single write to each TCPROS {@link Subscriber}. By
+   * default, messages that are already queued are combined into writes of up
+   * to 64 KiB without waiting for further messages.
+   * 
+   * @param maxBytes
+   *          no further messages are added to a write once it holds at least
+   *          this many bytes, {@code 0} writes each message separately
+   * @param maxDelay
+   *          how long to wait for further messages after the first one before
+   *          writing, {@code 0} adds no latency
+   * @param unit
+   *          the {@link TimeUnit} of {@code maxDelay}
+   */
+  void setWriteCoalescing(int maxBytes, long maxDelay, TimeUnit unit);
+
+  /**
+   * Configures how messages are handled for a TCPROS {@link Subscriber} whose
+   * connection cannot keep up. Messages for such a {@link Subscriber} are held
+   * back without delaying other {@link Subscriber}s. By default, at most 16
+   * messages are held back and the oldest are dropped first.
+   * 
+   * @param policy
+   *          the {@link SlowSubscriberPolicy} to apply once more than
+   *          {@code limit} messages are held back for a {@link Subscriber}
+   * @param limit
+   *          the maximum number of messages held back for each
+   *          {@link Subscriber}
+   */
+  void setSlowSubscriberPolicy(SlowSubscriberPolicy policy, int limit);
+
+  /**
+   * @return a snapshot of the counters of the queue of published messages
+   *         waiting to be written to remote {@link Subscriber}s
+   * @see QueueOptions
+   */
+  QueueStatistics getQueueStatistics();
+
   /**
    * Create a new message.
    * 
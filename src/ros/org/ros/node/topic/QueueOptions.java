@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.node.topic;
+
+import com.google.common.base.Preconditions;
+
+import org.ros.concurrent.OverflowPolicy;
+import org.ros.concurrent.WaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures the message queue of a {@link Publisher} or {@link Subscriber}.
+ * <p>
+ * For a {@link Publisher}, the queue holds published messages until they are
+ * serialized and written to remote {@link Subscriber}s. For a
+ * {@link Subscriber}, it holds incoming messages until they are dispatched to
+ * {@link org.ros.message.MessageListener}s.
+ * <p>
+ * With {@link OverflowPolicy#BLOCK}, a full {@link Publisher} queue blocks
+ * {@link Publisher#publish(Object)} for up to the block timeout, which must be
+ * set to a positive value. {@link Subscriber} queues are filled by the node's
+ * shared network threads, which must never block, so they do not support
+ * {@link OverflowPolicy#BLOCK}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class QueueOptions {
+
+  public static final int DEFAULT_CAPACITY = 16;
+
+  private int capacity;
+  private OverflowPolicy overflowPolicy;
+  private long blockTimeoutNanos;
+  private WaitStrategy waitStrategy;
+
+  /**
+   * @return new {@link QueueOptions} for a queue of
+   *         {@link #DEFAULT_CAPACITY} entries that overwrites its oldest entry
+   *         when full
+   */
+  public static QueueOptions newDefault() {
+    return new QueueOptions();
+  }
+
+  private QueueOptions() {
+    capacity = DEFAULT_CAPACITY;
+    overflowPolicy = OverflowPolicy.OVERWRITE;
+    blockTimeoutNanos = 0;
+    waitStrategy = WaitStrategy.BLOCKING;
+  }
+
+  /**
+   * @return the maximum number of messages in the queue
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @param capacity
+   *          the maximum number of messages in the queue
+   * @return this {@link QueueOptions}
+   */
+  public QueueOptions setCapacity(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "Queue capacity must be positive.");
+    this.capacity = capacity;
+    return this;
+  }
+
+  /**
+   * @return the {@link OverflowPolicy} for messages added while the queue is
+   *         full
+   */
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  /**
+   * @param overflowPolicy
+   *          the {@link OverflowPolicy} for messages added while the queue is
+   *          full
+   * @return this {@link QueueOptions}
+   */
+  public QueueOptions setOverflowPolicy(OverflowPolicy overflowPolicy) {
+    this.overflowPolicy = overflowPolicy;
+    return this;
+  }
+
+  /**
+   * @param unit
+   *          the {@link TimeUnit} of the returned timeout
+   * @return how long {@link OverflowPolicy#BLOCK} waits for room in the queue
+   *         before the message is dropped, {@code 0} if not set
+   */
+  public long getBlockTimeout(TimeUnit unit) {
+    return unit.convert(blockTimeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param timeout
+   *          how long {@link OverflowPolicy#BLOCK} waits for room in the queue
+   *          before the message is dropped, required to be positive when using
+   *          {@link OverflowPolicy#BLOCK}
+   * @param unit
+   *          the {@link TimeUnit} of {@code timeout}
+   * @return this {@link QueueOptions}
+   */
+  public QueueOptions setBlockTimeout(long timeout, TimeUnit unit) {
+    Preconditions.checkArgument(timeout >= 0, "Timeout must not be negative.");
+    blockTimeoutNanos = unit.toNanos(timeout);
+    return this;
+  }
+
+  /**
+   * @return the {@link WaitStrategy} of the thread that takes messages from
+   *         the queue
+   */
+  public WaitStrategy getWaitStrategy() {
+    return waitStrategy;
+  }
+
+  /**
+   * Sets how the thread that takes messages from the queue waits for new ones.
+   * Only applies to {@link OverflowPolicy#OVERWRITE} queues, which are
+   * lock-free {@link org.ros.concurrent.RingBuffer}s.
+   * 
+   * @param waitStrategy
+   *          the {@link WaitStrategy} of the thread that takes messages from
+   *          the queue
+   * @return this {@link QueueOptions}
+   */
+  public QueueOptions setWaitStrategy(WaitStrategy waitStrategy) {
+    this.waitStrategy = waitStrategy;
+    return this;
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.node.topic;
+
+/**
+ * Determines what a {@link Publisher} does when a TCPROS {@link Subscriber}
+ * cannot keep up with the rate of published messages.
+ * <p>
+ * Messages for a slow {@link Subscriber} are held back in a bounded backlog
+ * while its connection is congested. Other {@link Subscriber}s are unaffected.
+ * The policy applies once that backlog is full.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public enum SlowSubscriberPolicy {
+
+  /**
+   * Discard the oldest messages in the backlog to make room for new ones.
+   */
+  DROP_OLDEST,
+
+  /**
+   * Discard new messages until the backlog has room again.
+   */
+  DROP_NEWEST,
+
+  /**
+   * Close the connection to the {@link Subscriber}.
+   */
+  DISCONNECT
+}
@@ -16,6 +16,7 @@
 
 package org.ros.node.topic;
 
+import org.ros.concurrent.QueueStatistics;
 import org.ros.internal.node.topic.TopicParticipant;
 import org.ros.message.MessageListener;
 
@@ -54,6 +55,34 @@ public interface Subscriber<T> extends TopicParticipant {
    */
   void addMessageListener(MessageListener<T> messageListener, int limit);
 
+  /**
+   * Adds a {@link MessageListener} as described in
+   * {@link #addMessageListener(MessageListener, int)} that optionally permits
+   * received messages to be recycled.
+   * <p>
+   * If {@code recycleMessages} is {@code true}, the message passed to
+   * {@link MessageListener#onNewMessage(Object)} and all messages reachable
+   * from it are only valid until the callback returns. Afterwards, they may be
+   * reused to deserialize later messages, which avoids allocating a new message
+   * graph for every received message. A listener that needs to keep a message
+   * beyond the callback must call
+   * {@link org.ros.internal.message.RawMessage#retain()} on it before
+   * returning.
+   * <p>
+   * Messages are only recycled if every {@link MessageListener} of this
+   * {@link Subscriber} permits it, and never while the message is latched.
+   * 
+   * @param messageListener
+   *          this {@link MessageListener} will be called when new messages are
+   *          received
+   * @param limit
+   *          the maximum number of messages to buffer
+   * @param recycleMessages
+   *          {@code true} if messages may be recycled after the
+   *          {@link MessageListener} returns
+   */
+  void addMessageListener(MessageListener<T> messageListener, int limit, boolean recycleMessages);
+
   /**
    * Adds a {@link MessageListener} with a limit of 1.
    * 
@@ -97,4 +126,27 @@ public interface Subscriber<T> extends TopicParticipant {
    *         topic is latched, {@code false} otherwise
    */
   boolean getLatchMode();
+
+  /**
+   * Sets the transport protocols, {@code "TCPROS"} or {@code "UDPROS"}, to
+   * request from {@link Publisher}s in order of preference. The default is
+   * {@code "TCPROS"} only.
+   * <p>
+   * UDPROS drops messages rather than delaying them when datagrams are lost,
+   * which suits high rate data where only the latest message matters.
+   * <p>
+   * The preference only applies to {@link Publisher}s that are connected
+   * afterwards.
+   * 
+   * @param protocols
+   *          the protocol names in order of preference
+   */
+  void setPreferredProtocols(String... protocols);
+
+  /**
+   * @return a snapshot of the counters of the queue of incoming messages
+   *         waiting to be dispatched to {@link MessageListener}s
+   * @see QueueOptions
+   */
+  QueueStatistics getQueueStatistics();
 }
@@ -29,7 +29,14 @@ public class BitmapFromCompressedImage implements
   @Override
   public Bitmap call(sensor_msgs.CompressedImage message) {
     ChannelBuffer buffer = message.getData();
-    byte[] data = buffer.array();
-    return BitmapFactory.decodeByteArray(data, buffer.arrayOffset(), buffer.readableBytes());
+    if (buffer.hasArray()) {
+      return BitmapFactory.decodeByteArray(buffer.array(),
+          buffer.arrayOffset() + buffer.readerIndex(), buffer.readableBytes());
+    }
+    // Direct buffers (see NodeConfiguration#setChannelBufferFactory) are not
+    // backed by an array.
+    byte[] data = new byte[buffer.readableBytes()];
+    buffer.getBytes(buffer.readerIndex(), data);
+    return BitmapFactory.decodeByteArray(data, 0, data.length);
   }
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.ros.internal.message;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.message.MessageSerializer;
+
+/**
+ * Serializes messages using the specialized code generated for their type by
+ * the {@link MessageClassBuilder}. Messages without generated code are
+ * serialized field by field.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class CompiledMessageSerializer implements MessageSerializer<Message> {
+
+  @Override
+  public void serialize(Message message, ChannelBuffer buffer) {
+    ((MessageImpl) message.toRawMessage()).serialize(buffer);
+  }
+}
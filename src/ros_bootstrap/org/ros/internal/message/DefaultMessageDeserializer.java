@@ -16,13 +16,22 @@
 
 package org.ros.internal.message;
 
+import com.google.common.collect.Lists;
+
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.ros.internal.message.field.Field;
+import org.ros.internal.message.field.MessageFieldType;
 import org.ros.message.MessageDeserializer;
 import org.ros.message.MessageFactory;
 import org.ros.message.MessageIdentifier;
 
+import java.util.List;
+
 /**
+ * Deserializes messages field by field without the code generated for their
+ * type. Nested messages, including the elements of message lists, are
+ * deserialized field by field as well.
+ * 
  * @author damonkohler@google.com (Damon Kohler)
  */
 public class DefaultMessageDeserializer<T> implements MessageDeserializer<T> {
@@ -40,11 +49,38 @@ public class DefaultMessageDeserializer<T> implements MessageDeserializer<T> {
   @Override
   public T deserialize(ChannelBuffer buffer) {
     Message message = messageFactory.newFromType(messageIdentifier.getType());
+    deserializeFields(message, buffer);
+    return (T) message;
+  }
+
+  private static void deserializeFields(Message message, ChannelBuffer buffer) {
     for (Field field : message.toRawMessage().getFields()) {
-      if (!field.isConstant()) {
+      if (field.isConstant()) {
+        continue;
+      }
+      if (field.getType() instanceof MessageFieldType) {
+        deserializeMessageField(field, buffer);
+      } else {
         field.deserialize(buffer);
       }
     }
-    return (T) message;
+  }
+
+  private static void deserializeMessageField(Field field, ChannelBuffer buffer) {
+    Object value = field.getValue();
+    if (value instanceof List) {
+      MessageFieldType type = (MessageFieldType) field.getType();
+      int size = buffer.readInt();
+      List<Message> messages = Lists.newArrayListWithCapacity(size);
+      for (int i = 0; i < size; i++) {
+        Message message = type.getDefaultValue();
+        deserializeFields(message, buffer);
+        messages.add(message);
+      }
+      field.setValue(messages);
+    } else {
+      // Nested messages are created with their parent and are filled in place.
+      deserializeFields((Message) value, buffer);
+    }
   }
 }
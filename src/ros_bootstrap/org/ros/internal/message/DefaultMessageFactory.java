@@ -18,6 +18,7 @@ package org.ros.internal.message;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import org.ros.internal.message.definition.MessageRegistry;
 import org.ros.message.MessageDeclaration;
 import org.ros.message.MessageDefinitionProvider;
 import org.ros.message.MessageFactory;
@@ -34,7 +35,14 @@ public class DefaultMessageFactory implements MessageFactory {
   public DefaultMessageFactory(MessageDefinitionProvider messageDefinitionProvider) {
     this.messageDefinitionProvider = messageDefinitionProvider;
     messageInterfaceClassProvider = new DefaultMessageInterfaceClassProvider();
-    messageProxyFactory = new MessageProxyFactory(getMessageInterfaceClassProvider(), this);
+    // Field layouts are read from a precompiled registry instead of parsed
+    // from definitions when one is available.
+    MessageRegistry messageRegistry = null;
+    if (messageDefinitionProvider instanceof MessageRegistry) {
+      messageRegistry = (MessageRegistry) messageDefinitionProvider;
+    }
+    messageProxyFactory =
+        new MessageProxyFactory(getMessageInterfaceClassProvider(), this, messageRegistry);
   }
 
   @Override
@@ -18,9 +18,16 @@ package org.ros.internal.message;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.ros.internal.message.field.Field;
+import org.ros.internal.message.field.MessageFieldType;
 import org.ros.message.MessageSerializer;
 
+import java.util.List;
+
 /**
+ * Serializes messages field by field without the code generated for their
+ * type. Nested messages, including the elements of message lists, are
+ * serialized field by field as well.
+ * 
  * @author damonkohler@google.com (Damon Kohler)
  */
 public class DefaultMessageSerializer implements MessageSerializer<Message> {
@@ -28,9 +35,28 @@ public class DefaultMessageSerializer implements MessageSerializer<Message> {
   @Override
   public void serialize(Message message, ChannelBuffer buffer) {
     for (Field field : message.toRawMessage().getFields()) {
-      if (!field.isConstant()) {
+      if (field.isConstant()) {
+        continue;
+      }
+      if (field.getType() instanceof MessageFieldType) {
+        serializeMessageField(field, buffer);
+      } else {
         field.serialize(buffer);
       }
     }
   }
+
+  private void serializeMessageField(Field field, ChannelBuffer buffer) {
+    Object value = field.getValue();
+    if (value instanceof List) {
+      @SuppressWarnings("unchecked")
+      List<Message> messages = (List<Message>) value;
+      buffer.writeInt(messages.size());
+      for (Message message : messages) {
+        serialize(message, buffer);
+      }
+    } else {
+      serialize((Message) value, buffer);
+    }
+  }
 }
@@ -19,11 +19,13 @@ package org.ros.internal.message;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.ros.EnvironmentVariables;
 import org.ros.exception.RosRuntimeException;
 import org.ros.internal.message.definition.MessageDefinitionProviderChain;
 import org.ros.internal.message.definition.MessageDefinitionTupleParser;
+import org.ros.internal.message.definition.MessageRegistry;
 import org.ros.internal.message.service.ServiceDefinitionFileProvider;
 import org.ros.internal.message.topic.TopicDefinitionFileProvider;
 import org.ros.message.MessageDeclaration;
@@ -31,19 +33,62 @@ import org.ros.message.MessageFactory;
 import org.ros.message.MessageIdentifier;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
+ * Generates the message and service interfaces.
+ * <p>
+ * In addition to the interfaces, a {@link MessageRegistry} of all generated
+ * types is written to {@link MessageRegistry#FILE_NAME} in the output
+ * directory. Interfaces are generated in parallel and only rewritten if they
+ * changed since the previous run (see {@link #generate}).
+ * 
  * @author damonkohler@google.com (Damon Kohler)
  */
 public class GenerateInterfaces {
 
+  /**
+   * The name of the file in the output directory that records what each
+   * interface was generated from.
+   */
+  private static final String MANIFEST_FILE_NAME = "messages.manifest";
+
+  /**
+   * Part of the manifest entries, increment when the generated source changes
+   * so that incremental builds regenerate all interfaces.
+   */
+  private static final String GENERATOR_VERSION = "1";
+
+  /**
+   * The manifest entry of interfaces that must be regenerated on the next run,
+   * e.g. because their checksum could not be generated. Such interfaces are
+   * still recorded so that they are deleted once their type disappears.
+   */
+  private static final String NOT_CACHED = "";
+
   private final TopicDefinitionFileProvider topicDefinitionFileProvider;
   private final ServiceDefinitionFileProvider serviceDefinitionFileProvider;
   private final MessageDefinitionProviderChain messageDefinitionProviderChain;
   private final MessageFactory messageFactory;
+  private final Md5Generator md5Generator;
+  private final MessageRegistry messageRegistry;
+  private final Collection<String> generatedPackages;
+
+  // Updated by concurrent generation tasks. Properties is synchronized.
+  private Properties previousManifest;
+  private Properties manifest;
 
   public GenerateInterfaces() {
     messageDefinitionProviderChain = new MessageDefinitionProviderChain();
@@ -52,6 +97,9 @@ public class GenerateInterfaces {
     serviceDefinitionFileProvider = new ServiceDefinitionFileProvider();
     messageDefinitionProviderChain.addMessageDefinitionProvider(serviceDefinitionFileProvider);
     messageFactory = new DefaultMessageFactory(messageDefinitionProviderChain);
+    md5Generator = new Md5Generator(messageDefinitionProviderChain);
+    messageRegistry = new MessageRegistry();
+    generatedPackages = Sets.newHashSet();
   }
 
   /**
@@ -60,14 +108,16 @@ public class GenerateInterfaces {
    *          interfaces for
    * @param outputDirectory
    *          the directory to write the generated interfaces to
-   * @throws IOException
+   * @param tasks
+   *          the list to add a generation task for each topic type to
    */
-  private void writeTopicInterfaces(File outputDirectory, Collection<String> packages)
-      throws IOException {
+  private void addTopicTasks(final File outputDirectory, Collection<String> packages,
+      List<Callable<Void>> tasks) {
     Collection<MessageIdentifier> topicTypes = Sets.newHashSet();
     if (packages.size() == 0) {
       packages = topicDefinitionFileProvider.getPackages();
     }
+    generatedPackages.addAll(packages);
     for (String pkg : packages) {
       Collection<MessageIdentifier> messageIdentifiers =
           topicDefinitionFileProvider.getMessageIdentifiersByPackage(pkg);
@@ -77,8 +127,17 @@ public class GenerateInterfaces {
     }
     for (MessageIdentifier topicType : topicTypes) {
       String definition = messageDefinitionProviderChain.get(topicType.getType());
-      MessageDeclaration messageDeclaration = new MessageDeclaration(topicType, definition);
-      writeInterface(messageDeclaration, outputDirectory, true);
+      final MessageDeclaration messageDeclaration = new MessageDeclaration(topicType, definition);
+      createPackageDirectory(messageDeclaration, outputDirectory);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          String md5Checksum = generateMd5Checksum(messageDeclaration);
+          register(messageDeclaration, md5Checksum, true);
+          writeInterfaceIfChanged(messageDeclaration, md5Checksum, outputDirectory, true);
+          return null;
+        }
+      });
     }
   }
 
@@ -88,14 +147,16 @@ public class GenerateInterfaces {
    *          interfaces for
    * @param outputDirectory
    *          the directory to write the generated interfaces to
-   * @throws IOException
+   * @param tasks
+   *          the list to add a generation task for each service type to
    */
-  private void writeServiceInterfaces(File outputDirectory, Collection<String> packages)
-      throws IOException {
+  private void addServiceTasks(final File outputDirectory, Collection<String> packages,
+      List<Callable<Void>> tasks) {
     Collection<MessageIdentifier> serviceTypes = Sets.newHashSet();
     if (packages.size() == 0) {
       packages = serviceDefinitionFileProvider.getPackages();
     }
+    generatedPackages.addAll(packages);
     for (String pkg : packages) {
       Collection<MessageIdentifier> messageIdentifiers =
           serviceDefinitionFileProvider.getMessageIdentifiersByPackage(pkg);
@@ -105,20 +166,82 @@ public class GenerateInterfaces {
     }
     for (MessageIdentifier serviceType : serviceTypes) {
       String definition = messageDefinitionProviderChain.get(serviceType.getType());
-      MessageDeclaration serviceDeclaration =
+      final MessageDeclaration serviceDeclaration =
           MessageDeclaration.of(serviceType.getType(), definition);
-      writeInterface(serviceDeclaration, outputDirectory, false);
-      List<String> requestAndResponse = MessageDefinitionTupleParser.parse(definition, 2);
-      MessageDeclaration requestDeclaration =
-          MessageDeclaration.of(serviceType.getType() + "Request", requestAndResponse.get(0));
-      MessageDeclaration responseDeclaration =
-          MessageDeclaration.of(serviceType.getType() + "Response", requestAndResponse.get(1));
-      writeInterface(requestDeclaration, outputDirectory, true);
-      writeInterface(responseDeclaration, outputDirectory, true);
+      createPackageDirectory(serviceDeclaration, outputDirectory);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          writeServiceInterfaces(serviceDeclaration, outputDirectory);
+          return null;
+        }
+      });
     }
   }
 
-  private void writeInterface(MessageDeclaration messageDeclaration, File outputDirectory,
+  private void writeServiceInterfaces(MessageDeclaration serviceDeclaration, File outputDirectory) {
+    String serviceType = serviceDeclaration.getType();
+    String definition = serviceDeclaration.getDefinition();
+    // The request and response have no checksum of their own, so they are
+    // regenerated whenever the checksum of the service changes.
+    String md5Checksum = generateMd5Checksum(serviceDeclaration);
+    register(serviceDeclaration, md5Checksum, false);
+    writeInterfaceIfChanged(serviceDeclaration, md5Checksum, outputDirectory, false);
+    List<String> requestAndResponse = MessageDefinitionTupleParser.parse(definition, 2);
+    MessageDeclaration requestDeclaration =
+        MessageDeclaration.of(serviceType + "Request", requestAndResponse.get(0));
+    MessageDeclaration responseDeclaration =
+        MessageDeclaration.of(serviceType + "Response", requestAndResponse.get(1));
+    register(requestDeclaration, null, true);
+    writeInterfaceIfChanged(requestDeclaration, md5Checksum, outputDirectory, true);
+    register(responseDeclaration, null, true);
+    writeInterfaceIfChanged(responseDeclaration, md5Checksum, outputDirectory, true);
+  }
+
+  /**
+   * Creates the package directory up front since concurrent tasks that create
+   * the same directory may fail.
+   */
+  private void createPackageDirectory(MessageDeclaration messageDeclaration,
+      File outputDirectory) {
+    new File(outputDirectory, messageDeclaration.getPackage()).mkdirs();
+  }
+
+  /**
+   * Writes the interface unless the manifest of the previous run shows that it
+   * was generated from the same definition and checksum. Since the checksum
+   * covers all nested types, an interface is also regenerated if any of its
+   * transitive dependencies changed.
+   * <p>
+   * Without a checksum the dependencies are unknown, so the interface is always
+   * written and its manifest entry never matches on the next run. The same
+   * applies if the interface could not be written.
+   */
+  private void writeInterfaceIfChanged(MessageDeclaration messageDeclaration,
+      String md5Checksum, File outputDirectory, boolean addConstantsAndMethods) {
+    String messageType = messageDeclaration.getType();
+    if (md5Checksum == null) {
+      writeInterface(messageDeclaration, outputDirectory, addConstantsAndMethods);
+      manifest.setProperty(messageType, NOT_CACHED);
+      return;
+    }
+    String contentHash =
+        DigestUtils.md5Hex(String.format("%s\n%s\n%s\n%s", GENERATOR_VERSION, md5Checksum,
+            addConstantsAndMethods, messageDeclaration.getDefinition()));
+    File file = new File(outputDirectory, messageType + ".java");
+    if (!file.exists() || !contentHash.equals(previousManifest.getProperty(messageType))) {
+      if (!writeInterface(messageDeclaration, outputDirectory, addConstantsAndMethods)) {
+        manifest.setProperty(messageType, NOT_CACHED);
+        return;
+      }
+    }
+    manifest.setProperty(messageType, contentHash);
+  }
+
+  /**
+   * @return {@code true} if the interface was written successfully
+   */
+  private boolean writeInterface(MessageDeclaration messageDeclaration, File outputDirectory,
       boolean addConstantsAndMethods) {
     MessageInterfaceBuilder builder = new MessageInterfaceBuilder();
     builder.setPackageName(messageDeclaration.getPackage());
@@ -130,12 +253,106 @@ public class GenerateInterfaces {
       content = builder.build(messageFactory);
       File file = new File(outputDirectory, messageDeclaration.getType() + ".java");
       FileUtils.writeStringToFile(file, content);
+      return true;
     } catch (Exception e) {
       System.out.printf("Failed to generate interface for %s.\n", messageDeclaration.getType());
       e.printStackTrace();
+      return false;
     }
   }
 
+  /**
+   * @return the MD5 checksum of the type or {@code null} if it could not be
+   *         generated
+   */
+  private String generateMd5Checksum(MessageDeclaration messageDeclaration) {
+    try {
+      return md5Generator.generate(messageDeclaration.getType());
+    } catch (Exception e) {
+      System.out.printf("Failed to generate MD5 checksum for %s.\n",
+          messageDeclaration.getType());
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Adds a generated type to the {@link MessageRegistry}.
+   * 
+   * @param md5Checksum
+   *          the checksum to store or {@code null} for types that have no
+   *          checksum of their own (e.g. service requests)
+   * @param parseLayout
+   *          {@code true} if the field layout should be stored, {@code false}
+   *          for service definitions
+   */
+  private void register(MessageDeclaration messageDeclaration, String md5Checksum,
+      boolean parseLayout) {
+    try {
+      messageRegistry.add(messageDeclaration.getType(), messageDeclaration.getDefinition(),
+          md5Checksum, parseLayout);
+    } catch (Exception e) {
+      System.out.printf("Failed to register %s.\n", messageDeclaration.getType());
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Deletes the interfaces of the previous run whose types no longer exist in
+   * the generated packages. Entries of packages that were not generated in
+   * this run are kept.
+   */
+  private void removeStaleInterfaces(File outputDirectory) {
+    for (String messageType : previousManifest.stringPropertyNames()) {
+      if (manifest.containsKey(messageType)) {
+        continue;
+      }
+      int separator = messageType.lastIndexOf('/');
+      String pkg = separator < 0 ? "" : messageType.substring(0, separator);
+      if (generatedPackages.contains(pkg)) {
+        new File(outputDirectory, messageType + ".java").delete();
+      } else {
+        manifest.setProperty(messageType, previousManifest.getProperty(messageType));
+      }
+    }
+  }
+
+  private static Properties loadManifest(File file) {
+    Properties properties = new Properties();
+    if (file.exists()) {
+      try {
+        InputStream input = new FileInputStream(file);
+        try {
+          properties.load(input);
+        } finally {
+          input.close();
+        }
+      } catch (IOException e) {
+        // A corrupt manifest only causes all interfaces to be regenerated.
+        properties.clear();
+      }
+    }
+    return properties;
+  }
+
+  private static void storeManifest(Properties properties, File file) throws IOException {
+    OutputStream output = new FileOutputStream(file);
+    try {
+      properties.store(output, "Generated message interfaces");
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * Generates the interfaces of all message and service types in parallel.
+   * <p>
+   * Generation is incremental: a manifest in the output directory records
+   * what each interface was generated from, and interfaces whose definition,
+   * checksum and generator version are unchanged are not rewritten. Delete
+   * the output directory to force a full rebuild. Interfaces of types that
+   * were removed from a generated package are deleted.
+   */
   public void generate(File outputDirectory, Collection<String> packages,
       Collection<File> packagePath) {
     for (File directory : packagePath) {
@@ -144,11 +361,30 @@ public class GenerateInterfaces {
     }
     topicDefinitionFileProvider.update();
     serviceDefinitionFileProvider.update();
+    File manifestFile = new File(outputDirectory, MANIFEST_FILE_NAME);
+    previousManifest = loadManifest(manifestFile);
+    manifest = new Properties();
+    ExecutorService executorService =
+        Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
     try {
-      writeTopicInterfaces(outputDirectory, packages);
-      writeServiceInterfaces(outputDirectory, packages);
+      List<Callable<Void>> tasks = Lists.newArrayList();
+      addTopicTasks(outputDirectory, packages, tasks);
+      addServiceTasks(outputDirectory, packages, tasks);
+      for (Future<Void> future : executorService.invokeAll(tasks)) {
+        future.get();
+      }
+      outputDirectory.mkdirs();
+      removeStaleInterfaces(outputDirectory);
+      messageRegistry.write(new File(outputDirectory, MessageRegistry.FILE_NAME));
+      storeManifest(manifest, manifestFile);
     } catch (IOException e) {
       throw new RosRuntimeException(e);
+    } catch (InterruptedException e) {
+      throw new RosRuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RosRuntimeException(e.getCause());
+    } finally {
+      executorService.shutdown();
     }
   }
 
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.message.MessageDeserializer;
+
+/**
+ * A {@link MessageDeserializer} that can also deserialize into an existing
+ * message. This allows messages to be recycled.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ * 
+ * @param <T>
+ *          the message type
+ */
+public interface InPlaceMessageDeserializer<T> extends MessageDeserializer<T> {
+
+  /**
+   * Deserializes {@code buffer} into {@code message}. All fields of
+   * {@code message} are overwritten and the messages reachable from it are
+   * reused where possible.
+   * 
+   * @param buffer
+   *          the {@link ChannelBuffer} to deserialize
+   * @param message
+   *          a message of the type this deserializer produces
+   * @return {@code message}
+   */
+  T deserialize(ChannelBuffer buffer, T message);
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageIdentifier;
+
+/**
+ * Deserializes messages lazily. Each field is only decoded from the serialized
+ * message when it is first accessed. Fields that are never accessed are never
+ * decoded.
+ * <p>
+ * The deserialized message retains the buffer passed to
+ * {@link #deserialize(ChannelBuffer)} until all of its fields have been
+ * decoded. The buffer must therefore not be reused.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class LazyMessageDeserializer<T> implements InPlaceMessageDeserializer<T> {
+
+  private final MessageIdentifier messageIdentifier;
+  private final MessageFactory messageFactory;
+
+  public LazyMessageDeserializer(MessageIdentifier messageIdentifier,
+      MessageFactory messageFactory) {
+    this.messageIdentifier = messageIdentifier;
+    this.messageFactory = messageFactory;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T deserialize(ChannelBuffer buffer) {
+    Message message = messageFactory.newFromType(messageIdentifier.getType());
+    ((MessageImpl) message.toRawMessage()).getMessageFields().deserializeLazily(buffer);
+    return (T) message;
+  }
+
+  @Override
+  public T deserialize(ChannelBuffer buffer, T message) {
+    ((MessageImpl) ((Message) message).toRawMessage()).getMessageFields().deserializeLazily(buffer);
+    return message;
+  }
+}
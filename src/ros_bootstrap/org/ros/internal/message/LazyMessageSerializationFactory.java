@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import org.ros.message.MessageDefinitionProvider;
+import org.ros.message.MessageDeserializer;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageIdentifier;
+import org.ros.message.MessageSerializationFactory;
+
+/**
+ * A {@link MessageSerializationFactory} that deserializes topic messages
+ * lazily using the {@link LazyMessageDeserializer}. Subscribers that only read
+ * a few fields of large messages (e.g. the header of a point cloud) avoid
+ * decoding the rest of the message.
+ * <p>
+ * Service messages are deserialized eagerly as in the
+ * {@link CompiledMessageSerializationFactory}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class LazyMessageSerializationFactory extends CompiledMessageSerializationFactory {
+
+  private final MessageFactory topicMessageFactory;
+
+  public LazyMessageSerializationFactory(MessageDefinitionProvider messageDefinitionProvider) {
+    super(messageDefinitionProvider);
+    topicMessageFactory = new DefaultMessageFactory(messageDefinitionProvider);
+  }
+
+  @Override
+  public <T> MessageDeserializer<T> newMessageDeserializer(String messageType) {
+    return new LazyMessageDeserializer<T>(MessageIdentifier.of(messageType), topicMessageFactory);
+  }
+}
@@ -17,9 +17,12 @@
 package org.ros.internal.message;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import org.ros.internal.message.definition.MessageDefinitionParser;
+import org.ros.internal.message.definition.MessageRegistry;
 import org.ros.internal.message.definition.MessageDefinitionTupleParser;
 import org.ros.internal.message.definition.MessageDefinitionParser.MessageDefinitionVisitor;
 
@@ -28,12 +31,48 @@ import org.ros.internal.message.field.PrimitiveFieldType;
 import org.ros.message.MessageDefinitionProvider;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * Generates the MD5 checksums of message and service types.
+ * <p>
+ * Checksums are cached by type and shared by all generators, so the checksums
+ * of common nested types (e.g. std_msgs/Header) are computed only once. A
+ * checksum depends on the definitions of the type and of all types nested in
+ * it, so a cached checksum is only used if this generator's
+ * {@link MessageDefinitionProvider} returns the same definition for each of
+ * them.
+ * 
  * @author damonkohler@google.com (Damon Kohler)
  */
 public class Md5Generator {
 
+  private static final ConcurrentMap<String, CachedMd5> CACHE = Maps.newConcurrentMap();
+
+  private static final class CachedMd5 {
+
+    /**
+     * The definitions of the type and of all types nested in it, by type.
+     */
+    private final Map<String, String> messageDefinitions;
+    private final String md5Checksum;
+
+    CachedMd5(Map<String, String> messageDefinitions, String md5Checksum) {
+      this.messageDefinitions = messageDefinitions;
+      this.md5Checksum = md5Checksum;
+    }
+
+    boolean isValidFor(MessageDefinitionProvider messageDefinitionProvider) {
+      for (Map.Entry<String, String> entry : messageDefinitions.entrySet()) {
+        if (!entry.getValue().equals(messageDefinitionProvider.get(entry.getKey()))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   private final MessageDefinitionProvider messageDefinitionProvider;
 
   public Md5Generator(MessageDefinitionProvider messageDefinitionProvider) {
@@ -41,24 +80,52 @@ public class Md5Generator {
   }
 
   public String generate(String messageType) {
+    if (messageDefinitionProvider instanceof MessageRegistry) {
+      // Precompiled registries already contain the checksums.
+      String md5Checksum =
+          ((MessageRegistry) messageDefinitionProvider).getMd5Checksum(messageType);
+      if (md5Checksum != null) {
+        return md5Checksum;
+      }
+    }
+    return getCachedMd5(messageType).md5Checksum;
+  }
+
+  private CachedMd5 getCachedMd5(String messageType) {
     String messageDefinition = messageDefinitionProvider.get(messageType);
     Preconditions.checkNotNull(messageDefinition, "No definition for message type: " + messageType);
+    CachedMd5 cachedMd5 = CACHE.get(messageType);
+    if (cachedMd5 != null && cachedMd5.isValidFor(messageDefinitionProvider)) {
+      return cachedMd5;
+    }
+    Map<String, String> messageDefinitions = Maps.newHashMap();
+    messageDefinitions.put(messageType, messageDefinition);
     List<String> parts = MessageDefinitionTupleParser.parse(messageDefinition, -1);
     StringBuilder text = new StringBuilder();
     for (String part : parts) {
-      text.append(generateText(messageType, part));
+      text.append(generateText(messageType, part, messageDefinitions));
     }
-    return DigestUtils.md5Hex(text.toString());
+    String md5Checksum = DigestUtils.md5Hex(text.toString());
+    cachedMd5 = new CachedMd5(ImmutableMap.copyOf(messageDefinitions), md5Checksum);
+    // Concurrent generators may compute the same checksum. Either result is
+    // correct, so the last one wins.
+    CACHE.put(messageType, cachedMd5);
+    return cachedMd5;
   }
 
-  private String generateText(String messageType, String messageDefinition) {
+  /**
+   * @param messageDefinitions
+   *          collects the definitions of all nested types
+   */
+  private String generateText(String messageType, String messageDefinition,
+      final Map<String, String> messageDefinitions) {
     final List<String> constants = Lists.newArrayList();
     final List<String> variables = Lists.newArrayList();
     MessageDefinitionVisitor visitor = new MessageDefinitionVisitor() {
       @Override
       public void variableValue(String type, String name) {
         if (!PrimitiveFieldType.existsFor(type)) {
-          type = generate(type);
+          type = generateNested(type, messageDefinitions);
         }
         variables.add(String.format("%s %s\n", type, name));
       }
@@ -66,7 +133,7 @@ public class Md5Generator {
       @Override
       public void variableList(String type, int size, String name) {
         if (!PrimitiveFieldType.existsFor(type)) {
-          String md5Checksum = generate(type);
+          String md5Checksum = generateNested(type, messageDefinitions);
           variables.add(String.format("%s %s\n", md5Checksum, name));
         } else {
           if (size != -1) {
@@ -84,13 +151,19 @@ public class Md5Generator {
     };
     MessageDefinitionParser messageDefinitionParser = new MessageDefinitionParser(visitor);
     messageDefinitionParser.parse(messageType, messageDefinition);
-    String text = "";
+    StringBuilder text = new StringBuilder();
     for (String constant : constants) {
-      text += constant;
+      text.append(constant);
     }
     for (String variable : variables) {
-      text += variable;
+      text.append(variable);
     }
-    return text.trim();
+    return text.toString().trim();
+  }
+
+  private String generateNested(String messageType, Map<String, String> messageDefinitions) {
+    CachedMd5 cachedMd5 = getCachedMd5(messageType);
+    messageDefinitions.putAll(cachedMd5.messageDefinitions);
+    return cachedMd5.md5Checksum;
   }
 }
@@ -20,8 +20,12 @@ import org.apache.commons.pool.ObjectPool;
 import org.apache.commons.pool.PoolableObjectFactory;
 import org.apache.commons.pool.impl.StackObjectPool;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
 import org.ros.exception.RosRuntimeException;
 
+import java.nio.ByteOrder;
+
 /**
  * A pool of {@link ChannelBuffer}s for serializing and deserializing messages.
  * <p>
@@ -35,10 +39,19 @@ public class MessageBufferPool {
   private final ObjectPool<ChannelBuffer> pool;
 
   public MessageBufferPool() {
+    this(HeapChannelBufferFactory.getInstance(ByteOrder.LITTLE_ENDIAN));
+  }
+
+  /**
+   * @param channelBufferFactory
+   *          the little endian {@link ChannelBufferFactory} that allocates the
+   *          storage of pooled buffers
+   */
+  public MessageBufferPool(final ChannelBufferFactory channelBufferFactory) {
     pool = new StackObjectPool<ChannelBuffer>(new PoolableObjectFactory<ChannelBuffer>() {
       @Override
       public ChannelBuffer makeObject() throws Exception {
-        return MessageBuffers.dynamicBuffer();
+        return MessageBuffers.dynamicBuffer(channelBufferFactory);
       }
 
       @Override
@@ -75,6 +88,21 @@ public class MessageBufferPool {
     }
   }
 
+  /**
+   * Acquired {@link ChannelBuffer}s must be returned using
+   * {@link #release(ChannelBuffer)}.
+   * 
+   * @param size
+   *          the number of bytes that will be written to the buffer
+   * @return an unused {@link ChannelBuffer} that can hold {@code size} bytes
+   *         without growing
+   */
+  public ChannelBuffer acquire(int size) {
+    ChannelBuffer buffer = acquire();
+    buffer.ensureWritableBytes(size);
+    return buffer;
+  }
+
   /**
    * Release a previously acquired {@link ChannelBuffer}.
    * 
@@ -17,6 +17,7 @@
 package org.ros.internal.message;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
 import org.jboss.netty.buffer.ChannelBuffers;
 
 import java.nio.ByteOrder;
@@ -41,4 +42,15 @@ public class MessageBuffers {
   public static ChannelBuffer dynamicBuffer() {
     return ChannelBuffers.dynamicBuffer(ByteOrder.LITTLE_ENDIAN, ESTIMATED_LENGTH);
   }
+
+  /**
+   * @param factory
+   *          the little endian {@link ChannelBufferFactory} that allocates the
+   *          storage of the returned buffer
+   * @return a new {@link ChannelBuffer} for {@link Message} serialization that
+   *         grows dynamically
+   */
+  public static ChannelBuffer dynamicBuffer(ChannelBufferFactory factory) {
+    return ChannelBuffers.dynamicBuffer(ByteOrder.LITTLE_ENDIAN, ESTIMATED_LENGTH, factory);
+  }
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+
+import org.ros.internal.message.context.MessageContext;
+import org.ros.internal.message.field.Field;
+import org.ros.internal.message.field.MessageFields;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the source of a concrete message class that is nested inside of a
+ * generated message interface.
+ * <p>
+ * The generated class extends {@link MessageImpl} and implements the getters
+ * and setters of the message interface by accessing fields directly by their
+ * ordinal. This avoids the reflective dispatch and per-call name lookup of
+ * {@link MessageProxyInvocationHandler}.
+ *
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class MessageClassBuilder {
+
+  /**
+   * The simple name of the concrete class nested inside of each message
+   * interface.
+   */
+  public static final String CLASS_NAME = "Impl";
+
+  /**
+   * Maps primitive Java types to the suffix of the unboxed {@link Field}
+   * accessors (e.g. {@link Field#getInt()}).
+   */
+  private static final Map<String, String> ACCESSOR_SUFFIXES = ImmutableMap
+      .<String, String>builder().put("boolean", "Boolean").put("byte", "Byte")
+      .put("short", "Short").put("int", "Int").put("long", "Long").put("float", "Float")
+      .put("double", "Double").build();
+
+  private static final Map<String, String> WRITE_METHODS = ImmutableMap.<String, String>builder()
+      .put("byte", "writeByte").put("short", "writeShort").put("int", "writeInt")
+      .put("long", "writeLong").put("float", "writeFloat").put("double", "writeDouble").build();
+
+  private static final Map<String, String> READ_METHODS = ImmutableMap.<String, String>builder()
+      .put("byte", "readByte").put("short", "readShort").put("int", "readInt")
+      .put("long", "readLong").put("float", "readFloat").put("double", "readDouble").build();
+
+  private final String interfaceName;
+  private final MessageContext messageContext;
+
+  public MessageClassBuilder(String interfaceName, MessageContext messageContext) {
+    Preconditions.checkNotNull(interfaceName);
+    Preconditions.checkNotNull(messageContext);
+    this.interfaceName = interfaceName;
+    this.messageContext = messageContext;
+  }
+
+  /**
+   * @return {@code true} if a concrete class can be generated for the message
+   *         type, {@code false} if instances must be proxied instead (e.g.
+   *         because a field getter collides with a {@link RawMessage} method)
+   */
+  public boolean canBuild() {
+    if (interfaceName.equals(CLASS_NAME)) {
+      return false;
+    }
+    Set<String> reservedGetters = Sets.newHashSet();
+    Set<String> reservedSetters = Sets.newHashSet();
+    for (Method method : MessageImpl.class.getMethods()) {
+      if (method.getParameterTypes().length == 0) {
+        reservedGetters.add(method.getName());
+      } else if (method.getParameterTypes().length == 1) {
+        reservedSetters.add(method.getName());
+      }
+    }
+    for (String name : messageContext.getFieldNames()) {
+      if (reservedGetters.contains(messageContext.getFieldGetterName(name))
+          || reservedSetters.contains(messageContext.getFieldSetterName(name))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public String build() {
+    Preconditions.checkState(canBuild());
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format("  public static final class %s extends %s implements %s {\n",
+        CLASS_NAME, MessageImpl.class.getName(), interfaceName));
+    builder.append(String.format(
+        "    public %s(org.ros.internal.message.context.MessageContext messageContext) {\n",
+        CLASS_NAME));
+    builder.append("      super(messageContext);\n");
+    builder.append("    }\n");
+    builder.append(String.format("    public %s(org.ros.internal.message.context.MessageContext"
+        + " messageContext, %s messageFields) {\n", CLASS_NAME, MessageFields.class.getName()));
+    builder.append("      super(messageContext, messageFields);\n");
+    builder.append("    }\n");
+    builder.append("    @Override\n");
+    builder.append(String.format("    protected %s newInstance(org.ros.internal.message.context"
+        + ".MessageContext messageContext, %s messageFields) {\n", MessageImpl.class.getName(),
+        MessageFields.class.getName()));
+    builder.append(String.format("      return new %s(messageContext, messageFields);\n",
+        CLASS_NAME));
+    builder.append("    }\n");
+    List<Field> fields = new MessageFields(messageContext).getFields();
+    appendSettersAndGetters(fields, builder);
+    appendSerialize(fields, builder);
+    appendDeserialize(fields, builder);
+    builder.append("  }\n");
+    return builder.toString();
+  }
+
+  private void appendSettersAndGetters(List<Field> fields, StringBuilder builder) {
+    Set<String> getters = Sets.newHashSet();
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      if (field.isConstant()) {
+        continue;
+      }
+      String type = field.getJavaTypeName();
+      String getter = messageContext.getFieldGetterName(field.getName());
+      String setter = messageContext.getFieldSetterName(field.getName());
+      // Mirrors the interface, which only declares the first of several
+      // getters that differ only by capitalization.
+      if (!getters.add(getter)) {
+        continue;
+      }
+      builder.append("    @Override\n");
+      builder.append(String.format("    public %s %s() {\n", type, getter));
+      if (ACCESSOR_SUFFIXES.containsKey(type)) {
+        builder.append(String.format("      return getMessageFields().getField(%d).get%s();\n", i,
+            ACCESSOR_SUFFIXES.get(type)));
+      } else {
+        builder.append(String.format(
+            "      return getMessageFields().getField(%d).<%s>getValue();\n", i, type));
+      }
+      builder.append("    }\n");
+      builder.append("    @Override\n");
+      builder.append(String.format("    public void %s(%s value) {\n", setter, type));
+      if (ACCESSOR_SUFFIXES.containsKey(type)) {
+        builder.append(String.format(
+            "      getMessageFields().getFieldForSetting(%d).set%s(value);\n", i,
+            ACCESSOR_SUFFIXES.get(type)));
+      } else {
+        builder.append(String.format(
+            "      getMessageFields().getFieldForSetting(%d).setValue(value);\n", i));
+      }
+      builder.append("    }\n");
+    }
+  }
+
+  /**
+   * Appends a serialize method that writes primitive scalars directly to the
+   * buffer and delegates all other fields to {@link Field#serialize}.
+   */
+  private void appendSerialize(List<Field> fields, StringBuilder builder) {
+    builder.append("    @Override\n");
+    builder.append("    public void serialize(org.jboss.netty.buffer.ChannelBuffer buffer) {\n");
+    builder.append(String.format("      %s fields = getMessageFields();\n",
+        MessageFields.class.getName()));
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      if (field.isConstant()) {
+        continue;
+      }
+      String type = field.getJavaTypeName();
+      // Only primitive scalars have unboxed accessors.
+      String suffix = ACCESSOR_SUFFIXES.get(type);
+      if (suffix == null) {
+        builder.append(String.format("      fields.getField(%d).serialize(buffer);\n", i));
+        continue;
+      }
+      String value = String.format("fields.getField(%d).get%s()", i, suffix);
+      if (type.equals("boolean")) {
+        builder.append(String.format("      buffer.writeByte(%s ? 1 : 0);\n", value));
+      } else {
+        builder.append(String.format("      buffer.%s(%s);\n", WRITE_METHODS.get(type), value));
+      }
+    }
+    builder.append("    }\n");
+  }
+
+  /**
+   * Appends a deserialize method that reads primitive scalars directly from the
+   * buffer and delegates all other fields to {@link Field#deserialize}.
+   */
+  private void appendDeserialize(List<Field> fields, StringBuilder builder) {
+    builder.append("    @Override\n");
+    builder.append("    public void deserialize(org.jboss.netty.buffer.ChannelBuffer buffer) {\n");
+    builder.append(String.format("      %s fields = getMessageFields();\n",
+        MessageFields.class.getName()));
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      if (field.isConstant()) {
+        continue;
+      }
+      String type = field.getJavaTypeName();
+      if (type.equals("boolean")) {
+        builder.append(String.format(
+            "      fields.getField(%d).setBoolean(buffer.readByte() == 1);\n", i));
+      } else if (READ_METHODS.containsKey(type)) {
+        builder.append(String.format("      fields.getField(%d).set%s(buffer.%s());\n", i,
+            ACCESSOR_SUFFIXES.get(type), READ_METHODS.get(type)));
+      } else {
+        builder.append(String.format("      fields.getField(%d).deserialize(buffer);\n", i));
+      }
+    }
+    builder.append("    }\n");
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+
+import org.ros.exception.RosRuntimeException;
+import org.ros.internal.message.context.MessageContext;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+
+/**
+ * Provides instances of the concrete message classes generated by the
+ * {@link MessageClassBuilder}.
+ *
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class MessageClassProvider {
+
+  private final Map<Class<?>, Optional<Constructor<? extends MessageImpl>>> cache;
+
+  public MessageClassProvider() {
+    cache = Maps.newConcurrentMap();
+  }
+
+  /**
+   * @param messageInterfaceClass
+   *          the message interface class to provide an implementation for
+   * @param messageContext
+   *          the {@link MessageContext} of the new message
+   * @return a new instance of the concrete class nested inside of
+   *         {@code messageInterfaceClass} or {@code null} if no such class was
+   *         generated
+   */
+  public MessageImpl newInstance(Class<?> messageInterfaceClass, MessageContext messageContext) {
+    Constructor<? extends MessageImpl> constructor = getConstructor(messageInterfaceClass);
+    if (constructor == null) {
+      return null;
+    }
+    try {
+      return constructor.newInstance(messageContext);
+    } catch (InstantiationException e) {
+      throw new RosRuntimeException(e);
+    } catch (IllegalAccessException e) {
+      throw new RosRuntimeException(e);
+    } catch (InvocationTargetException e) {
+      throw new RosRuntimeException(e);
+    }
+  }
+
+  private Constructor<? extends MessageImpl> getConstructor(Class<?> messageInterfaceClass) {
+    Optional<Constructor<? extends MessageImpl>> constructor = cache.get(messageInterfaceClass);
+    if (constructor == null) {
+      constructor = findConstructor(messageInterfaceClass);
+      cache.put(messageInterfaceClass, constructor);
+    }
+    return constructor.orNull();
+  }
+
+  private Optional<Constructor<? extends MessageImpl>> findConstructor(
+      Class<?> messageInterfaceClass) {
+    if (messageInterfaceClass == RawMessage.class) {
+      return Optional.absent();
+    }
+    String className = messageInterfaceClass.getName() + "$" + MessageClassBuilder.CLASS_NAME;
+    try {
+      Class<?> messageClass =
+          Class.forName(className, true, messageInterfaceClass.getClassLoader());
+      if (!MessageImpl.class.isAssignableFrom(messageClass)
+          || !messageInterfaceClass.isAssignableFrom(messageClass)) {
+        return Optional.absent();
+      }
+      Constructor<? extends MessageImpl> constructor =
+          messageClass.asSubclass(MessageImpl.class).getConstructor(MessageContext.class);
+      return Optional.<Constructor<? extends MessageImpl>>of(constructor);
+    } catch (ClassNotFoundException e) {
+      return Optional.absent();
+    } catch (NoSuchMethodException e) {
+      return Optional.absent();
+    }
+  }
+}
@@ -26,29 +26,191 @@ import org.ros.message.Duration;
 import org.ros.message.MessageIdentifier;
 import org.ros.message.Time;
 
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 import java.util.List;
 
 /**
+ * The base implementation of all messages. Message interfaces are either
+ * implemented by a proxy around an instance of this class or by a concrete
+ * subclass generated by the {@link MessageClassBuilder}.
+ * 
  * @author damonkohler@google.com (Damon Kohler)
  */
-class MessageImpl implements RawMessage, GetInstance {
+public class MessageImpl implements RawMessage, GetInstance {
 
   private final MessageContext messageContext;
   private final MessageFields messageFields;
+  private volatile boolean retained;
 
   public MessageImpl(MessageContext messageContext) {
+    this(messageContext, new MessageFields(messageContext));
+  }
+
+  protected MessageImpl(MessageContext messageContext, MessageFields messageFields) {
     this.messageContext = messageContext;
-    messageFields = new MessageFields(messageContext);
+    this.messageFields = messageFields;
+  }
+
+  /**
+   * Creates a message of the same class as this one. Generated subclasses
+   * override this to instantiate themselves.
+   * 
+   * @param messageContext
+   *          the {@link MessageContext} of the new message
+   * @param messageFields
+   *          the {@link MessageFields} of the new message
+   * @return the new message
+   */
+  protected MessageImpl newInstance(MessageContext messageContext, MessageFields messageFields) {
+    return new MessageImpl(messageContext, messageFields);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T extends Message> T copy() {
+    MessageImpl copy = newInstance(messageContext, messageFields.copy());
+    Class<?> proxyInterfaceClass = messageContext.getProxyInterfaceClass();
+    if (proxyInterfaceClass != null && getClass() == MessageImpl.class) {
+      return (T) MessageProxyFactory.newProxy(proxyInterfaceClass, copy);
+    }
+    return (T) copy;
   }
 
   public MessageContext getMessageContext() {
     return messageContext;
   }
 
-  public MessageFields getMessageFields() {
+  public final MessageFields getMessageFields() {
     return messageFields;
   }
 
+  /**
+   * Serializes all non-constant fields of this message in definition order.
+   * Generated subclasses override this with code specialized for their type.
+   * 
+   * @param buffer
+   *          the {@link ChannelBuffer} to serialize this message into
+   */
+  public void serialize(ChannelBuffer buffer) {
+    for (int i = 0; i < messageFields.getFieldCount(); i++) {
+      Field field = messageFields.getField(i);
+      if (!field.isConstant()) {
+        field.serialize(buffer);
+      }
+    }
+  }
+
+  /**
+   * Deserializes all non-constant fields of this message in definition order.
+   * Generated subclasses override this with code specialized for their type.
+   * 
+   * @param buffer
+   *          the {@link ChannelBuffer} to deserialize this message from
+   */
+  public void deserialize(ChannelBuffer buffer) {
+    for (int i = 0; i < messageFields.getFieldCount(); i++) {
+      Field field = messageFields.getField(i);
+      if (!field.isConstant()) {
+        field.deserialize(buffer);
+      }
+    }
+  }
+
+  /**
+   * Advances the reader index of {@code buffer} past a serialized message of
+   * this type without deserializing it. The fields of this message are not
+   * modified.
+   * 
+   * @param buffer
+   *          the {@link ChannelBuffer} to skip the message in
+   */
+  public void skip(ChannelBuffer buffer) {
+    if (isFixedSize()) {
+      buffer.skipBytes(getSerializedSize());
+      return;
+    }
+    for (int i = 0; i < messageFields.getFieldCount(); i++) {
+      Field field = messageFields.getField(i);
+      if (!field.isConstant()) {
+        field.skip(buffer);
+      }
+    }
+  }
+
+  /**
+   * @return {@code true} if all messages of this type have the same serialized
+   *         size
+   */
+  public boolean isFixedSize() {
+    Boolean fixedSize = messageContext.isFixedSize();
+    if (fixedSize == null) {
+      fixedSize = true;
+      for (Field field : messageFields.getFields()) {
+        if (!field.isConstant() && !field.isFixedSize()) {
+          fixedSize = false;
+          break;
+        }
+      }
+      messageContext.setFixedSize(fixedSize);
+    }
+    return fixedSize;
+  }
+
+  @Override
+  public int getSerializedSize() {
+    int size = messageContext.getFixedSerializedSize();
+    if (size >= 0) {
+      return size;
+    }
+    size = 0;
+    for (int i = 0; i < messageFields.getFieldCount(); i++) {
+      Field field = messageFields.getField(i);
+      if (!field.isConstant()) {
+        size += field.getSerializedSize();
+      }
+    }
+    if (isFixedSize()) {
+      messageContext.setFixedSerializedSize(size);
+    }
+    return size;
+  }
+
+  private Field getExistingField(String name) {
+    Field field = messageFields.getField(name);
+    if (field == null) {
+      throw new RosRuntimeException("Uknown field: " + name);
+    }
+    return field;
+  }
+
+  /**
+   * Unlike {@link #getExistingField(String)}, this does not decode the field
+   * of a lazily deserialized message since it is about to be overwritten.
+   */
+  private Field getExistingSetterField(String name) {
+    Field field = messageFields.getFieldForSetting(name);
+    if (field == null) {
+      throw new RosRuntimeException("Uknown field: " + name);
+    }
+    return field;
+  }
+
+  @Override
+  public void retain() {
+    retained = true;
+  }
+
+  /**
+   * @return {@code true} if {@link #retain()} has been called
+   */
+  public boolean isRetained() {
+    return retained;
+  }
+
   @Override
   public RawMessage toRawMessage() {
     return (RawMessage) this;
@@ -86,7 +248,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public boolean getBool(String name) {
-    return (Boolean) messageFields.getFieldValue(name);
+    return getExistingField(name).getBoolean();
   }
 
   @Override
@@ -107,7 +269,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public float getFloat32(String name) {
-    return (Float) messageFields.getFieldValue(name);
+    return getExistingField(name).getFloat();
   }
 
   @Override
@@ -115,9 +277,14 @@ class MessageImpl implements RawMessage, GetInstance {
     return (float[]) messageFields.getFieldValue(name);
   }
 
+  @Override
+  public FloatBuffer getFloat32ArrayView(String name) {
+    return (FloatBuffer) messageFields.getArrayView(name);
+  }
+
   @Override
   public double getFloat64(String name) {
-    return (Double) messageFields.getFieldValue(name);
+    return getExistingField(name).getDouble();
   }
 
   @Override
@@ -125,9 +292,14 @@ class MessageImpl implements RawMessage, GetInstance {
     return (double[]) messageFields.getFieldValue(name);
   }
 
+  @Override
+  public DoubleBuffer getFloat64ArrayView(String name) {
+    return (DoubleBuffer) messageFields.getArrayView(name);
+  }
+
   @Override
   public short getInt16(String name) {
-    return (Short) messageFields.getFieldValue(name);
+    return getExistingField(name).getShort();
   }
 
   @Override
@@ -135,9 +307,14 @@ class MessageImpl implements RawMessage, GetInstance {
     return (short[]) messageFields.getFieldValue(name);
   }
 
+  @Override
+  public ShortBuffer getInt16ArrayView(String name) {
+    return (ShortBuffer) messageFields.getArrayView(name);
+  }
+
   @Override
   public int getInt32(String name) {
-    return (Integer) messageFields.getFieldValue(name);
+    return getExistingField(name).getInt();
   }
 
   @Override
@@ -145,9 +322,14 @@ class MessageImpl implements RawMessage, GetInstance {
     return (int[]) messageFields.getFieldValue(name);
   }
 
+  @Override
+  public IntBuffer getInt32ArrayView(String name) {
+    return (IntBuffer) messageFields.getArrayView(name);
+  }
+
   @Override
   public long getInt64(String name) {
-    return (Long) messageFields.getFieldValue(name);
+    return getExistingField(name).getLong();
   }
 
   @Override
@@ -155,9 +337,14 @@ class MessageImpl implements RawMessage, GetInstance {
     return (long[]) messageFields.getFieldValue(name);
   }
 
+  @Override
+  public LongBuffer getInt64ArrayView(String name) {
+    return (LongBuffer) messageFields.getArrayView(name);
+  }
+
   @Override
   public byte getInt8(String name) {
-    return (Byte) messageFields.getFieldValue(name);
+    return getExistingField(name).getByte();
   }
 
   @Override
@@ -205,7 +392,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public short getUInt16(String name) {
-    return (Short) messageFields.getFieldValue(name);
+    return getExistingField(name).getShort();
   }
 
   @Override
@@ -213,9 +400,14 @@ class MessageImpl implements RawMessage, GetInstance {
     return (short[]) messageFields.getFieldValue(name);
   }
 
+  @Override
+  public ShortBuffer getUInt16ArrayView(String name) {
+    return (ShortBuffer) messageFields.getArrayView(name);
+  }
+
   @Override
   public int getUInt32(String name) {
-    return (Integer) messageFields.getFieldValue(name);
+    return getExistingField(name).getInt();
   }
 
   @Override
@@ -223,9 +415,14 @@ class MessageImpl implements RawMessage, GetInstance {
     return (int[]) messageFields.getFieldValue(name);
   }
 
+  @Override
+  public IntBuffer getUInt32ArrayView(String name) {
+    return (IntBuffer) messageFields.getArrayView(name);
+  }
+
   @Override
   public long getUInt64(String name) {
-    return (Long) messageFields.getFieldValue(name);
+    return getExistingField(name).getLong();
   }
 
   @Override
@@ -233,9 +430,14 @@ class MessageImpl implements RawMessage, GetInstance {
     return (long[]) messageFields.getFieldValue(name);
   }
 
+  @Override
+  public LongBuffer getUInt64ArrayView(String name) {
+    return (LongBuffer) messageFields.getArrayView(name);
+  }
+
   @Override
   public short getUInt8(String name) {
-    return (Short) messageFields.getFieldValue(name);
+    return (short) (getExistingField(name).getByte() & 0xff);
   }
 
   @Override
@@ -245,7 +447,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public void setBool(String name, boolean value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setBoolean(value);
   }
 
   @Override
@@ -265,7 +467,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public void setFloat32(String name, float value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setFloat(value);
   }
 
   @Override
@@ -275,7 +477,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public void setFloat64(String name, double value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setDouble(value);
   }
 
   @Override
@@ -285,7 +487,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public void setInt16(String name, short value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setShort(value);
   }
 
   @Override
@@ -295,7 +497,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public void setInt32(String name, int value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setInt(value);
   }
 
   @Override
@@ -305,7 +507,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public void setInt64(String name, long value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setLong(value);
   }
 
   @Override
@@ -315,7 +517,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public void setInt8(String name, byte value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setByte(value);
   }
 
   @Override
@@ -357,7 +559,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public void setUInt16(String name, short value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setShort(value);
   }
 
   @Override
@@ -367,7 +569,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public void setUInt32(String name, int value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setInt(value);
   }
 
   @Override
@@ -377,7 +579,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public void setUInt64(String name, long value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setLong(value);
   }
 
   @Override
@@ -387,7 +589,7 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public void setUInt8(String name, byte value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setByte(value);
   }
 
   @Override
@@ -397,22 +599,22 @@ class MessageImpl implements RawMessage, GetInstance {
 
   @Override
   public byte getByte(String name) {
-    return (Byte) messageFields.getFieldValue(name);
+    return getExistingField(name).getByte();
   }
 
   @Override
   public short getChar(String name) {
-    return (Short) messageFields.getFieldValue(name);
+    return (short) (getExistingField(name).getByte() & 0xff);
   }
 
   @Override
   public void setByte(String name, byte value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setByte(value);
   }
 
   @Override
   public void setChar(String name, short value) {
-    messageFields.setFieldValue(name, value);
+    getExistingSetterField(name).setByte((byte) value);
   }
 
   @Override
@@ -473,7 +675,9 @@ class MessageImpl implements RawMessage, GetInstance {
     if (!(obj instanceof GetInstance))
       return false;
     obj = ((GetInstance) obj).getInstance();
-    if (getClass() != obj.getClass())
+    // Generated message classes and proxied MessageImpls of the same type
+    // are equal if their fields are.
+    if (!(obj instanceof MessageImpl))
       return false;
     MessageImpl other = (MessageImpl) obj;
     if (messageContext == null) {
@@ -118,6 +118,12 @@ public class MessageInterfaceBuilder {
       MessageContext messageContext = messageContextProvider.get(messageDeclaration);
       appendConstants(messageContext, builder);
       appendSettersAndGetters(messageContext, builder);
+      MessageClassBuilder messageClassBuilder =
+          new MessageClassBuilder(interfaceName, messageContext);
+      if (messageClassBuilder.canBuild()) {
+        builder.append("\n");
+        builder.append(messageClassBuilder.build());
+      }
     }
     if (nestedContent != null) {
       builder.append("\n");
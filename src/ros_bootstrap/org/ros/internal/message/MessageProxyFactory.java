@@ -20,6 +20,7 @@ import com.google.common.base.Preconditions;
 
 import org.ros.internal.message.context.MessageContext;
 import org.ros.internal.message.context.MessageContextProvider;
+import org.ros.internal.message.definition.MessageRegistry;
 import org.ros.message.MessageDeclaration;
 import org.ros.message.MessageFactory;
 
@@ -38,27 +39,50 @@ public class MessageProxyFactory {
   private static final AtomicInteger SEQUENCE_NUMBER = new AtomicInteger(0);
 
   private final MessageInterfaceClassProvider messageInterfaceClassProvider;
+  private final MessageClassProvider messageClassProvider;
   private final MessageContextProvider messageContextProvider;
 
   public MessageProxyFactory(MessageInterfaceClassProvider messageInterfaceClassProvider,
       MessageFactory messageFactory) {
+    this(messageInterfaceClassProvider, messageFactory, null);
+  }
+
+  /**
+   * @param messageRegistry
+   *          the {@link MessageRegistry} to read field layouts from, or
+   *          {@code null} to parse message definitions
+   */
+  public MessageProxyFactory(MessageInterfaceClassProvider messageInterfaceClassProvider,
+      MessageFactory messageFactory, MessageRegistry messageRegistry) {
     this.messageInterfaceClassProvider = messageInterfaceClassProvider;
-    messageContextProvider = new MessageContextProvider(messageFactory);
+    messageClassProvider = new MessageClassProvider();
+    messageContextProvider = new MessageContextProvider(messageFactory, messageRegistry);
   }
 
   @SuppressWarnings("unchecked")
   public <T> T newMessageProxy(MessageDeclaration messageDeclaration) {
     Preconditions.checkNotNull(messageDeclaration);
     MessageContext messageContext = messageContextProvider.get(messageDeclaration);
-    MessageImpl messageImpl = new MessageImpl(messageContext);
+    Class<T> messageInterfaceClass =
+        (Class<T>) messageInterfaceClassProvider.get(messageDeclaration.getType());
+    // Prefer the concrete class generated for the message type and fall back
+    // to proxying a plain MessageImpl if none is available.
+    MessageImpl messageImpl =
+        messageClassProvider.newInstance(messageInterfaceClass, messageContext);
+    boolean proxied = messageImpl == null;
+    if (proxied) {
+      messageImpl = new MessageImpl(messageContext);
+    }
     // Header messages are automatically populated with a monotonically
     // increasing sequence number.
     if (messageImpl.getType().equals(HEADER_MESSAGE_TYPE)) {
       messageImpl.setUInt32(SEQUENCE_FIELD_NAME, SEQUENCE_NUMBER.getAndIncrement());
     }
-    Class<T> messageInterfaceClass =
-        (Class<T>) messageInterfaceClassProvider.get(messageDeclaration.getType());
-    return newProxy(messageInterfaceClass, messageImpl);
+    if (proxied) {
+      messageContext.setProxyInterfaceClass(messageInterfaceClass);
+      return newProxy(messageInterfaceClass, messageImpl);
+    }
+    return (T) messageImpl;
   }
 
   /**
@@ -70,7 +94,7 @@ public class MessageProxyFactory {
    *         {@code interfaceClass}
    */
   @SuppressWarnings("unchecked")
-  private <T> T newProxy(Class<T> interfaceClass, final MessageImpl messageImpl) {
+  static <T> T newProxy(Class<T> interfaceClass, final MessageImpl messageImpl) {
     ClassLoader classLoader = messageImpl.getClass().getClassLoader();
     Class<?>[] interfaces = new Class<?>[] { interfaceClass, GetInstance.class };
     MessageProxyInvocationHandler invocationHandler =
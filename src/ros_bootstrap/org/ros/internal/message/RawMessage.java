@@ -22,9 +22,22 @@ import org.ros.message.Duration;
 import org.ros.message.MessageIdentifier;
 import org.ros.message.Time;
 
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 import java.util.List;
 
 /**
+ * Provides access to the fields of a message by name.
+ * <p>
+ * The {@code get*ArrayView} methods return read-only views of numeric array
+ * fields instead of arrays. The views do not copy the elements. For messages
+ * deserialized by the {@link LazyMessageDeserializer}, a view of a field that
+ * has not yet been decoded is backed directly by the received buffer (i.e. in
+ * little-endian byte order) and the field remains undecoded.
+ * 
  * @author damonkohler@google.com (Damon Kohler)
  */
 public interface RawMessage extends Message {
@@ -65,24 +78,34 @@ public interface RawMessage extends Message {
 
   float[] getFloat32Array(String name);
 
+  FloatBuffer getFloat32ArrayView(String name);
+
   double getFloat64(String name);
 
   double[] getFloat64Array(String name);
 
+  DoubleBuffer getFloat64ArrayView(String name);
+
   MessageIdentifier getIdentifier();
 
   short getInt16(String name);
 
   short[] getInt16Array(String name);
 
+  ShortBuffer getInt16ArrayView(String name);
+
   int getInt32(String name);
 
   int[] getInt32Array(String name);
 
+  IntBuffer getInt32ArrayView(String name);
+
   long getInt64(String name);
 
   long[] getInt64Array(String name);
 
+  LongBuffer getInt64ArrayView(String name);
+
   byte getInt8(String name);
 
   byte[] getInt8Array(String name);
@@ -95,6 +118,11 @@ public interface RawMessage extends Message {
 
   String getPackage();
 
+  /**
+   * @return the exact number of bytes this message occupies when serialized
+   */
+  int getSerializedSize();
+
   String getString(String name);
 
   List<String> getStringList(String name);
@@ -109,14 +137,20 @@ public interface RawMessage extends Message {
 
   short[] getUInt16Array(String name);
 
+  ShortBuffer getUInt16ArrayView(String name);
+
   int getUInt32(String name);
 
   int[] getUInt32Array(String name);
 
+  IntBuffer getUInt32ArrayView(String name);
+
   long getUInt64(String name);
 
   long[] getUInt64Array(String name);
 
+  LongBuffer getUInt64ArrayView(String name);
+
   short getUInt8(String name);
 
   short[] getUInt8Array(String name);
@@ -204,4 +238,25 @@ public interface RawMessage extends Message {
   void setChannelBuffer(String name, ChannelBuffer value);
 
   ChannelBuffer getChannelBuffer(String name);
+
+  /**
+   * Returns a deep copy of this message that implements the same message
+   * interface. Primitive arrays and {@link ChannelBuffer} fields are copied in
+   * bulk, nested messages are copied recursively, and immutable values such as
+   * {@link String}s are shared.
+   * 
+   * @return a deep copy of this message
+   */
+  <T extends Message> T copy();
+
+  /**
+   * Prevents this message from being recycled.
+   * <p>
+   * Messages passed to a {@link org.ros.message.MessageListener} that was
+   * added with recycling enabled are reused after the listener returns. A
+   * listener that keeps a reference to such a message, or to any message
+   * reachable from it, must call this method before returning. Calling this
+   * method on a message that is not recycled has no effect.
+   */
+  void retain();
 }
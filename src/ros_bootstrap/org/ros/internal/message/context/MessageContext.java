@@ -31,7 +31,13 @@ import java.util.Map;
 /**
  * Encapsulates the immutable metadata that describes a message type.
  * <p>
- * Note that this class is not thread safe.
+ * This includes the layout shared by all messages of the type: the ordered
+ * {@link FieldFactory}s and tables that map field, getter, and setter names to
+ * field ordinals. Message instances therefore only need to store their
+ * {@link org.ros.internal.message.field.Field}s in an array indexed by
+ * ordinal.
+ * <p>
+ * Note that this class is not thread safe while it is being built.
  * 
  * @author damonkohler@google.com (Damon Kohler)
  */
@@ -43,6 +49,19 @@ public class MessageContext {
   private final Map<String, String> fieldGetterNames;
   private final Map<String, String> fieldSetterNames;
   private final List<String> fieldNames;
+  private final List<FieldFactory> orderedFieldFactories;
+  private final Map<String, Integer> fieldIndices;
+  private final Map<String, Integer> getterIndices;
+  private final Map<String, Integer> setterIndices;
+
+  // Lazily computed by MessageImpl since nested message types are only
+  // available through message instances.
+  private volatile Boolean fixedSize;
+  private volatile int fixedSerializedSize;
+
+  // Set by the MessageProxyFactory if messages of this type are proxied
+  // because no concrete class was generated for them.
+  private volatile Class<?> proxyInterfaceClass;
 
   public MessageContext(MessageDeclaration messageDeclaration, MessageFactory messageFactory) {
     this.messageDeclaration = messageDeclaration;
@@ -51,6 +70,11 @@ public class MessageContext {
     this.fieldGetterNames = Maps.newHashMap();
     this.fieldSetterNames = Maps.newHashMap();
     this.fieldNames = Lists.newArrayList();
+    this.orderedFieldFactories = Lists.newArrayList();
+    this.fieldIndices = Maps.newHashMap();
+    this.getterIndices = Maps.newHashMap();
+    this.setterIndices = Maps.newHashMap();
+    fixedSerializedSize = -1;
   }
 
   public MessageFactory getMessageFactory() {
@@ -78,10 +102,17 @@ public class MessageContext {
   }
 
   public void addFieldFactory(String name, FieldFactory fieldFactory) {
+    int index = fieldNames.size();
+    String getterName = "get" + getJavaName(name);
+    String setterName = "set" + getJavaName(name);
     fieldFactories.put(name, fieldFactory);
-    fieldGetterNames.put(name, "get" + getJavaName(name));
-    fieldSetterNames.put(name, "set" + getJavaName(name));
+    fieldGetterNames.put(name, getterName);
+    fieldSetterNames.put(name, setterName);
     fieldNames.add(name);
+    orderedFieldFactories.add(fieldFactory);
+    fieldIndices.put(name, index);
+    getterIndices.put(getterName, index);
+    setterIndices.put(setterName, index);
   }
 
   private String getJavaName(String name) {
@@ -110,6 +141,54 @@ public class MessageContext {
     return fieldFactories.get(name);
   }
 
+  /**
+   * @param index
+   *          the ordinal of the field
+   * @return the {@link FieldFactory} of the field at the specified ordinal
+   */
+  public FieldFactory getFieldFactory(int index) {
+    return orderedFieldFactories.get(index);
+  }
+
+  /**
+   * @return the number of fields, including constants
+   */
+  public int getFieldCount() {
+    return fieldNames.size();
+  }
+
+  /**
+   * @return the ordinal of the field with the specified name or -1 if no such
+   *         field exists
+   */
+  public int getFieldIndex(String name) {
+    return getIndex(fieldIndices, name);
+  }
+
+  /**
+   * @return the ordinal of the field with the specified getter name or -1 if
+   *         no such field exists
+   */
+  public int getGetterIndex(String getterName) {
+    return getIndex(getterIndices, getterName);
+  }
+
+  /**
+   * @return the ordinal of the field with the specified setter name or -1 if
+   *         no such field exists
+   */
+  public int getSetterIndex(String setterName) {
+    return getIndex(setterIndices, setterName);
+  }
+
+  private static int getIndex(Map<String, Integer> indices, String name) {
+    Integer index = indices.get(name);
+    if (index == null) {
+      return -1;
+    }
+    return index;
+  }
+
   /**
    * @return a {@link List} of field names in the order they were added
    */
@@ -117,6 +196,43 @@ public class MessageContext {
     return Collections.unmodifiableList(fieldNames);
   }
 
+  /**
+   * @return {@code true} if all messages of this type have the same serialized
+   *         size, {@code false} if not, or {@code null} if this has not been
+   *         determined yet
+   */
+  public Boolean isFixedSize() {
+    return fixedSize;
+  }
+
+  public void setFixedSize(boolean fixedSize) {
+    this.fixedSize = fixedSize;
+  }
+
+  /**
+   * @return the serialized size of all messages of this type or -1 if the type
+   *         is not fixed size or the size has not been determined yet
+   */
+  public int getFixedSerializedSize() {
+    return fixedSerializedSize;
+  }
+
+  public void setFixedSerializedSize(int fixedSerializedSize) {
+    this.fixedSerializedSize = fixedSerializedSize;
+  }
+
+  /**
+   * @return the message interface implemented by proxies of this message type
+   *         or {@code null} if messages of this type are not proxied
+   */
+  public Class<?> getProxyInterfaceClass() {
+    return proxyInterfaceClass;
+  }
+
+  public void setProxyInterfaceClass(Class<?> proxyInterfaceClass) {
+    this.proxyInterfaceClass = proxyInterfaceClass;
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
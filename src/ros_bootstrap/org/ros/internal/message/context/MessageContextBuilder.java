@@ -76,9 +76,15 @@ class MessageContextBuilder implements MessageDefinitionVisitor {
   public void constantValue(String type, final String name, final String value) {
     final FieldType fieldType = getFieldType(type);
     messageContext.addFieldFactory(name, new FieldFactory() {
+      // Constant fields are immutable and therefore shared by all messages.
+      private Field field;
+
       @Override
-      public Field create() {
-        return fieldType.newConstantValue(name, fieldType.parseFromString(value));
+      public synchronized Field create() {
+        if (field == null) {
+          field = fieldType.newConstantValue(name, fieldType.parseFromString(value));
+        }
+        return field;
       }
     });
   }
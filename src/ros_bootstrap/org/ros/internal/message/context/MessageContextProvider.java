@@ -21,6 +21,7 @@ import com.google.common.collect.Maps;
 
 import org.ros.internal.message.definition.MessageDefinitionParser;
 import org.ros.internal.message.definition.MessageDefinitionParser.MessageDefinitionVisitor;
+import org.ros.internal.message.definition.MessageRegistry;
 import org.ros.message.MessageDeclaration;
 import org.ros.message.MessageFactory;
 
@@ -33,10 +34,23 @@ public class MessageContextProvider {
 
   private final Map<MessageDeclaration, MessageContext> cache;
   private final MessageFactory messageFactory;
+  private final MessageRegistry messageRegistry;
 
   public MessageContextProvider(MessageFactory messageFactory) {
+    this(messageFactory, null);
+  }
+
+  /**
+   * @param messageFactory
+   *          the {@link MessageFactory} used to create nested messages
+   * @param messageRegistry
+   *          the {@link MessageRegistry} to read field layouts from instead of
+   *          parsing definitions, or {@code null} to always parse
+   */
+  public MessageContextProvider(MessageFactory messageFactory, MessageRegistry messageRegistry) {
     Preconditions.checkNotNull(messageFactory);
     this.messageFactory = messageFactory;
+    this.messageRegistry = messageRegistry;
     cache = Maps.newConcurrentMap();
   }
 
@@ -45,9 +59,14 @@ public class MessageContextProvider {
     if (messageContext == null) {
       messageContext = new MessageContext(messageDeclaration, messageFactory);
       MessageDefinitionVisitor visitor = new MessageContextBuilder(messageContext);
-      MessageDefinitionParser messageDefinitionParser = new MessageDefinitionParser(visitor);
-      messageDefinitionParser.parse(messageDeclaration.getType(),
-          messageDeclaration.getDefinition());
+      String messageType = messageDeclaration.getType();
+      String messageDefinition = messageDeclaration.getDefinition();
+      if (messageRegistry != null && messageRegistry.hasLayout(messageType, messageDefinition)) {
+        messageRegistry.accept(messageType, visitor);
+      } else {
+        MessageDefinitionParser messageDefinitionParser = new MessageDefinitionParser(visitor);
+        messageDefinitionParser.parse(messageType, messageDefinition);
+      }
       cache.put(messageDeclaration, messageContext);
     }
     return messageContext;
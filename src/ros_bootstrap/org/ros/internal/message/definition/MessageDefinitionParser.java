@@ -17,24 +17,58 @@
 package org.ros.internal.message.definition;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
-import org.ros.exception.RosRuntimeException;
 import org.ros.internal.message.field.PrimitiveFieldType;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Parses message definitions and invokes a {@link MessageDefinitionVisitor} for
  * each field.
+ * <p>
+ * Definitions are tokenized in a single pass without regular expressions. The
+ * resulting fields are cached by message type and definition and shared by
+ * all parsers, so parsing the same definition again only replays the cached
+ * fields to the visitor.
  * 
  * @author damonkohler@google.com (Damon Kohler)
  */
 public class MessageDefinitionParser {
 
+  private static final ConcurrentMap<CacheKey, List<ParsedField>> CACHE = Maps.newConcurrentMap();
+
   private final MessageDefinitionVisitor visitor;
 
+  private static final class CacheKey {
+
+    private final String messageType;
+    private final String messageDefinition;
+
+    CacheKey(String messageType, String messageDefinition) {
+      this.messageType = messageType;
+      this.messageDefinition = messageDefinition;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * messageType.hashCode() + messageDefinition.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey other = (CacheKey) obj;
+      return messageType.equals(other.messageType)
+          && messageDefinition.equals(other.messageDefinition);
+    }
+  }
+
   public interface MessageDefinitionVisitor {
     /**
      * Called for each constant in the message definition.
@@ -91,47 +125,101 @@ public class MessageDefinitionParser {
   public void parse(String messageType, String messageDefinition) {
     Preconditions.checkNotNull(messageType);
     Preconditions.checkNotNull(messageDefinition);
-    BufferedReader reader = new BufferedReader(new StringReader(messageDefinition));
-    String line;
-    try {
-      while (true) {
-        line = reader.readLine();
-        if (line == null) {
+    for (ParsedField field : parseFields(messageType, messageDefinition)) {
+      field.accept(visitor);
+    }
+  }
+
+  /**
+   * @return the fields of the message definition, parse results are cached so
+   *         that each definition is only tokenized once
+   */
+  static List<ParsedField> parseFields(String messageType, String messageDefinition) {
+    CacheKey key = new CacheKey(messageType, messageDefinition);
+    List<ParsedField> fields = CACHE.get(key);
+    if (fields == null) {
+      fields = Collections.unmodifiableList(tokenize(messageType, messageDefinition));
+      CACHE.put(key, fields);
+    }
+    return fields;
+  }
+
+  /**
+   * Splits the definition into trimmed lines in a single pass and parses each
+   * line that is neither empty nor a comment.
+   */
+  private static List<ParsedField> tokenize(String messageType, String messageDefinition) {
+    List<ParsedField> fields = Lists.newArrayList();
+    int length = messageDefinition.length();
+    int position = 0;
+    while (position < length) {
+      int lineEnd = position;
+      while (lineEnd < length) {
+        char c = messageDefinition.charAt(lineEnd);
+        if (c == '\n' || c == '\r') {
           break;
         }
-        line = line.trim();
-        if (line.startsWith("#")) {
-          continue;
-        }
-        if (line.length() > 0) {
-          parseField(messageType, line);
-        }
+        lineEnd++;
+      }
+      int start = position;
+      int end = lineEnd;
+      position = lineEnd + 1;
+      // A "\r\n" line terminator is treated as a single line break.
+      if (lineEnd < length && messageDefinition.charAt(lineEnd) == '\r' && position < length
+          && messageDefinition.charAt(position) == '\n') {
+        position++;
+      }
+      while (start < end && messageDefinition.charAt(start) <= ' ') {
+        start++;
+      }
+      while (end > start && messageDefinition.charAt(end - 1) <= ' ') {
+        end--;
+      }
+      if (start < end && messageDefinition.charAt(start) != '#') {
+        fields.add(parseField(messageType, messageDefinition, start, end));
       }
-    } catch (IOException e) {
-      throw new RosRuntimeException(e);
     }
+    return fields;
   }
 
-  private void parseField(String messageType, String fieldDefinition) {
+  /**
+   * Parses the field defined by the trimmed line between {@code start} and
+   * {@code end}.
+   */
+  private static ParsedField parseField(String messageType, String messageDefinition,
+      int start, int end) {
     // TODO(damonkohler): Regex input validation.
-    String[] typeAndName = fieldDefinition.split("\\s+", 2);
-    Preconditions.checkState(typeAndName.length == 2,
-        String.format("Invalid field definition: \"%s\"", fieldDefinition));
-    String type = typeAndName[0];
-    String name = typeAndName[1];
+    int typeEnd = start;
+    while (typeEnd < end && !isWhitespace(messageDefinition.charAt(typeEnd))) {
+      typeEnd++;
+    }
+    if (typeEnd == end) {
+      throw new IllegalStateException(String.format("Invalid field definition: \"%s\"",
+          messageDefinition.substring(start, end)));
+    }
+    int nameStart = typeEnd;
+    while (isWhitespace(messageDefinition.charAt(nameStart))) {
+      nameStart++;
+    }
+    String type = messageDefinition.substring(start, typeEnd);
+    int equalsIndex = indexOf(messageDefinition, '=', nameStart, end);
+    int hashIndex = indexOf(messageDefinition, '#', nameStart, end);
+    String name;
     String value = null;
-    if (name.contains("=") && (!name.contains("#") || name.indexOf('#') > name.indexOf('='))) {
-      String[] nameAndValue = name.split("=", 2);
-      name = nameAndValue[0].trim();
-      value = nameAndValue[1].trim();
-    } else if (name.contains("#")) {
+    if (equalsIndex != -1 && (hashIndex == -1 || hashIndex > equalsIndex)) {
+      name = trimmedSubstring(messageDefinition, nameStart, equalsIndex);
       // Stripping comments from constants is deferred until we also know the
       // type since strings are handled differently.
-      Preconditions.checkState(!name.startsWith("#"), String.format(
-          "Fields must define a name. Field definition in %s was: \"%s\"", messageType,
-          fieldDefinition));
-      name = name.substring(0, name.indexOf('#'));
-      name = name.trim();
+      value = trimmedSubstring(messageDefinition, equalsIndex + 1, end);
+    } else if (hashIndex != -1) {
+      if (hashIndex == nameStart) {
+        throw new IllegalStateException(String.format(
+            "Fields must define a name. Field definition in %s was: \"%s\"", messageType,
+            messageDefinition.substring(start, end)));
+      }
+      name = trimmedSubstring(messageDefinition, nameStart, hashIndex);
+    } else {
+      name = messageDefinition.substring(nameStart, end);
     }
     boolean array = false;
     int size = -1;
@@ -149,7 +237,7 @@ public class MessageDefinitionParser {
       // expanded to "std_msgs/Header."
       Preconditions.checkState(name.equals("header"), "Header field must be named \"header.\"");
       type = "std_msgs/Header";
-    } else if (!PrimitiveFieldType.existsFor(type) && !type.contains("/")) {
+    } else if (!PrimitiveFieldType.existsFor(type) && type.indexOf('/') == -1) {
       // Handle package relative message names.
       type = messageType.substring(0, messageType.lastIndexOf('/') + 1) + type;
     }
@@ -159,18 +247,48 @@ public class MessageDefinitionParser {
         throw new UnsupportedOperationException("Array constants are not supported.");
       }
       // Comments inline with string constants are treated as data.
-      if (!type.equals(PrimitiveFieldType.STRING.getName()) && value.contains("#")) {
-        Preconditions.checkState(!value.startsWith("#"), "Constants must define a value.");
-        value = value.substring(0, value.indexOf('#'));
-        value = value.trim();
+      int valueHashIndex = value.indexOf('#');
+      if (valueHashIndex != -1 && !type.equals(PrimitiveFieldType.STRING.getName())) {
+        Preconditions.checkState(valueHashIndex != 0, "Constants must define a value.");
+        value = value.substring(0, valueHashIndex).trim();
       }
-      visitor.constantValue(type, name, value);
-    } else {
-      if (array) {
-        visitor.variableList(type, size, name);
-      } else {
-        visitor.variableValue(type, name);
+      return new ParsedField(ParsedField.CONSTANT_VALUE, type, name, -1, value);
+    }
+    if (array) {
+      return new ParsedField(ParsedField.VARIABLE_LIST, type, name, size, null);
+    }
+    return new ParsedField(ParsedField.VARIABLE_VALUE, type, name, -1, null);
+  }
+
+  /**
+   * @return {@code true} if the character matches the regular expression
+   *         {@code \s}
+   */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\013' || c == '\f' || c == '\r';
+  }
+
+  /**
+   * @return the index of the first occurrence of {@code c} in {@code string}
+   *         between {@code start} (inclusive) and {@code end} (exclusive), or
+   *         -1 if there is none
+   */
+  private static int indexOf(String string, char c, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (string.charAt(i) == c) {
+        return i;
       }
     }
+    return -1;
+  }
+
+  private static String trimmedSubstring(String string, int start, int end) {
+    while (start < end && string.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && string.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return string.substring(start, end);
   }
 }
@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message.definition;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+
+import org.ros.exception.RosRuntimeException;
+import org.ros.internal.message.definition.MessageDefinitionParser.MessageDefinitionVisitor;
+import org.ros.message.MessageDefinitionProvider;
+import org.ros.message.MessageIdentifier;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A precompiled snapshot of message types that is generated together with the
+ * message interfaces.
+ * <p>
+ * For each type, the registry stores the definition, the MD5 checksum and the
+ * field layout as reported by the {@link MessageDefinitionParser}. A registry
+ * loaded with {@link #load(File)} therefore serves definitions without loading
+ * message classes by reflection, checksums without hashing, and layouts
+ * without parsing (see {@link #accept(String, MessageDefinitionVisitor)}).
+ * The registry is packaged with the generated message classes and can be
+ * loaded from the class path with {@link #loadResource(ClassLoader)}.
+ * <p>
+ * The binary format is a magic number and version followed by the entries.
+ * Strings are stored as a length followed by their UTF-8 bytes.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class MessageRegistry implements MessageDefinitionProvider {
+
+  /**
+   * The name of the registry file written by
+   * {@link org.ros.internal.message.GenerateInterfaces}.
+   */
+  public static final String FILE_NAME = "messages.registry";
+
+  private static final int MAGIC = 0x524f5352;
+  private static final int VERSION = 1;
+
+  private final Map<String, Entry> entries;
+
+  // Serves definitions of types that are not in the registry, may be null.
+  private volatile MessageDefinitionProvider fallbackProvider;
+
+  private static final class Entry {
+
+    private final String definition;
+    private final String md5Checksum;
+    // null if the definition has no field layout (e.g. a service definition)
+    private final List<ParsedField> fields;
+
+    Entry(String definition, String md5Checksum, List<ParsedField> fields) {
+      this.definition = definition;
+      this.md5Checksum = md5Checksum;
+      this.fields = fields;
+    }
+  }
+
+  public MessageRegistry() {
+    entries = Maps.newConcurrentMap();
+  }
+
+  /**
+   * Adds a type to the registry.
+   * 
+   * @param messageType
+   *          the type (e.g. std_msgs/String)
+   * @param messageDefinition
+   *          the definition of the type
+   * @param md5Checksum
+   *          the MD5 checksum of the type or {@code null} if it should be
+   *          computed on demand
+   * @param parseLayout
+   *          {@code true} if the field layout should be recorded, must be
+   *          {@code false} for service definitions
+   */
+  public void add(String messageType, String messageDefinition, String md5Checksum,
+      boolean parseLayout) {
+    Preconditions.checkNotNull(messageType);
+    Preconditions.checkNotNull(messageDefinition);
+    List<ParsedField> fields = null;
+    if (parseLayout) {
+      fields = MessageDefinitionParser.parseFields(messageType, messageDefinition);
+    }
+    entries.put(messageType, new Entry(messageDefinition, md5Checksum, fields));
+  }
+
+  /**
+   * Sets a {@link MessageDefinitionProvider} for types that are not in the
+   * registry (e.g. message classes from another library). Checksums and field
+   * layouts of those types are computed as usual.
+   * 
+   * @param fallbackProvider
+   *          the {@link MessageDefinitionProvider} to use for types that are
+   *          not in the registry, or {@code null}
+   */
+  public void setFallbackProvider(MessageDefinitionProvider fallbackProvider) {
+    this.fallbackProvider = fallbackProvider;
+  }
+
+  @Override
+  public String get(String messageType) {
+    Entry entry = entries.get(messageType);
+    if (entry == null && fallbackProvider != null) {
+      return fallbackProvider.get(messageType);
+    }
+    return getEntry(messageType).definition;
+  }
+
+  @Override
+  public boolean has(String messageType) {
+    if (entries.containsKey(messageType)) {
+      return true;
+    }
+    return fallbackProvider != null && fallbackProvider.has(messageType);
+  }
+
+  /**
+   * @return the MD5 checksum of the type or {@code null} if the registry does
+   *         not contain it
+   */
+  public String getMd5Checksum(String messageType) {
+    Entry entry = entries.get(messageType);
+    if (entry == null) {
+      return null;
+    }
+    return entry.md5Checksum;
+  }
+
+  /**
+   * @return {@code true} if the field layout of the type with exactly the
+   *         specified definition is available
+   */
+  public boolean hasLayout(String messageType, String messageDefinition) {
+    Entry entry = entries.get(messageType);
+    return entry != null && entry.fields != null && entry.definition.equals(messageDefinition);
+  }
+
+  /**
+   * Reports the recorded fields of a type to a {@link MessageDefinitionVisitor}
+   * in the same order as the {@link MessageDefinitionParser} would.
+   * 
+   * @param messageType
+   *          the type to visit
+   * @param visitor
+   *          the {@link MessageDefinitionVisitor} to call for each field
+   */
+  public void accept(String messageType, MessageDefinitionVisitor visitor) {
+    Entry entry = getEntry(messageType);
+    Preconditions.checkState(entry.fields != null, "No field layout for: " + messageType);
+    for (ParsedField field : entry.fields) {
+      field.accept(visitor);
+    }
+  }
+
+  private Entry getEntry(String messageType) {
+    Entry entry = entries.get(messageType);
+    if (entry == null) {
+      throw new NoSuchElementException("No message definition available for: " + messageType);
+    }
+    return entry;
+  }
+
+  /**
+   * @return the packages of the types in the registry, not including those of
+   *         the fallback provider
+   */
+  @Override
+  public Collection<String> getPackages() {
+    Set<String> packages = Sets.newHashSet();
+    for (String messageType : entries.keySet()) {
+      packages.add(MessageIdentifier.of(messageType).getPackage());
+    }
+    return packages;
+  }
+
+  @Override
+  public Collection<MessageIdentifier> getMessageIdentifiersByPackage(String pkg) {
+    Set<MessageIdentifier> messageIdentifiers = Sets.newHashSet();
+    for (String messageType : entries.keySet()) {
+      MessageIdentifier messageIdentifier = MessageIdentifier.of(messageType);
+      if (messageIdentifier.getPackage().equals(pkg)) {
+        messageIdentifiers.add(messageIdentifier);
+      }
+    }
+    return messageIdentifiers;
+  }
+
+  /**
+   * Writes this registry to a file that can be loaded with {@link #load(File)}.
+   * 
+   * @param file
+   *          the file to write
+   */
+  public void write(File file) {
+    try {
+      DataOutputStream output =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      try {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(entries.size());
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+          Entry entry = mapEntry.getValue();
+          writeString(output, mapEntry.getKey());
+          writeString(output, entry.definition);
+          writeString(output, entry.md5Checksum);
+          if (entry.fields == null) {
+            output.writeInt(-1);
+            continue;
+          }
+          output.writeInt(entry.fields.size());
+          for (ParsedField field : entry.fields) {
+            output.writeByte(field.getKind());
+            writeString(output, field.getType());
+            writeString(output, field.getName());
+            output.writeInt(field.getSize());
+            writeString(output, field.getValue());
+          }
+        }
+      } finally {
+        output.close();
+      }
+    } catch (IOException e) {
+      throw new RosRuntimeException(e);
+    }
+  }
+
+  /**
+   * Loads a registry written by {@link #write(File)} by mapping the file into
+   * memory and decoding it in a single pass.
+   * 
+   * @param file
+   *          the registry file
+   * @return the loaded {@link MessageRegistry}
+   */
+  public static MessageRegistry load(File file) {
+    try {
+      FileInputStream input = new FileInputStream(file);
+      try {
+        FileChannel channel = input.getChannel();
+        return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      } finally {
+        input.close();
+      }
+    } catch (IOException e) {
+      throw new RosRuntimeException(e);
+    }
+  }
+
+  /**
+   * Loads the registry that was packaged with the generated message classes.
+   * 
+   * @param classLoader
+   *          the {@link ClassLoader} to load the {@link #FILE_NAME} resource
+   *          from
+   * @return the loaded {@link MessageRegistry} or {@code null} if the class
+   *         path contains no registry
+   */
+  public static MessageRegistry loadResource(ClassLoader classLoader) {
+    InputStream input = classLoader.getResourceAsStream(FILE_NAME);
+    if (input == null) {
+      return null;
+    }
+    try {
+      try {
+        return read(ByteBuffer.wrap(ByteStreams.toByteArray(input)));
+      } finally {
+        input.close();
+      }
+    } catch (IOException e) {
+      throw new RosRuntimeException(e);
+    }
+  }
+
+  /**
+   * @param buffer
+   *          the contents of a registry file
+   * @return the decoded {@link MessageRegistry}
+   */
+  public static MessageRegistry read(ByteBuffer buffer) {
+    if (buffer.getInt() != MAGIC) {
+      throw new RosRuntimeException("Not a message registry.");
+    }
+    int version = buffer.getInt();
+    if (version != VERSION) {
+      throw new RosRuntimeException("Unsupported message registry version: " + version);
+    }
+    MessageRegistry messageRegistry = new MessageRegistry();
+    int entryCount = buffer.getInt();
+    for (int i = 0; i < entryCount; i++) {
+      String messageType = readString(buffer);
+      String definition = readString(buffer);
+      String md5Checksum = readString(buffer);
+      int fieldCount = buffer.getInt();
+      List<ParsedField> fields = null;
+      if (fieldCount >= 0) {
+        fields = Lists.newArrayListWithCapacity(fieldCount);
+        for (int j = 0; j < fieldCount; j++) {
+          byte kind = buffer.get();
+          String type = readString(buffer);
+          String name = readString(buffer);
+          int size = buffer.getInt();
+          String value = readString(buffer);
+          fields.add(new ParsedField(kind, type, name, size, value));
+        }
+      }
+      messageRegistry.entries.put(messageType, new Entry(definition, md5Checksum, fields));
+    }
+    return messageRegistry;
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    if (value == null) {
+      output.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(Charsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message.definition;
+
+import org.ros.exception.RosRuntimeException;
+import org.ros.internal.message.definition.MessageDefinitionParser.MessageDefinitionVisitor;
+
+/**
+ * A single field of a parsed message definition that can be reported to a
+ * {@link MessageDefinitionVisitor} any number of times.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+class ParsedField {
+
+  static final byte CONSTANT_VALUE = 0;
+  static final byte VARIABLE_VALUE = 1;
+  static final byte VARIABLE_LIST = 2;
+
+  private final byte kind;
+  private final String type;
+  private final String name;
+  private final int size;
+  private final String value;
+
+  ParsedField(byte kind, String type, String name, int size, String value) {
+    this.kind = kind;
+    this.type = type;
+    this.name = name;
+    this.size = size;
+    this.value = value;
+  }
+
+  byte getKind() {
+    return kind;
+  }
+
+  String getType() {
+    return type;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  int getSize() {
+    return size;
+  }
+
+  String getValue() {
+    return value;
+  }
+
+  void accept(MessageDefinitionVisitor visitor) {
+    switch (kind) {
+      case CONSTANT_VALUE:
+        visitor.constantValue(type, name, value);
+        break;
+      case VARIABLE_VALUE:
+        visitor.variableValue(type, name);
+        break;
+      case VARIABLE_LIST:
+        visitor.variableList(type, size, name);
+        break;
+      default:
+        throw new RosRuntimeException("Unknown field kind: " + kind);
+    }
+  }
+}
@@ -58,9 +58,7 @@ public class BooleanArrayField extends Field {
     if (size < 0) {
       buffer.writeInt(value.length);
     }
-    for (boolean v : value) {
-      type.serialize(v, buffer);
-    }
+    PrimitiveArrays.writeBooleans(buffer, value);
   }
 
   @Override
@@ -69,10 +67,30 @@ public class BooleanArrayField extends Field {
     if (currentSize < 0) {
       currentSize = buffer.readInt();
     }
-    value = new boolean[currentSize];
-    for (int i = 0; i < currentSize; i++) {
-      value[i] = buffer.readByte() == 1;
+    value = PrimitiveArrays.readBooleans(buffer, currentSize);
+  }
+
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    int currentSize = size;
+    if (currentSize < 0) {
+      currentSize = buffer.readInt();
+    }
+    buffer.skipBytes(currentSize * type.getSerializedSize());
+  }
+
+  @Override
+  public int getSerializedSize() {
+    int elementsSize = value.length * type.getSerializedSize();
+    if (size < 0) {
+      return 4 + elementsSize;
     }
+    return elementsSize;
+  }
+
+  @Override
+  public boolean isFixedSize() {
+    return size >= 0;
   }
 
   @Override
@@ -80,6 +98,13 @@ public class BooleanArrayField extends Field {
     return String.format("%s %s\n", type, name);
   }
 
+  @Override
+  public BooleanArrayField copy() {
+    BooleanArrayField copy = new BooleanArrayField(type, name, size);
+    copy.value = value.clone();
+    return copy;
+  }
+
   @Override
   public String getJavaTypeName() {
     return type.getJavaTypeName() + "[]";
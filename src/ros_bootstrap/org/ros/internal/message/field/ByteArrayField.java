@@ -58,9 +58,7 @@ public class ByteArrayField extends Field {
     if (size < 0) {
       buffer.writeInt(value.length);
     }
-    for (byte v : value) {
-      type.serialize(v, buffer);
-    }
+    buffer.writeBytes(value);
   }
 
   @Override
@@ -70,9 +68,30 @@ public class ByteArrayField extends Field {
       currentSize = buffer.readInt();
     }
     value = new byte[currentSize];
-    for (int i = 0; i < currentSize; i++) {
-      value[i] = buffer.readByte();
+    buffer.readBytes(value);
+  }
+
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    int currentSize = size;
+    if (currentSize < 0) {
+      currentSize = buffer.readInt();
+    }
+    buffer.skipBytes(currentSize * type.getSerializedSize());
+  }
+
+  @Override
+  public int getSerializedSize() {
+    int elementsSize = value.length * type.getSerializedSize();
+    if (size < 0) {
+      return 4 + elementsSize;
     }
+    return elementsSize;
+  }
+
+  @Override
+  public boolean isFixedSize() {
+    return size >= 0;
   }
 
   @Override
@@ -80,6 +99,13 @@ public class ByteArrayField extends Field {
     return String.format("%s %s\n", type, name);
   }
 
+  @Override
+  public ByteArrayField copy() {
+    ByteArrayField copy = new ByteArrayField(type, name, size);
+    copy.value = value.clone();
+    return copy;
+  }
+
   @Override
   public String getJavaTypeName() {
     return type.getJavaTypeName() + "[]";
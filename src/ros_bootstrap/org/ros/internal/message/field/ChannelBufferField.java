@@ -37,9 +37,18 @@ public class ChannelBufferField extends Field {
   }
 
   private ChannelBufferField(FieldType type, String name, int size) {
+    this(type, name, size, MessageBuffers.dynamicBuffer());
+    // Fixed size arrays are zero filled so that they serialize to the declared
+    // number of bytes.
+    if (size > 0) {
+      value.writeZero(size);
+    }
+  }
+
+  private ChannelBufferField(FieldType type, String name, int size, ChannelBuffer value) {
     super(type, name, false);
     this.size = size;
-    value = MessageBuffers.dynamicBuffer();
+    this.value = value;
   }
 
   @SuppressWarnings("unchecked")
@@ -76,11 +85,40 @@ public class ChannelBufferField extends Field {
     value = buffer.readSlice(currentSize);
   }
 
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    int currentSize = size;
+    if (currentSize < 0) {
+      currentSize = buffer.readInt();
+    }
+    buffer.skipBytes(currentSize);
+  }
+
+  @Override
+  public int getSerializedSize() {
+    if (size < 0) {
+      return 4 + value.readableBytes();
+    }
+    return value.readableBytes();
+  }
+
+  @Override
+  public boolean isFixedSize() {
+    return size >= 0;
+  }
+
   @Override
   public String getMd5String() {
     return String.format("%s %s\n", type, name);
   }
 
+  @Override
+  public ChannelBufferField copy() {
+    // Copies the readable bytes in bulk into a new buffer of the same byte
+    // order.
+    return new ChannelBufferField(type, name, size, value.copy(0, value.readableBytes()));
+  }
+
   @Override
   public String getJavaTypeName() {
     return "org.jboss.netty.buffer.ChannelBuffer";
@@ -0,0 +1,702 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message.field;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.internal.message.Message;
+import org.ros.internal.message.MessageImpl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A {@link ListField} replacement for lists of small messages that consist
+ * only of primitive scalars (e.g. geometry_msgs/Point32).
+ * <p>
+ * Each member of the element type is stored in its own primitive array
+ * (column) instead of as one message per element. Element messages are only
+ * created when {@link List#get(int)} is called and are then cached, so an
+ * element keeps its identity and changes to it are written back to the
+ * columns before they are read. Messages added to the list are kept in the
+ * same way.
+ * <p>
+ * As with {@link ListField}, the list passed to {@link #setValue(Object)} is
+ * used as the value, so later changes to it are serialized. It replaces the
+ * columns until the field is deserialized again.
+ * <p>
+ * Since received messages are shared between listeners, all access to the
+ * columns and cached elements is synchronized on the field, including access
+ * through the list returned by {@link #getValue()}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ * 
+ * @param <T>
+ *          the element type
+ */
+class ColumnarListField<T> extends Field {
+
+  private static final byte BOOLEAN = 0;
+  private static final byte BYTE = 1;
+  private static final byte SHORT = 2;
+  private static final byte INT = 3;
+  private static final byte LONG = 4;
+  private static final byte FLOAT = 5;
+  private static final byte DOUBLE = 6;
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  // Locked by equals() if two fields have the same identity hash code.
+  private static final Object TIE_LOCK = new Object();
+
+  /**
+   * Describes how the members of an element type map to columns. Shared by
+   * all fields of the same element type.
+   */
+  static final class Layout {
+
+    private final byte[] kinds;
+    private final int[] fieldIndices;
+    private final int elementSize;
+
+    private Layout(byte[] kinds, int[] fieldIndices, int elementSize) {
+      this.kinds = kinds;
+      this.fieldIndices = fieldIndices;
+      this.elementSize = elementSize;
+    }
+
+    /**
+     * @param template
+     *          a message of the element type
+     * @return the {@link Layout} for the element type or {@code null} if
+     *         messages of this type cannot be stored in columns
+     */
+    static Layout of(MessageImpl template) {
+      List<Field> fields = template.getMessageFields().getFields();
+      List<Byte> kinds = Lists.newArrayList();
+      List<Integer> fieldIndices = Lists.newArrayList();
+      int elementSize = 0;
+      for (int i = 0; i < fields.size(); i++) {
+        Field field = fields.get(i);
+        if (field.isConstant()) {
+          continue;
+        }
+        if (!(field.getType() instanceof PrimitiveFieldType)
+            || !field.getJavaTypeName().equals(field.getType().getJavaTypeName())) {
+          return null;
+        }
+        byte kind = getKind(field.getJavaTypeName());
+        if (kind == -1) {
+          return null;
+        }
+        kinds.add(kind);
+        fieldIndices.add(i);
+        elementSize += field.getType().getSerializedSize();
+      }
+      if (kinds.isEmpty()) {
+        return null;
+      }
+      byte[] kindArray = new byte[kinds.size()];
+      int[] fieldIndexArray = new int[kinds.size()];
+      for (int i = 0; i < kindArray.length; i++) {
+        kindArray[i] = kinds.get(i);
+        fieldIndexArray[i] = fieldIndices.get(i);
+      }
+      return new Layout(kindArray, fieldIndexArray, elementSize);
+    }
+
+    private static byte getKind(String javaTypeName) {
+      if (javaTypeName.equals("boolean")) {
+        return BOOLEAN;
+      } else if (javaTypeName.equals("byte")) {
+        return BYTE;
+      } else if (javaTypeName.equals("short")) {
+        return SHORT;
+      } else if (javaTypeName.equals("int")) {
+        return INT;
+      } else if (javaTypeName.equals("long")) {
+        return LONG;
+      } else if (javaTypeName.equals("float")) {
+        return FLOAT;
+      } else if (javaTypeName.equals("double")) {
+        return DOUBLE;
+      }
+      return -1;
+    }
+
+    private Object newColumn(byte kind, int capacity) {
+      switch (kind) {
+        case BOOLEAN:
+          return new boolean[capacity];
+        case BYTE:
+          return new byte[capacity];
+        case SHORT:
+          return new short[capacity];
+        case INT:
+          return new int[capacity];
+        case LONG:
+          return new long[capacity];
+        case FLOAT:
+          return new float[capacity];
+        case DOUBLE:
+          return new double[capacity];
+        default:
+          throw new IllegalStateException();
+      }
+    }
+  }
+
+  private final MessageFieldType messageFieldType;
+  private final Layout layout;
+  private final Object[] columns;
+  private final ColumnarList list;
+  private int size;
+  private int capacity;
+  // Elements that have been handed out or added, indexed like the columns.
+  // Their values take precedence over the columns until the next sync().
+  private Message[] elements;
+  // The list passed to setValue(), or null if the columns hold the value.
+  private List<T> aliased;
+
+  static <T> ColumnarListField<T> newVariable(MessageFieldType type, String name, Layout layout) {
+    return new ColumnarListField<T>(type, name, layout);
+  }
+
+  private ColumnarListField(MessageFieldType type, String name, Layout layout) {
+    super(type, name, false);
+    messageFieldType = type;
+    this.layout = layout;
+    columns = new Object[layout.kinds.length];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = layout.newColumn(layout.kinds[i], 0);
+    }
+    list = new ColumnarList();
+  }
+
+  private final class ColumnarList extends AbstractList<T> implements RandomAccess {
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T get(int index) {
+      synchronized (ColumnarListField.this) {
+        checkIndex(index);
+        if (elements == null) {
+          elements = new Message[capacity];
+        }
+        Message element = elements[index];
+        if (element == null) {
+          element = messageFieldType.getDefaultValue();
+          writeElement(index, getFields(element));
+          elements[index] = element;
+        }
+        return (T) element;
+      }
+    }
+
+    @Override
+    public T set(int index, T element) {
+      Preconditions.checkNotNull(element);
+      synchronized (ColumnarListField.this) {
+        T previous = get(index);
+        elements[index] = (Message) element;
+        return previous;
+      }
+    }
+
+    @Override
+    public void add(int index, T element) {
+      Preconditions.checkNotNull(element);
+      synchronized (ColumnarListField.this) {
+        if (index < 0 || index > size) {
+          throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        ensureCapacity(size + 1);
+        if (elements == null) {
+          elements = new Message[capacity];
+        }
+        move(index, index + 1, size - index);
+        elements[index] = (Message) element;
+        size++;
+        modCount++;
+      }
+    }
+
+    @Override
+    public T remove(int index) {
+      synchronized (ColumnarListField.this) {
+        T previous = get(index);
+        move(index + 1, index, size - index - 1);
+        size--;
+        elements[size] = null;
+        modCount++;
+        return previous;
+      }
+    }
+
+    @Override
+    public void clear() {
+      synchronized (ColumnarListField.this) {
+        setSize(0);
+        modCount++;
+      }
+    }
+
+    @Override
+    public int size() {
+      synchronized (ColumnarListField.this) {
+        return size;
+      }
+    }
+
+    private void structureChanged() {
+      modCount++;
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private static MessageFields getFields(Message message) {
+    return ((MessageImpl) message.toRawMessage()).getMessageFields();
+  }
+
+  private void ensureCapacity(int minimumCapacity) {
+    if (minimumCapacity <= capacity) {
+      return;
+    }
+    int newCapacity = Math.max(minimumCapacity, Math.max(INITIAL_CAPACITY, capacity * 2));
+    for (int i = 0; i < columns.length; i++) {
+      Object column = layout.newColumn(layout.kinds[i], newCapacity);
+      System.arraycopy(columns[i], 0, column, 0, size);
+      columns[i] = column;
+    }
+    if (elements != null) {
+      elements = Arrays.copyOf(elements, newCapacity);
+    }
+    capacity = newCapacity;
+  }
+
+  private void move(int from, int to, int length) {
+    for (Object column : columns) {
+      System.arraycopy(column, from, column, to, length);
+    }
+    if (elements != null) {
+      System.arraycopy(elements, from, elements, to, length);
+    }
+  }
+
+  /**
+   * Resizes the list. Elements beyond the new size are discarded and new
+   * elements are left uninitialized.
+   */
+  private void setSize(int newSize) {
+    ensureCapacity(newSize);
+    if (elements != null && newSize < size) {
+      Arrays.fill(elements, newSize, size, null);
+    }
+    size = newSize;
+  }
+
+  /**
+   * Writes the values of all cached elements back to the columns.
+   */
+  private synchronized void sync() {
+    if (elements == null || aliased != null) {
+      return;
+    }
+    for (int i = 0; i < size; i++) {
+      if (elements[i] != null) {
+        readElement(i, getFields(elements[i]));
+      }
+    }
+  }
+
+  /**
+   * Copies the members of an element message into the columns at
+   * {@code index}.
+   */
+  private void readElement(int index, MessageFields fields) {
+    byte[] kinds = layout.kinds;
+    int[] fieldIndices = layout.fieldIndices;
+    for (int i = 0; i < kinds.length; i++) {
+      Field field = fields.getField(fieldIndices[i]);
+      Object column = columns[i];
+      switch (kinds[i]) {
+        case BOOLEAN:
+          ((boolean[]) column)[index] = field.getBoolean();
+          break;
+        case BYTE:
+          ((byte[]) column)[index] = field.getByte();
+          break;
+        case SHORT:
+          ((short[]) column)[index] = field.getShort();
+          break;
+        case INT:
+          ((int[]) column)[index] = field.getInt();
+          break;
+        case LONG:
+          ((long[]) column)[index] = field.getLong();
+          break;
+        case FLOAT:
+          ((float[]) column)[index] = field.getFloat();
+          break;
+        case DOUBLE:
+          ((double[]) column)[index] = field.getDouble();
+          break;
+      }
+    }
+  }
+
+  /**
+   * Copies the columns at {@code index} into the members of an element
+   * message.
+   */
+  private void writeElement(int index, MessageFields fields) {
+    byte[] kinds = layout.kinds;
+    int[] fieldIndices = layout.fieldIndices;
+    for (int i = 0; i < kinds.length; i++) {
+      Field field = fields.getFieldForSetting(fieldIndices[i]);
+      Object column = columns[i];
+      switch (kinds[i]) {
+        case BOOLEAN:
+          field.setBoolean(((boolean[]) column)[index]);
+          break;
+        case BYTE:
+          field.setByte(((byte[]) column)[index]);
+          break;
+        case SHORT:
+          field.setShort(((short[]) column)[index]);
+          break;
+        case INT:
+          field.setInt(((int[]) column)[index]);
+          break;
+        case LONG:
+          field.setLong(((long[]) column)[index]);
+          break;
+        case FLOAT:
+          field.setFloat(((float[]) column)[index]);
+          break;
+        case DOUBLE:
+          field.setDouble(((double[]) column)[index]);
+          break;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public synchronized List<T> getValue() {
+    return aliased != null ? aliased : list;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public synchronized void setValue(Object value) {
+    Preconditions.checkNotNull(value);
+    if (value == list) {
+      aliased = null;
+      return;
+    }
+    setSize(0);
+    list.structureChanged();
+    aliased = (List<T>) value;
+  }
+
+  private int getElementCount() {
+    return aliased != null ? aliased.size() : size;
+  }
+
+  /**
+   * @return the value of the member in {@code column} of the element at
+   *         {@code index} as bits, so that floating point values compare like
+   *         {@link Float#equals(Object)}
+   */
+  private long getBits(int index, int column) {
+    byte kind = layout.kinds[column];
+    if (aliased != null) {
+      Field field =
+          getFields((Message) aliased.get(index)).getField(layout.fieldIndices[column]);
+      switch (kind) {
+        case BOOLEAN:
+          return field.getBoolean() ? 1 : 0;
+        case BYTE:
+          return field.getByte();
+        case SHORT:
+          return field.getShort();
+        case INT:
+          return field.getInt();
+        case LONG:
+          return field.getLong();
+        case FLOAT:
+          return Float.floatToIntBits(field.getFloat());
+        case DOUBLE:
+          return Double.doubleToLongBits(field.getDouble());
+        default:
+          throw new IllegalStateException();
+      }
+    }
+    Object values = columns[column];
+    switch (kind) {
+      case BOOLEAN:
+        return ((boolean[]) values)[index] ? 1 : 0;
+      case BYTE:
+        return ((byte[]) values)[index];
+      case SHORT:
+        return ((short[]) values)[index];
+      case INT:
+        return ((int[]) values)[index];
+      case LONG:
+        return ((long[]) values)[index];
+      case FLOAT:
+        return Float.floatToIntBits(((float[]) values)[index]);
+      case DOUBLE:
+        return Double.doubleToLongBits(((double[]) values)[index]);
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public synchronized void serialize(ChannelBuffer buffer) {
+    if (aliased != null) {
+      buffer.writeInt(aliased.size());
+      for (T element : aliased) {
+        messageFieldType.serialize(element, buffer);
+      }
+      return;
+    }
+    sync();
+    buffer.writeInt(size);
+    byte[] kinds = layout.kinds;
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < kinds.length; j++) {
+        Object column = columns[j];
+        switch (kinds[j]) {
+          case BOOLEAN:
+            buffer.writeByte(((boolean[]) column)[i] ? 1 : 0);
+            break;
+          case BYTE:
+            buffer.writeByte(((byte[]) column)[i]);
+            break;
+          case SHORT:
+            buffer.writeShort(((short[]) column)[i]);
+            break;
+          case INT:
+            buffer.writeInt(((int[]) column)[i]);
+            break;
+          case LONG:
+            buffer.writeLong(((long[]) column)[i]);
+            break;
+          case FLOAT:
+            buffer.writeFloat(((float[]) column)[i]);
+            break;
+          case DOUBLE:
+            buffer.writeDouble(((double[]) column)[i]);
+            break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Deserializes directly into the columns. Cached elements that remain in the
+   * list are updated in place (e.g. when the parent message is recycled),
+   * except for retained elements, which are dropped from the cache instead. A
+   * list passed to {@link #setValue(Object)} is released and left unchanged.
+   */
+  @Override
+  public synchronized void deserialize(ChannelBuffer buffer) {
+    aliased = null;
+    setSize(buffer.readInt());
+    byte[] kinds = layout.kinds;
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < kinds.length; j++) {
+        Object column = columns[j];
+        switch (kinds[j]) {
+          case BOOLEAN:
+            ((boolean[]) column)[i] = buffer.readByte() == 1;
+            break;
+          case BYTE:
+            ((byte[]) column)[i] = buffer.readByte();
+            break;
+          case SHORT:
+            ((short[]) column)[i] = buffer.readShort();
+            break;
+          case INT:
+            ((int[]) column)[i] = buffer.readInt();
+            break;
+          case LONG:
+            ((long[]) column)[i] = buffer.readLong();
+            break;
+          case FLOAT:
+            ((float[]) column)[i] = buffer.readFloat();
+            break;
+          case DOUBLE:
+            ((double[]) column)[i] = buffer.readDouble();
+            break;
+        }
+      }
+    }
+    if (elements != null) {
+      for (int i = 0; i < size; i++) {
+        if (elements[i] != null) {
+          if (((MessageImpl) elements[i].toRawMessage()).isRetained()) {
+            elements[i] = null;
+          } else {
+            writeElement(i, getFields(elements[i]));
+          }
+        }
+      }
+    }
+    list.structureChanged();
+  }
+
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    int size = buffer.readInt();
+    buffer.skipBytes(size * layout.elementSize);
+  }
+
+  @Override
+  public synchronized int getSerializedSize() {
+    return 4 + getElementCount() * layout.elementSize;
+  }
+
+  @Override
+  public boolean isFixedSize() {
+    return false;
+  }
+
+  @Override
+  public String getMd5String() {
+    return String.format("%s %s\n", type, name);
+  }
+
+  @Override
+  public synchronized ColumnarListField<T> copy() {
+    ColumnarListField<T> copy = new ColumnarListField<T>(messageFieldType, name, layout);
+    if (aliased != null) {
+      int count = aliased.size();
+      copy.ensureCapacity(count);
+      for (int i = 0; i < count; i++) {
+        copy.readElement(i, getFields((Message) aliased.get(i)));
+      }
+      copy.size = count;
+      return copy;
+    }
+    sync();
+    copy.ensureCapacity(size);
+    for (int i = 0; i < columns.length; i++) {
+      System.arraycopy(columns[i], 0, copy.columns[i], 0, size);
+    }
+    copy.size = size;
+    return copy;
+  }
+
+  @Override
+  public String getJavaTypeName() {
+    return String.format("java.util.List<%s>", type.getJavaTypeName());
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnarListField<" + type + ", " + name + ">";
+  }
+
+  @Override
+  public synchronized int hashCode() {
+    final int prime = 31;
+    int result = super.hashCode();
+    sync();
+    int count = getElementCount();
+    result = prime * result + count;
+    for (int i = 0; i < count; i++) {
+      for (int j = 0; j < columns.length; j++) {
+        long bits = getBits(i, j);
+        result = prime * result + (int) (bits ^ (bits >>> 32));
+      }
+    }
+    return result;
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!super.equals(obj))
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    ColumnarListField other = (ColumnarListField) obj;
+    // Both fields are locked in a fixed order so that a.equals(b) and
+    // b.equals(a) cannot deadlock when called concurrently.
+    int hash = System.identityHashCode(this);
+    int otherHash = System.identityHashCode(other);
+    if (hash < otherHash) {
+      synchronized (this) {
+        synchronized (other) {
+          return valuesEqual(other);
+        }
+      }
+    } else if (hash > otherHash) {
+      synchronized (other) {
+        synchronized (this) {
+          return valuesEqual(other);
+        }
+      }
+    }
+    synchronized (TIE_LOCK) {
+      synchronized (this) {
+        synchronized (other) {
+          return valuesEqual(other);
+        }
+      }
+    }
+  }
+
+  /**
+   * Compares the values of two fields. Both fields must be locked.
+   */
+  @SuppressWarnings("rawtypes")
+  private boolean valuesEqual(ColumnarListField other) {
+    if (layout.kinds.length != other.layout.kinds.length) {
+      return false;
+    }
+    int count = getElementCount();
+    if (count != other.getElementCount()) {
+      return false;
+    }
+    sync();
+    other.sync();
+    for (int i = 0; i < count; i++) {
+      for (int j = 0; j < columns.length; j++) {
+        if (getBits(i, j) != other.getBits(i, j)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
@@ -20,6 +20,7 @@ import com.google.common.base.Preconditions;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
 
 /**
@@ -53,14 +54,26 @@ public class DoubleArrayField extends Field {
     this.value = (double[]) value;
   }
 
+  @Override
+  public DoubleBuffer getView() {
+    return DoubleBuffer.wrap(value).asReadOnlyBuffer();
+  }
+
+  @Override
+  public DoubleBuffer readView(ChannelBuffer buffer) {
+    int currentSize = size;
+    if (currentSize < 0) {
+      currentSize = buffer.readInt();
+    }
+    return PrimitiveArrays.viewDoubles(buffer, currentSize);
+  }
+
   @Override
   public void serialize(ChannelBuffer buffer) {
     if (size < 0) {
       buffer.writeInt(value.length);
     }
-    for (double v : value) {
-      type.serialize(v, buffer);
-    }
+    PrimitiveArrays.writeDoubles(buffer, value);
   }
 
   @Override
@@ -69,10 +82,30 @@ public class DoubleArrayField extends Field {
     if (currentSize < 0) {
       currentSize = buffer.readInt();
     }
-    value = new double[currentSize];
-    for (int i = 0; i < currentSize; i++) {
-      value[i] = buffer.readDouble();
+    value = PrimitiveArrays.readDoubles(buffer, currentSize);
+  }
+
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    int currentSize = size;
+    if (currentSize < 0) {
+      currentSize = buffer.readInt();
+    }
+    buffer.skipBytes(currentSize * type.getSerializedSize());
+  }
+
+  @Override
+  public int getSerializedSize() {
+    int elementsSize = value.length * type.getSerializedSize();
+    if (size < 0) {
+      return 4 + elementsSize;
     }
+    return elementsSize;
+  }
+
+  @Override
+  public boolean isFixedSize() {
+    return size >= 0;
   }
 
   @Override
@@ -80,6 +113,13 @@ public class DoubleArrayField extends Field {
     return String.format("%s %s\n", type, name);
   }
 
+  @Override
+  public DoubleArrayField copy() {
+    DoubleArrayField copy = new DoubleArrayField(type, name, size);
+    copy.value = value.clone();
+    return copy;
+  }
+
   @Override
   public String getJavaTypeName() {
     return type.getJavaTypeName() + "[]";
@@ -17,7 +17,11 @@
 package org.ros.internal.message.field;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.internal.message.Message;
+import org.ros.message.Duration;
+import org.ros.message.Time;
 
+import java.nio.Buffer;
 
 /**
  * @author damonkohler@google.com (Damon Kohler)
@@ -70,11 +74,138 @@ public abstract class Field {
 
   public abstract void deserialize(ChannelBuffer buffer);
 
+  /**
+   * Advances the reader index of {@code buffer} past the serialized value of
+   * this field without deserializing it. The value of this field is not
+   * modified.
+   * 
+   * @param buffer
+   *          the {@link ChannelBuffer} to skip the value in
+   */
+  public abstract void skip(ChannelBuffer buffer);
+
+  /**
+   * @return the number of bytes written by {@link #serialize(ChannelBuffer)}
+   */
+  public abstract int getSerializedSize();
+
+  /**
+   * @return {@code true} if this field always serializes to the same number of
+   *         bytes regardless of its value
+   */
+  public abstract boolean isFixedSize();
+
   public abstract <T> T getValue();
 
   // TODO(damonkohler): Why not make Field generic?
   public abstract void setValue(Object value);
 
+  // The following unboxed accessors are overridden by the fields that store
+  // primitive values. The default implementations box.
+
+  public boolean getBoolean() {
+    return this.<Boolean>getValue();
+  }
+
+  public void setBoolean(boolean value) {
+    setValue(value);
+  }
+
+  public byte getByte() {
+    return this.<Byte>getValue();
+  }
+
+  public void setByte(byte value) {
+    setValue(value);
+  }
+
+  public short getShort() {
+    return this.<Short>getValue();
+  }
+
+  public void setShort(short value) {
+    setValue(value);
+  }
+
+  public int getInt() {
+    return this.<Integer>getValue();
+  }
+
+  public void setInt(int value) {
+    setValue(value);
+  }
+
+  public long getLong() {
+    return this.<Long>getValue();
+  }
+
+  public void setLong(long value) {
+    setValue(value);
+  }
+
+  public float getFloat() {
+    return this.<Float>getValue();
+  }
+
+  public void setFloat(float value) {
+    setValue(value);
+  }
+
+  public double getDouble() {
+    return this.<Double>getValue();
+  }
+
+  public void setDouble(double value) {
+    setValue(value);
+  }
+
+  /**
+   * @return a read-only view of the elements of this numeric array field that
+   *         is backed by its current value
+   * @throws UnsupportedOperationException
+   *           if this field is not a numeric array
+   */
+  public Buffer getView() {
+    throw new UnsupportedOperationException("Not a numeric array field: " + name);
+  }
+
+  /**
+   * Reads a serialized value of this field from {@code buffer} without
+   * deserializing it. The value of this field is not modified.
+   * 
+   * @param buffer
+   *          the {@link ChannelBuffer} to read the value from
+   * @return a read-only view of the serialized elements that is backed by
+   *         {@code buffer}
+   * @throws UnsupportedOperationException
+   *           if this field is not a numeric array
+   */
+  public Buffer readView(ChannelBuffer buffer) {
+    throw new UnsupportedOperationException("Not a numeric array field: " + name);
+  }
+
+  /**
+   * @return a deep copy of this field, constant fields are immutable and return
+   *         themselves
+   */
+  public abstract Field copy();
+
+  /**
+   * @return a deep copy of a single field value, immutable values are shared
+   */
+  protected static Object copyValue(Object value) {
+    if (value instanceof Message) {
+      return ((Message) value).toRawMessage().copy();
+    }
+    if (value instanceof Time) {
+      return new Time((Time) value);
+    }
+    if (value instanceof Duration) {
+      return new Duration((Duration) value);
+    }
+    return value;
+  }
+
   public abstract String getJavaTypeName();
 
   @Override
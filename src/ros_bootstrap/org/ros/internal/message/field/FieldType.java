@@ -38,10 +38,27 @@ public interface FieldType {
    */
   public int getSerializedSize();
 
+  /**
+   * @param value
+   *          the value to measure
+   * @return the number of bytes written by
+   *         {@link #serialize(Object, ChannelBuffer)} for {@code value}
+   */
+  public <T> int getSerializedSize(T value);
+
   public <T> void serialize(T value, ChannelBuffer buffer);
 
   public <T> T deserialize(ChannelBuffer buffer);
 
+  /**
+   * Advances the reader index of {@code buffer} past a serialized value of this
+   * {@link FieldType} without deserializing it.
+   * 
+   * @param buffer
+   *          the {@link ChannelBuffer} to skip the value in
+   */
+  public void skip(ChannelBuffer buffer);
+
   public Field newVariableValue(String name);
 
   public Field newVariableList(String name, int size);
@@ -20,6 +20,7 @@ import com.google.common.base.Preconditions;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 /**
@@ -53,14 +54,26 @@ public class IntegerArrayField extends Field {
     this.value = (int[]) value;
   }
 
+  @Override
+  public IntBuffer getView() {
+    return IntBuffer.wrap(value).asReadOnlyBuffer();
+  }
+
+  @Override
+  public IntBuffer readView(ChannelBuffer buffer) {
+    int currentSize = size;
+    if (currentSize < 0) {
+      currentSize = buffer.readInt();
+    }
+    return PrimitiveArrays.viewInts(buffer, currentSize);
+  }
+
   @Override
   public void serialize(ChannelBuffer buffer) {
     if (size < 0) {
       buffer.writeInt(value.length);
     }
-    for (int v : value) {
-      type.serialize(v, buffer);
-    }
+    PrimitiveArrays.writeInts(buffer, value);
   }
 
   @Override
@@ -69,10 +82,30 @@ public class IntegerArrayField extends Field {
     if (currentSize < 0) {
       currentSize = buffer.readInt();
     }
-    value = new int[currentSize];
-    for (int i = 0; i < currentSize; i++) {
-      value[i] = buffer.readInt();
+    value = PrimitiveArrays.readInts(buffer, currentSize);
+  }
+
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    int currentSize = size;
+    if (currentSize < 0) {
+      currentSize = buffer.readInt();
+    }
+    buffer.skipBytes(currentSize * type.getSerializedSize());
+  }
+
+  @Override
+  public int getSerializedSize() {
+    int elementsSize = value.length * type.getSerializedSize();
+    if (size < 0) {
+      return 4 + elementsSize;
     }
+    return elementsSize;
+  }
+
+  @Override
+  public boolean isFixedSize() {
+    return size >= 0;
   }
 
   @Override
@@ -80,6 +113,13 @@ public class IntegerArrayField extends Field {
     return String.format("%s %s\n", type, name);
   }
 
+  @Override
+  public IntegerArrayField copy() {
+    IntegerArrayField copy = new IntegerArrayField(type, name, size);
+    copy.value = value.clone();
+    return copy;
+  }
+
   @Override
   public String getJavaTypeName() {
     return type.getJavaTypeName() + "[]";
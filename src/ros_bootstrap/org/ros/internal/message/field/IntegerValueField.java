@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message.field;
+
+import com.google.common.base.Preconditions;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * A variable {@link Field} that stores a single {@code int} without boxing.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+class IntegerValueField extends Field {
+
+  private int value;
+
+  static IntegerValueField newVariable(FieldType type, String name) {
+    return new IntegerValueField(type, name);
+  }
+
+  private IntegerValueField(FieldType type, String name) {
+    super(type, name, false);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public Integer getValue() {
+    return value;
+  }
+
+  @Override
+  public void setValue(Object value) {
+    Preconditions.checkNotNull(value);
+    this.value = (Integer) value;
+  }
+
+  @Override
+  public int getInt() {
+    return value;
+  }
+
+  @Override
+  public void setInt(int value) {
+    this.value = value;
+  }
+
+  @Override
+  public void serialize(ChannelBuffer buffer) {
+    buffer.writeInt(value);
+  }
+
+  @Override
+  public void deserialize(ChannelBuffer buffer) {
+    value = buffer.readInt();
+  }
+
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    type.skip(buffer);
+  }
+
+  @Override
+  public int getSerializedSize() {
+    return type.getSerializedSize();
+  }
+
+  @Override
+  public boolean isFixedSize() {
+    return true;
+  }
+
+  @Override
+  public IntegerValueField copy() {
+    IntegerValueField copy = new IntegerValueField(type, name);
+    copy.value = value;
+    return copy;
+  }
+
+  @Override
+  public String getJavaTypeName() {
+    return type.getJavaTypeName();
+  }
+
+  @Override
+  public String toString() {
+    return "IntegerValueField<" + type + ", " + name + ">";
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = super.hashCode();
+    result = prime * result + value;
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!super.equals(obj))
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    IntegerValueField other = (IntegerValueField) obj;
+    if (value != other.value)
+      return false;
+    return true;
+  }
+}
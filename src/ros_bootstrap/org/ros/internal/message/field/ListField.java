@@ -19,6 +19,7 @@ package org.ros.internal.message.field;
 import com.google.common.base.Preconditions;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.internal.message.Message;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -65,18 +66,76 @@ public class ListField<T> extends Field {
 
   @Override
   public void deserialize(ChannelBuffer buffer) {
-    value.clear();
     int size = buffer.readInt();
+    if (type instanceof MessageFieldType) {
+      deserializeMessages(buffer, size);
+      return;
+    }
+    value.clear();
     for (int i = 0; i < size; i++) {
       value.add(type.<T>deserialize(buffer));
     }
   }
 
+  /**
+   * Deserializes a list of messages, reusing the messages that are already in
+   * the list (e.g. when the parent message is recycled) unless they have been
+   * retained.
+   */
+  @SuppressWarnings("unchecked")
+  private void deserializeMessages(ChannelBuffer buffer, int size) {
+    MessageFieldType messageFieldType = (MessageFieldType) type;
+    while (value.size() > size) {
+      value.remove(value.size() - 1);
+    }
+    for (int i = 0; i < size; i++) {
+      if (i < value.size()) {
+        value.set(i, (T) messageFieldType.deserialize(buffer, (Message) value.get(i)));
+      } else {
+        value.add((T) messageFieldType.deserialize(buffer));
+      }
+    }
+  }
+
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    int size = buffer.readInt();
+    for (int i = 0; i < size; i++) {
+      type.skip(buffer);
+    }
+  }
+
+  @Override
+  public int getSerializedSize() {
+    int size = 4;
+    for (T v : value) {
+      size += type.getSerializedSize(v);
+    }
+    return size;
+  }
+
+  @Override
+  public boolean isFixedSize() {
+    return false;
+  }
+
   @Override
   public String getMd5String() {
     return String.format("%s %s\n", type, name);
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public ListField<T> copy() {
+    ListField<T> copy = new ListField<T>(type, name);
+    List<T> copiedValue = new ArrayList<T>(value.size());
+    for (T v : value) {
+      copiedValue.add((T) copyValue(v));
+    }
+    copy.value = copiedValue;
+    return copy;
+  }
+
   @Override
   public String getJavaTypeName() {
     return String.format("java.util.List<%s>", type.getJavaTypeName());
@@ -20,6 +20,7 @@ import com.google.common.base.Preconditions;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 
+import java.nio.LongBuffer;
 import java.util.Arrays;
 
 /**
@@ -55,14 +56,26 @@ public class LongArrayField extends Field {
     this.value = (long[]) value;
   }
 
+  @Override
+  public LongBuffer getView() {
+    return LongBuffer.wrap(value).asReadOnlyBuffer();
+  }
+
+  @Override
+  public LongBuffer readView(ChannelBuffer buffer) {
+    int currentSize = size;
+    if (currentSize < 0) {
+      currentSize = buffer.readInt();
+    }
+    return PrimitiveArrays.viewLongs(buffer, currentSize);
+  }
+
   @Override
   public void serialize(ChannelBuffer buffer) {
     if (size < 0) {
       buffer.writeInt(value.length);
     }
-    for (long v : value) {
-      type.serialize(v, buffer);
-    }
+    PrimitiveArrays.writeLongs(buffer, value);
   }
 
   @Override
@@ -71,10 +84,30 @@ public class LongArrayField extends Field {
     if (currentSize < 0) {
       currentSize = buffer.readInt();
     }
-    value = new long[currentSize];
-    for (int i = 0; i < currentSize; i++) {
-      value[i] = buffer.readLong();
+    value = PrimitiveArrays.readLongs(buffer, currentSize);
+  }
+
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    int currentSize = size;
+    if (currentSize < 0) {
+      currentSize = buffer.readInt();
+    }
+    buffer.skipBytes(currentSize * type.getSerializedSize());
+  }
+
+  @Override
+  public int getSerializedSize() {
+    int elementsSize = value.length * type.getSerializedSize();
+    if (size < 0) {
+      return 4 + elementsSize;
     }
+    return elementsSize;
+  }
+
+  @Override
+  public boolean isFixedSize() {
+    return size >= 0;
   }
 
   @Override
@@ -82,6 +115,13 @@ public class LongArrayField extends Field {
     return String.format("%s %s\n", type, name);
   }
 
+  @Override
+  public LongArrayField copy() {
+    LongArrayField copy = new LongArrayField(type, name, size);
+    copy.value = value.clone();
+    return copy;
+  }
+
   @Override
   public String getJavaTypeName() {
     return type.getJavaTypeName() + "[]";
@@ -17,9 +17,10 @@
 package org.ros.internal.message.field;
 
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.ros.internal.message.DefaultMessageDeserializer;
-import org.ros.internal.message.DefaultMessageSerializer;
+import org.ros.internal.message.CompiledMessageDeserializer;
+import org.ros.internal.message.CompiledMessageSerializer;
 import org.ros.internal.message.Message;
+import org.ros.internal.message.MessageImpl;
 import org.ros.message.MessageDeserializer;
 import org.ros.message.MessageFactory;
 import org.ros.message.MessageIdentifier;
@@ -33,14 +34,33 @@ public class MessageFieldType implements FieldType {
 
   private final MessageIdentifier messageIdentifier;
   private final MessageFactory messageFactory;
+  // Used when the parent message serializes its own fields. The
+  // DefaultMessageSerializer and DefaultMessageDeserializer handle message
+  // fields themselves so that nested messages do not use generated code.
   private final MessageSerializer<Message> serializer;
   private final MessageDeserializer<Message> deserializer;
 
+  /**
+   * A default instance of this message type that is only used to skip
+   * serialized messages and to inspect the layout of the type. It is created
+   * on first use.
+   */
+  private volatile MessageImpl template;
+
+  /**
+   * The columnar layout of lists of this type, {@link #NO_LAYOUT} if lists of
+   * this type cannot be stored in columns, or {@code null} if not yet
+   * determined.
+   */
+  private volatile Object columnarLayout;
+
+  private static final Object NO_LAYOUT = new Object();
+
   public MessageFieldType(MessageIdentifier messageIdentifier, MessageFactory messageFactory) {
     this.messageIdentifier = messageIdentifier;
     this.messageFactory = messageFactory;
-    serializer = new DefaultMessageSerializer();
-    deserializer = new DefaultMessageDeserializer<Message>(messageIdentifier, messageFactory);
+    serializer = new CompiledMessageSerializer();
+    deserializer = new CompiledMessageDeserializer<Message>(messageIdentifier, messageFactory);
   }
 
   public MessageFactory getMessageFactory() {
@@ -57,8 +77,24 @@ public class MessageFieldType implements FieldType {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Lists of messages that consist only of primitive scalars are stored in
+   * columns (see {@link ColumnarListField}), all other lists hold one message
+   * per element.
+   */
   @Override
   public Field newVariableList(String name, int size) {
+    Object layout = columnarLayout;
+    if (layout == null) {
+      layout = ColumnarListField.Layout.of(getTemplate());
+      if (layout == null) {
+        layout = NO_LAYOUT;
+      }
+      columnarLayout = layout;
+    }
+    if (layout != NO_LAYOUT) {
+      return ColumnarListField.newVariable(this, name, (ColumnarListField.Layout) layout);
+    }
     return ListField.newVariable(this, name);
   }
 
@@ -82,6 +118,11 @@ public class MessageFieldType implements FieldType {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public <T> int getSerializedSize(T value) {
+    return ((Message) value).toRawMessage().getSerializedSize();
+  }
+
   @Override
   public String getName() {
     return messageIdentifier.getType();
@@ -98,6 +139,45 @@ public class MessageFieldType implements FieldType {
     return deserializer.deserialize(buffer);
   }
 
+  /**
+   * Deserializes a message into an existing message instead of a new one. All
+   * fields of {@code message} are overwritten. Nested messages are reused as
+   * well.
+   * <p>
+   * A message that has been retained (see
+   * {@link org.ros.internal.message.RawMessage#retain()}) may still be
+   * referenced by a listener. It is left untouched and a new message is
+   * returned instead.
+   * 
+   * @param buffer
+   *          the {@link ChannelBuffer} to deserialize the message from
+   * @param message
+   *          the message to deserialize into
+   * @return {@code message}, or a new message if {@code message} was retained
+   */
+  public Message deserialize(ChannelBuffer buffer, Message message) {
+    MessageImpl messageImpl = (MessageImpl) message.toRawMessage();
+    if (messageImpl.isRetained()) {
+      return deserialize(buffer);
+    }
+    messageImpl.deserialize(buffer);
+    return message;
+  }
+
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    getTemplate().skip(buffer);
+  }
+
+  private MessageImpl getTemplate() {
+    MessageImpl template = this.template;
+    if (template == null) {
+      template = (MessageImpl) ((Message) getDefaultValue()).toRawMessage();
+      this.template = template;
+    }
+    return template;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public Void parseFromString(String value) {
@@ -16,58 +16,205 @@
 
 package org.ros.internal.message.field;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.ros.exception.RosRuntimeException;
 import org.ros.internal.message.context.MessageContext;
 
+import java.nio.Buffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
+ * The {@link Field}s of a single message.
+ * <p>
+ * Fields are stored in an array indexed by their ordinal in the message
+ * definition. Name lookups use the tables of the {@link MessageContext}, which
+ * are shared by all messages of the same type.
+ * <p>
+ * Fields may be deserialized lazily (see {@link #deserializeLazily}). In that
+ * case, a field is only decoded from the serialized message when it is first
+ * accessed. Since received messages are shared between listeners, decoding is
+ * synchronized.
+ * 
  * @author damonkohler@google.com (Damon Kohler)
  */
 public class MessageFields {
 
-  private final Map<String, Field> fields;
-  private final Map<String, Field> setters;
-  private final Map<String, Field> getters;
-  private final List<Field> orderedFields;
+  private final MessageContext messageContext;
+  private final Field[] fields;
+
+  /**
+   * The not yet decoded part of a lazily deserialized message or {@code null}
+   * if all fields have been decoded.
+   */
+  private volatile LazyFields lazyFields;
+
+  /**
+   * Tracks the fields of a lazily deserialized message that have not yet been
+   * decoded.
+   */
+  private static final class LazyFields {
+
+    private final ChannelBuffer buffer;
+
+    /**
+     * The offset of each field in {@link #buffer}. Only the offsets of fields
+     * up to and including {@link #indexed} are known.
+     */
+    private final int[] offsets;
+    private final boolean[] decoded;
+    private int indexed;
+    private int remaining;
+
+    LazyFields(ChannelBuffer buffer, Field[] fields) {
+      this.buffer = buffer;
+      offsets = new int[fields.length + 1];
+      decoded = new boolean[fields.length];
+      for (int i = 0; i < fields.length; i++) {
+        if (fields[i].isConstant()) {
+          decoded[i] = true;
+        } else {
+          remaining++;
+        }
+      }
+    }
+  }
 
   public MessageFields(MessageContext messageContext) {
-    fields = Maps.newHashMap();
-    setters = Maps.newHashMap();
-    getters = Maps.newHashMap();
-    orderedFields = Lists.newArrayList();
-    for (String name : messageContext.getFieldNames()) {
-      Field field = messageContext.getFieldFactory(name).create();
-      fields.put(name, field);
-      getters.put(messageContext.getFieldGetterName(name), field);
-      setters.put(messageContext.getFieldSetterName(name), field);
-      orderedFields.add(field);
+    this.messageContext = messageContext;
+    fields = new Field[messageContext.getFieldCount()];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = messageContext.getFieldFactory(i).create();
+    }
+  }
+
+  private MessageFields(MessageFields other) {
+    messageContext = other.messageContext;
+    fields = new Field[other.fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = other.fields[i].copy();
+    }
+  }
+
+  /**
+   * @return a deep copy of these fields, lazily deserialized fields are decoded
+   *         first
+   */
+  public MessageFields copy() {
+    if (lazyFields != null) {
+      decodeAll();
+    }
+    return new MessageFields(this);
+  }
+
+  /**
+   * Defers deserialization of all fields until they are first accessed.
+   * <p>
+   * The readable bytes of {@code buffer} must contain exactly one serialized
+   * message of this type. They are consumed by this call and must not be
+   * modified afterwards since fields are decoded from them on demand.
+   * 
+   * @param buffer
+   *          the {@link ChannelBuffer} containing the serialized message
+   */
+  public void deserializeLazily(ChannelBuffer buffer) {
+    LazyFields pending = new LazyFields(buffer.slice(), fields);
+    buffer.skipBytes(buffer.readableBytes());
+    synchronized (this) {
+      lazyFields = pending.remaining > 0 ? pending : null;
     }
   }
 
+  /**
+   * @return {@code true} if some fields have not yet been decoded from a lazily
+   *         deserialized message
+   */
+  public boolean isLazy() {
+    return lazyFields != null;
+  }
+
   public Field getField(String name) {
-    return fields.get(name);
+    int index = messageContext.getFieldIndex(name);
+    if (index < 0) {
+      return null;
+    }
+    return getField(index);
+  }
+
+  /**
+   * @param index
+   *          the ordinal of the field in the message definition
+   * @return the {@link Field} at the specified ordinal
+   */
+  public Field getField(int index) {
+    if (lazyFields != null) {
+      decode(index);
+    }
+    return fields[index];
+  }
+
+  /**
+   * Like {@link #getField(int)}, but the field is about to be overwritten and
+   * so it is not decoded if this message was lazily deserialized.
+   */
+  public Field getFieldForSetting(int index) {
+    if (lazyFields != null) {
+      discard(index);
+    }
+    return fields[index];
+  }
+
+  /**
+   * @return the number of fields, including constants
+   */
+  public int getFieldCount() {
+    return fields.length;
+  }
+
+  /**
+   * Like {@link #getField(String)}, but the field is about to be overwritten
+   * and so it is not decoded if this message was lazily deserialized.
+   */
+  public Field getFieldForSetting(String name) {
+    int index = messageContext.getFieldIndex(name);
+    if (index < 0) {
+      return null;
+    }
+    if (lazyFields != null) {
+      discard(index);
+    }
+    return fields[index];
   }
 
   public Field getSetterField(String name) {
-    return setters.get(name);
+    int index = messageContext.getSetterIndex(name);
+    if (index < 0) {
+      return null;
+    }
+    if (lazyFields != null) {
+      discard(index);
+    }
+    return fields[index];
   }
 
   public Field getGetterField(String name) {
-    return getters.get(name);
+    int index = messageContext.getGetterIndex(name);
+    if (index < 0) {
+      return null;
+    }
+    return getField(index);
   }
 
   public List<Field> getFields() {
-    return Collections.unmodifiableList(orderedFields);
+    if (lazyFields != null) {
+      decodeAll();
+    }
+    return Collections.unmodifiableList(Arrays.asList(fields));
   }
 
   public Object getFieldValue(String name) {
-    Field field = fields.get(name);
+    Field field = getField(name);
     if (field != null) {
       return field.getValue();
     }
@@ -75,21 +222,120 @@ public class MessageFields {
   }
 
   public void setFieldValue(String name, Object value) {
-    Field field = fields.get(name);
-    if (field != null) {
-      field.setValue(value);
+    int index = messageContext.getFieldIndex(name);
+    if (index >= 0) {
+      if (lazyFields != null) {
+        discard(index);
+      }
+      fields[index].setValue(value);
     } else {
       throw new RosRuntimeException("Uknown field: " + name);
     }
   }
 
+  /**
+   * Returns a read-only view of the elements of a numeric array field without
+   * copying them. If the field has not yet been decoded from a lazily
+   * deserialized message, the view is backed by the serialized message and the
+   * field remains undecoded. Otherwise, the view is backed by the current value
+   * of the field. In both cases, the view does not reflect later calls to
+   * {@link Field#setValue(Object)}.
+   * 
+   * @param name
+   *          the name of the field
+   * @return a read-only view of the elements of the field
+   */
+  public Buffer getArrayView(String name) {
+    int index = messageContext.getFieldIndex(name);
+    if (index < 0) {
+      throw new RosRuntimeException("Uknown field: " + name);
+    }
+    if (lazyFields != null) {
+      Buffer view = getUndecodedView(index);
+      if (view != null) {
+        return view;
+      }
+    }
+    return fields[index].getView();
+  }
+
+  private synchronized Buffer getUndecodedView(int index) {
+    LazyFields pending = lazyFields;
+    if (pending == null || pending.decoded[index]) {
+      return null;
+    }
+    ChannelBuffer buffer = pending.buffer.duplicate();
+    buffer.readerIndex(getOffset(pending, index));
+    return fields[index].readView(buffer);
+  }
+
+  private synchronized void decode(int index) {
+    LazyFields pending = lazyFields;
+    if (pending == null || pending.decoded[index]) {
+      return;
+    }
+    ChannelBuffer buffer = pending.buffer.duplicate();
+    buffer.readerIndex(getOffset(pending, index));
+    fields[index].deserialize(buffer);
+    if (pending.indexed == index) {
+      pending.offsets[index + 1] = buffer.readerIndex();
+      pending.indexed++;
+    }
+    markDecoded(pending, index);
+  }
+
+  /**
+   * Marks the field as decoded without decoding it. This is used when the
+   * field is about to be overwritten.
+   */
+  private synchronized void discard(int index) {
+    LazyFields pending = lazyFields;
+    if (pending != null && !pending.decoded[index]) {
+      markDecoded(pending, index);
+    }
+  }
+
+  private synchronized void decodeAll() {
+    for (int i = 0; lazyFields != null && i < fields.length; i++) {
+      decode(i);
+    }
+  }
+
+  private void markDecoded(LazyFields pending, int index) {
+    pending.decoded[index] = true;
+    pending.remaining--;
+    if (pending.remaining == 0) {
+      lazyFields = null;
+    }
+  }
+
+  /**
+   * @return the offset of the field at {@code index} in the buffer of
+   *         {@code pending}, skipping over all preceding fields whose offsets
+   *         are not yet known
+   */
+  private int getOffset(LazyFields pending, int index) {
+    if (pending.indexed < index) {
+      ChannelBuffer buffer = pending.buffer.duplicate();
+      buffer.readerIndex(pending.offsets[pending.indexed]);
+      while (pending.indexed < index) {
+        Field field = fields[pending.indexed];
+        if (!field.isConstant()) {
+          field.skip(buffer);
+        }
+        pending.indexed++;
+        pending.offsets[pending.indexed] = buffer.readerIndex();
+      }
+    }
+    return pending.offsets[index];
+  }
+
   @Override
   public int hashCode() {
-    final int prime = 31;
-    int result = 1;
-    result = prime * result + ((fields == null) ? 0 : fields.hashCode());
-    result = prime * result + ((orderedFields == null) ? 0 : orderedFields.hashCode());
-    return result;
+    if (lazyFields != null) {
+      decodeAll();
+    }
+    return Arrays.hashCode(fields);
   }
 
   @Override
@@ -101,16 +347,12 @@ public class MessageFields {
     if (getClass() != obj.getClass())
       return false;
     MessageFields other = (MessageFields) obj;
-    if (fields == null) {
-      if (other.fields != null)
-        return false;
-    } else if (!fields.equals(other.fields))
-      return false;
-    if (orderedFields == null) {
-      if (other.orderedFields != null)
-        return false;
-    } else if (!orderedFields.equals(other.orderedFields))
-      return false;
-    return true;
+    if (lazyFields != null) {
+      decodeAll();
+    }
+    if (other.lazyFields != null) {
+      other.decodeAll();
+    }
+    return Arrays.equals(fields, other.fields);
   }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.ros.internal.message.field;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Reads and writes primitive arrays from and to {@link ChannelBuffer}s in bulk
+ * through {@link ByteBuffer} views that respect the buffer's byte order. Also
+ * provides read-only views of serialized arrays that share the content of the
+ * buffer.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+final class PrimitiveArrays {
+
+  private PrimitiveArrays() {
+    // Utility class.
+  }
+
+  /**
+   * Advances the writer index of {@code buffer} past {@code length} bytes.
+   * 
+   * @return a view of the skipped bytes that writes through to {@code buffer},
+   *         or {@code null} if {@code buffer} is not backed by an accessible
+   *         array, in which case the writer index is left unchanged
+   */
+  private static ByteBuffer writableView(ChannelBuffer buffer, int length) {
+    buffer.ensureWritableBytes(length);
+    if (!buffer.hasArray()) {
+      return null;
+    }
+    int index = buffer.arrayOffset() + buffer.writerIndex();
+    buffer.writerIndex(buffer.writerIndex() + length);
+    return ByteBuffer.wrap(buffer.array(), index, length).order(buffer.order());
+  }
+
+  /**
+   * @return a view of the next {@code length} readable bytes in
+   *         {@code buffer}, which are then skipped
+   */
+  private static ByteBuffer readableView(ChannelBuffer buffer, int length) {
+    ByteBuffer view = buffer.toByteBuffer(buffer.readerIndex(), length).order(buffer.order());
+    buffer.skipBytes(length);
+    return view;
+  }
+
+  static void writeShorts(ChannelBuffer buffer, short[] values) {
+    ByteBuffer view = writableView(buffer, values.length * 2);
+    if (view != null) {
+      view.asShortBuffer().put(values);
+    } else {
+      for (short value : values) {
+        buffer.writeShort(value);
+      }
+    }
+  }
+
+  static short[] readShorts(ChannelBuffer buffer, int length) {
+    short[] values = new short[length];
+    readableView(buffer, length * 2).asShortBuffer().get(values);
+    return values;
+  }
+
+  static void writeInts(ChannelBuffer buffer, int[] values) {
+    ByteBuffer view = writableView(buffer, values.length * 4);
+    if (view != null) {
+      view.asIntBuffer().put(values);
+    } else {
+      for (int value : values) {
+        buffer.writeInt(value);
+      }
+    }
+  }
+
+  static int[] readInts(ChannelBuffer buffer, int length) {
+    int[] values = new int[length];
+    readableView(buffer, length * 4).asIntBuffer().get(values);
+    return values;
+  }
+
+  static void writeLongs(ChannelBuffer buffer, long[] values) {
+    ByteBuffer view = writableView(buffer, values.length * 8);
+    if (view != null) {
+      view.asLongBuffer().put(values);
+    } else {
+      for (long value : values) {
+        buffer.writeLong(value);
+      }
+    }
+  }
+
+  static long[] readLongs(ChannelBuffer buffer, int length) {
+    long[] values = new long[length];
+    readableView(buffer, length * 8).asLongBuffer().get(values);
+    return values;
+  }
+
+  static void writeFloats(ChannelBuffer buffer, float[] values) {
+    ByteBuffer view = writableView(buffer, values.length * 4);
+    if (view != null) {
+      view.asFloatBuffer().put(values);
+    } else {
+      for (float value : values) {
+        buffer.writeFloat(value);
+      }
+    }
+  }
+
+  static float[] readFloats(ChannelBuffer buffer, int length) {
+    float[] values = new float[length];
+    readableView(buffer, length * 4).asFloatBuffer().get(values);
+    return values;
+  }
+
+  static void writeDoubles(ChannelBuffer buffer, double[] values) {
+    ByteBuffer view = writableView(buffer, values.length * 8);
+    if (view != null) {
+      view.asDoubleBuffer().put(values);
+    } else {
+      for (double value : values) {
+        buffer.writeDouble(value);
+      }
+    }
+  }
+
+  static double[] readDoubles(ChannelBuffer buffer, int length) {
+    double[] values = new double[length];
+    readableView(buffer, length * 8).asDoubleBuffer().get(values);
+    return values;
+  }
+
+  static void writeBooleans(ChannelBuffer buffer, boolean[] values) {
+    for (boolean value : values) {
+      buffer.writeByte(value ? 1 : 0);
+    }
+  }
+
+  static boolean[] readBooleans(ChannelBuffer buffer, int length) {
+    boolean[] values = new boolean[length];
+    for (int i = 0; i < length; i++) {
+      values[i] = buffer.readByte() == 1;
+    }
+    return values;
+  }
+
+  static ShortBuffer viewShorts(ChannelBuffer buffer, int length) {
+    return readableView(buffer, length * 2).asShortBuffer().asReadOnlyBuffer();
+  }
+
+  static IntBuffer viewInts(ChannelBuffer buffer, int length) {
+    return readableView(buffer, length * 4).asIntBuffer().asReadOnlyBuffer();
+  }
+
+  static LongBuffer viewLongs(ChannelBuffer buffer, int length) {
+    return readableView(buffer, length * 8).asLongBuffer().asReadOnlyBuffer();
+  }
+
+  static FloatBuffer viewFloats(ChannelBuffer buffer, int length) {
+    return readableView(buffer, length * 4).asFloatBuffer().asReadOnlyBuffer();
+  }
+
+  static DoubleBuffer viewDoubles(ChannelBuffer buffer, int length) {
+    return readableView(buffer, length * 8).asDoubleBuffer().asReadOnlyBuffer();
+  }
+}
@@ -568,6 +568,17 @@ public enum PrimitiveFieldType implements FieldType {
       throw new UnsupportedOperationException();
     }
 
+    @Override
+    public <T> int getSerializedSize(T value) {
+      Preconditions.checkArgument(value instanceof String);
+      return 4 + ((String) value).getBytes().length;
+    }
+
+    @Override
+    public void skip(ChannelBuffer buffer) {
+      buffer.skipBytes(buffer.readInt());
+    }
+
     @Override
     public <T> void serialize(T value, ChannelBuffer buffer) {
       Preconditions.checkArgument(value instanceof String);
@@ -692,9 +703,43 @@ public enum PrimitiveFieldType implements FieldType {
     return TYPE_NAMES.contains(name);
   }
 
+  @Override
+  public <T> int getSerializedSize(T value) {
+    return getSerializedSize();
+  }
+
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    buffer.skipBytes(getSerializedSize());
+  }
+
+  @SuppressWarnings("deprecation")
   @Override
   public Field newVariableValue(String name) {
-    return ValueField.newVariable(this, name);
+    switch (this) {
+      case BOOL:
+        return BooleanValueField.newVariable(this, name);
+      case INT8:
+      case BYTE:
+      case UINT8:
+      case CHAR:
+        return ByteValueField.newVariable(this, name);
+      case INT16:
+      case UINT16:
+        return ShortValueField.newVariable(this, name);
+      case INT32:
+      case UINT32:
+        return IntegerValueField.newVariable(this, name);
+      case INT64:
+      case UINT64:
+        return LongValueField.newVariable(this, name);
+      case FLOAT32:
+        return FloatValueField.newVariable(this, name);
+      case FLOAT64:
+        return DoubleValueField.newVariable(this, name);
+      default:
+        return ValueField.newVariable(this, name);
+    }
   }
 
   @Override
@@ -19,6 +19,8 @@ package org.ros.internal.message.field;
 import com.google.common.base.Preconditions;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.internal.message.Message;
+import org.ros.internal.message.MessageImpl;
 
 /**
  * @author damonkohler@google.com (Damon Kohler)
@@ -62,17 +64,53 @@ class ValueField<T> extends Field {
     type.serialize(getValue(), buffer);
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public void deserialize(ChannelBuffer buffer) {
     Preconditions.checkState(!isConstant);
+    if (value != null && type instanceof MessageFieldType) {
+      // Reuse the existing message (e.g. when the parent message is recycled)
+      // unless it has been retained.
+      value = (T) ((MessageFieldType) type).deserialize(buffer, (Message) value);
+      return;
+    }
     setValue(type.<T>deserialize(buffer));
   }
 
+  @Override
+  public void skip(ChannelBuffer buffer) {
+    type.skip(buffer);
+  }
+
+  @Override
+  public int getSerializedSize() {
+    return type.getSerializedSize(getValue());
+  }
+
+  @Override
+  public boolean isFixedSize() {
+    if (type instanceof MessageFieldType) {
+      return ((MessageImpl) ((Message) getValue()).toRawMessage()).isFixedSize();
+    }
+    return type != PrimitiveFieldType.STRING;
+  }
+
   @Override
   public String getMd5String() {
     return String.format("%s %s\n", type, name);
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public Field copy() {
+    if (isConstant) {
+      return this;
+    }
+    // Materializes the default value first so that the copy equals this field
+    // (e.g. default headers are assigned a sequence number on creation).
+    return new ValueField<T>(type, name, (T) copyValue(getValue()), false);
+  }
+
   @Override
   public String getJavaTypeName() {
     return type.getJavaTypeName();
@@ -19,6 +19,7 @@ package org.ros.internal.message.service;
 import org.ros.internal.message.DefaultMessageFactory;
 import org.ros.internal.message.DefaultMessageInterfaceClassProvider;
 import org.ros.internal.message.MessageProxyFactory;
+import org.ros.internal.message.definition.MessageRegistry;
 import org.ros.message.MessageDeclaration;
 import org.ros.message.MessageDefinitionProvider;
 import org.ros.message.MessageFactory;
@@ -35,8 +36,13 @@ public class ServiceResponseMessageFactory implements MessageFactory {
   public ServiceResponseMessageFactory(MessageDefinitionProvider messageDefinitionProvider) {
     serviceDescriptionFactory = new ServiceDescriptionFactory(messageDefinitionProvider);
     messageFactory = new DefaultMessageFactory(messageDefinitionProvider);
+    MessageRegistry messageRegistry = null;
+    if (messageDefinitionProvider instanceof MessageRegistry) {
+      messageRegistry = (MessageRegistry) messageDefinitionProvider;
+    }
     messageProxyFactory =
-        new MessageProxyFactory(new DefaultMessageInterfaceClassProvider(), messageFactory);
+        new MessageProxyFactory(new DefaultMessageInterfaceClassProvider(), messageFactory,
+            messageRegistry);
   }
 
   @Override
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class CircularBlockingDequeTest {
+
+  @Test
+  public void testOverwrite() throws InterruptedException {
+    CircularBlockingDeque<Integer> deque = new CircularBlockingDeque<Integer>(2);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(deque.addLast(i));
+    }
+    assertEquals(1, (int) deque.takeFirst());
+    assertEquals(2, (int) deque.takeFirst());
+    assertEquals(1, deque.getStatistics().getDropped());
+  }
+
+  @Test
+  public void testReject() throws InterruptedException {
+    CircularBlockingDeque<Integer> deque =
+        new CircularBlockingDeque<Integer>(1, OverflowPolicy.REJECT, 0, TimeUnit.SECONDS);
+    assertTrue(deque.addLast(0));
+    assertFalse(deque.addLast(1));
+    assertEquals(0, (int) deque.takeFirst());
+    assertEquals(1, deque.getStatistics().getDropped());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBlockRequiresTimeout() {
+    new CircularBlockingDeque<Integer>(1, OverflowPolicy.BLOCK, 0, TimeUnit.SECONDS);
+  }
+
+  @Test(timeout = 10000)
+  public void testBlockWaitsForTimeout() {
+    CircularBlockingDeque<Integer> deque =
+        new CircularBlockingDeque<Integer>(1, OverflowPolicy.BLOCK, 50, TimeUnit.MILLISECONDS);
+    assertTrue(deque.addLast(0));
+    long start = System.nanoTime();
+    assertFalse(deque.addLast(1));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    assertEquals(1, deque.getStatistics().getDropped());
+  }
+
+  @Test(timeout = 10000)
+  public void testBlockWaitsForConsumer() throws InterruptedException {
+    final CircularBlockingDeque<Integer> deque =
+        new CircularBlockingDeque<Integer>(1, OverflowPolicy.BLOCK, 10, TimeUnit.SECONDS);
+    assertTrue(deque.addLast(0));
+    Thread consumer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+          deque.takeFirst();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    consumer.setDaemon(true);
+    consumer.start();
+    assertTrue(deque.addLast(1));
+    assertEquals(1, (int) deque.takeFirst());
+    assertEquals(0, deque.getStatistics().getDropped());
+  }
+}
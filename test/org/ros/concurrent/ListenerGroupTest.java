@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class ListenerGroupTest {
+
+  private ExecutorService executorService;
+  private ListenerGroup<List<Integer>> listenerGroup;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newCachedThreadPool();
+    listenerGroup = new ListenerGroup<List<Integer>>(executorService);
+  }
+
+  @After
+  public void tearDown() {
+    listenerGroup.shutdown();
+    executorService.shutdownNow();
+  }
+
+  @Test(timeout = 10000)
+  public void testEventsAreDeliveredInOrder() throws InterruptedException {
+    final int events = 10000;
+    final CountDownLatch latch = new CountDownLatch(2 * events);
+    final Map<List<Integer>, AtomicBoolean> running = Maps.newIdentityHashMap();
+    final AtomicInteger overlaps = new AtomicInteger();
+    List<List<Integer>> listeners = Lists.newArrayList();
+    for (int i = 0; i < 2; i++) {
+      List<Integer> listener = Collections.synchronizedList(Lists.<Integer>newArrayList());
+      listeners.add(listener);
+      running.put(listener, new AtomicBoolean());
+      listenerGroup.add(listener, events);
+    }
+    for (int i = 0; i < events; i++) {
+      final int event = i;
+      listenerGroup.signal(new SignalRunnable<List<Integer>>() {
+        @Override
+        public void run(List<Integer> listener) {
+          AtomicBoolean listenerRunning = running.get(listener);
+          if (!listenerRunning.compareAndSet(false, true)) {
+            overlaps.incrementAndGet();
+          }
+          listener.add(event);
+          listenerRunning.set(false);
+          latch.countDown();
+        }
+      });
+    }
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertEquals(0, overlaps.get());
+    for (List<Integer> listener : listeners) {
+      assertEquals(events, listener.size());
+      for (int i = 0; i < events; i++) {
+        assertEquals(i, (int) listener.get(i));
+      }
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testBlockedListenerDoesNotStallOthers() throws InterruptedException {
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch delivered = new CountDownLatch(1);
+    final List<Integer> blocked = Lists.newArrayList();
+    listenerGroup.add(blocked);
+    listenerGroup.add(Lists.<Integer>newArrayList());
+    listenerGroup.signal(new SignalRunnable<List<Integer>>() {
+      @Override
+      public void run(List<Integer> listener) {
+        if (listener == blocked) {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        } else {
+          delivered.countDown();
+        }
+      }
+    });
+    assertTrue(delivered.await(1, TimeUnit.SECONDS));
+    release.countDown();
+  }
+
+  @Test(timeout = 10000)
+  public void testListenersRunOnExecutor() throws Exception {
+    ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+    try {
+      Thread executorThread = singleThreadExecutor.submit(new Callable<Thread>() {
+        @Override
+        public Thread call() {
+          return Thread.currentThread();
+        }
+      }).get();
+      final List<Thread> threads = Collections.synchronizedList(Lists.<Thread>newArrayList());
+      ListenerGroup<List<Integer>> group = new ListenerGroup<List<Integer>>(singleThreadExecutor);
+      group.add(Lists.<Integer>newArrayList());
+      assertTrue(group.signal(new SignalRunnable<List<Integer>>() {
+        @Override
+        public void run(List<Integer> listener) {
+          threads.add(Thread.currentThread());
+        }
+      }, 1, TimeUnit.SECONDS));
+      assertEquals(executorThread, threads.get(0));
+    } finally {
+      singleThreadExecutor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures producer-to-consumer latency of a {@link CircularBlockingDeque} and
+ * of a {@link RingBuffer} with each {@link WaitStrategy} while several
+ * producers contend for the same queue.
+ * <p>
+ * Run with {@code java org.ros.concurrent.RingBufferBenchmark [producers]
+ * [entriesPerProducer]}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class RingBufferBenchmark {
+
+  private static final int CAPACITY = 1024;
+
+  /**
+   * The time each producer waits between entries. This keeps the queue from
+   * filling up so that latency, not overwriting, is measured.
+   */
+  private static final long PRODUCER_INTERVAL_NANOS = 20000;
+
+  private static String run(final BoundedBlockingQueue<Long> queue, int producers,
+      final int entriesPerProducer) throws InterruptedException {
+    final CountDownLatch producersDone = new CountDownLatch(producers);
+    final long[] latencies = new long[producers * entriesPerProducer];
+    final int[] taken = new int[1];
+    Thread consumer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            Long timestamp = queue.pollFirst(50, TimeUnit.MILLISECONDS);
+            if (timestamp == null) {
+              if (producersDone.getCount() == 0 && queue.isEmpty()) {
+                return;
+              }
+              continue;
+            }
+            latencies[taken[0]++] = System.nanoTime() - timestamp;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    consumer.start();
+    for (int i = 0; i < producers; i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < entriesPerProducer; j++) {
+            queue.addLast(System.nanoTime());
+            LockSupport.parkNanos(PRODUCER_INTERVAL_NANOS);
+          }
+          producersDone.countDown();
+        }
+      }.start();
+    }
+    producersDone.await();
+    consumer.join();
+    long[] sorted = Arrays.copyOf(latencies, taken[0]);
+    Arrays.sort(sorted);
+    return String.format("p50 %6d ns  p99 %8d ns  p99.9 %9d ns  taken %d",
+        sorted[sorted.length / 2], sorted[sorted.length * 99 / 100],
+        sorted[sorted.length * 999 / 1000], sorted.length);
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int entriesPerProducer = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+    System.out.println(String.format("%d producers, %d entries each, capacity %d, %d cpus",
+        producers, entriesPerProducer, CAPACITY, Runtime.getRuntime().availableProcessors()));
+    // The first round warms up the JIT and is not reported.
+    for (int round = 0; round < 2; round++) {
+      String deque =
+          run(new CircularBlockingDeque<Long>(CAPACITY), producers, entriesPerProducer);
+      if (round > 0) {
+        System.out.println(String.format("%-32s %s", "CircularBlockingDeque", deque));
+      }
+      for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+        String ringBuffer =
+            run(new RingBuffer<Long>(CAPACITY, waitStrategy), producers, entriesPerProducer);
+        if (round > 0) {
+          System.out.println(String.format("%-32s %s", "RingBuffer " + waitStrategy, ringBuffer));
+        }
+      }
+    }
+  }
+}
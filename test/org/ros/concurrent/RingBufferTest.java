@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class RingBufferTest {
+
+  @Test(timeout = 10000)
+  public void testAddAndTake() throws InterruptedException {
+    RingBuffer<Integer> ringBuffer = new RingBuffer<Integer>(4, WaitStrategy.BLOCKING);
+    assertTrue(ringBuffer.isEmpty());
+    ringBuffer.addLast(1);
+    ringBuffer.addLast(2);
+    assertFalse(ringBuffer.isEmpty());
+    assertEquals(1, (int) ringBuffer.takeFirst());
+    assertEquals(2, (int) ringBuffer.takeFirst());
+    assertTrue(ringBuffer.isEmpty());
+  }
+
+  @Test(timeout = 10000)
+  public void testOverwritesOldestWhenFull() throws InterruptedException {
+    RingBuffer<Integer> ringBuffer = new RingBuffer<Integer>(3, WaitStrategy.BLOCKING);
+    for (int i = 0; i < 10; i++) {
+      ringBuffer.addLast(i);
+    }
+    assertEquals(7, (int) ringBuffer.takeFirst());
+    assertEquals(8, (int) ringBuffer.takeFirst());
+    assertEquals(9, (int) ringBuffer.takeFirst());
+    assertTrue(ringBuffer.isEmpty());
+    QueueStatistics statistics = ringBuffer.getStatistics();
+    assertEquals(10, statistics.getEnqueued());
+    assertEquals(7, statistics.getDropped());
+    assertEquals(3, statistics.getHighWaterMark());
+  }
+
+  @Test(timeout = 10000)
+  public void testCapacityOfOne() throws InterruptedException {
+    RingBuffer<Integer> ringBuffer = new RingBuffer<Integer>(1, WaitStrategy.BLOCKING);
+    for (int lap = 0; lap < 5; lap++) {
+      ringBuffer.addLast(2 * lap);
+      ringBuffer.addLast(2 * lap + 1);
+      assertEquals(2 * lap + 1, (int) ringBuffer.takeFirst());
+      assertTrue(ringBuffer.isEmpty());
+    }
+    assertEquals(5, ringBuffer.getStatistics().getDropped());
+    assertEquals(1, ringBuffer.getStatistics().getHighWaterMark());
+  }
+
+  @Test(timeout = 10000)
+  public void testPollTimesOut() throws InterruptedException {
+    for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+      RingBuffer<Integer> ringBuffer = new RingBuffer<Integer>(2, waitStrategy);
+      assertNull(ringBuffer.pollFirst(0, TimeUnit.MILLISECONDS));
+      assertNull(ringBuffer.pollFirst(10, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testTakeWaitsForProducer() throws InterruptedException {
+    for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+      final RingBuffer<Integer> ringBuffer = new RingBuffer<Integer>(2, waitStrategy);
+      final AtomicReference<Integer> taken = new AtomicReference<Integer>();
+      final CountDownLatch latch = new CountDownLatch(1);
+      Thread consumer = new Thread() {
+        @Override
+        public void run() {
+          try {
+            taken.set(ringBuffer.takeFirst());
+            latch.countDown();
+          } catch (InterruptedException e) {
+            // Fails the test below.
+          }
+        }
+      };
+      consumer.setDaemon(true);
+      consumer.start();
+      Thread.sleep(20);
+      ringBuffer.addLast(42);
+      assertTrue(latch.await(1, TimeUnit.SECONDS));
+      assertEquals(42, (int) taken.get());
+    }
+  }
+
+  /**
+   * Every entry must be either taken exactly once or counted as dropped, and
+   * each consumer must see the entries of each producer in order.
+   */
+  private void checkConcurrentProducersAndConsumers(int capacity, WaitStrategy waitStrategy)
+      throws InterruptedException {
+    final int producers = 4;
+    final int consumers = 2;
+    final int entriesPerProducer = 100000;
+    final RingBuffer<long[]> ringBuffer = new RingBuffer<long[]>(capacity, waitStrategy);
+    final CountDownLatch producersDone = new CountDownLatch(producers);
+    final Set<Long> taken = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    final AtomicInteger duplicates = new AtomicInteger();
+    final AtomicInteger reordered = new AtomicInteger();
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < producers; i++) {
+      final long producer = i;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          for (long j = 0; j < entriesPerProducer; j++) {
+            ringBuffer.addLast(new long[] { producer, j });
+          }
+          producersDone.countDown();
+        }
+      });
+    }
+    for (int i = 0; i < consumers; i++) {
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          long[] last = new long[producers];
+          Arrays.fill(last, -1);
+          try {
+            while (true) {
+              long[] entry = ringBuffer.pollFirst(10, TimeUnit.MILLISECONDS);
+              if (entry == null) {
+                if (producersDone.getCount() == 0 && ringBuffer.isEmpty()) {
+                  return;
+                }
+                continue;
+              }
+              if (!taken.add(entry[0] * entriesPerProducer + entry[1])) {
+                duplicates.incrementAndGet();
+              }
+              if (entry[1] <= last[(int) entry[0]]) {
+                reordered.incrementAndGet();
+              }
+              last[(int) entry[0]] = entry[1];
+            }
+          } catch (InterruptedException e) {
+            // Fails the test below.
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      // A livelocked thread must not keep the JVM alive after a timeout.
+      thread.setDaemon(true);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    QueueStatistics statistics = ringBuffer.getStatistics();
+    assertEquals(0, duplicates.get());
+    assertEquals(0, reordered.get());
+    assertEquals(producers * entriesPerProducer, statistics.getEnqueued());
+    assertEquals(producers * entriesPerProducer, taken.size() + statistics.getDropped());
+    assertTrue(statistics.getHighWaterMark() <= capacity);
+  }
+
+  @Test(timeout = 60000)
+  public void testConcurrentProducersAndConsumers() throws InterruptedException {
+    for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+      checkConcurrentProducersAndConsumers(64, waitStrategy);
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testConcurrentProducersAndConsumersWithSmallCapacities()
+      throws InterruptedException {
+    checkConcurrentProducersAndConsumers(1, WaitStrategy.BLOCKING);
+    checkConcurrentProducersAndConsumers(2, WaitStrategy.SPINNING_THEN_PARKING);
+    checkConcurrentProducersAndConsumers(3, WaitStrategy.YIELDING);
+  }
+}
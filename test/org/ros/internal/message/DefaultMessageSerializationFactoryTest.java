@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.Lists;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.message.MessageDefinitionProvider;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageSerializationFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class DefaultMessageSerializationFactoryTest {
+
+  private MessageFactory messageFactory;
+  private MessageSerializationFactory defaultFactory;
+  private MessageSerializationFactory compiledFactory;
+
+  @Before
+  public void setUp() {
+    MessageDefinitionProvider messageDefinitionProvider =
+        new MessageDefinitionReflectionProvider();
+    messageFactory = new DefaultMessageFactory(messageDefinitionProvider);
+    defaultFactory = new DefaultMessageSerializationFactory(messageDefinitionProvider);
+    compiledFactory = new CompiledMessageSerializationFactory(messageDefinitionProvider);
+  }
+
+  private ChannelBuffer serialize(MessageSerializationFactory factory, Object message,
+      String messageType) {
+    ChannelBuffer buffer = MessageBuffers.dynamicBuffer();
+    factory.newMessageSerializer(messageType).serialize(message, buffer);
+    return buffer;
+  }
+
+  private Object deserialize(MessageSerializationFactory factory, ChannelBuffer buffer,
+      String messageType) {
+    return factory.newMessageDeserializer(messageType).deserialize(buffer.duplicate());
+  }
+
+  /**
+   * Checks that the default and the compiled factory write the same bytes and
+   * read each other's output.
+   */
+  private void assertCompatible(Object message, String messageType) {
+    ChannelBuffer defaultBuffer = serialize(defaultFactory, message, messageType);
+    ChannelBuffer compiledBuffer = serialize(compiledFactory, message, messageType);
+    assertEquals(compiledBuffer, defaultBuffer);
+    assertEquals(message, deserialize(defaultFactory, compiledBuffer, messageType));
+    assertEquals(message, deserialize(compiledFactory, defaultBuffer, messageType));
+    assertEquals(defaultBuffer,
+        serialize(defaultFactory, deserialize(defaultFactory, defaultBuffer, messageType),
+            messageType));
+  }
+
+  @Test
+  public void testNestedMessages() {
+    nav_msgs.Odometry odometry = messageFactory.newFromType(nav_msgs.Odometry._TYPE);
+    odometry.getHeader().setFrameId("odom");
+    odometry.setChildFrameId("base_link");
+    odometry.getPose().getPose().getPosition().setX(1);
+    odometry.getPose().getPose().getOrientation().setW(1);
+    odometry.getPose().getCovariance()[35] = 0.5;
+    odometry.getTwist().getTwist().getLinear().setX(0.5);
+    assertCompatible(odometry, nav_msgs.Odometry._TYPE);
+  }
+
+  @Test
+  public void testMessageLists() {
+    sensor_msgs.PointCloud pointCloud = messageFactory.newFromType(sensor_msgs.PointCloud._TYPE);
+    pointCloud.getHeader().setFrameId("base_link");
+    for (int i = 0; i < 10; i++) {
+      geometry_msgs.Point32 point = messageFactory.newFromType(geometry_msgs.Point32._TYPE);
+      point.setX(i);
+      point.setY(-i);
+      pointCloud.getPoints().add(point);
+    }
+    List<sensor_msgs.ChannelFloat32> channels = Lists.newArrayList();
+    for (String name : Arrays.asList("intensity", "range")) {
+      sensor_msgs.ChannelFloat32 channel =
+          messageFactory.newFromType(sensor_msgs.ChannelFloat32._TYPE);
+      channel.setName(name);
+      channel.setValues(new float[] { 1, 2, 3 });
+      channels.add(channel);
+    }
+    pointCloud.setChannels(channels);
+    assertCompatible(pointCloud, sensor_msgs.PointCloud._TYPE);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class GenerateInterfacesTest {
+
+  private File packagePath;
+  private File outputDirectory;
+
+  @Before
+  public void setUp() {
+    File directory = new File(System.getProperty("java.io.tmpdir"),
+        "generate_interfaces_test_" + System.nanoTime());
+    packagePath = new File(directory, "src");
+    outputDirectory = new File(directory, "out");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(packagePath.getParentFile());
+  }
+
+  private void writeMessage(String name, String definition) throws IOException {
+    FileUtils.writeStringToFile(new File(packagePath, "gen_test_msgs/msg/" + name + ".msg"),
+        definition);
+  }
+
+  private void generate() {
+    Collection<String> packages = Lists.newArrayList();
+    new GenerateInterfaces().generate(outputDirectory, packages, Lists.newArrayList(packagePath));
+  }
+
+  private File getInterface(String name) {
+    return new File(outputDirectory, "gen_test_msgs/" + name + ".java");
+  }
+
+  private Properties loadManifest() throws IOException {
+    Properties manifest = new Properties();
+    InputStream input = new FileInputStream(new File(outputDirectory, "messages.manifest"));
+    try {
+      manifest.load(input);
+    } finally {
+      input.close();
+    }
+    return manifest;
+  }
+
+  @Test
+  public void testRemovedTypeIsDeleted() throws IOException {
+    writeMessage("Kept", "int32 data");
+    writeMessage("Removed", "int32 data");
+    generate();
+    assertTrue(getInterface("Kept").exists());
+    assertTrue(getInterface("Removed").exists());
+    new File(packagePath, "gen_test_msgs/msg/Removed.msg").delete();
+    generate();
+    assertTrue(getInterface("Kept").exists());
+    assertFalse(getInterface("Removed").exists());
+    assertFalse(loadManifest().containsKey("gen_test_msgs/Removed"));
+  }
+
+  /**
+   * A type whose checksum cannot be generated (here because a nested type is
+   * missing) must be regenerated once the checksum is available.
+   */
+  @Test
+  public void testTypeWithoutChecksumIsNotCached() throws IOException {
+    writeMessage("Outer", "gen_test_msgs/Inner inner");
+    generate();
+    assertEquals("", loadManifest().getProperty("gen_test_msgs/Outer"));
+    writeMessage("Inner", "int32 data");
+    generate();
+    assertTrue(getInterface("Outer").exists());
+    assertTrue(FileUtils.readFileToString(getInterface("Outer")).contains("getInner"));
+    assertFalse("".equals(loadManifest().getProperty("gen_test_msgs/Outer")));
+  }
+}
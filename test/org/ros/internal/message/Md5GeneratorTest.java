@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.internal.message.topic.TopicDefinitionResourceProvider;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class Md5GeneratorTest {
+
+  private static TopicDefinitionResourceProvider newProvider(String innerDefinition) {
+    TopicDefinitionResourceProvider provider = new TopicDefinitionResourceProvider();
+    provider.add("md5_test_msgs/Outer", "md5_test_msgs/Inner inner\nint32 count");
+    provider.add("md5_test_msgs/Inner", innerDefinition);
+    return provider;
+  }
+
+  @Test
+  public void testKnownChecksum() {
+    Md5Generator md5Generator = new Md5Generator(new MessageDefinitionReflectionProvider());
+    assertEquals("2176decaecbce78abc3b96ef049fabed", md5Generator.generate("std_msgs/Header"));
+  }
+
+  /**
+   * The checksum of a type must change when a nested type changes, even if the
+   * type's own definition is the same.
+   */
+  @Test
+  public void testNestedDefinitionInvalidatesChecksum() {
+    Md5Generator int32Generator = new Md5Generator(newProvider("int32 value"));
+    Md5Generator float64Generator = new Md5Generator(newProvider("float64 value"));
+    String int32Checksum = int32Generator.generate("md5_test_msgs/Outer");
+    String float64Checksum = float64Generator.generate("md5_test_msgs/Outer");
+    assertFalse(int32Checksum.equals(float64Checksum));
+    assertEquals(int32Checksum, int32Generator.generate("md5_test_msgs/Outer"));
+    assertEquals(int32Checksum,
+        new Md5Generator(newProvider("int32 value")).generate("md5_test_msgs/Outer"));
+  }
+}
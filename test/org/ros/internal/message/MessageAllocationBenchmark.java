@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.message.MessageDefinitionProvider;
+import org.ros.message.MessageDeserializer;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageSerializationFactory;
+import org.ros.message.MessageSerializer;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated per operation when reading, writing,
+ * serializing and deserializing the scalar fields of a representative mix of
+ * messages ({@code geometry_msgs/Twist}, {@code nav_msgs/Odometry} and
+ * {@code sensor_msgs/JointState}).
+ * <p>
+ * Allocation is read from the HotSpot thread allocation counter
+ * ({@link ThreadMXBean#getThreadAllocatedBytes(long)}), so this only runs on
+ * HotSpot based JVMs.
+ * <p>
+ * Run with {@code java org.ros.internal.message.MessageAllocationBenchmark
+ * [iterations]}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class MessageAllocationBenchmark {
+
+  private final MessageFactory messageFactory;
+  private final MessageSerializationFactory messageSerializationFactory;
+  private final geometry_msgs.Twist twist;
+  private final nav_msgs.Odometry odometry;
+  private final sensor_msgs.JointState jointState;
+  private final ChannelBuffer buffer;
+  private double sink;
+
+  private MessageAllocationBenchmark() {
+    MessageDefinitionProvider messageDefinitionProvider = new MessageDefinitionReflectionProvider();
+    messageFactory = new DefaultMessageFactory(messageDefinitionProvider);
+    messageSerializationFactory = new DefaultMessageSerializationFactory(messageDefinitionProvider);
+    twist = messageFactory.newFromType(geometry_msgs.Twist._TYPE);
+    odometry = messageFactory.newFromType(nav_msgs.Odometry._TYPE);
+    odometry.getHeader().setFrameId("odom");
+    odometry.setChildFrameId("base_link");
+    jointState = messageFactory.newFromType(sensor_msgs.JointState._TYPE);
+    jointState.setPosition(new double[] { 1, 2, 3, 4, 5, 6 });
+    buffer = MessageBuffers.dynamicBuffer();
+  }
+
+  private interface Operation {
+    void run(int i);
+  }
+
+  private final Operation accessScalars = new Operation() {
+    @Override
+    public void run(int i) {
+      twist.getLinear().setX(i);
+      twist.getAngular().setZ(i * 0.5);
+      sink += twist.getLinear().getX() + twist.getAngular().getZ();
+      odometry.getHeader().setSeq(i);
+      odometry.getPose().getPose().getPosition().setX(i);
+      odometry.getPose().getPose().getOrientation().setW(1);
+      sink +=
+          odometry.getHeader().getSeq() + odometry.getPose().getPose().getPosition().getX()
+              + odometry.getPose().getPose().getOrientation().getW();
+    }
+  };
+
+  private Operation newRoundTrip(final Object message, String messageType) {
+    final MessageSerializer<Object> serializer =
+        messageSerializationFactory.newMessageSerializer(messageType);
+    final MessageDeserializer<Object> deserializer =
+        messageSerializationFactory.newMessageDeserializer(messageType);
+    return new Operation() {
+      @Override
+      public void run(int i) {
+        buffer.clear();
+        serializer.serialize(message, buffer);
+        sink += deserializer.deserialize(buffer) == null ? 0 : 1;
+      }
+    };
+  }
+
+  private void measure(String name, Operation operation, int iterations) {
+    ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    for (int i = 0; i < iterations; i++) {
+      operation.run(i);
+    }
+    long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      operation.run(i);
+    }
+    long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+    System.out.println(String.format("%-28s %10.1f bytes/op", name, (double) allocated
+        / iterations));
+  }
+
+  public static void main(String[] args) {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    MessageAllocationBenchmark benchmark = new MessageAllocationBenchmark();
+    benchmark.measure("scalar get/set", benchmark.accessScalars, iterations);
+    benchmark.measure("Twist round trip",
+        benchmark.newRoundTrip(benchmark.twist, geometry_msgs.Twist._TYPE), iterations);
+    benchmark.measure("Odometry round trip",
+        benchmark.newRoundTrip(benchmark.odometry, nav_msgs.Odometry._TYPE), iterations);
+    benchmark.measure("JointState round trip",
+        benchmark.newRoundTrip(benchmark.jointState, sensor_msgs.JointState._TYPE), iterations);
+    if (benchmark.sink == 0) {
+      System.out.println();
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.message.MessageDefinitionProvider;
+import org.ros.message.MessageDeserializer;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageSerializationFactory;
+import org.ros.message.MessageSerializer;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Compares {@link RawMessage#copy()} with a round trip through the
+ * {@link CompiledMessageSerializationFactory}, which is how messages were
+ * copied before, for small nested messages ({@code sensor_msgs/JointState}
+ * and {@code nav_msgs/Odometry}), a point cloud with 1000 points and a 100 kB
+ * compressed image.
+ * <p>
+ * Each round trip serializes into a new buffer of the exact serialized size,
+ * since deserialized {@link ChannelBuffer} fields are slices of that buffer
+ * and it therefore cannot be reused while the result is alive.
+ * <p>
+ * All measurements are run once as a warm up so that every variant is
+ * compiled by the JIT before any of them is timed. Each measurement is then
+ * repeated several times and the fastest round is reported.
+ * <p>
+ * Run with {@code java org.ros.internal.message.MessageCopyBenchmark
+ * [iterations]}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class MessageCopyBenchmark {
+
+  private static final int ROUNDS = 5;
+
+  private final MessageSerializationFactory messageSerializationFactory;
+  private long sink;
+
+  private MessageCopyBenchmark(MessageDefinitionProvider messageDefinitionProvider) {
+    messageSerializationFactory =
+        new CompiledMessageSerializationFactory(messageDefinitionProvider);
+  }
+
+  private static sensor_msgs.JointState newJointState(MessageFactory messageFactory) {
+    sensor_msgs.JointState jointState = messageFactory.newFromType(sensor_msgs.JointState._TYPE);
+    jointState.getHeader().setFrameId("base_link");
+    jointState.setName(Arrays.asList("j0", "j1", "j2", "j3", "j4", "j5"));
+    jointState.setPosition(new double[] { 1, 2, 3, 4, 5, 6 });
+    jointState.setVelocity(new double[] { 1, 2, 3, 4, 5, 6 });
+    jointState.setEffort(new double[] { 1, 2, 3, 4, 5, 6 });
+    return jointState;
+  }
+
+  private static nav_msgs.Odometry newOdometry(MessageFactory messageFactory) {
+    nav_msgs.Odometry odometry = messageFactory.newFromType(nav_msgs.Odometry._TYPE);
+    odometry.getHeader().setFrameId("odom");
+    odometry.setChildFrameId("base_link");
+    odometry.getPose().getPose().getPosition().setX(1);
+    odometry.getPose().getPose().getOrientation().setW(1);
+    odometry.getTwist().getTwist().getLinear().setX(0.5);
+    return odometry;
+  }
+
+  private static sensor_msgs.PointCloud newPointCloud(MessageFactory messageFactory) {
+    sensor_msgs.PointCloud pointCloud = messageFactory.newFromType(sensor_msgs.PointCloud._TYPE);
+    pointCloud.getHeader().setFrameId("base_link");
+    for (int i = 0; i < 1000; i++) {
+      geometry_msgs.Point32 point = messageFactory.newFromType(geometry_msgs.Point32._TYPE);
+      point.setX(i);
+      point.setY(-i);
+      point.setZ(i * 0.5f);
+      pointCloud.getPoints().add(point);
+    }
+    return pointCloud;
+  }
+
+  private static sensor_msgs.CompressedImage newCompressedImage(MessageFactory messageFactory) {
+    sensor_msgs.CompressedImage image =
+        messageFactory.newFromType(sensor_msgs.CompressedImage._TYPE);
+    image.setFormat("jpeg");
+    image.setData(ChannelBuffers.wrappedBuffer(ByteOrder.LITTLE_ENDIAN, new byte[100 * 1024]));
+    return image;
+  }
+
+  /**
+   * @return the fastest time per copy in nanoseconds
+   */
+  private double timeCopy(Message message, int iterations) {
+    RawMessage rawMessage = message.toRawMessage();
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        sink += rawMessage.copy() == null ? 0 : 1;
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return (double) best / iterations;
+  }
+
+  /**
+   * @return the fastest time per serialization and deserialization in
+   *         nanoseconds
+   */
+  private double timeRoundTrip(Message message, String messageType, int iterations) {
+    MessageSerializer<Message> serializer =
+        messageSerializationFactory.newMessageSerializer(messageType);
+    MessageDeserializer<Message> deserializer =
+        messageSerializationFactory.newMessageDeserializer(messageType);
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        ChannelBuffer buffer = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN,
+            message.toRawMessage().getSerializedSize());
+        serializer.serialize(message, buffer);
+        sink += deserializer.deserialize(buffer) == null ? 0 : 1;
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return (double) best / iterations;
+  }
+
+  private void measure(String name, Message message, String messageType, int iterations,
+      boolean report) {
+    double copyTime = timeCopy(message, iterations);
+    double roundTripTime = timeRoundTrip(message, messageType, iterations);
+    if (report) {
+      System.out.println(String.format(
+          "%-16s copy %10.1f ns/op   serialize+deserialize %10.1f ns/op   %5.1fx", name,
+          copyTime, roundTripTime, roundTripTime / copyTime));
+    }
+  }
+
+  public static void main(String[] args) {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    MessageDefinitionProvider messageDefinitionProvider =
+        new MessageDefinitionReflectionProvider();
+    MessageFactory messageFactory = new DefaultMessageFactory(messageDefinitionProvider);
+    MessageCopyBenchmark benchmark = new MessageCopyBenchmark(messageDefinitionProvider);
+    Message jointState = newJointState(messageFactory);
+    Message odometry = newOdometry(messageFactory);
+    Message pointCloud = newPointCloud(messageFactory);
+    Message image = newCompressedImage(messageFactory);
+    for (int pass = 0; pass < 2; pass++) {
+      boolean report = pass > 0;
+      benchmark.measure("JointState", jointState, sensor_msgs.JointState._TYPE, iterations,
+          report);
+      benchmark.measure("Odometry", odometry, nav_msgs.Odometry._TYPE, iterations, report);
+      benchmark.measure("PointCloud", pointCloud, sensor_msgs.PointCloud._TYPE,
+          iterations / 100, report);
+      benchmark.measure("CompressedImage", image, sensor_msgs.CompressedImage._TYPE,
+          iterations / 100, report);
+    }
+    if (benchmark.sink == 0) {
+      System.out.println();
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.internal.message.topic.TopicDefinitionResourceProvider;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageIdentifier;
+import org.ros.message.Time;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class MessageImplTest {
+
+  private MessageFactory messageFactory;
+
+  @Before
+  public void setUp() {
+    messageFactory = new DefaultMessageFactory(new MessageDefinitionReflectionProvider());
+  }
+
+  /**
+   * @return a proxied {@link MessageImpl} with the same type as {@code message}
+   */
+  private std_msgs.String newProxiedString(std_msgs.String message) {
+    MessageImpl messageImpl = new MessageImpl(((MessageImpl) message).getMessageContext());
+    return MessageProxyFactory.newProxy(std_msgs.String.class, messageImpl);
+  }
+
+  @Test
+  public void testGeneratedAndProxiedMessagesAreEqual() {
+    std_msgs.String generated = messageFactory.newFromType(std_msgs.String._TYPE);
+    std_msgs.String proxied = newProxiedString(generated);
+    assertTrue(generated.getClass() != ((GetInstance) proxied).getInstance().getClass());
+    generated.setData("foo");
+    proxied.setData("foo");
+    assertTrue(generated.equals(proxied));
+    assertTrue(proxied.equals(generated));
+    assertEquals(generated.hashCode(), proxied.hashCode());
+    proxied.setData("bar");
+    assertFalse(generated.equals(proxied));
+    assertFalse(proxied.equals(generated));
+  }
+
+  @Test
+  public void testMessagesOfDifferentTypesWithEqualFieldsAreNotEqual() {
+    geometry_msgs.Point point = messageFactory.newFromType(geometry_msgs.Point._TYPE);
+    geometry_msgs.Vector3 vector = messageFactory.newFromType(geometry_msgs.Vector3._TYPE);
+    assertFalse(point.equals(vector));
+    assertFalse(vector.equals(point));
+  }
+
+  private sensor_msgs.PointCloud newPointCloud() {
+    sensor_msgs.PointCloud pointCloud = messageFactory.newFromType(sensor_msgs.PointCloud._TYPE);
+    pointCloud.getHeader().setSeq(7);
+    pointCloud.getHeader().setFrameId("base_link");
+    pointCloud.getHeader().setStamp(new Time(1, 2));
+    for (int i = 0; i < 3; i++) {
+      geometry_msgs.Point32 point = messageFactory.newFromType(geometry_msgs.Point32._TYPE);
+      point.setX(i);
+      pointCloud.getPoints().add(point);
+    }
+    sensor_msgs.ChannelFloat32 channel =
+        messageFactory.newFromType(sensor_msgs.ChannelFloat32._TYPE);
+    channel.setName("intensity");
+    channel.setValues(new float[] { 1, 2, 3 });
+    pointCloud.setChannels(Lists.newArrayList(channel));
+    return pointCloud;
+  }
+
+  @Test
+  public void testCopyIsIndependentOfNestedMessagesAndArrays() {
+    sensor_msgs.PointCloud pointCloud = newPointCloud();
+    sensor_msgs.PointCloud copy = pointCloud.toRawMessage().copy();
+    assertSame(pointCloud.getClass(), copy.getClass());
+    assertEquals(pointCloud, copy);
+    assertNotSame(pointCloud.getHeader(), copy.getHeader());
+    assertNotSame(pointCloud.getChannels().get(0), copy.getChannels().get(0));
+
+    pointCloud.getHeader().setFrameId("odom");
+    pointCloud.getHeader().getStamp().secs = 10;
+    pointCloud.getPoints().get(0).setX(-1);
+    pointCloud.getPoints().add(pointCloud.getPoints().get(1));
+    pointCloud.getChannels().get(0).getValues()[0] = -1;
+    assertEquals(newPointCloud(), copy);
+  }
+
+  @Test
+  public void testCopyIsIndependentOfChannelBuffers() {
+    sensor_msgs.CompressedImage image =
+        messageFactory.newFromType(sensor_msgs.CompressedImage._TYPE);
+    image.setFormat("png");
+    image.setData(ChannelBuffers.wrappedBuffer(ByteOrder.LITTLE_ENDIAN, new byte[] { 1, 2, 3 }));
+    sensor_msgs.CompressedImage copy = image.toRawMessage().copy();
+    assertEquals(image, copy);
+    image.getData().setByte(0, 42);
+    assertEquals(1, copy.getData().getByte(0));
+    assertEquals(3, copy.getData().readableBytes());
+  }
+
+  @Test
+  public void testCopyOfProxiedMessage() {
+    TopicDefinitionResourceProvider provider = new TopicDefinitionResourceProvider();
+    provider.add("copy_test_msgs/Outer", "copy_test_msgs/Inner inner\nint32[] values");
+    provider.add("copy_test_msgs/Inner", "float64 x");
+    MessageFactory proxyMessageFactory = new DefaultMessageFactory(provider);
+    RawMessage message = proxyMessageFactory.newFromType("copy_test_msgs/Outer");
+    message.setInt32Array("values", new int[] { 1, 2, 3 });
+    message.getMessage("inner").toRawMessage().setFloat64("x", 1);
+
+    RawMessage copy = message.copy();
+    assertSame(MessageImpl.class, ((GetInstance) copy).getInstance().getClass());
+    assertEquals(message, copy);
+    message.getInt32Array("values")[0] = -1;
+    message.getMessage("inner").toRawMessage().setFloat64("x", -1);
+    assertArrayEquals(new int[] { 1, 2, 3 }, copy.getInt32Array("values"));
+    assertEquals(1, copy.getMessage("inner").toRawMessage().getFloat64("x"), 0);
+  }
+
+  @Test
+  public void testCopyOfLazilyDeserializedMessage() {
+    sensor_msgs.JointState jointState = messageFactory.newFromType(sensor_msgs.JointState._TYPE);
+    List<String> names = Arrays.asList("j0", "j1");
+    jointState.setName(names);
+    jointState.setPosition(new double[] { 1, 2 });
+    ChannelBuffer buffer = MessageBuffers.dynamicBuffer();
+    new CompiledMessageSerializer().serialize(jointState, buffer);
+    sensor_msgs.JointState received = new LazyMessageDeserializer<sensor_msgs.JointState>(
+        MessageIdentifier.of(sensor_msgs.JointState._TYPE), messageFactory).deserialize(buffer
+        .duplicate());
+
+    sensor_msgs.JointState copy = received.toRawMessage().copy();
+    // The copy must not read from the received buffer.
+    buffer.setZero(0, buffer.writerIndex());
+    assertEquals(names, copy.getName());
+    assertArrayEquals(new double[] { 1, 2 }, copy.getPosition(), 0);
+    assertEquals(jointState, copy);
+  }
+}
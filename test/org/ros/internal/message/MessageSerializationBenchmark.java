@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.message.MessageDefinitionProvider;
+import org.ros.message.MessageDeserializer;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageSerializationFactory;
+import org.ros.message.MessageSerializer;
+
+import java.util.Arrays;
+
+/**
+ * Compares the serialization and deserialization time of the
+ * {@link CompiledMessageSerializationFactory} and the
+ * {@link DefaultMessageSerializationFactory} for nested message types
+ * ({@code sensor_msgs/JointState} and {@code nav_msgs/Odometry}).
+ * <p>
+ * The default factory walks the fields of the message and of all nested
+ * messages generically, as was done for every message before code was
+ * generated. The compiled factory uses the generated code at every level.
+ * <p>
+ * All measurements are run once as a warm up so that every variant is
+ * compiled by the JIT before any of them is timed. Each measurement is then
+ * repeated several times and the fastest round is reported.
+ * <p>
+ * Run with {@code java org.ros.internal.message.MessageSerializationBenchmark
+ * [iterations]}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class MessageSerializationBenchmark {
+
+  private static final int ROUNDS = 5;
+
+  private final MessageDefinitionProvider messageDefinitionProvider;
+  private final nav_msgs.Odometry odometry;
+  private final sensor_msgs.JointState jointState;
+  private final ChannelBuffer buffer;
+  private long sink;
+
+  private MessageSerializationBenchmark() {
+    messageDefinitionProvider = new MessageDefinitionReflectionProvider();
+    MessageFactory messageFactory = new DefaultMessageFactory(messageDefinitionProvider);
+    odometry = messageFactory.newFromType(nav_msgs.Odometry._TYPE);
+    odometry.getHeader().setFrameId("odom");
+    odometry.setChildFrameId("base_link");
+    odometry.getPose().getPose().getPosition().setX(1);
+    odometry.getPose().getPose().getOrientation().setW(1);
+    odometry.getTwist().getTwist().getLinear().setX(0.5);
+    jointState = messageFactory.newFromType(sensor_msgs.JointState._TYPE);
+    jointState.getHeader().setFrameId("base_link");
+    jointState.setName(Arrays.asList("j0", "j1", "j2", "j3", "j4", "j5"));
+    jointState.setPosition(new double[] { 1, 2, 3, 4, 5, 6 });
+    jointState.setVelocity(new double[] { 1, 2, 3, 4, 5, 6 });
+    jointState.setEffort(new double[] { 1, 2, 3, 4, 5, 6 });
+    buffer = MessageBuffers.dynamicBuffer();
+  }
+
+  /**
+   * @return the fastest time per message in nanoseconds
+   */
+  private double timeSerialize(MessageSerializer<Object> serializer, Object message,
+      int iterations) {
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        buffer.clear();
+        serializer.serialize(message, buffer);
+      }
+      best = Math.min(best, System.nanoTime() - start);
+      sink += buffer.writerIndex();
+    }
+    return (double) best / iterations;
+  }
+
+  /**
+   * @return the fastest time per message in nanoseconds
+   */
+  private double timeDeserialize(MessageDeserializer<Object> deserializer, int iterations) {
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        buffer.readerIndex(0);
+        sink += deserializer.deserialize(buffer) == null ? 0 : 1;
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return (double) best / iterations;
+  }
+
+  private void measure(String name, MessageSerializer<Object> serializer,
+      MessageDeserializer<Object> deserializer, Object message, int iterations, boolean report) {
+    double serializeTime = timeSerialize(serializer, message, iterations);
+    double deserializeTime = timeDeserialize(deserializer, iterations);
+    if (report) {
+      System.out.println(String.format("%-28s serialize %8.1f ns/op   deserialize %8.1f ns/op",
+          name, serializeTime, deserializeTime));
+    }
+  }
+
+  private void measure(String name, MessageSerializationFactory messageSerializationFactory,
+      Object message, String messageType, int iterations, boolean report) {
+    MessageSerializer<Object> serializer =
+        messageSerializationFactory.newMessageSerializer(messageType);
+    MessageDeserializer<Object> deserializer =
+        messageSerializationFactory.newMessageDeserializer(messageType);
+    measure(name, serializer, deserializer, message, iterations, report);
+  }
+
+  private void measureAll(Object message, String messageType, String name, int iterations,
+      boolean report) {
+    measure(name + " default", new DefaultMessageSerializationFactory(messageDefinitionProvider),
+        message, messageType, iterations, report);
+    measure(name + " compiled",
+        new CompiledMessageSerializationFactory(messageDefinitionProvider), message,
+        messageType, iterations, report);
+  }
+
+  public static void main(String[] args) {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    MessageSerializationBenchmark benchmark = new MessageSerializationBenchmark();
+    for (int pass = 0; pass < 2; pass++) {
+      boolean report = pass > 0;
+      benchmark.measureAll(benchmark.jointState, sensor_msgs.JointState._TYPE, "JointState",
+          iterations, report);
+      benchmark.measureAll(benchmark.odometry, nav_msgs.Odometry._TYPE, "Odometry",
+          iterations, report);
+    }
+    if (benchmark.sink == 0) {
+      System.out.println();
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message.definition;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.apache.commons.io.FileUtils;
+import org.ros.EnvironmentVariables;
+import org.ros.internal.message.GenerateInterfaces;
+import org.ros.internal.message.definition.MessageDefinitionParser.MessageDefinitionVisitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Measures parsing all topic definitions found on a package path, and
+ * generating their interfaces with {@link GenerateInterfaces}.
+ * <p>
+ * First parses use a message type that has not been parsed before, so they
+ * always tokenize the definition. Repeated parses use the same message type
+ * and definition every time. After a warm up run, interface generation is
+ * timed once into an empty output directory and once more into the same
+ * directory, where nothing has changed.
+ * <p>
+ * Run with {@code java org.ros.internal.message.definition.MessageDefinitionParserBenchmark
+ * [package path] [iterations]}. The package path defaults to
+ * {@code ROS_PACKAGE_PATH}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class MessageDefinitionParserBenchmark {
+
+  private static final int ROUNDS = 5;
+
+  private final Map<String, String> definitions;
+  private final MessageDefinitionVisitor visitor;
+  private long sink;
+  private int nextTypeSuffix;
+
+  private MessageDefinitionParserBenchmark(Collection<File> packagePath) throws IOException {
+    definitions = Maps.newTreeMap();
+    for (File directory : packagePath) {
+      @SuppressWarnings("unchecked")
+      Collection<File> files = FileUtils.listFiles(directory, new String[] { "msg" }, true);
+      for (File file : files) {
+        File msgDirectory = file.getParentFile();
+        if (!msgDirectory.getName().equals("msg")) {
+          continue;
+        }
+        String name = file.getName().substring(0, file.getName().length() - ".msg".length());
+        String messageType = msgDirectory.getParentFile().getName() + "/" + name;
+        definitions.put(messageType, FileUtils.readFileToString(file));
+      }
+    }
+    visitor = new MessageDefinitionVisitor() {
+      @Override
+      public void constantValue(String type, String name, String value) {
+        sink += name.length();
+      }
+
+      @Override
+      public void variableValue(String type, String name) {
+        sink += name.length();
+      }
+
+      @Override
+      public void variableList(String type, int size, String name) {
+        sink += name.length();
+      }
+    };
+  }
+
+  /**
+   * @return the fastest time to parse all definitions in microseconds
+   */
+  private double timeParse(int iterations, boolean repeated) {
+    MessageDefinitionParser parser = new MessageDefinitionParser(visitor);
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        // A new message type suffix makes the parser see each definition for
+        // the first time. Each of these stays in the parse cache, which limits
+        // the number of iterations.
+        String suffix = repeated ? "" : "_" + nextTypeSuffix++;
+        for (Entry<String, String> entry : definitions.entrySet()) {
+          parser.parse(entry.getKey() + suffix, entry.getValue());
+        }
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return (double) best / iterations / 1000;
+  }
+
+  /**
+   * @return the time to generate all interfaces in milliseconds
+   */
+  private static long timeGenerate(File outputDirectory, Collection<File> packagePath) {
+    Collection<String> packages = Lists.newArrayList();
+    long start = System.nanoTime();
+    new GenerateInterfaces().generate(outputDirectory, packages, packagePath);
+    return (System.nanoTime() - start) / 1000000;
+  }
+
+  public static void main(String[] args) throws IOException {
+    String rosPackagePath = System.getenv(EnvironmentVariables.ROS_PACKAGE_PATH);
+    if (args.length > 0) {
+      rosPackagePath = args[0];
+    }
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    List<File> packagePath = Lists.newArrayList();
+    for (String path : rosPackagePath.split(File.pathSeparator)) {
+      File packageDirectory = new File(path);
+      if (packageDirectory.exists()) {
+        packagePath.add(packageDirectory);
+      }
+    }
+    MessageDefinitionParserBenchmark benchmark = new MessageDefinitionParserBenchmark(packagePath);
+    int count = benchmark.definitions.size();
+    // Warm up both paths before timing them.
+    benchmark.timeParse(iterations, false);
+    benchmark.timeParse(iterations, true);
+    System.out.println(String.format("Parsed %d definitions: first parse %.1f us, repeated %.1f us",
+        count, benchmark.timeParse(iterations, false), benchmark.timeParse(iterations, true)));
+
+    File warmUpDirectory =
+        new File(System.getProperty("java.io.tmpdir"), "parser_benchmark_" + System.nanoTime());
+    File outputDirectory =
+        new File(System.getProperty("java.io.tmpdir"), "parser_benchmark_" + System.nanoTime());
+    try {
+      timeGenerate(warmUpDirectory, packagePath);
+      long fullTime = timeGenerate(outputDirectory, packagePath);
+      long incrementalTime = timeGenerate(outputDirectory, packagePath);
+      System.out.println(String.format(
+          "Generated interfaces: full %d ms, unchanged %d ms", fullTime, incrementalTime));
+    } finally {
+      FileUtils.deleteDirectory(warmUpDirectory);
+      FileUtils.deleteDirectory(outputDirectory);
+    }
+    if (benchmark.sink == 0) {
+      System.out.println();
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message.definition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.internal.message.DefaultMessageFactory;
+import org.ros.internal.message.Md5Generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class MessageRegistryTest {
+
+  private File directory;
+  private ClassLoader classLoader;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = new File(System.getProperty("java.io.tmpdir"),
+        "message_registry_test_" + System.nanoTime());
+    directory.mkdirs();
+    classLoader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, null);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  private MessageRegistry writeAndLoad(MessageRegistry messageRegistry) {
+    messageRegistry.write(new File(directory, MessageRegistry.FILE_NAME));
+    return MessageRegistry.loadResource(classLoader);
+  }
+
+  @Test
+  public void testLoadResource() {
+    MessageRegistry messageRegistry = new MessageRegistry();
+    messageRegistry.add("test_msgs/Registered", "int32 x\nstring y", "md5", true);
+    MessageRegistry loaded = writeAndLoad(messageRegistry);
+    assertTrue(loaded.has("test_msgs/Registered"));
+    assertEquals("int32 x\nstring y", loaded.get("test_msgs/Registered"));
+    assertEquals("md5", loaded.getMd5Checksum("test_msgs/Registered"));
+    assertTrue(loaded.hasLayout("test_msgs/Registered", "int32 x\nstring y"));
+    assertFalse(loaded.has("test_msgs/Missing"));
+  }
+
+  @Test
+  public void testLoadResourceWithoutRegistry() {
+    assertNull(MessageRegistry.loadResource(classLoader));
+  }
+
+  @Test
+  public void testFallbackProvider() {
+    MessageRegistry messageRegistry = new MessageRegistry();
+    messageRegistry.add("test_msgs/Registered", "int32 x", null, true);
+    MessageRegistry loaded = writeAndLoad(messageRegistry);
+    MessageDefinitionReflectionProvider reflectionProvider =
+        new MessageDefinitionReflectionProvider();
+    reflectionProvider.add("test_msgs/Registered", "float64 ignored");
+    loaded.setFallbackProvider(reflectionProvider);
+
+    // Registered types are served by the registry, all others by the fallback.
+    assertEquals("int32 x", loaded.get("test_msgs/Registered"));
+    assertTrue(loaded.has("std_msgs/Header"));
+    assertEquals(std_msgs.Header._DEFINITION, loaded.get("std_msgs/Header"));
+    assertFalse(loaded.has("test_msgs/Missing"));
+    assertEquals(new Md5Generator(reflectionProvider).generate("std_msgs/Header"),
+        new Md5Generator(loaded).generate("std_msgs/Header"));
+
+    DefaultMessageFactory messageFactory = new DefaultMessageFactory(loaded);
+    std_msgs.Header message = messageFactory.newFromType(std_msgs.Header._TYPE);
+    message.setFrameId("frame");
+    assertEquals("frame", message.getFrameId());
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message.field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.internal.message.DefaultMessageFactory;
+import org.ros.internal.message.MessageBuffers;
+import org.ros.internal.message.MessageImpl;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.message.MessageFactory;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class ColumnarListFieldTest {
+
+  private static final int SIZE = 1000;
+
+  private MessageFactory messageFactory;
+
+  @Before
+  public void setUp() {
+    messageFactory = new DefaultMessageFactory(new MessageDefinitionReflectionProvider());
+  }
+
+  private Field newPointsField() {
+    sensor_msgs.PointCloud pointCloud = messageFactory.newFromType(sensor_msgs.PointCloud._TYPE);
+    return ((MessageImpl) pointCloud.toRawMessage()).getMessageFields().getField("points");
+  }
+
+  private geometry_msgs.Point32 newPoint(int i) {
+    geometry_msgs.Point32 point = messageFactory.newFromType(geometry_msgs.Point32._TYPE);
+    point.setX(i);
+    point.setY(-i);
+    point.setZ(i * 0.5f);
+    return point;
+  }
+
+  private static ChannelBuffer serialize(Field field) {
+    ChannelBuffer buffer = MessageBuffers.dynamicBuffer();
+    field.serialize(buffer);
+    return buffer;
+  }
+
+  private static void assertPoints(List<geometry_msgs.Point32> points) {
+    assertEquals(SIZE, points.size());
+    for (int i = 0; i < SIZE; i++) {
+      geometry_msgs.Point32 point = points.get(i);
+      assertEquals(i, point.getX(), 0);
+      assertEquals(-i, point.getY(), 0);
+      assertEquals(i * 0.5f, point.getZ(), 0);
+    }
+  }
+
+  @Test
+  public void testRoundTripMatchesListField() {
+    Field columnarField = newPointsField();
+    assertTrue(columnarField instanceof ColumnarListField);
+    ListField<geometry_msgs.Point32> listField =
+        ListField.newVariable(columnarField.getType(), "points");
+    List<geometry_msgs.Point32> columnarPoints = columnarField.getValue();
+    for (int i = 0; i < SIZE; i++) {
+      columnarPoints.add(newPoint(i));
+      listField.getValue().add(newPoint(i));
+    }
+    ChannelBuffer columnarBuffer = serialize(columnarField);
+    ChannelBuffer listBuffer = serialize(listField);
+    assertEquals(listBuffer, columnarBuffer);
+    assertEquals(listBuffer.readableBytes(), columnarField.getSerializedSize());
+
+    // Each layout reads what the other one wrote.
+    Field columnarCopy = newPointsField();
+    columnarCopy.deserialize(listBuffer.duplicate());
+    assertPoints(columnarCopy.<List<geometry_msgs.Point32>>getValue());
+    ListField<geometry_msgs.Point32> listCopy =
+        ListField.newVariable(columnarField.getType(), "points");
+    listCopy.deserialize(columnarBuffer.duplicate());
+    assertPoints(listCopy.getValue());
+    assertEquals(columnarField, columnarCopy);
+  }
+
+  @Test
+  public void testChangedElementsAreSerialized() {
+    Field field = newPointsField();
+    List<geometry_msgs.Point32> points = field.getValue();
+    for (int i = 0; i < SIZE; i++) {
+      points.add(newPoint(0));
+    }
+    for (int i = 0; i < SIZE; i++) {
+      geometry_msgs.Point32 point = points.get(i);
+      point.setX(i);
+      point.setY(-i);
+      point.setZ(i * 0.5f);
+    }
+    Field copy = newPointsField();
+    copy.deserialize(serialize(field));
+    assertPoints(copy.<List<geometry_msgs.Point32>>getValue());
+  }
+
+  @Test(timeout = 10000)
+  public void testConcurrentReadersSeeTheSameElements() throws InterruptedException {
+    Field source = newPointsField();
+    List<geometry_msgs.Point32> sourcePoints = source.getValue();
+    for (int i = 0; i < SIZE; i++) {
+      sourcePoints.add(newPoint(i));
+    }
+    ChannelBuffer buffer = serialize(source);
+    int readers = 4;
+    for (int round = 0; round < 50; round++) {
+      Field field = newPointsField();
+      field.deserialize(buffer.duplicate());
+      final List<geometry_msgs.Point32> points = field.getValue();
+      final geometry_msgs.Point32[][] seen = new geometry_msgs.Point32[readers][];
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+      final CountDownLatch start = new CountDownLatch(1);
+      Thread[] threads = new Thread[readers];
+      for (int i = 0; i < readers; i++) {
+        final int reader = i;
+        threads[i] = new Thread() {
+          @Override
+          public void run() {
+            try {
+              start.await();
+              geometry_msgs.Point32[] elements = new geometry_msgs.Point32[SIZE];
+              for (int j = 0; j < SIZE; j++) {
+                elements[j] = points.get(j);
+              }
+              seen[reader] = elements;
+            } catch (Throwable e) {
+              failure.set(e);
+            }
+          }
+        };
+        threads[i].setDaemon(true);
+        threads[i].start();
+      }
+      start.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      if (failure.get() != null) {
+        throw new AssertionError(failure.get());
+      }
+      for (int j = 0; j < SIZE; j++) {
+        assertEquals(j, seen[0][j].getX(), 0);
+        for (int i = 1; i < readers; i++) {
+          assertSame(seen[0][j], seen[i][j]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSetValueAliasesTheList() {
+    Field field = newPointsField();
+    List<geometry_msgs.Point32> points = Lists.newArrayList();
+    field.setValue(points);
+    assertSame(points, field.getValue());
+    // Like ListField, changes to the list after setValue() are serialized.
+    for (int i = 0; i < SIZE; i++) {
+      points.add(newPoint(i));
+    }
+    assertEquals(4 + SIZE * 12, field.getSerializedSize());
+    Field copy = newPointsField();
+    copy.deserialize(serialize(field));
+    assertPoints(copy.<List<geometry_msgs.Point32>>getValue());
+    assertEquals(field, copy);
+    assertEquals(copy, field);
+    assertEquals(field.hashCode(), copy.hashCode());
+    assertPoints(field.copy().<List<geometry_msgs.Point32>>getValue());
+
+    // Deserializing releases the list without changing it.
+    field.deserialize(serialize(newPointsField()));
+    assertEquals(0, field.<List<geometry_msgs.Point32>>getValue().size());
+    assertEquals(SIZE, points.size());
+  }
+
+  @Test
+  public void testHashCodeAndEqualsDependOnContents() {
+    Field field = newPointsField();
+    Field other = newPointsField();
+    for (int i = 0; i < SIZE; i++) {
+      field.<List<geometry_msgs.Point32>>getValue().add(newPoint(i));
+      other.<List<geometry_msgs.Point32>>getValue().add(newPoint(i));
+    }
+    assertEquals(field, other);
+    assertEquals(field.hashCode(), other.hashCode());
+    other.<List<geometry_msgs.Point32>>getValue().get(SIZE - 1).setZ(-1);
+    assertFalse(field.equals(other));
+    assertFalse(other.equals(field));
+    assertFalse(field.hashCode() == other.hashCode());
+  }
+
+  @Test(timeout = 10000)
+  public void testConcurrentEqualsInBothDirections() throws InterruptedException {
+    final Field field = newPointsField();
+    final Field other = newPointsField();
+    for (int i = 0; i < SIZE; i++) {
+      field.<List<geometry_msgs.Point32>>getValue().add(newPoint(i));
+      other.<List<geometry_msgs.Point32>>getValue().add(newPoint(i));
+    }
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      final Field left = i % 2 == 0 ? field : other;
+      final Field right = i % 2 == 0 ? other : field;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int j = 0; j < 200; j++) {
+              assertTrue(left.equals(right));
+            }
+          } catch (Throwable e) {
+            failure.set(e);
+          }
+        }
+      };
+      threads[i].setDaemon(true);
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+  }
+}
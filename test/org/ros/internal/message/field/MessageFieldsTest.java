@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message.field;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.internal.message.CompiledMessageSerializer;
+import org.ros.internal.message.DefaultMessageFactory;
+import org.ros.internal.message.LazyMessageDeserializer;
+import org.ros.internal.message.Message;
+import org.ros.internal.message.MessageBuffers;
+import org.ros.internal.message.MessageImpl;
+import org.ros.internal.message.RawMessage;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.internal.message.topic.TopicDefinitionResourceProvider;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageIdentifier;
+
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class MessageFieldsTest {
+
+  private static final List<String> NAMES = Arrays.asList("j0", "j1", "j2");
+  private static final double[] POSITION = new double[] { 1, 2, 3 };
+  private static final double[] VELOCITY = new double[] { 4, 5, 6 };
+  private static final double[] EFFORT = new double[] { 7, 8, 9 };
+
+  // The number of groups of fields checked by assertFields().
+  private static final int FIELD_GROUPS = 4;
+
+  private MessageFactory messageFactory;
+  private sensor_msgs.JointState source;
+  private ChannelBuffer serialized;
+
+  @Before
+  public void setUp() {
+    messageFactory = new DefaultMessageFactory(new MessageDefinitionReflectionProvider());
+    source = messageFactory.newFromType(sensor_msgs.JointState._TYPE);
+    source.getHeader().setSeq(42);
+    source.getHeader().setFrameId("base_link");
+    source.setName(NAMES);
+    source.setPosition(POSITION);
+    source.setVelocity(VELOCITY);
+    source.setEffort(EFFORT);
+    serialized = serialize(source);
+  }
+
+  private static ChannelBuffer serialize(Message message) {
+    ChannelBuffer buffer = MessageBuffers.dynamicBuffer();
+    new CompiledMessageSerializer().serialize(message, buffer);
+    return buffer;
+  }
+
+  private sensor_msgs.JointState deserializeLazily() {
+    return new LazyMessageDeserializer<sensor_msgs.JointState>(
+        MessageIdentifier.of(sensor_msgs.JointState._TYPE), messageFactory)
+        .deserialize(serialized.duplicate());
+  }
+
+  private static boolean isLazy(Message message) {
+    return ((MessageImpl) message.toRawMessage()).getMessageFields().isLazy();
+  }
+
+  @Test
+  public void testOutOfOrderAccess() {
+    sensor_msgs.JointState message = deserializeLazily();
+    assertTrue(isLazy(message));
+    // The last field is read first so that the offsets of all variable length
+    // fields before it have to be computed.
+    assertArrayEquals(EFFORT, message.getEffort(), 0);
+    assertArrayEquals(POSITION, message.getPosition(), 0);
+    assertEquals(NAMES, message.getName());
+    assertTrue(isLazy(message));
+    assertEquals("base_link", message.getHeader().getFrameId());
+    assertEquals(42, message.getHeader().getSeq());
+    assertArrayEquals(VELOCITY, message.getVelocity(), 0);
+    assertFalse(isLazy(message));
+    assertEquals(source, message);
+  }
+
+  @Test
+  public void testSetBeforeDecodingLaterFields() {
+    sensor_msgs.JointState message = deserializeLazily();
+    // The new value has a different serialized length than the undecoded one,
+    // so later fields must still be located in the received message.
+    message.setName(Arrays.asList("a_much_longer_joint_name"));
+    double[] position = new double[] { -1 };
+    message.setPosition(position);
+    assertTrue(isLazy(message));
+    assertArrayEquals(VELOCITY, message.getVelocity(), 0);
+    assertArrayEquals(EFFORT, message.getEffort(), 0);
+    assertEquals("base_link", message.getHeader().getFrameId());
+    assertEquals(Arrays.asList("a_much_longer_joint_name"), message.getName());
+    assertArrayEquals(position, message.getPosition(), 0);
+    assertFalse(isLazy(message));
+
+    source.setName(Arrays.asList("a_much_longer_joint_name"));
+    source.setPosition(position);
+    assertEquals(serialize(source), serialize(message));
+  }
+
+  @Test
+  public void testSerializeUndecodedMessage() {
+    sensor_msgs.JointState message = deserializeLazily();
+    assertEquals(serialized, serialize(message));
+    assertEquals(source, message);
+  }
+
+  @Test(timeout = 10000)
+  public void testConcurrentDecoding() throws InterruptedException {
+    for (int round = 0; round < 200; round++) {
+      final sensor_msgs.JointState message = deserializeLazily();
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+      final CountDownLatch start = new CountDownLatch(1);
+      Thread[] threads = new Thread[FIELD_GROUPS];
+      for (int i = 0; i < FIELD_GROUPS; i++) {
+        // Each reader starts with a different field.
+        final int first = i;
+        threads[i] = new Thread() {
+          @Override
+          public void run() {
+            try {
+              start.await();
+              for (int j = 0; j < FIELD_GROUPS; j++) {
+                assertFields(message, (first + j) % FIELD_GROUPS);
+              }
+            } catch (Throwable e) {
+              failure.set(e);
+            }
+          }
+        };
+        threads[i].setDaemon(true);
+        threads[i].start();
+      }
+      start.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      if (failure.get() != null) {
+        throw new AssertionError(failure.get());
+      }
+      assertFalse(isLazy(message));
+      assertEquals(source, message);
+    }
+  }
+
+  private static void assertFields(sensor_msgs.JointState message, int group) {
+    switch (group) {
+      case 0:
+        assertEquals(NAMES, message.getName());
+        break;
+      case 1:
+        assertArrayEquals(POSITION, message.getPosition(), 0);
+        break;
+      case 2:
+        assertArrayEquals(VELOCITY, message.getVelocity(), 0);
+        break;
+      case 3:
+        assertArrayEquals(EFFORT, message.getEffort(), 0);
+        assertEquals("base_link", message.getHeader().getFrameId());
+        break;
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  private static final String ARRAYS_TYPE = "view_test_msgs/Arrays";
+  // Values whose bytes differ when read in the wrong byte order.
+  private static final short[] SHORTS = new short[] { 0x0102, -2 };
+  private static final int[] INTS = new int[] { 0x01020304, -2 };
+  private static final long[] LONGS = new long[] { 0x0102030405060708L, -2 };
+  private static final float[] FLOATS = new float[] { 1.5f, -1e-3f };
+  private static final double[] DOUBLES = new double[] { 2.25, -1e-9, 3 };
+
+  private MessageFactory newArraysMessageFactory() {
+    TopicDefinitionResourceProvider provider = new TopicDefinitionResourceProvider();
+    provider.add(ARRAYS_TYPE,
+        "int16[] shorts\nint32[] ints\nint64[] longs\nfloat32[] floats\nfloat64[3] doubles");
+    return new DefaultMessageFactory(provider);
+  }
+
+  private static RawMessage newArrays(MessageFactory messageFactory) {
+    RawMessage message = messageFactory.newFromType(ARRAYS_TYPE);
+    message.setInt16Array("shorts", SHORTS);
+    message.setInt32Array("ints", INTS);
+    message.setInt64Array("longs", LONGS);
+    message.setFloat32Array("floats", FLOATS);
+    message.setFloat64Array("doubles", DOUBLES);
+    return message;
+  }
+
+  private static RawMessage deserializeArraysLazily(MessageFactory messageFactory) {
+    return new LazyMessageDeserializer<RawMessage>(MessageIdentifier.of(ARRAYS_TYPE),
+        messageFactory).deserialize(serialize(newArrays(messageFactory)));
+  }
+
+  private static void assertViews(RawMessage message) {
+    ShortBuffer shorts = message.getInt16ArrayView("shorts");
+    assertEquals(SHORTS.length, shorts.remaining());
+    for (int i = 0; i < SHORTS.length; i++) {
+      assertEquals(SHORTS[i], shorts.get(i));
+    }
+    IntBuffer ints = message.getInt32ArrayView("ints");
+    assertEquals(INTS.length, ints.remaining());
+    for (int i = 0; i < INTS.length; i++) {
+      assertEquals(INTS[i], ints.get(i));
+    }
+    LongBuffer longs = message.getInt64ArrayView("longs");
+    assertEquals(LONGS.length, longs.remaining());
+    for (int i = 0; i < LONGS.length; i++) {
+      assertEquals(LONGS[i], longs.get(i));
+    }
+    FloatBuffer floats = message.getFloat32ArrayView("floats");
+    assertEquals(FLOATS.length, floats.remaining());
+    for (int i = 0; i < FLOATS.length; i++) {
+      assertEquals(FLOATS[i], floats.get(i), 0);
+    }
+    DoubleBuffer doubles = message.getFloat64ArrayView("doubles");
+    assertEquals(DOUBLES.length, doubles.remaining());
+    for (int i = 0; i < DOUBLES.length; i++) {
+      assertEquals(DOUBLES[i], doubles.get(i), 0);
+    }
+  }
+
+  private static void assertReadOnly(RawMessage message) {
+    assertTrue(message.getInt16ArrayView("shorts").isReadOnly());
+    assertTrue(message.getInt32ArrayView("ints").isReadOnly());
+    assertTrue(message.getInt64ArrayView("longs").isReadOnly());
+    assertTrue(message.getFloat32ArrayView("floats").isReadOnly());
+    DoubleBuffer doubles = message.getFloat64ArrayView("doubles");
+    assertTrue(doubles.isReadOnly());
+    try {
+      doubles.put(0, 42);
+      fail();
+    } catch (ReadOnlyBufferException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testUndecodedArrayViews() {
+    RawMessage message = deserializeArraysLazily(newArraysMessageFactory());
+    assertViews(message);
+    assertReadOnly(message);
+    // Views of undecoded fields are backed by the little endian wire format.
+    assertEquals(ByteOrder.LITTLE_ENDIAN, message.getInt32ArrayView("ints").order());
+    assertEquals(ByteOrder.LITTLE_ENDIAN, message.getFloat64ArrayView("doubles").order());
+    assertTrue(isLazy(message));
+    // Decoding afterwards is not affected by the views.
+    assertArrayEquals(INTS, message.getInt32Array("ints"));
+    assertArrayEquals(DOUBLES, message.getFloat64Array("doubles"), 0);
+  }
+
+  @Test
+  public void testDecodedArrayViews() {
+    MessageFactory messageFactory = newArraysMessageFactory();
+    RawMessage message = newArrays(messageFactory);
+    assertViews(message);
+    assertReadOnly(message);
+
+    // Decoded fields of a lazily deserialized message are viewed as arrays.
+    RawMessage received = deserializeArraysLazily(messageFactory);
+    received.getInt64Array("longs");
+    received.getFloat32Array("floats");
+    assertViews(received);
+    assertReadOnly(received);
+  }
+
+  @Test
+  public void testArrayViewDoesNotFollowSetValue() {
+    RawMessage message = newArrays(newArraysMessageFactory());
+    DoubleBuffer view = message.getFloat64ArrayView("doubles");
+    message.setFloat64Array("doubles", new double[] { 7, 8, 9 });
+    assertEquals(DOUBLES[0], view.get(0), 0);
+    assertEquals(7, message.getFloat64ArrayView("doubles").get(0), 0);
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message.field;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import java.nio.ByteOrder;
+
+/**
+ * Measures the serialization and deserialization throughput of
+ * {@code float64[]} and {@code int32[]} fields for arrays of 10 to 10M
+ * elements, with heap and direct buffers.
+ * <p>
+ * The "boxed" rows serialize and deserialize element by element through
+ * {@link FieldType#serialize(Object, ChannelBuffer)} and
+ * {@link FieldType#deserialize(ChannelBuffer)}, as the array fields did
+ * before they were encoded in bulk.
+ * <p>
+ * Each measurement processes about {@link #ELEMENTS_PER_ROUND} elements per
+ * round. The fastest of several rounds is reported in millions of elements per
+ * second.
+ * <p>
+ * Run with {@code java -Xmx1g org.ros.internal.message.field.PrimitiveArrayBenchmark
+ * [max size]}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class PrimitiveArrayBenchmark {
+
+  private static final int ROUNDS = 5;
+  private static final long ELEMENTS_PER_ROUND = 20000000;
+
+  private long sink;
+
+  private interface Operation {
+    void run(ChannelBuffer buffer);
+  }
+
+  private double measure(Operation operation, ChannelBuffer buffer, int size) {
+    int iterations = (int) Math.max(1, ELEMENTS_PER_ROUND / size);
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        operation.run(buffer);
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return (double) iterations * size / best * 1000;
+  }
+
+  private void measure(String name, final Field field, int size, ChannelBuffer buffer) {
+    Operation serialize = new Operation() {
+      @Override
+      public void run(ChannelBuffer buffer) {
+        buffer.clear();
+        field.serialize(buffer);
+      }
+    };
+    Operation deserialize = new Operation() {
+      @Override
+      public void run(ChannelBuffer buffer) {
+        buffer.readerIndex(0);
+        field.deserialize(buffer);
+      }
+    };
+    Operation boxedSerialize = new Operation() {
+      @Override
+      public void run(ChannelBuffer buffer) {
+        buffer.clear();
+        Object values = field.getValue();
+        FieldType type = field.getType();
+        if (values instanceof double[]) {
+          double[] doubles = (double[]) values;
+          buffer.writeInt(doubles.length);
+          for (double value : doubles) {
+            type.serialize(value, buffer);
+          }
+        } else {
+          int[] ints = (int[]) values;
+          buffer.writeInt(ints.length);
+          for (int value : ints) {
+            type.serialize(value, buffer);
+          }
+        }
+      }
+    };
+    Operation boxedDeserialize = new Operation() {
+      @Override
+      public void run(ChannelBuffer buffer) {
+        buffer.readerIndex(0);
+        int length = buffer.readInt();
+        FieldType type = field.getType();
+        for (int i = 0; i < length; i++) {
+          sink += type.<Number>deserialize(buffer).intValue();
+        }
+      }
+    };
+    double serializeRate = measure(serialize, buffer, size);
+    double deserializeRate = measure(deserialize, buffer, size);
+    double boxedSerializeRate = measure(boxedSerialize, buffer, size);
+    double boxedDeserializeRate = measure(boxedDeserialize, buffer, size);
+    System.out.println(String.format(
+        "%-16s %9d  bulk %8.1f / %8.1f  boxed %8.1f / %8.1f  M elements/s (write / read)",
+        name, size, serializeRate, deserializeRate, boxedSerializeRate, boxedDeserializeRate));
+  }
+
+  private void measureSize(int size) {
+    DoubleArrayField doubleField = DoubleArrayField.newVariable("doubles", -1);
+    double[] doubles = new double[size];
+    for (int i = 0; i < size; i++) {
+      doubles[i] = i;
+    }
+    doubleField.setValue(doubles);
+    IntegerArrayField intField =
+        IntegerArrayField.newVariable(PrimitiveFieldType.INT32, "ints", -1);
+    int[] ints = new int[size];
+    for (int i = 0; i < size; i++) {
+      ints[i] = i;
+    }
+    intField.setValue(ints);
+    int capacity = 4 + size * 8;
+    ChannelBuffer heapBuffer = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, capacity);
+    measure("float64[] heap", doubleField, size, heapBuffer);
+    measure("int32[] heap", intField, size, heapBuffer);
+    ChannelBuffer directBuffer = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, capacity);
+    measure("float64[] direct", doubleField, size, directBuffer);
+    measure("int32[] direct", intField, size, directBuffer);
+  }
+
+  public static void main(String[] args) {
+    int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+    PrimitiveArrayBenchmark benchmark = new PrimitiveArrayBenchmark();
+    for (int size = 10; size <= maxSize; size *= 10) {
+      benchmark.measureSize(size);
+    }
+    if (benchmark.sink == 0) {
+      System.out.println();
+    }
+  }
+}
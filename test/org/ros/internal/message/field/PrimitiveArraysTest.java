@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message.field;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
+import org.junit.Test;
+import org.ros.internal.message.MessageBuffers;
+
+import java.nio.ByteOrder;
+
+/**
+ * Round trips the bulk encoded array fields through buffers with and without
+ * an accessible backing array.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class PrimitiveArraysTest {
+
+  private static final int[] SIZES = { 0, 1, 10, 1000 };
+
+  private static ChannelBuffer[] newBuffers() {
+    return new ChannelBuffer[] {
+        MessageBuffers.dynamicBuffer(),
+        MessageBuffers.dynamicBuffer(DirectChannelBufferFactory
+            .getInstance(ByteOrder.LITTLE_ENDIAN)),
+        ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 8 * 1024) };
+  }
+
+  /**
+   * Serializes {@code field} and deserializes it into {@code copy}.
+   */
+  private static void roundTrip(Field field, Field copy, ChannelBuffer buffer) {
+    buffer.clear();
+    // Start at an offset to catch views that ignore the writer index.
+    buffer.writeByte(42);
+    field.serialize(buffer);
+    assertEquals(1 + field.getSerializedSize(), buffer.writerIndex());
+    assertEquals(42, buffer.readByte());
+    copy.deserialize(buffer);
+    assertEquals(0, buffer.readableBytes());
+  }
+
+  @Test
+  public void testDoubles() {
+    for (ChannelBuffer buffer : newBuffers()) {
+      for (int size : SIZES) {
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+          values[i] = i * 0.5 - 1;
+        }
+        DoubleArrayField field = DoubleArrayField.newVariable("values", -1);
+        field.setValue(values);
+        DoubleArrayField copy = DoubleArrayField.newVariable("values", -1);
+        roundTrip(field, copy, buffer);
+        assertArrayEquals(values, copy.getValue(), 0);
+      }
+    }
+  }
+
+  @Test
+  public void testFloats() {
+    for (ChannelBuffer buffer : newBuffers()) {
+      for (int size : SIZES) {
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+          values[i] = i * 0.5f - 1;
+        }
+        FloatArrayField field = FloatArrayField.newVariable("values", -1);
+        field.setValue(values);
+        FloatArrayField copy = FloatArrayField.newVariable("values", -1);
+        roundTrip(field, copy, buffer);
+        assertArrayEquals(values, copy.getValue(), 0);
+      }
+    }
+  }
+
+  @Test
+  public void testInts() {
+    for (ChannelBuffer buffer : newBuffers()) {
+      for (int size : SIZES) {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+          values[i] = i * 65537 - 7;
+        }
+        IntegerArrayField field =
+            IntegerArrayField.newVariable(PrimitiveFieldType.INT32, "values", -1);
+        field.setValue(values);
+        IntegerArrayField copy =
+            IntegerArrayField.newVariable(PrimitiveFieldType.INT32, "values", -1);
+        roundTrip(field, copy, buffer);
+        assertArrayEquals(values, copy.getValue());
+      }
+    }
+  }
+
+  @Test
+  public void testShortsAndLongs() {
+    for (ChannelBuffer buffer : newBuffers()) {
+      for (int size : SIZES) {
+        short[] shorts = new short[size];
+        long[] longs = new long[size];
+        for (int i = 0; i < size; i++) {
+          shorts[i] = (short) (i * 31 - 5);
+          longs[i] = i * 4294967311L - 3;
+        }
+        ShortArrayField shortField =
+            ShortArrayField.newVariable(PrimitiveFieldType.INT16, "values", -1);
+        shortField.setValue(shorts);
+        ShortArrayField shortCopy =
+            ShortArrayField.newVariable(PrimitiveFieldType.INT16, "values", -1);
+        roundTrip(shortField, shortCopy, buffer);
+        assertArrayEquals(shorts, shortCopy.getValue());
+        LongArrayField longField =
+            LongArrayField.newVariable(PrimitiveFieldType.INT64, "values", -1);
+        longField.setValue(longs);
+        LongArrayField longCopy =
+            LongArrayField.newVariable(PrimitiveFieldType.INT64, "values", -1);
+        roundTrip(longField, longCopy, buffer);
+        assertArrayEquals(longs, longCopy.getValue());
+      }
+    }
+  }
+
+  @Test
+  public void testLittleEndianLayout() {
+    for (ChannelBuffer buffer : newBuffers()) {
+      IntegerArrayField field =
+          IntegerArrayField.newVariable(PrimitiveFieldType.INT32, "values", -1);
+      field.setValue(new int[] { 0x04030201 });
+      buffer.clear();
+      field.serialize(buffer);
+      assertEquals(8, buffer.readableBytes());
+      assertEquals(1, buffer.getByte(0));
+      for (int i = 0; i < 4; i++) {
+        assertEquals(i + 1, buffer.getByte(4 + i));
+      }
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.node.topic;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.internal.message.DefaultMessageFactory;
+import org.ros.internal.message.DefaultMessageSerializationFactory;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.internal.message.topic.TopicDescriptionFactory;
+import org.ros.internal.node.server.NodeIdentifier;
+import org.ros.message.MessageDefinitionProvider;
+import org.ros.namespace.GraphName;
+import org.ros.node.topic.QueueOptions;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class TopicParticipantManagerTest {
+
+  private ScheduledExecutorService executorService;
+  private TopicParticipantManager topicParticipantManager;
+  private DefaultPublisher<std_msgs.String> publisher;
+
+  @Before
+  public void setUp() {
+    executorService = Executors.newScheduledThreadPool(1);
+    topicParticipantManager = new TopicParticipantManager();
+    MessageDefinitionProvider messageDefinitionProvider =
+        new MessageDefinitionReflectionProvider();
+    TopicDeclaration topicDeclaration =
+        TopicDeclaration.newFromTopicName(GraphName.of("/foo"), new TopicDescriptionFactory(
+            messageDefinitionProvider).newFromType(std_msgs.String._TYPE));
+    publisher =
+        new DefaultPublisher<std_msgs.String>(NodeIdentifier.forNameAndUri("/node",
+            "http://localhost:11311/"), topicDeclaration,
+            new DefaultMessageSerializationFactory(messageDefinitionProvider)
+                .<std_msgs.String>newMessageSerializer(std_msgs.String._TYPE),
+            new DefaultMessageFactory(messageDefinitionProvider), executorService,
+            HeapChannelBufferFactory.getInstance(ByteOrder.LITTLE_ENDIAN),
+            QueueOptions.newDefault());
+  }
+
+  @After
+  public void tearDown() {
+    IntraProcessPublishers.remove(publisher);
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void testConstructedPublisherIsNotIntraProcess() {
+    assertFalse(IntraProcessPublishers.contains(publisher));
+  }
+
+  @Test
+  public void testAddAndRemovePublisher() {
+    topicParticipantManager.addPublisher(publisher);
+    assertTrue(IntraProcessPublishers.contains(publisher));
+    topicParticipantManager.removePublisher(publisher);
+    assertFalse(IntraProcessPublishers.contains(publisher));
+  }
+
+  @Test
+  public void testShutdownRemovesIntraProcessPublisher() {
+    topicParticipantManager.addPublisher(publisher);
+    publisher.shutdown();
+    assertFalse(IntraProcessPublishers.contains(publisher));
+  }
+}
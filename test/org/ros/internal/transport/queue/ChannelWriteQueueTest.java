@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.queue;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.Lists;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.internal.message.MessageBufferPool;
+import org.ros.node.topic.SlowSubscriberPolicy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class ChannelWriteQueueTest {
+
+  private MessageBufferPool messageBufferPool;
+  private List<Integer> written;
+  private boolean writable;
+  private Channel channel;
+
+  @Before
+  public void setUp() {
+    messageBufferPool = new MessageBufferPool();
+    written = Lists.newArrayList();
+    writable = false;
+    channel = (Channel) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { Channel.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("isOpen")) {
+              return true;
+            } else if (name.equals("isWritable")) {
+              return writable;
+            } else if (name.equals("write")) {
+              ChannelBuffer buffer = (ChannelBuffer) args[0];
+              while (buffer.readable()) {
+                int length = buffer.readInt();
+                written.add(buffer.readInt());
+                buffer.skipBytes(length - 4);
+              }
+              return Channels.succeededFuture((Channel) proxy);
+            } else if (name.equals("hashCode")) {
+              return System.identityHashCode(proxy);
+            } else if (name.equals("equals")) {
+              return proxy == args[0];
+            }
+            throw new UnsupportedOperationException(name);
+          }
+        });
+  }
+
+  /**
+   * @return a batch of length prefixed frames, each holding its number
+   */
+  private MessageBatch newBatch(int first, int size) {
+    ChannelBuffer buffer = messageBufferPool.acquire();
+    for (int i = first; i < first + size; i++) {
+      buffer.writeInt(4);
+      buffer.writeInt(i);
+    }
+    return new MessageBatch(buffer, size, messageBufferPool);
+  }
+
+  private void flush(ChannelWriteQueue channelWriteQueue) throws Exception {
+    writable = true;
+    // Events are not passed on since the channel has no pipeline.
+    ChannelHandlerContext context =
+        (ChannelHandlerContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { ChannelHandlerContext.class }, new InvocationHandler() {
+              @Override
+              public Object invoke(Object proxy, Method method, Object[] args) {
+                return null;
+              }
+            });
+    channelWriteQueue.channelInterestChanged(context, null);
+  }
+
+  @Test
+  public void testWritesWhileWritable() throws Exception {
+    writable = true;
+    ChannelWriteQueue channelWriteQueue =
+        new ChannelWriteQueue(channel, SlowSubscriberPolicy.DROP_OLDEST, 2);
+    channelWriteQueue.write(newBatch(0, 5));
+    assertEquals(Lists.newArrayList(0, 1, 2, 3, 4), written);
+    assertEquals(0, channelWriteQueue.getDroppedMessages());
+  }
+
+  @Test
+  public void testDropOldestTrimsSingleBatch() throws Exception {
+    ChannelWriteQueue channelWriteQueue =
+        new ChannelWriteQueue(channel, SlowSubscriberPolicy.DROP_OLDEST, 3);
+    channelWriteQueue.write(newBatch(0, 5));
+    assertEquals(2, channelWriteQueue.getDroppedMessages());
+    flush(channelWriteQueue);
+    assertEquals(Lists.newArrayList(2, 3, 4), written);
+  }
+
+  @Test
+  public void testDropNewestTrimsSingleBatch() throws Exception {
+    ChannelWriteQueue channelWriteQueue =
+        new ChannelWriteQueue(channel, SlowSubscriberPolicy.DROP_NEWEST, 3);
+    channelWriteQueue.write(newBatch(0, 5));
+    assertEquals(2, channelWriteQueue.getDroppedMessages());
+    flush(channelWriteQueue);
+    assertEquals(Lists.newArrayList(0, 1, 2), written);
+  }
+
+  @Test
+  public void testDropOldestAcrossBatches() throws Exception {
+    ChannelWriteQueue channelWriteQueue =
+        new ChannelWriteQueue(channel, SlowSubscriberPolicy.DROP_OLDEST, 4);
+    channelWriteQueue.write(newBatch(0, 3));
+    channelWriteQueue.write(newBatch(3, 3));
+    channelWriteQueue.write(newBatch(6, 2));
+    assertEquals(4, channelWriteQueue.getDroppedMessages());
+    flush(channelWriteQueue);
+    assertEquals(Lists.newArrayList(4, 5, 6, 7), written);
+  }
+
+  @Test
+  public void testDropNewestAcrossBatches() throws Exception {
+    ChannelWriteQueue channelWriteQueue =
+        new ChannelWriteQueue(channel, SlowSubscriberPolicy.DROP_NEWEST, 4);
+    channelWriteQueue.write(newBatch(0, 3));
+    channelWriteQueue.write(newBatch(3, 3));
+    channelWriteQueue.write(newBatch(6, 2));
+    assertEquals(4, channelWriteQueue.getDroppedMessages());
+    flush(channelWriteQueue);
+    assertEquals(Lists.newArrayList(0, 1, 2, 3), written);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.queue;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.concurrent.OverflowPolicy;
+import org.ros.concurrent.QueueStatistics;
+import org.ros.internal.message.CompiledMessageSerializationFactory;
+import org.ros.internal.message.DefaultMessageFactory;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.message.MessageDefinitionProvider;
+import org.ros.message.MessageDeserializer;
+import org.ros.message.MessageFactory;
+import org.ros.node.topic.QueueOptions;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class IncomingMessageQueueTest {
+
+  private MessageFactory messageFactory;
+  private MessageDeserializer<std_msgs.String> deserializer;
+  private ExecutorService executorService;
+
+  @Before
+  public void setUp() {
+    MessageDefinitionProvider messageDefinitionProvider = new MessageDefinitionReflectionProvider();
+    messageFactory = new DefaultMessageFactory(messageDefinitionProvider);
+    deserializer =
+        new CompiledMessageSerializationFactory(messageDefinitionProvider)
+            .newMessageDeserializer(std_msgs.String._TYPE);
+    executorService = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBlockIsNotSupported() {
+    new IncomingMessageQueue<std_msgs.String>(deserializer, executorService, QueueOptions
+        .newDefault().setOverflowPolicy(OverflowPolicy.BLOCK)
+        .setBlockTimeout(1, TimeUnit.SECONDS));
+  }
+
+  @Test(timeout = 10000)
+  public void testRejectedMessagesAreCounted() throws InterruptedException {
+    // Occupy the only thread so that nothing is dispatched.
+    final CountDownLatch blocked = new CountDownLatch(1);
+    executorService.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    IncomingMessageQueue<std_msgs.String> incomingMessageQueue =
+        new IncomingMessageQueue<std_msgs.String>(deserializer, executorService, QueueOptions
+            .newDefault().setCapacity(1).setOverflowPolicy(OverflowPolicy.REJECT));
+    for (int i = 0; i < 3; i++) {
+      std_msgs.String message = messageFactory.newFromType(std_msgs.String._TYPE);
+      message.setData("message" + i);
+      incomingMessageQueue.receive(message);
+    }
+    QueueStatistics statistics = incomingMessageQueue.getStatistics();
+    assertEquals(1, statistics.getEnqueued());
+    assertEquals(2, statistics.getDropped());
+    incomingMessageQueue.shutdown();
+    blocked.countDown();
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.internal.message.CompiledMessageSerializationFactory;
+import org.ros.internal.message.DefaultMessageFactory;
+import org.ros.internal.message.InPlaceMessageDeserializer;
+import org.ros.internal.message.MessageBuffers;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.message.MessageDefinitionProvider;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageSerializationFactory;
+import org.ros.message.MessageSerializer;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class MessagePoolTest {
+
+  private MessageFactory messageFactory;
+  private MessageSerializationFactory messageSerializationFactory;
+  private MessagePool<sensor_msgs.PointCloud> messagePool;
+
+  @Before
+  public void setUp() {
+    MessageDefinitionProvider messageDefinitionProvider = new MessageDefinitionReflectionProvider();
+    messageFactory = new DefaultMessageFactory(messageDefinitionProvider);
+    messageSerializationFactory =
+        new CompiledMessageSerializationFactory(messageDefinitionProvider);
+    messagePool = new MessagePool<sensor_msgs.PointCloud>(1);
+  }
+
+  private ChannelBuffer newPointCloudBuffer(float value) {
+    sensor_msgs.PointCloud pointCloud = messageFactory.newFromType(sensor_msgs.PointCloud._TYPE);
+    pointCloud.getHeader().setFrameId("frame" + value);
+    geometry_msgs.Point32 point = messageFactory.newFromType(geometry_msgs.Point32._TYPE);
+    point.setX(value);
+    pointCloud.getPoints().add(point);
+    sensor_msgs.ChannelFloat32 channel =
+        messageFactory.newFromType(sensor_msgs.ChannelFloat32._TYPE);
+    channel.setName("channel" + value);
+    channel.setValues(new float[] { value });
+    pointCloud.getChannels().add(channel);
+    MessageSerializer<sensor_msgs.PointCloud> serializer =
+        messageSerializationFactory.newMessageSerializer(sensor_msgs.PointCloud._TYPE);
+    ChannelBuffer buffer = MessageBuffers.dynamicBuffer();
+    serializer.serialize(pointCloud, buffer);
+    return buffer;
+  }
+
+  @Test
+  public void testRecycledMessageIsReused() {
+    InPlaceMessageDeserializer<sensor_msgs.PointCloud> deserializer =
+        (InPlaceMessageDeserializer<sensor_msgs.PointCloud>) messageSerializationFactory
+            .<sensor_msgs.PointCloud>newMessageDeserializer(sensor_msgs.PointCloud._TYPE);
+    sensor_msgs.PointCloud message = deserializer.deserialize(newPointCloudBuffer(1));
+    std_msgs.Header header = message.getHeader();
+    sensor_msgs.ChannelFloat32 channel = message.getChannels().get(0);
+    messagePool.release(message);
+    sensor_msgs.PointCloud recycled = messagePool.acquire();
+    assertSame(message, recycled);
+    deserializer.deserialize(newPointCloudBuffer(2), recycled);
+    assertSame(header, recycled.getHeader());
+    assertSame(channel, recycled.getChannels().get(0));
+    assertEquals("frame2.0", header.getFrameId());
+    assertEquals("channel2.0", channel.getName());
+  }
+
+  @Test
+  public void testRetainedNestedMessagesSurviveRecycling() {
+    InPlaceMessageDeserializer<sensor_msgs.PointCloud> deserializer =
+        (InPlaceMessageDeserializer<sensor_msgs.PointCloud>) messageSerializationFactory
+            .<sensor_msgs.PointCloud>newMessageDeserializer(sensor_msgs.PointCloud._TYPE);
+    sensor_msgs.PointCloud message = deserializer.deserialize(newPointCloudBuffer(1));
+    // A listener keeps a nested message, a columnar list element and a list
+    // element, but not the message itself.
+    std_msgs.Header header = message.getHeader();
+    header.toRawMessage().retain();
+    geometry_msgs.Point32 point = message.getPoints().get(0);
+    point.toRawMessage().retain();
+    sensor_msgs.ChannelFloat32 channel = message.getChannels().get(0);
+    channel.toRawMessage().retain();
+    messagePool.release(message);
+    sensor_msgs.PointCloud recycled = messagePool.acquire();
+    assertSame(message, recycled);
+
+    deserializer.deserialize(newPointCloudBuffer(2), recycled);
+    assertEquals("frame1.0", header.getFrameId());
+    assertEquals(1, point.getX(), 0);
+    assertEquals("channel1.0", channel.getName());
+    assertEquals(1, channel.getValues()[0], 0);
+    assertNotSame(header, recycled.getHeader());
+    assertNotSame(point, recycled.getPoints().get(0));
+    assertNotSame(channel, recycled.getChannels().get(0));
+    assertEquals("frame2.0", recycled.getHeader().getFrameId());
+    assertEquals(2, recycled.getPoints().get(0).getX(), 0);
+    assertEquals("channel2.0", recycled.getChannels().get(0).getName());
+    assertEquals(2, recycled.getChannels().get(0).getValues()[0], 0);
+  }
+}
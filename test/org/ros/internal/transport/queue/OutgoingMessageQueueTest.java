@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Lists;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.channel.local.DefaultLocalClientChannelFactory;
+import org.jboss.netty.channel.local.DefaultLocalServerChannelFactory;
+import org.jboss.netty.channel.local.LocalAddress;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.internal.message.CompiledMessageSerializationFactory;
+import org.ros.internal.message.DefaultMessageFactory;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.message.MessageDefinitionProvider;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageListener;
+import org.ros.message.MessageSerializationFactory;
+import org.ros.message.MessageSerializer;
+import org.ros.node.topic.QueueOptions;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class OutgoingMessageQueueTest {
+
+  private static final int MESSAGES = 2000;
+
+  private MessageFactory messageFactory;
+  private MessageSerializationFactory messageSerializationFactory;
+  private ExecutorService executorService;
+  private Channel serverChannel;
+  private Channel clientChannel;
+  private BlockingQueue<List<Integer>> writes;
+
+  @Before
+  public void setUp() {
+    MessageDefinitionProvider messageDefinitionProvider = new MessageDefinitionReflectionProvider();
+    messageFactory = new DefaultMessageFactory(messageDefinitionProvider);
+    messageSerializationFactory =
+        new CompiledMessageSerializationFactory(messageDefinitionProvider);
+    executorService = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    if (clientChannel != null) {
+      clientChannel.close().awaitUninterruptibly();
+      serverChannel.close().awaitUninterruptibly();
+    }
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Connects an in-VM channel whose peer records the frames of each write.
+   */
+  private void connectLocalChannel() {
+    writes = new LinkedBlockingQueue<List<Integer>>();
+    ServerBootstrap serverBootstrap = new ServerBootstrap(new DefaultLocalServerChannelFactory());
+    serverBootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() {
+        return Channels.pipeline(new SimpleChannelHandler() {
+          @Override
+          public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+            ChannelBuffer buffer = (ChannelBuffer) e.getMessage();
+            List<Integer> frames = Lists.newArrayList();
+            int index = buffer.readerIndex();
+            while (index < buffer.writerIndex()) {
+              int length = buffer.getInt(index);
+              frames.add(buffer.getInt(index + 4));
+              index += 4 + length;
+            }
+            writes.add(frames);
+          }
+        });
+      }
+    });
+    LocalAddress address = new LocalAddress("outgoing_message_queue_test_" + System.nanoTime());
+    serverChannel = serverBootstrap.bind(address);
+    ClientBootstrap clientBootstrap = new ClientBootstrap(new DefaultLocalClientChannelFactory());
+    clientBootstrap.setPipeline(Channels.pipeline());
+    clientChannel = clientBootstrap.connect(address).awaitUninterruptibly().getChannel();
+  }
+
+  /**
+   * @return a queue of integers that are serialized as 4 byte frames
+   */
+  private OutgoingMessageQueue<Integer> newIntegerQueue() {
+    return newIntegerQueue(executorService);
+  }
+
+  private OutgoingMessageQueue<Integer> newIntegerQueue(ExecutorService executorService) {
+    OutgoingMessageQueue<Integer> outgoingMessageQueue =
+        newUnconnectedIntegerQueue(executorService, 100);
+    connectLocalChannel();
+    outgoingMessageQueue.addChannel(clientChannel);
+    return outgoingMessageQueue;
+  }
+
+  private OutgoingMessageQueue<Integer> newUnconnectedIntegerQueue(
+      ExecutorService executorService, int capacity) {
+    MessageSerializer<Integer> serializer = new MessageSerializer<Integer>() {
+      @Override
+      public void serialize(Integer message, ChannelBuffer buffer) {
+        buffer.writeInt(message);
+      }
+    };
+    return new OutgoingMessageQueue<Integer>(serializer, executorService,
+        HeapChannelBufferFactory.getInstance(ByteOrder.LITTLE_ENDIAN), QueueOptions.newDefault()
+            .setCapacity(capacity));
+  }
+
+  /**
+   * @return a {@link Channel} that delegates to {@code channel} but stalls
+   *         when its pipeline is requested, which widens the window in which
+   *         {@link OutgoingMessageQueue#addChannel(Channel)} registers it
+   */
+  private Channel newSlowPipelineChannel(final Channel channel) {
+    return (Channel) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { Channel.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getPipeline")) {
+              Thread.sleep(5);
+            }
+            try {
+              return method.invoke(channel, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+          }
+        });
+  }
+
+  private List<Integer> takeWrite() throws InterruptedException {
+    List<Integer> frames = writes.poll(5, TimeUnit.SECONDS);
+    assertTrue("No write received.", frames != null);
+    return frames;
+  }
+
+  /**
+   * Messages published within the latency budget go out in a single write.
+   */
+  @Test(timeout = 10000)
+  public void testBurstIsCoalescedIntoOneWrite() throws InterruptedException {
+    OutgoingMessageQueue<Integer> outgoingMessageQueue = newIntegerQueue();
+    outgoingMessageQueue.setWriteCoalescing(64 * 1024, 1, TimeUnit.SECONDS);
+    for (int i = 0; i < 10; i++) {
+      outgoingMessageQueue.add(i);
+    }
+    assertEquals(Lists.newArrayList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), takeWrite());
+    assertTrue(writes.isEmpty());
+    outgoingMessageQueue.shutdown();
+  }
+
+  /**
+   * A write is closed once it reaches the byte budget, the remaining messages
+   * follow in later writes.
+   */
+  @Test(timeout = 10000)
+  public void testByteBudgetLimitsWrite() throws InterruptedException {
+    OutgoingMessageQueue<Integer> outgoingMessageQueue = newIntegerQueue();
+    // Each frame is a 4 byte length followed by a 4 byte integer.
+    outgoingMessageQueue.setWriteCoalescing(3 * 8, 200, TimeUnit.MILLISECONDS);
+    for (int i = 0; i < 7; i++) {
+      outgoingMessageQueue.add(i);
+    }
+    assertEquals(Lists.newArrayList(0, 1, 2), takeWrite());
+    assertEquals(Lists.newArrayList(3, 4, 5), takeWrite());
+    assertEquals(Lists.newArrayList(6), takeWrite());
+    outgoingMessageQueue.shutdown();
+  }
+
+  /**
+   * A channel added before the executor has started the writer must still
+   * receive messages.
+   */
+  @Test(timeout = 10000)
+  public void testChannelAddedBeforeWriterStarts() throws InterruptedException {
+    ExecutorService busyExecutorService = Executors.newSingleThreadExecutor();
+    final CountDownLatch busy = new CountDownLatch(1);
+    busyExecutorService.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          busy.await();
+        } catch (InterruptedException e) {
+        }
+      }
+    });
+    try {
+      OutgoingMessageQueue<Integer> outgoingMessageQueue = newIntegerQueue(busyExecutorService);
+      outgoingMessageQueue.add(42);
+      busy.countDown();
+      assertEquals(Lists.newArrayList(42), takeWrite());
+      outgoingMessageQueue.shutdown();
+    } finally {
+      busyExecutorService.shutdownNow();
+    }
+  }
+
+  /**
+   * A channel that is added to a latched queue while messages are being
+   * published must receive the latched message and then every later message.
+   */
+  @Test(timeout = 30000)
+  public void testLatchedChannelMissesNoMessages() throws InterruptedException {
+    for (int round = 0; round < 20; round++) {
+      final OutgoingMessageQueue<Integer> outgoingMessageQueue =
+          newUnconnectedIntegerQueue(executorService, 100000);
+      outgoingMessageQueue.setLatchMode(true);
+      final AtomicInteger published = new AtomicInteger();
+      final AtomicBoolean channelAdded = new AtomicBoolean();
+      // Publishes until shortly after the channel was added.
+      Thread publisher = new Thread() {
+        @Override
+        public void run() {
+          int remaining = 100;
+          while (remaining > 0) {
+            outgoingMessageQueue.add(published.get());
+            published.incrementAndGet();
+            if (channelAdded.get()) {
+              remaining--;
+            }
+          }
+        }
+      };
+      publisher.setDaemon(true);
+      connectLocalChannel();
+      publisher.start();
+      while (published.get() < 100) {
+        Thread.yield();
+      }
+      outgoingMessageQueue.addChannel(newSlowPipelineChannel(clientChannel));
+      channelAdded.set(true);
+      publisher.join();
+      int last = published.get() - 1;
+      List<Integer> received = Lists.newArrayList();
+      while (received.isEmpty() || received.get(received.size() - 1) != last) {
+        received.addAll(takeWrite());
+      }
+      // The latched message may be written again by the writer, but no
+      // message may be skipped.
+      for (int i = 1; i < received.size(); i++) {
+        int previous = received.get(i - 1);
+        if (received.get(i) != previous && received.get(i) != previous + 1) {
+          fail("Skipped from " + previous + " to " + received.get(i));
+        }
+      }
+      outgoingMessageQueue.shutdown();
+      clientChannel.close().awaitUninterruptibly();
+      serverChannel.close().awaitUninterruptibly();
+    }
+  }
+
+  /**
+   * With a zero byte budget every message is written on its own.
+   */
+  @Test(timeout = 10000)
+  public void testCoalescingDisabled() throws InterruptedException {
+    OutgoingMessageQueue<Integer> outgoingMessageQueue = newIntegerQueue();
+    outgoingMessageQueue.setWriteCoalescing(0, 0, TimeUnit.SECONDS);
+    for (int i = 0; i < 5; i++) {
+      outgoingMessageQueue.add(i);
+    }
+    for (int i = 0; i < 5; i++) {
+      assertEquals(Lists.newArrayList(i), takeWrite());
+    }
+    outgoingMessageQueue.shutdown();
+  }
+
+  /**
+   * An {@link IncomingMessageQueue} that is added while messages are being
+   * published must receive the latched message and then every later message
+   * exactly once.
+   */
+  @Test(timeout = 30000)
+  public void testLatchedIncomingMessageQueueMissesNoMessages() throws InterruptedException {
+    for (int round = 0; round < 100; round++) {
+      final OutgoingMessageQueue<std_msgs.String> outgoingMessageQueue =
+          new OutgoingMessageQueue<std_msgs.String>(messageSerializationFactory
+              .<std_msgs.String>newMessageSerializer(std_msgs.String._TYPE),
+              executorService, HeapChannelBufferFactory.getInstance(ByteOrder.LITTLE_ENDIAN),
+              QueueOptions.newDefault());
+      outgoingMessageQueue.setLatchMode(true);
+      final AtomicInteger published = new AtomicInteger();
+      Thread publisher = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < MESSAGES; i++) {
+            std_msgs.String message = messageFactory.newFromType(std_msgs.String._TYPE);
+            message.setData(Integer.toString(i));
+            outgoingMessageQueue.add(message);
+            published.incrementAndGet();
+          }
+        }
+      };
+      publisher.setDaemon(true);
+      publisher.start();
+
+      IncomingMessageQueue<std_msgs.String> incomingMessageQueue =
+          new IncomingMessageQueue<std_msgs.String>(messageSerializationFactory
+              .<std_msgs.String>newMessageDeserializer(std_msgs.String._TYPE),
+              executorService, QueueOptions.newDefault().setCapacity(MESSAGES));
+      final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+      incomingMessageQueue.addListener(new MessageListener<std_msgs.String>() {
+        @Override
+        public void onNewMessage(std_msgs.String message) {
+          received.add(Integer.parseInt(message.getData()));
+        }
+      }, MESSAGES);
+      // Add the queue in the middle of publishing.
+      while (published.get() < MESSAGES / 2) {
+        Thread.yield();
+      }
+      outgoingMessageQueue.addIncomingMessageQueue(incomingMessageQueue);
+      publisher.join();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while ((received.isEmpty() || received.get(received.size() - 1) != MESSAGES - 1)
+          && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+      assertTrue(received.size() > 0);
+      int first = received.get(0);
+      for (int i = 0; i < received.size(); i++) {
+        assertEquals(first + i, (int) received.get(i));
+      }
+      assertEquals(MESSAGES - 1, (int) received.get(received.size() - 1));
+      incomingMessageQueue.shutdown();
+      outgoingMessageQueue.shutdown();
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.tcp;
+
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Sets;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteOrder;
+import java.util.Set;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class TcpClientChannelFactoryTest {
+
+  private static Set<Thread> getLiveThreads() {
+    return Sets.newHashSet(Thread.getAllStackTraces().keySet());
+  }
+
+  @Test(timeout = 10000)
+  public void testReleaseStopsIoThreads() throws Exception {
+    Set<Thread> threadsBefore = getLiveThreads();
+    TcpClientChannelFactory channelFactory =
+        new TcpClientChannelFactory(HeapChannelBufferFactory.getInstance(ByteOrder.LITTLE_ENDIAN));
+    ServerSocket serverSocket = new ServerSocket(0);
+    try {
+      ClientBootstrap bootstrap = new ClientBootstrap(channelFactory);
+      bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+        @Override
+        public ChannelPipeline getPipeline() {
+          return Channels.pipeline();
+        }
+      });
+      ChannelFuture future =
+          bootstrap.connect(new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort()));
+      Channel channel = future.awaitUninterruptibly().getChannel();
+      assertTrue(future.isSuccess());
+      channel.close().awaitUninterruptibly();
+    } finally {
+      serverSocket.close();
+    }
+    channelFactory.releaseExternalResources();
+    Set<Thread> threadsAfter = getLiveThreads();
+    threadsAfter.removeAll(threadsBefore);
+    for (Thread thread : threadsAfter) {
+      assertTrue(thread.getName(), !thread.getName().startsWith("New I/O"));
+    }
+  }
+}
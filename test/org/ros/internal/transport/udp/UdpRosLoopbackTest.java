@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.transport.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.address.AdvertiseAddress;
+import org.ros.address.BindAddress;
+import org.ros.internal.transport.ConnectionHeader;
+import org.ros.internal.transport.tcp.AbstractNamedChannelHandler;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteOrder;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends messages between a {@link UdpRosServer} and a {@link UdpRosClient}
+ * over the loopback interface.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class UdpRosLoopbackTest {
+
+  private static final int MAX_DATAGRAM_SIZE = 128;
+
+  private ExecutorService executorService;
+  private UdpRosServer server;
+  private UdpRosClient client;
+  private BlockingQueue<ChannelBuffer> messages;
+  private Channel channel;
+
+  @Before
+  public void setUp() {
+    executorService = Executors.newCachedThreadPool();
+    server = new UdpRosServer(BindAddress.newPrivate(), AdvertiseAddress.newPrivate(),
+        executorService);
+    client = new UdpRosClient("127.0.0.1", MAX_DATAGRAM_SIZE, executorService);
+    messages = new LinkedBlockingQueue<ChannelBuffer>();
+    client.addNamedChannelHandler(new AbstractNamedChannelHandler() {
+      @Override
+      public String getName() {
+        return "MessageCollector";
+      }
+
+      @Override
+      public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+        messages.add((ChannelBuffer) e.getMessage());
+      }
+    });
+    channel = client.bind();
+  }
+
+  @After
+  public void tearDown() {
+    client.shutdown();
+    server.shutdown();
+    executorService.shutdownNow();
+  }
+
+  private InetSocketAddress getClientAddress() {
+    int port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    return new InetSocketAddress("127.0.0.1", port);
+  }
+
+  private static ChannelBuffer newMessage(int size) {
+    ChannelBuffer buffer = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, size);
+    for (int i = 0; i < size; i++) {
+      buffer.writeByte(i % 251);
+    }
+    return buffer;
+  }
+
+  private ChannelBuffer takeMessage() throws InterruptedException {
+    ChannelBuffer message = messages.poll(5, TimeUnit.SECONDS);
+    assertTrue("No message received.", message != null);
+    return message;
+  }
+
+  /**
+   * Sends a raw datagram to the client, bypassing {@link UdpRosConnection}.
+   */
+  private void sendDatagram(DatagramSocket socket, byte opcode, int messageId, int block,
+      ChannelBuffer payload) throws Exception {
+    ChannelBuffer datagram = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN,
+        UdpRosDatagrams.HEADER_SIZE + payload.readableBytes());
+    datagram.writeInt(0);
+    datagram.writeByte(opcode);
+    datagram.writeByte(messageId);
+    datagram.writeShort(block);
+    datagram.writeBytes(payload, payload.readerIndex(), payload.readableBytes());
+    socket.send(new DatagramPacket(datagram.array(), datagram.readableBytes(),
+        getClientAddress()));
+  }
+
+  @Test(timeout = 10000)
+  public void testSmallMessage() throws InterruptedException {
+    UdpRosConnection connection = server.newConnection(getClientAddress(), MAX_DATAGRAM_SIZE);
+    ChannelBuffer message = newMessage(10);
+    connection.write(message);
+    assertEquals(message, takeMessage());
+  }
+
+  @Test(timeout = 10000)
+  public void testLargeMessageIsReassembled() throws InterruptedException {
+    UdpRosConnection connection = server.newConnection(getClientAddress(), MAX_DATAGRAM_SIZE);
+    // Spans several datagrams, the last of which is only partially filled.
+    ChannelBuffer message = newMessage(10 * (MAX_DATAGRAM_SIZE - UdpRosDatagrams.HEADER_SIZE) + 7);
+    connection.write(message);
+    assertEquals(message, takeMessage());
+    connection.write(newMessage(3));
+    assertEquals(newMessage(3), takeMessage());
+    assertEquals(0, client.getDroppedMessages(channel));
+    assertEquals(0, connection.getDroppedDatagrams());
+  }
+
+  @Test(timeout = 10000)
+  public void testMissingBlockDropsMessage() throws Exception {
+    DatagramSocket socket = new DatagramSocket();
+    try {
+      ChannelBuffer block = newMessage(MAX_DATAGRAM_SIZE - UdpRosDatagrams.HEADER_SIZE);
+      // Message 0 consists of three blocks, but block 1 is lost.
+      sendDatagram(socket, UdpRosDatagrams.DATA0, 0, 3, block);
+      sendDatagram(socket, UdpRosDatagrams.DATAN, 0, 2, block);
+      // Message 1 is lost entirely.
+      ChannelBuffer message = newMessage(5);
+      sendDatagram(socket, UdpRosDatagrams.DATA0, 2, 1, message);
+      assertEquals(message, takeMessage());
+      assertEquals(2, client.getDroppedMessages(channel));
+    } finally {
+      socket.close();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testCloseNotifiesPublisher() throws InterruptedException {
+    UdpRosConnection connection = server.newConnection(getClientAddress(), MAX_DATAGRAM_SIZE);
+    AdvertiseAddress serverAddress = server.getAdvertiseAddress();
+    client.connect(channel, new UdpRosProtocolDescription(serverAddress,
+        connection.getConnectionId(), MAX_DATAGRAM_SIZE, new ConnectionHeader()));
+    client.close(channel);
+    while (!connection.isClosed()) {
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.node;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.ros.internal.message.DefaultMessageSerializationFactory;
+import org.ros.internal.message.definition.MessageDefinitionReflectionProvider;
+import org.ros.message.MessageSerializationFactory;
+
+/**
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class NodeConfigurationTest {
+
+  @Test
+  public void testDefaultMessageSerializationFactoryFollowsProvider() {
+    NodeConfiguration nodeConfiguration = NodeConfiguration.newPrivate();
+    MessageSerializationFactory messageSerializationFactory =
+        nodeConfiguration.getMessageSerializationFactory();
+    nodeConfiguration.setMessageDefinitionProvider(new MessageDefinitionReflectionProvider());
+    assertNotSame(messageSerializationFactory,
+        nodeConfiguration.getMessageSerializationFactory());
+  }
+
+  @Test
+  public void testMessageSerializationFactoryIsKept() {
+    MessageSerializationFactory messageSerializationFactory =
+        new DefaultMessageSerializationFactory(new MessageDefinitionReflectionProvider());
+    NodeConfiguration nodeConfiguration =
+        NodeConfiguration.newPrivate().setMessageSerializationFactory(messageSerializationFactory);
+    nodeConfiguration.setMessageDefinitionProvider(new MessageDefinitionReflectionProvider());
+    assertSame(messageSerializationFactory, nodeConfiguration.getMessageSerializationFactory());
+    NodeConfiguration copy = NodeConfiguration.copyOf(nodeConfiguration);
+    copy.setMessageDefinitionProvider(new MessageDefinitionReflectionProvider());
+    assertSame(messageSerializationFactory, copy.getMessageSerializationFactory());
+  }
+}
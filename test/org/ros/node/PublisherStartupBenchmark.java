@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.node;
+
+import org.ros.RosCore;
+import org.ros.namespace.GraphName;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a {@link ConnectedNode} takes to create publishers for
+ * many topics of a mix of message types. This is dominated by the
+ * construction of the topic descriptions (definitions and MD5 checksums) and
+ * message factories of each topic.
+ * <p>
+ * Run with {@code java org.ros.node.PublisherStartupBenchmark [publishers]}.
+ * 
+ * @author damonkohler@google.com (Damon Kohler)
+ */
+public class PublisherStartupBenchmark {
+
+  private static final String[] MESSAGE_TYPES = { "std_msgs/String", "std_msgs/Header",
+      "geometry_msgs/Twist", "geometry_msgs/PoseStamped", "geometry_msgs/PoseWithCovariance",
+      "geometry_msgs/TwistWithCovariance", "nav_msgs/Odometry", "sensor_msgs/JointState",
+      "sensor_msgs/Image", "sensor_msgs/CompressedImage", "sensor_msgs/PointCloud",
+      "rosgraph_msgs/Log" };
+
+  public static void main(String[] args) throws InterruptedException {
+    final int publishers = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    RosCore rosCore = RosCore.newPrivate();
+    rosCore.start();
+    rosCore.awaitStart();
+    NodeMainExecutor nodeMainExecutor = DefaultNodeMainExecutor.newDefault();
+    final CountDownLatch done = new CountDownLatch(1);
+    final long[] elapsed = new long[1];
+    nodeMainExecutor.execute(new AbstractNodeMain() {
+      @Override
+      public GraphName getDefaultNodeName() {
+        return GraphName.of("publisher_startup_benchmark");
+      }
+
+      @Override
+      public void onStart(ConnectedNode connectedNode) {
+        long start = System.nanoTime();
+        for (int i = 0; i < publishers; i++) {
+          connectedNode.newPublisher("topic" + i, MESSAGE_TYPES[i % MESSAGE_TYPES.length]);
+        }
+        elapsed[0] = System.nanoTime() - start;
+        done.countDown();
+      }
+    }, NodeConfiguration.newPrivate(rosCore.getUri()));
+    done.await();
+    System.out.println(String.format("Created %d publishers of %d types in %d ms.", publishers,
+        MESSAGE_TYPES.length, TimeUnit.NANOSECONDS.toMillis(elapsed[0])));
+    nodeMainExecutor.shutdown();
+    rosCore.shutdown();
+  }
+}